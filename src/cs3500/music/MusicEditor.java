@@ -1,16 +1,18 @@
 package cs3500.music;
 
-import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import javax.sound.midi.InvalidMidiDataException;
 
+import cs3500.music.controller.Autosave;
 import cs3500.music.controller.Controller;
 import cs3500.music.controller.ControllerImpl;
 import cs3500.music.util.MusicReader;
+import cs3500.music.model.ObservablePiece;
 import cs3500.music.model.Piece;
-import cs3500.music.model.PieceImpl;
+import cs3500.music.model.VersionedPiece;
 import cs3500.music.view.GuiView;
 import cs3500.music.view.ViewFactory;
 
@@ -18,17 +20,69 @@ import cs3500.music.view.ViewFactory;
 public class MusicEditor {
     public static void main(String[] args) throws IOException, InvalidMidiDataException {
         GuiView view = ViewFactory.guiViewFactory(args[1]); // the type of view.
-        Piece piece;
+        Path file = Paths.get(args[0]);
+        // the editor opens at once, and plays the piece as far as it has loaded. Beats can only
+        // be played before the rest has loaded if no note still to come starts before them, so
+        // a score that is not in order of attack is loaded in full first.
+        boolean recovering = Autosave.hasRecovery(file);
+        boolean inOrder;
         try {
-            piece = MusicReader.parseFile(new FileReader(
-                    new File(args[0])), PieceImpl.builder());
+            inOrder = recovering || MusicReader.isInAttackOrder(new FileReader(file.toFile()));
         }
-        catch (FileNotFoundException e) {
-            e.printStackTrace();
-            piece = null;
+        catch (IOException | IllegalArgumentException e) {
+            // the loader reports what is wrong with the file
+            inOrder = false;
+        }
+        VersionedPiece.StreamingBuilder builder = VersionedPiece.streamingBuilder(inOrder);
+
+        if (recovering) {
+            // edits saved since the file was, including by a run that crashed, win. They are
+            // made before anything listens to the piece, so they cannot be undone as edits.
+            try {
+                Autosave.loadSnapshot(file, builder);
+                Autosave.replayJournal(file, builder.getPiece());
+            }
+            catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                builder.build();
+                recovering = false;
+            }
+        }
+
+        // the view redraws the notes that change instead of waiting for the next snap
+        Piece piece = new ObservablePiece(builder.getPiece());
+        piece.addListener(view);
+
+        if (recovering) {
+            autosave(piece, file);
+        }
+        else {
+            Thread loader = new Thread(() -> {
+                try {
+                    MusicReader.parseFile(new FileReader(file.toFile()), builder);
+                }
+                catch (IOException | RuntimeException e) {
+                    e.printStackTrace();
+                    builder.build();
+                    // a piece that did not load in full is not saved over the file it came from
+                    return;
+                }
+                autosave(piece, file);
+            }, "piece loader");
+            loader.setDaemon(true);
+            loader.start();
         }
 
         Controller controller = new ControllerImpl(piece, view);
         controller.activate();
     }
-}
\ No newline at end of file
+
+    /**
+     * Starts saving the edits to the given piece next to the given file, until the editor
+     * exits.
+     */
+    private static void autosave(Piece piece, Path file) {
+        Autosave autosave = new Autosave(piece, file);
+        Runtime.getRuntime().addShutdownHook(new Thread(autosave::close));
+    }
+}
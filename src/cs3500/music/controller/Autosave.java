@@ -0,0 +1,456 @@
+package cs3500.music.controller;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+import cs3500.music.model.CoolNote;
+import cs3500.music.model.Note;
+import cs3500.music.model.Piece;
+import cs3500.music.model.PieceChange;
+import cs3500.music.model.PieceListener;
+import cs3500.music.util.CompositionBuilder;
+import cs3500.music.util.MusicUtils;
+import cs3500.music.util.ScoreFile;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Saves the edits made to a piece as they are made, so that they survive a crash.
+ *
+ * Next to the file of a piece, an autosave keeps a snapshot of the whole piece, in the format
+ * of {@link ScoreFile}, and a journal that every edit since the snapshot is appended to. The
+ * listener only encodes each batch of changes the piece reports, which takes time in
+ * proportion to the size of the edit, and hands it to a background thread that appends
+ * whatever has piled up to the journal in one write. The thread calling the listener, which is
+ * usually the event thread of the editor, never waits for the disk.
+ *
+ * Once the journal has grown past a limit, the piece is compacted: a snapshot of the piece is
+ * taken as the next edit is reported, written out in the background, and the journal starts
+ * over. Each snapshot and journal is stamped with a generation, so a journal left behind by a
+ * crash in the middle of compacting is not replayed onto the snapshot that already holds it.
+ * Writing an autosave starts with a snapshot, so edits made before the autosave was made are
+ * kept as well.
+ *
+ * Each batch in the journal carries its length and a checksum, so a batch that was only partly
+ * written when the editor died is ignored. Replaying a change that is already in the piece
+ * does nothing, so a change saved both in a snapshot and the journal is not made twice.
+ */
+public final class Autosave implements PieceListener, Closeable {
+
+    /** The ending added to the name of a piece's file to name its snapshot. */
+    public static final String SNAPSHOT = ".snapshot";
+
+    /** The ending added to the name of a piece's file to name its journal. */
+    public static final String JOURNAL = ".journal";
+
+    /** The bytes every journal starts with. */
+    private static final int JOURNAL_MAGIC = 0x4D4A4E4C;
+
+    /** The size of the journal past which the piece is compacted, by default. */
+    private static final long DEFAULT_COMPACT_BYTES = 1 << 20;
+
+    /** The kinds of record in a batch of the journal. */
+    private static final int REMOVE = 0;
+    private static final int ADD = 1;
+
+    /** What the background thread is told to do when it should stop. */
+    private static final Object STOP = new Object();
+
+    /** The piece whose edits are saved. */
+    private final Piece piece;
+
+    /** The files the snapshot and journal are kept in. */
+    private final Path snapshot;
+    private final Path journal;
+
+    /** The size of the journal past which the piece is compacted. */
+    private final long compactBytes;
+
+    /**
+     * The work for the background thread, in order: encoded batches to append to the journal,
+     * snapshots of the piece to compact into, and finally {@link #STOP}.
+     */
+    private final BlockingQueue<Object> pending;
+
+    /** The thread that writes to disk. */
+    private final Thread writer;
+
+    /** The number of bytes handed to the journal since the last snapshot was taken. */
+    private long journalBytes;
+
+    /** Whether this autosave has been closed. */
+    private volatile boolean closed;
+
+    /**
+     * Constructs an autosave of the given piece next to the given file, and starts listening to
+     * the piece. The piece is compacted whenever its journal reaches a megabyte.
+     *
+     * @param piece the piece to save, which must report its changes
+     * @param file the file of the piece
+     * @throws UnsupportedOperationException if the piece does not report its changes
+     */
+    public Autosave(Piece piece, Path file) {
+        this(piece, file, DEFAULT_COMPACT_BYTES);
+    }
+
+    /**
+     * Constructs an autosave of the given piece next to the given file, which compacts the
+     * piece whenever its journal reaches the given size, and starts listening to the piece.
+     *
+     * @param piece the piece to save, which must report its changes
+     * @param file the file of the piece
+     * @param compactBytes the size of the journal past which the piece is compacted, in bytes
+     * @throws IllegalArgumentException if the size is not positive
+     * @throws UnsupportedOperationException if the piece does not report its changes
+     */
+    public Autosave(Piece piece, Path file, long compactBytes) {
+        if (compactBytes < 1) {
+            throw new IllegalArgumentException("The journal must be able to hold an edit");
+        }
+        this.piece = requireNonNull(piece);
+        this.snapshot = snapshotOf(file);
+        this.journal = journalOf(file);
+        this.compactBytes = compactBytes;
+        this.pending = new LinkedBlockingQueue<Object>();
+        this.journalBytes = 0;
+        this.closed = false;
+        piece.addListener(this);
+        this.pending.add(piece.snapshot());
+        this.writer = new Thread(this::write, "autosave " + file.getFileName());
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Returns whether there is an autosave of the given file that is newer than the file
+     * itself, which should be loaded instead of it.
+     *
+     * @param file the file of a piece
+     * @return whether the file has a newer autosave
+     */
+    public static boolean hasRecovery(Path file) {
+        Path snapshot = snapshotOf(file);
+        try {
+            return Files.exists(snapshot) && (!Files.exists(file)
+                    || Files.getLastModifiedTime(snapshot)
+                    .compareTo(Files.getLastModifiedTime(file)) >= 0);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads the snapshot of the given file into the given builder.
+     *
+     * @param file the file of a piece
+     * @param piece a builder for helping to construct a new composition
+     * @param <T> the main model interface type describing music compositions
+     * @return the composition
+     * @throws IOException if the snapshot cannot be read
+     * @throws IllegalArgumentException if the snapshot is malformed
+     */
+    public static <T> T loadSnapshot(Path file, CompositionBuilder<T> piece) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(snapshotOf(file))))) {
+            in.readLong();
+            return ScoreFile.read(in, piece);
+        }
+    }
+
+    /**
+     * Makes the edits saved in the journal of the given file to the given piece, which should
+     * have been loaded from the file's snapshot. Each batch of the journal is made as one
+     * {@link Piece#edit}. A batch that was not written in full, and everything after it, is
+     * ignored, as is a journal that belongs to an older snapshot. A batch that no longer fits
+     * the piece, such as one that would make notes overlap, is skipped. Nothing should be
+     * listening to the piece yet, or the recovered edits will be reported, and may be undone,
+     * as if they had just been made.
+     *
+     * @param file the file of a piece
+     * @param piece the piece to make the edits to
+     * @return the number of batches replayed
+     * @throws IOException if the snapshot or journal cannot be read
+     */
+    public static int replayJournal(Path file, Piece piece) throws IOException {
+        Path journal = journalOf(file);
+        if (!Files.exists(journal)) {
+            return 0;
+        }
+        long generation;
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(snapshotOf(file)))) {
+            generation = in.readLong();
+        }
+        int batches = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(journal)))) {
+            if (in.readInt() != JOURNAL_MAGIC || in.readLong() != generation) {
+                return 0;
+            }
+            while (true) {
+                byte[] batch = readBatch(in);
+                if (batch == null) {
+                    return batches;
+                }
+                try {
+                    piece.edit(p -> replay(p, batch));
+                    batches += 1;
+                } catch (IllegalArgumentException e) {
+                    // the edit rolled back, and the rest of the journal may still fit
+                }
+            }
+        } catch (EOFException e) {
+            return batches;
+        }
+    }
+
+    /**
+     * Encodes the given changes as a batch of the journal, and hands it to the background
+     * thread. Takes a snapshot for it to compact into if the journal has grown too long.
+     */
+    @Override
+    public void pieceChanged(List<PieceChange> changes) {
+        if (this.closed) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8 + 22 * changes.size());
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0);
+            out.writeInt(0);
+            for (PieceChange c : changes) {
+                if (c.getBefore() != null) {
+                    writeRecord(out, REMOVE, c.getBefore());
+                }
+                if (c.getAfter() != null) {
+                    writeRecord(out, ADD, c.getAfter());
+                }
+            }
+        } catch (IOException e) {
+            // a byte array cannot fail to be written to
+            throw new IllegalStateException(e);
+        }
+        byte[] batch = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(batch, 8, batch.length - 8);
+        ByteBuffer header = ByteBuffer.wrap(batch);
+        header.putInt(batch.length - 8);
+        header.putInt((int) crc.getValue());
+
+        this.pending.add(batch);
+        this.journalBytes += batch.length;
+        if (this.journalBytes >= this.compactBytes) {
+            this.pending.add(this.piece.snapshot());
+            this.journalBytes = 0;
+        }
+    }
+
+    /**
+     * Stops listening to the piece, and waits for every edit made so far to be written.
+     */
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.piece.removeListener(this);
+        this.pending.add(STOP);
+        try {
+            this.writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return;
+    }
+
+    /**
+     * Writes the work handed to the background thread until it is told to stop.
+     */
+    private void write() {
+        FileChannel out = null;
+        long generation = 0;
+        try {
+            if (Files.exists(this.snapshot)) {
+                try (DataInputStream in = new DataInputStream(
+                        Files.newInputStream(this.snapshot))) {
+                    generation = in.readLong();
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        List<Object> work = new ArrayList<Object>();
+        while (true) {
+            try {
+                work.add(this.pending.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            this.pending.drainTo(work);
+            List<ByteBuffer> batches = new ArrayList<ByteBuffer>();
+            try {
+                for (Object w : work) {
+                    if (w instanceof byte[]) {
+                        batches.add(ByteBuffer.wrap((byte[]) w));
+                        continue;
+                    }
+                    append(out, batches);
+                    if (w == STOP) {
+                        if (out != null) {
+                            out.close();
+                        }
+                        return;
+                    }
+                    generation += 1;
+                    out = this.compact((Piece) w, generation, out);
+                }
+                append(out, batches);
+            } catch (IOException e) {
+                // keep saving what can be saved; the next snapshot starts a fresh journal
+                e.printStackTrace();
+            }
+            work.clear();
+        }
+    }
+
+    /**
+     * Writes the given snapshot with the given generation, then starts a new journal for it,
+     * replacing the given one.
+     *
+     * @return the new journal
+     */
+    private FileChannel compact(Piece piece, long generation, FileChannel old)
+            throws IOException {
+        Path temp = this.snapshot.resolveSibling(this.snapshot.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream stream = new BufferedOutputStream(
+                    Channels.newOutputStream(channel));
+            DataOutputStream data = new DataOutputStream(stream);
+            data.writeLong(generation);
+            ScoreFile.write(piece, data);
+            data.flush();
+            channel.force(true);
+        }
+        Files.move(temp, this.snapshot, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        if (old != null) {
+            old.close();
+        }
+        FileChannel journal = FileChannel.open(this.journal, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(12);
+        header.putInt(JOURNAL_MAGIC).putLong(generation).flip();
+        while (header.hasRemaining()) {
+            journal.write(header);
+        }
+        journal.force(true);
+        return journal;
+    }
+
+    /**
+     * Appends the given batches to the given journal in one write, makes sure they reach the
+     * disk, and forgets them.
+     */
+    private static void append(FileChannel journal, List<ByteBuffer> batches)
+            throws IOException {
+        if (batches.isEmpty() || journal == null) {
+            batches.clear();
+            return;
+        }
+        ByteBuffer[] buffers = batches.toArray(new ByteBuffer[0]);
+        long remaining = 0;
+        for (ByteBuffer b : buffers) {
+            remaining += b.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= journal.write(buffers);
+        }
+        journal.force(false);
+        batches.clear();
+        return;
+    }
+
+    /**
+     * Writes a record that the given note was added or removed.
+     */
+    private static void writeRecord(DataOutputStream out, int kind, Note n) throws IOException {
+        out.writeByte(kind);
+        out.writeLong(n.getStartTick());
+        out.writeLong(n.getDurationTicks());
+        out.writeByte(MusicUtils.midiNumber(n.getPitchClass(), n.getOctave()));
+        out.writeByte(n.getVelocity());
+        out.writeByte(n.getInstrument());
+        return;
+    }
+
+    /**
+     * Reads the next batch of a journal, or returns null if it was not written in full.
+     */
+    private static byte[] readBatch(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        int checksum = in.readInt();
+        if (length < 0 || length % 20 != 0) {
+            return null;
+        }
+        byte[] batch = new byte[length];
+        in.readFully(batch);
+        CRC32 crc = new CRC32();
+        crc.update(batch, 0, length);
+        return (int) crc.getValue() == checksum ? batch : null;
+    }
+
+    /**
+     * Makes the changes of the given batch to the given piece, skipping any that are already
+     * made.
+     */
+    private static void replay(Piece piece, byte[] batch) {
+        ByteBuffer records = ByteBuffer.wrap(batch);
+        while (records.hasRemaining()) {
+            int kind = records.get();
+            long start = records.getLong();
+            long duration = records.getLong();
+            int pitch = records.get() & 0xFF;
+            int velocity = records.get() & 0xFF;
+            int instrument = records.get() & 0xFF;
+            Note n = CoolNote.inTicks(MusicUtils.midiNumberToPitchClass(pitch),
+                    MusicUtils.midiNumberToOctave(pitch), duration, start, velocity, instrument);
+            if (kind == REMOVE) {
+                if (piece.getNotesStartingAt(n.getAttack()).contains(n)) {
+                    piece.removeNote(n);
+                }
+            } else if (!piece.getNotesStartingAt(n.getAttack()).contains(n)) {
+                piece.addNote(n);
+            }
+        }
+        return;
+    }
+
+    private static Path snapshotOf(Path file) {
+        return file.resolveSibling(file.getFileName() + SNAPSHOT);
+    }
+
+    private static Path journalOf(Path file) {
+        return file.resolveSibling(file.getFileName() + JOURNAL);
+    }
+}
@@ -6,12 +6,14 @@ import java.awt.event.KeyEvent;
 import javax.swing.Timer;
 
 import java.awt.event.MouseEvent;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.Consumer;
 
 import cs3500.music.controller.Controller;
 import cs3500.music.model.CoolNote;
 import cs3500.music.model.Note;
+import cs3500.music.model.ObservablePiece;
 import cs3500.music.model.Piece;
 import cs3500.music.util.MusicUtils;
 import cs3500.music.view.GuiView;
@@ -24,12 +26,21 @@ import static java.util.Objects.requireNonNull;
  */
 public class ControllerImpl implements Controller {
 
-    /** The highest pitch is the song. */
+    /** The highest pitch shown, as the view shows it. */
     private int highestPitch;
 
+    /**
+     * Whether the user has scrolled. Until then the highest pitch shown follows the piece as
+     * it loads.
+     */
+    private boolean scrolled;
+
     /** The piece to be played. */
     private final Piece piece;
 
+    /** The history of edits to the piece, for undo and redo. */
+    private final EditJournal journal;
+
     /** The view to render the piece. */
     private final GuiView view;
 
@@ -55,13 +66,36 @@ public class ControllerImpl implements Controller {
     private boolean isPlaying;
 
     /**
-     * The note that is selected.
-     *
+     * The time at which the piece last started playing, from {@link System#nanoTime()}, and
+     * where in the piece it started, in microseconds from beat 0 of its tempo map.
+     * INVARIANT: These are only meaningful while isPlaying == true.
+     */
+    private long playStarted;
+    private long playOrigin;
+
+    /**
+     * How far the piece had loaded the last time the timer went off, as given by
+     * {@link Piece#getLoadedThrough()}. While a piece is still loading, playing holds at this
+     * beat until more of it arrives, and the view is redrawn each time it moves.
+     */
+    private int loadedThrough;
+
+    /**
+     * The note that is selected, as it was when it was selected.
      * If no note is selected, this will be null.
-     * INVARIANT: Cannot be nonNull if selectedSpace == true or if the piece is playing.
+     * INVARIANT: Must be null if selectedSpace == true or if the piece is playing.
      */
     private Note selectedNote;
 
+    /**
+     * The id the piece gave the note that is selected, if the piece gives its notes ids.
+     *
+     * The note is then held by its id rather than by itself, so that it can be found again in
+     * constant time after the piece has changed, and edited in place.
+     * If no note is selected, or the piece does not give ids, this will be -1.
+     */
+    private int selectedId;
+
     /**
      * A boolean flag indicating whether a space for a note has been selected.
      * INVARIANTS: This can only be true if isPlaying == false.
@@ -99,7 +133,17 @@ public class ControllerImpl implements Controller {
      * @throws NullPointerException if any input is null
      */
     public ControllerImpl(Piece piece, GuiView view) {
-        this.piece = requireNonNull(piece);
+        Piece observed = requireNonNull(piece);
+        EditJournal journal;
+        try {
+            journal = new EditJournal(observed);
+        } catch (UnsupportedOperationException e) {
+            // the piece does not report its changes, so report the ones made from here
+            observed = new ObservablePiece(observed);
+            journal = new EditJournal(observed);
+        }
+        this.piece = observed;
+        this.journal = journal;
         this.view = requireNonNull(view);
         this.keyHandler = new KeyboardHandler();
         this.keyHandlerSetup();
@@ -107,18 +151,21 @@ public class ControllerImpl implements Controller {
         this.mouseHandlerSetup();
         this.view.setKeyListener(this.keyHandler);
         this.view.setMouseListener(this.mouseHandler);
+        // tick at least once a beat at the fastest tempo; each tick plays every beat that is due
         this.timer = new Timer(0, new TimerListener());
-        this.timer.setDelay(this.piece.getTempo() / 1000);
+        this.timer.setDelay(Math.max(1, this.piece.getTempoMap().getFastestTempo() / 1000));
         this.currentBeat = 0;
         this.isPlaying = false;
         this.selectedNote = null;
+        this.selectedId = -1;
         this.selectedSpace = false;
         this.selectedBeat = -1;
         this.selectedPitch = -1;
         this.editingVolume = false;
         this.number = new StringBuilder();
-        this.highestPitch = MusicUtils.midiNumber(this.piece.getHighest().getPitchClass(),
-                this.piece.getHighest().getOctave());
+        this.highestPitch = GuiViewFrame.highestShown(this.piece);
+        this.scrolled = false;
+        this.loadedThrough = this.piece.getLoadedThrough();
     }
 
     public KeyboardHandler getKeyHandler() {
@@ -177,7 +224,7 @@ public class ControllerImpl implements Controller {
      */
     @Override
     public Note getSelectedNote() {
-        return this.selectedNote;
+        return this.selectedNote == null ? null : this.selected();
     }
 
     /**
@@ -213,6 +260,8 @@ public class ControllerImpl implements Controller {
      *     <li>Enter Volume-Editing Mode -> V, if there is a selected cs3500.music.model.Note.</li>
      *     <li>Exit Volume-Editing Mode/Confirm Volume -> V, is currently in V-E Mode</li>
      *     <li>Input Volume -> 0,1,2,3,4,5,6,7,8,9 if currently in V-E Mode</li>
+     *     <li>Undo the last edit -> Z, if the piece is not playing.</li>
+     *     <li>Redo the last undone edit -> Y, if the piece is not playing.</li>
      * </ul>
      */
     private void keyHandlerSetup() {
@@ -226,6 +275,8 @@ public class ControllerImpl implements Controller {
                     if (!this.isPlaying) {
                         this.view.setStatus("Paused...");
                     } else {
+                        this.playStarted = System.nanoTime();
+                        this.playOrigin = this.piece.getTempoMap().getTime(this.currentBeat);
                         this.view.setStatus("Playing!");
                     }
                     view.snap(this.currentBeat, this.piece);
@@ -282,6 +333,7 @@ public class ControllerImpl implements Controller {
             if (!this.isPlaying) {
                 if (this.view.scrollY(-1)) {
                     this.highestPitch -= 1;
+                    this.scrolled = true;
                     this.view.snap(this.currentBeat, this.piece);
                 }
             }
@@ -292,6 +344,7 @@ public class ControllerImpl implements Controller {
             if (!this.isPlaying) {
                 if (this.view.scrollY(1)) {
                     this.highestPitch += 1;
+                    this.scrolled = true;
                     this.view.snap(this.currentBeat, this.piece);
                 }
             } else {
@@ -304,7 +357,7 @@ public class ControllerImpl implements Controller {
             if (!this.isPlaying && this.selectedNote != null &&
                     !this.selectedSpace && !this.editingVolume) {
                 try {
-                    this.piece.removeNote(this.selectedNote);
+                    this.piece.removeNote(this.selected());
                 } catch (IllegalArgumentException exn) {
                     // do nothing
                 }
@@ -327,13 +380,12 @@ public class ControllerImpl implements Controller {
                     if (volume > 127) {
                         throw new IllegalArgumentException("The volume is too high!");
                     }
+                    Note old = this.selected();
+                    Note n = CoolNote.inTicks(old.getPitchClass(), old.getOctave(),
+                            old.getDurationTicks(), old.getStartTick(), volume,
+                            old.getInstrument());
                     try {
-                        this.piece.removeNote(this.selectedNote);
-                        Note n = new CoolNote(this.selectedNote.getPitchClass(),
-                                this.selectedNote.getOctave(), this.selectedNote.getDuration(),
-                                this.selectedNote.getAttack(), volume,
-                                this.selectedNote.getInstrument());
-                        this.piece.addNote(n);
+                        this.replaceSelected(n);
                     } catch (IllegalArgumentException exn) {
                         //do nothing
                     }
@@ -355,6 +407,24 @@ public class ControllerImpl implements Controller {
             }
         });
 
+        // For undoing and redoing edits.
+        this.addKeyResponse(KeyEvent.VK_Z, () -> {
+            if (!this.isPlaying && !this.editingVolume) {
+                this.selectedNote = null;
+                this.selectedSpace = false;
+                this.view.setStatus(this.journal.undo() ? "Undone." : "Nothing to undo.");
+                this.view.snap(this.currentBeat, this.piece);
+            }
+        });
+        this.addKeyResponse(KeyEvent.VK_Y, () -> {
+            if (!this.isPlaying && !this.editingVolume) {
+                this.selectedNote = null;
+                this.selectedSpace = false;
+                this.view.setStatus(this.journal.redo() ? "Redone." : "Nothing to redo.");
+                this.view.snap(this.currentBeat, this.piece);
+            }
+        });
+
         /**
          * The following are methods that initialize lambdas for adding to the number input string.
          */
@@ -469,7 +539,7 @@ public class ControllerImpl implements Controller {
 
             // for selecting notes
             if (n != null && !this.selectedSpace && !this.isPlaying && this.selectedNote == null) {
-                this.selectedNote = n;
+                this.select(n);
                 this.view.setStatus("Selected note..." +
                         n.getPitchClass().toString() +
                         n.getOctave() + " at beat " + n.getAttack());
@@ -478,15 +548,17 @@ public class ControllerImpl implements Controller {
             // for moving a selected note
             else if (this.selectedNote != null && !this.selectedSpace && !this.isPlaying) {
                 int midiNumber = this.getPitchFromY(y);
-                Note newNote = new CoolNote(MusicUtils.midiNumberToPitchClass(midiNumber),
-                        MusicUtils.midiNumberToOctave(midiNumber), this.selectedNote.getDuration(),
-                        this.getBeatFromX(x), this.selectedNote.getVelocity(),
-                        this.selectedNote.getInstrument());
+                Note old = this.selected();
+                // keep where the note starts within its beat
+                long start = (long) this.getBeatFromX(x) * Note.TICKS_PER_BEAT
+                        + old.getStartTick() % Note.TICKS_PER_BEAT;
+                Note newNote = CoolNote.inTicks(MusicUtils.midiNumberToPitchClass(midiNumber),
+                        MusicUtils.midiNumberToOctave(midiNumber), old.getDurationTicks(),
+                        start, old.getVelocity(), old.getInstrument());
                 try {
-                    this.piece.removeNote(this.selectedNote);
-                    this.piece.addNote(newNote);
+                    this.replaceSelected(newNote);
                 } catch (IllegalArgumentException ex) {
-                    this.piece.addNote(this.selectedNote);
+                    // the new place is taken, so the note stays where it was
                 }
                 this.selectedNote = null;
                 this.view.setStatus("Paused...");
@@ -566,6 +638,37 @@ public class ControllerImpl implements Controller {
         return pitchCell;
     }
 
+    /**
+     * Selects the given note, by its id if the piece gives its notes ids.
+     */
+    private void select(Note n) {
+        this.selectedNote = n;
+        this.selectedId = this.piece.hasIds() ? this.piece.getId(n) : -1;
+        return;
+    }
+
+    /**
+     * Returns the selected note as it is now in the piece.
+     * @throws IllegalArgumentException if the note is no longer in the piece.
+     */
+    private Note selected() {
+        return this.selectedId < 0 ? this.selectedNote : this.piece.getNote(this.selectedId);
+    }
+
+    /**
+     * Replaces the selected note by the given note, in place if the piece gives its notes ids.
+     * @throws IllegalArgumentException if the new note would overlap another note, in which
+     *                                  case the piece is left as it was.
+     */
+    private void replaceSelected(Note n) {
+        if (this.selectedId < 0) {
+            this.piece.transform(Collections.singletonList(this.selectedNote), old -> n);
+        } else {
+            this.piece.replaceNote(this.selectedId, n);
+        }
+        return;
+    }
+
     /**
      * Retrieves the note at the given beat and pitch, if one exists.
      * @param beat the starting beat of the note.
@@ -599,27 +702,64 @@ public class ControllerImpl implements Controller {
 
     /**
      * A small class to act as an action listener for the timer.
+     *
+     * The timer only says when to look at the clock. Which beats are due is read off the tempo
+     * map from the time since playing started, so late ticks and tempo changes never make the
+     * playback drift.
      */
     private class TimerListener implements ActionListener {
         public void actionPerformed(ActionEvent e) {
-            if (isPlaying) {
-                try {
-                    view.render(currentBeat, piece);
-                }
-                catch (Exception ex) {
-                    ex.printStackTrace();
+            // read before the frame, so every note before this beat is in it
+            int loaded = piece.getLoadedThrough();
+            boolean loading = loaded != Integer.MAX_VALUE;
+            if (loaded != loadedThrough) {
+                loadedThrough = loaded;
+                timer.setDelay(Math.max(1, piece.getTempoMap().getFastestTempo() / 1000));
+                if (!scrolled) {
+                    highestPitch = GuiViewFrame.highestShown(piece);
                 }
-                if (currentBeat >= piece.getEnd()) {
-                    isPlaying = false;
-                    currentBeat = 0;
-                    view.snap(0, piece);
+                if (!isPlaying) {
+                    view.snap(currentBeat, this.frame());
                 }
-                else {
-                    currentBeat += 1;
+            }
+            if (isPlaying) {
+                Piece frame = this.frame();
+                long elapsed = (System.nanoTime() - playStarted) / 1000;
+                int due = frame.getTempoMap().getBeatAt(playOrigin + elapsed);
+                while (isPlaying && currentBeat <= due) {
+                    if (loading && currentBeat >= loaded) {
+                        // hold here until the piece has loaded this far
+                        playStarted = System.nanoTime();
+                        playOrigin = frame.getTempoMap().getTime(currentBeat);
+                        break;
+                    }
+                    try {
+                        view.render(currentBeat, frame);
+                    }
+                    catch (Exception ex) {
+                        ex.printStackTrace();
+                    }
+                    if (!loading && currentBeat >= frame.getEnd()) {
+                        isPlaying = false;
+                        currentBeat = 0;
+                        view.snap(0, frame);
+                    }
+                    else {
+                        currentBeat += 1;
+                    }
                 }
             }
             return;
         }
+
+        /**
+         * Returns the piece to draw this tick from: one version of it for the whole tick, even if
+         * it is edited meanwhile, if that costs nothing, and the piece itself otherwise, rather
+         * than copying every note on every tick.
+         */
+        private Piece frame() {
+            return piece.hasCheapSnapshot() ? piece.snapshot() : piece;
+        }
     }
 }
 
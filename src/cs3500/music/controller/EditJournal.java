@@ -0,0 +1,192 @@
+package cs3500.music.controller;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+import cs3500.music.model.Piece;
+import cs3500.music.model.PieceChange;
+import cs3500.music.model.PieceListener;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Records the edits made to a piece so that they can be undone and redone.
+ *
+ * The journal listens to the piece, and every batch of changes the piece reports becomes one
+ * step of history. A step only keeps the notes before and after each change, so recording,
+ * undoing and redoing an edit all take time and memory in proportion to the size of the edit,
+ * no matter how big the piece is. Undoing a step makes the inverse changes all at once, with
+ * {@link PieceChange#apply}, inside one {@link Piece#edit}, so notes that moved into each other's
+ * places move back, and the undo itself is reported as one batch and is not recorded again.
+ *
+ * Making a new edit after undoing forgets the steps that could have been redone.
+ *
+ * History is unlimited by default. A journal can be given a cap on the number of note changes
+ * it keeps, after which the oldest steps are forgotten, and old history can be
+ * {@link #compact(int) compacted} into a single step.
+ */
+public final class EditJournal implements PieceListener {
+
+    /** The piece whose edits are recorded. */
+    private final Piece piece;
+
+    /** The steps that can be undone, the most recent first. */
+    private final Deque<List<PieceChange>> undo;
+
+    /** The steps that can be redone, the most recently undone first. */
+    private final Deque<List<PieceChange>> redo;
+
+    /**
+     * The most note changes to keep in the undo history.
+     *
+     * INVARIANT: this.maxChanges > 0
+     */
+    private final int maxChanges;
+
+    /** The number of note changes in the undo history. */
+    private int changes;
+
+    /** Whether the journal is making changes itself, which should not be recorded. */
+    private boolean replaying;
+
+    /**
+     * Constructs a journal with unlimited history and starts listening to the given piece.
+     *
+     * @param piece the piece to record, which must report its changes
+     * @throws UnsupportedOperationException if the piece does not report its changes
+     */
+    public EditJournal(Piece piece) {
+        this(piece, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructs a journal that keeps at most the given number of note changes, and starts
+     * listening to the given piece.
+     *
+     * The most recent step is always kept, even if it alone is larger than the cap.
+     *
+     * @param piece the piece to record, which must report its changes
+     * @param maxChanges the most note changes to keep in the undo history
+     * @throws IllegalArgumentException if the cap is not positive
+     * @throws UnsupportedOperationException if the piece does not report its changes
+     */
+    public EditJournal(Piece piece, int maxChanges) {
+        if (maxChanges < 1) {
+            throw new IllegalArgumentException("The journal must be able to keep a change");
+        }
+        this.piece = requireNonNull(piece);
+        this.undo = new ArrayDeque<List<PieceChange>>();
+        this.redo = new ArrayDeque<List<PieceChange>>();
+        this.maxChanges = maxChanges;
+        this.changes = 0;
+        this.replaying = false;
+        piece.addListener(this);
+    }
+
+    /**
+     * Records the given changes as a new step, and forgets every step that could be redone.
+     */
+    @Override
+    public void pieceChanged(List<PieceChange> changes) {
+        if (this.replaying) {
+            return;
+        }
+        this.redo.clear();
+        this.undo.push(new ArrayList<PieceChange>(changes));
+        this.changes += changes.size();
+        while (this.changes > this.maxChanges && this.undo.size() > 1) {
+            this.changes -= this.undo.removeLast().size();
+        }
+    }
+
+    /** Returns whether there is a step to undo. */
+    public boolean canUndo() {
+        return !this.undo.isEmpty();
+    }
+
+    /** Returns whether there is a step to redo. */
+    public boolean canRedo() {
+        return !this.redo.isEmpty();
+    }
+
+    /**
+     * Undoes the most recent step that has not been undone.
+     *
+     * @return whether there was a step to undo
+     */
+    public boolean undo() {
+        if (this.undo.isEmpty()) {
+            return false;
+        }
+        List<PieceChange> step = this.undo.peek();
+        this.replay(piece -> PieceChange.apply(piece, PieceChange.invert(step)));
+        this.undo.pop();
+        this.changes -= step.size();
+        this.redo.push(step);
+        return true;
+    }
+
+    /**
+     * Redoes the most recently undone step.
+     *
+     * @return whether there was a step to redo
+     */
+    public boolean redo() {
+        if (this.redo.isEmpty()) {
+            return false;
+        }
+        List<PieceChange> step = this.redo.peek();
+        this.replay(piece -> PieceChange.apply(piece, step));
+        this.redo.pop();
+        this.undo.push(step);
+        this.changes += step.size();
+        return true;
+    }
+
+    /**
+     * Merges every step of the undo history except the given number of most recent ones into a
+     * single step.
+     * <p>
+     * Notes that were changed many times in the merged steps are kept only once, with the
+     * note they started as and the note they ended as, so compacting a long session of small
+     * edits to the same notes saves a lot of memory. Undoing the merged step undoes all of
+     * those edits at once.
+     *
+     * @param keep the number of recent steps to leave as they are
+     */
+    public void compact(int keep) {
+        if (this.undo.size() <= keep + 1) {
+            return;
+        }
+        List<PieceChange> old = new ArrayList<PieceChange>();
+        Iterator<List<PieceChange>> oldestFirst = this.undo.descendingIterator();
+        int count = this.undo.size() - keep;
+        for (int i = 0; i < count; i += 1) {
+            old.addAll(oldestFirst.next());
+        }
+        for (int i = 0; i < count; i += 1) {
+            this.undo.removeLast();
+        }
+        List<PieceChange> merged = PieceChange.coalesce(old);
+        this.changes += merged.size() - old.size();
+        if (!merged.isEmpty()) {
+            this.undo.addLast(merged);
+        }
+    }
+
+    /**
+     * Makes the given edits to the piece without recording them.
+     */
+    private void replay(Consumer<Piece> edits) {
+        this.replaying = true;
+        try {
+            this.piece.edit(edits);
+        } finally {
+            this.replaying = false;
+        }
+    }
+}
@@ -0,0 +1,770 @@
+package cs3500.music.model;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+import cs3500.music.util.CompositionBuilder;
+
+/**
+ * Represents a piece that stores its notes in primitive arrays instead of note objects.
+ *
+ * Every note is packed into a single {@code long} holding its attack, pitch, instrument and
+ * velocity, with its duration kept in a parallel {@code int} array. The packed values are kept
+ * sorted, which orders the notes by attack, then pitch, then instrument. {@link Note} objects
+ * are only made when a query asks for them, so a piece with millions of notes costs twelve bytes
+ * per note.
+ *
+ * Finding the notes sounding at a beat uses a binary search for the earliest attack that could
+ * still be sounding, given the longest note ever added, so queries are fastest when no note is
+ * much longer than the others. Adding or removing a single note shifts the notes after it, so
+ * large pieces should be made with {@link #builder()}, which sorts all of its notes at once.
+ *
+ * Pitches must be MIDI numbers between 0 and 127, and notes must start and stop on a beat,
+ * since only whole beats are packed.
+ */
+public final class ColumnarPiece implements Piece {
+
+    /** The number of bits the attack is shifted by in a packed note. */
+    private static final int ATTACK_SHIFT = 32;
+    /** The number of bits the pitch is shifted by in a packed note. */
+    private static final int PITCH_SHIFT = 16;
+    /** The number of bits the instrument is shifted by in a packed note. */
+    private static final int INSTRUMENT_SHIFT = 8;
+
+    /**
+     * The packed attack, MIDI pitch, instrument and velocity of every note, in ascending order.
+     *
+     * Only the first {@code size} entries are used.
+     *
+     * INVARIANT: No two notes with the same pitch and instrument are sounding at the same time.
+     */
+    private long[] keys;
+
+    /**
+     * The duration of every note, in the same order as {@code keys}.
+     */
+    private int[] durations;
+
+    /** The number of notes in the piece. */
+    private int size;
+
+    /**
+     * The longest duration of any note added since the piece was last reset.
+     *
+     * No note sounding at a beat can start more than this many beats before it.
+     */
+    private int maxDuration;
+
+    /** Counts how many notes in the piece have each MIDI pitch. */
+    private final int[] pitches;
+
+    /**
+     * Number of beats per measure.
+     *
+     * INVARIANT: this.beatsPerMeasure > 1
+     */
+    private final int beatsPerMeasure;
+
+    /**
+     * The tempo of the piece at every beat.
+     */
+    private final TempoMap tempos;
+
+    /**
+     * Constructs an instance of the ColumnarPiece class.
+     *
+     * Throws an IllegalArgumentException if there are two or more notes of the same pitch
+     * sounding at the same time on the same instrument, or if a note's pitch is not a MIDI
+     * number.
+     *
+     * @param bpm the beats per measure of the piece
+     * @param tempo the number of microseconds per beat
+     * @param notes the notes to be added initially.
+     */
+    public ColumnarPiece(int bpm, int tempo, Note... notes) {
+        this(bpm, TempoMap.constant(tempo), notes);
+    }
+
+    /**
+     * Constructs an instance of the ColumnarPiece class whose tempo changes during the piece.
+     *
+     * Throws an IllegalArgumentException if there are two or more notes of the same pitch
+     * sounding at the same time on the same instrument, or if a note's pitch is not a MIDI
+     * number.
+     *
+     * @param bpm the beats per measure of the piece
+     * @param tempos the tempo of the piece at every beat
+     * @param notes the notes to be added initially.
+     */
+    public ColumnarPiece(int bpm, TempoMap tempos, Note... notes) {
+        this(bpm, tempos, new long[Math.max(notes.length, 16)], new int[Math.max(notes.length, 16)],
+                0, 0);
+        for (Note n : notes) {
+            this.addNote(n);
+        }
+    }
+
+    /**
+     * Constructs a piece straight from sorted columns that have already been checked for
+     * overlapping notes.
+     */
+    private ColumnarPiece(int bpm, TempoMap tempos, long[] keys, int[] durations, int size,
+                          int maxDuration) {
+        this.beatsPerMeasure = bpm;
+        this.tempos = tempos;
+        this.keys = keys;
+        this.durations = durations;
+        this.size = size;
+        this.maxDuration = maxDuration;
+        this.pitches = new int[128];
+        for (int i = 0; i < size; i += 1) {
+            this.pitches[pitch(keys[i])] += 1;
+        }
+    }
+
+    /**
+     * Returns the number of beats per each measure.
+     *
+     * @return the number of beats per measure
+     */
+    @Override
+    public int beatsPerMeasure() {
+        return this.beatsPerMeasure;
+    }
+
+    /**
+     * Returns the tempo of the piece, given in microseconds per beat.
+     *
+     * @return the tempo of the piece, given in microseconds per beat.
+     */
+    @Override
+    public int getTempo() {
+        return this.tempos.getTempoAt(0);
+    }
+
+    @Override
+    public TempoMap getTempoMap() {
+        return this.tempos;
+    }
+
+    /**
+     * Adds the given note to the piece.
+     * <p>
+     * Throws an IllegalArgumentException if there is already a note at that pitch being played
+     * by that instrument playing at any time during the given note's duration, or if the note's
+     * pitch is not a MIDI number.
+     *
+     * @param note the note to be added
+     * @throws IllegalArgumentException if a note already exists at that pitch with that instrument
+     *                                  at any time the given note is meant to sound, or if the
+     *                                  pitch is outside of [0, 127]
+     */
+    @Override
+    public void addNote(Note note) {
+        long key = key(note);
+        int attack = note.getAttack();
+        int end = attack + note.getDuration();
+
+        //check if the note already exists
+        for (int i = this.firstSoundingAfter(attack); i < this.size && attack(this.keys[i]) < end;
+             i += 1) {
+            if (sameLane(this.keys[i], key) && attack(this.keys[i]) + this.durations[i] > attack) {
+                throw new IllegalArgumentException("cs3500.music.model.Note overlap: notes already exist");
+            }
+        }
+
+        // now lets actually add it
+        if (this.size == this.keys.length) {
+            this.keys = Arrays.copyOf(this.keys, this.size * 2);
+            this.durations = Arrays.copyOf(this.durations, this.size * 2);
+        }
+        int at = this.lowerBound(key);
+        System.arraycopy(this.keys, at, this.keys, at + 1, this.size - at);
+        System.arraycopy(this.durations, at, this.durations, at + 1, this.size - at);
+        this.keys[at] = key;
+        this.durations[at] = note.getDuration();
+        this.size += 1;
+        this.maxDuration = Math.max(this.maxDuration, note.getDuration());
+        this.pitches[pitch(key)] += 1;
+        return;
+    }
+
+    /**
+     * Adds all of the given notes to the piece.
+     * <p>
+     * The notes are packed and sorted, merged with the notes already in the piece into new
+     * columns, and the result is checked for overlaps in a single sweep.
+     * <p>
+     * Throws an IllegalArgumentException if any of the notes would overlap another note of the
+     * same pitch and instrument, or if any pitch is not a MIDI number. If an exception is thrown,
+     * none of the notes are added.
+     *
+     * @param notes the notes to be added
+     * @throws IllegalArgumentException if any of the notes overlap
+     */
+    @Override
+    public void addAll(Collection<? extends Note> notes) {
+        int count = notes.size();
+        long[] addedKeys = new long[count];
+        int[] addedDurations = new int[count];
+        int filled = 0;
+        for (Note n : notes) {
+            addedKeys[filled] = key(n);
+            addedDurations[filled] = n.getDuration();
+            filled += 1;
+        }
+        sort(addedKeys, addedDurations, count);
+
+        int total = this.size + count;
+        long[] k = new long[Math.max(total, 16)];
+        int[] d = new int[Math.max(total, 16)];
+        int i = 0;
+        int j = 0;
+        for (int at = 0; at < total; at += 1) {
+            if (j == count || (i < this.size && this.keys[i] <= addedKeys[j])) {
+                k[at] = this.keys[i];
+                d[at] = this.durations[i];
+                i += 1;
+            } else {
+                k[at] = addedKeys[j];
+                d[at] = addedDurations[j];
+                j += 1;
+            }
+        }
+        int maxDuration = checkOverlaps(k, d, total);
+
+        this.keys = k;
+        this.durations = d;
+        this.size = total;
+        this.maxDuration = Math.max(this.maxDuration, maxDuration);
+        for (int n = 0; n < count; n += 1) {
+            this.pitches[pitch(addedKeys[n])] += 1;
+        }
+        return;
+    }
+
+    /**
+     * Removes the given note from the piece.
+     * <p>
+     * Throws an IllegalArgumentException if the given note does not exist.
+     *
+     * @param note the note to be removed
+     * @throws IllegalArgumentException if the note is not in the piece
+     */
+    @Override
+    public void removeNote(Note note) {
+        int midi = note.getPitch() + 12;
+        if (midi < 0 || midi > 127) {
+            throw new IllegalArgumentException("cs3500.music.model.Note was not found");
+        }
+        long key = key(note);
+        int at = this.lowerBound(key);
+        if (at == this.size || this.keys[at] != key || this.durations[at] != note.getDuration()) {
+            throw new IllegalArgumentException("cs3500.music.model.Note was not found");
+        }
+        System.arraycopy(this.keys, at + 1, this.keys, at, this.size - at - 1);
+        System.arraycopy(this.durations, at + 1, this.durations, at, this.size - at - 1);
+        this.size -= 1;
+        this.pitches[pitch(key)] -= 1;
+        return;
+    }
+
+    /**
+     * Gets the notes starting at the given beat.
+     * <p>
+     * If no notes at that beat, will return an empty list.
+     *
+     * @param beat the beat number the notes we want are at
+     * @return a list of the notes starting at the given beat
+     */
+    @Override
+    public List<Note> getNotesStartingAt(int beat) {
+        List<Note> temp = new ArrayList<Note>();
+        this.forEachNoteStartingAt(beat, temp::add);
+        return Collections.unmodifiableList(temp);
+    }
+
+    /**
+     * Gets all notes sounding at the given beat.
+     * <p>
+     * If no notes are at the given beat, will return an empty list.
+     *
+     * @param beat the beat number the notes we want are at
+     * @return a list of all notes sounding at the given beat.
+     */
+    @Override
+    public List<Note> getAllNotesAt(int beat) {
+        List<Note> temp = new ArrayList<Note>();
+        this.forEachNoteAt(beat, temp::add);
+        return Collections.unmodifiableList(temp);
+    }
+
+    /**
+     * Gets all notes that are sustained over the given beat.
+     * <p>
+     * If no applicable notes at that beat, will return an empty list.
+     *
+     * @param beat the beat number of the notes we want
+     * @return a list of all notes sustaned through the given beat
+     */
+    @Override
+    public List<Note> getNotesSustainedAt(int beat) {
+        List<Note> temp = new ArrayList<Note>();
+        for (int i = this.firstSoundingAfter(beat); i < this.size && attack(this.keys[i]) < beat;
+             i += 1) {
+            if (attack(this.keys[i]) + this.durations[i] > beat) {
+                temp.add(this.note(i));
+            }
+        }
+        return Collections.unmodifiableList(temp);
+    }
+
+    /**
+     * Performs the given action on every note sounding at the given beat, in attack order.
+     *
+     * @param beat the beat number the notes we want are at
+     * @param action the action to perform on each note
+     */
+    @Override
+    public void forEachNoteAt(int beat, Consumer<? super Note> action) {
+        for (int i = this.firstSoundingAfter(beat); i < this.size && attack(this.keys[i]) <= beat;
+             i += 1) {
+            if (attack(this.keys[i]) + this.durations[i] > beat) {
+                action.accept(this.note(i));
+            }
+        }
+    }
+
+    /**
+     * Performs the given action on every note starting at the given beat.
+     *
+     * @param beat the beat number the notes we want are at
+     * @param action the action to perform on each note
+     */
+    @Override
+    public void forEachNoteStartingAt(int beat, Consumer<? super Note> action) {
+        if (beat < 0) {
+            return;
+        }
+        for (int i = this.lowerBound((long) beat << ATTACK_SHIFT);
+             i < this.size && attack(this.keys[i]) == beat; i += 1) {
+            action.accept(this.note(i));
+        }
+    }
+
+    /**
+     * Performs the given action on every note that sounds during the given beats and has one of
+     * the given pitches, telling it whether the note starts inside that window.
+     * <p>
+     * The notes are found with one binary search for the earliest note that could still be
+     * sounding at the start of the window, followed by a scan up to the end of the window.
+     *
+     * @param startBeat the first beat of the window
+     * @param endBeat the beat immediately after the window
+     * @param lowPitch the MIDI number of the lowest pitch in the window
+     * @param highPitch the MIDI number of the highest pitch in the window
+     * @param visitor the action to perform on each note
+     */
+    @Override
+    public void notesIn(int startBeat, int endBeat, int lowPitch, int highPitch,
+                        WindowVisitor visitor) {
+        if (startBeat >= endBeat) {
+            return;
+        }
+        for (int i = this.firstSoundingAfter(startBeat);
+             i < this.size && attack(this.keys[i]) < endBeat; i += 1) {
+            int attack = attack(this.keys[i]);
+            int pitch = pitch(this.keys[i]);
+            if (attack + this.durations[i] > startBeat && pitch >= lowPitch
+                    && pitch <= highPitch) {
+                visitor.visit(this.note(i), attack >= startBeat);
+            }
+        }
+    }
+
+    /**
+     * Gets the highest note in the piece.
+     * <p>
+     * If there are no notes in the piece, returns null.
+     *
+     * @return the highest note in the piece, or null if there are no notes
+     */
+    @Override
+    public Note getHighest() {
+        return this.firstWithPitch(this.getHighestPitch());
+    }
+
+    /**
+     * Gets the lowest note in the piece.
+     * <p>
+     * If there are no notes in the piece, returns null.
+     *
+     * @return the lowest note in the piece, or null if there are no notes
+     */
+    @Override
+    public Note getLowest() {
+        return this.firstWithPitch(this.getLowestPitch());
+    }
+
+    /**
+     * Returns the MIDI number of the highest pitch in the piece.
+     * <p>
+     * If no notes are in the piece, will return -1.
+     *
+     * @return the MIDI number of the highest pitch, or -1 if there are no notes
+     */
+    @Override
+    public int getHighestPitch() {
+        for (int p = 127; p >= 0; p -= 1) {
+            if (this.pitches[p] > 0) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the MIDI number of the lowest pitch in the piece.
+     * <p>
+     * If no notes are in the piece, will return -1.
+     *
+     * @return the MIDI number of the lowest pitch, or -1 if there are no notes
+     */
+    @Override
+    public int getLowestPitch() {
+        for (int p = 0; p < 128; p += 1) {
+            if (this.pitches[p] > 0) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns all the notes in the piece, in attack order.
+     *
+     * @return all the notes in the piece
+     */
+    @Override
+    public List<Note> getNotes() {
+        List<Note> temp = new ArrayList<Note>(this.size);
+        for (int i = 0; i < this.size; i += 1) {
+            temp.add(this.note(i));
+        }
+        return Collections.unmodifiableList(temp);
+    }
+
+    /**
+     * Returns the first beat on which a note is played.
+     * <p>
+     * If no notes are in the piece, will return zero.
+     *
+     * @return the first beat of the piece that contains a note
+     */
+    @Override
+    public int getStart() {
+        return this.size == 0 ? 0 : attack(this.keys[0]);
+    }
+
+    /**
+     * Returns the beat number immediately following the last note in the piece.
+     * <p>
+     * If no notes are in the piece, will return zero.
+     *
+     * @return the first beat of rest that goes on forever
+     */
+    @Override
+    public int getEnd() {
+        if (this.size == 0) {
+            return 0;
+        }
+        int end = 0;
+        for (int i = this.firstSoundingAfter(attack(this.keys[this.size - 1])); i < this.size;
+             i += 1) {
+            end = Math.max(end, attack(this.keys[i]) + this.durations[i]);
+        }
+        return end;
+    }
+
+    /**
+     * Resets the piece so that no notes are inside.
+     */
+    @Override
+    public void resetPiece() {
+        this.size = 0;
+        this.maxDuration = 0;
+        Arrays.fill(this.pitches, 0);
+        return;
+    }
+
+    /**
+     * Returns the index of the first note that could still be sounding at the given beat.
+     */
+    private int firstSoundingAfter(int beat) {
+        int earliest = Math.max(0, beat - this.maxDuration + 1);
+        return this.lowerBound((long) earliest << ATTACK_SHIFT);
+    }
+
+    /**
+     * Returns the index of the first packed note that is not less than the given key.
+     */
+    private int lowerBound(long key) {
+        int lo = 0;
+        int hi = this.size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (this.keys[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Makes the note stored at the given index.
+     */
+    private Note note(int i) {
+        long key = this.keys[i];
+        return new CoolNote(pitch(key) - 12, this.durations[i], attack(key), velocity(key),
+                instrument(key));
+    }
+
+    /**
+     * Returns the earliest note with the given MIDI pitch, or null if there is none.
+     */
+    private Note firstWithPitch(int midi) {
+        if (midi < 0) {
+            return null;
+        }
+        for (int i = 0; i < this.size; i += 1) {
+            if (pitch(this.keys[i]) == midi) {
+                return this.note(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Packs the given note.
+     *
+     * @throws IllegalArgumentException if the pitch of the note is not a MIDI number, or if the
+     *                                  note does not start and stop on a beat
+     */
+    private static long key(Note note) {
+        int midi = note.getPitch() + 12;
+        if (midi < 0 || midi > 127) {
+            throw new IllegalArgumentException("Pitch must be a MIDI number.");
+        }
+        if (!note.isOnBeat()) {
+            throw new IllegalArgumentException("Notes must start and stop on a beat.");
+        }
+        return pack(note.getAttack(), midi, note.getInstrument(), note.getVelocity());
+    }
+
+    private static long pack(int attack, int midi, int instrument, int velocity) {
+        return ((long) attack << ATTACK_SHIFT) | ((long) midi << PITCH_SHIFT)
+                | ((long) instrument << INSTRUMENT_SHIFT) | velocity;
+    }
+
+    private static int attack(long key) {
+        return (int) (key >>> ATTACK_SHIFT);
+    }
+
+    private static int pitch(long key) {
+        return (int) (key >>> PITCH_SHIFT) & 0xFF;
+    }
+
+    private static int instrument(long key) {
+        return (int) (key >>> INSTRUMENT_SHIFT) & 0xFF;
+    }
+
+    private static int velocity(long key) {
+        return (int) key & 0xFF;
+    }
+
+    /**
+     * Returns the index of the pitch and instrument of the given packed note, as a number in
+     * [0, 128 * 128).
+     */
+    private static int lane(long key) {
+        return pitch(key) * 128 + instrument(key);
+    }
+
+    /**
+     * Sorts the first {@code size} packed notes, moving their durations along with them.
+     *
+     * This is a bottom-up merge sort, so that the two columns never need to be boxed.
+     */
+    private static void sort(long[] keys, int[] durations, int size) {
+        long[] keyBuffer = new long[size];
+        int[] durationBuffer = new int[size];
+        for (int width = 1; width < size; width *= 2) {
+            for (int lo = 0; lo < size - width; lo += 2 * width) {
+                int mid = lo + width;
+                int hi = Math.min(lo + 2 * width, size);
+                if (keys[mid - 1] <= keys[mid]) {
+                    continue; // already in order
+                }
+                System.arraycopy(keys, lo, keyBuffer, lo, hi - lo);
+                System.arraycopy(durations, lo, durationBuffer, lo, hi - lo);
+                int i = lo;
+                int j = mid;
+                for (int k = lo; k < hi; k += 1) {
+                    if (j >= hi || (i < mid && keyBuffer[i] <= keyBuffer[j])) {
+                        keys[k] = keyBuffer[i];
+                        durations[k] = durationBuffer[i];
+                        i += 1;
+                    } else {
+                        keys[k] = keyBuffer[j];
+                        durations[k] = durationBuffer[j];
+                        j += 1;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks that no two of the first {@code size} packed notes, which must be sorted, have the
+     * same pitch and instrument and sound at the same time.
+     *
+     * @return the longest duration of any of the notes
+     * @throws IllegalArgumentException if two of the notes overlap
+     */
+    private static int checkOverlaps(long[] keys, int[] durations, int size) {
+        // sweep once, remembering where the last note of every pitch and instrument ends
+        int[] laneEnds = new int[128 * 128];
+        int maxDuration = 0;
+        for (int i = 0; i < size; i += 1) {
+            int lane = lane(keys[i]);
+            if (laneEnds[lane] > attack(keys[i])) {
+                throw new IllegalArgumentException("cs3500.music.model.Note overlap: notes already exist");
+            }
+            laneEnds[lane] = attack(keys[i]) + durations[i];
+            maxDuration = Math.max(maxDuration, durations[i]);
+        }
+        return maxDuration;
+    }
+
+    /** Determines whether two packed notes have the same pitch and instrument. */
+    private static boolean sameLane(long a, long b) {
+        return lane(a) == lane(b);
+    }
+
+
+    /**
+     * Returns a builder object for this kind of piece.
+     */
+    public static CompositionBuilder<Piece> builder() {
+        return new Builder();
+    }
+
+
+    /**
+     * A builder for columnar pieces.
+     *
+     * Notes are buffered in primitive arrays, then sorted and checked for overlaps all at once
+     * when the piece is built.
+     *
+     * Defaults to a meter of 4/4, a tempo of 100 microseconds per beat, and no notes.
+     */
+    public static final class Builder implements CompositionBuilder<Piece> {
+        /** The packed notes to be added. */
+        private long[] keys = new long[1024];
+
+        /** The durations of the notes to be added. */
+        private int[] durations = new int[1024];
+
+        /** The number of notes to be added. */
+        private int size = 0;
+
+        /** The tempo of the piece from each beat where it changes, in microseconds per beat. */
+        private final Map<Integer, Integer> tempos =
+                new TreeMap<Integer, Integer>(Collections.singletonMap(0, 100));
+
+        /**
+         * Constructs an actual composition, given the notes that have been added.
+         *
+         * @return The new composition
+         * @throws IllegalArgumentException if two notes of the same pitch and instrument overlap
+         */
+        public Piece build() {
+            long[] k = Arrays.copyOf(this.keys, Math.max(this.size, 16));
+            int[] d = Arrays.copyOf(this.durations, Math.max(this.size, 16));
+            sort(k, d, this.size);
+            int maxDuration = checkOverlaps(k, d, this.size);
+            return new ColumnarPiece(4, new TempoMap(this.tempos), k, d, this.size, maxDuration);
+        }
+
+        /**
+         * Sets the tempo of the piece from its first beat
+         * @param tempo The speed, in microseconds per beat
+         * @return This builder
+         */
+        public CompositionBuilder<Piece> setTempo(int tempo) {
+            return this.setTempo(0, tempo);
+        }
+
+        /**
+         * Changes the tempo of the piece from the given beat on
+         * @param beat The beat at which the tempo changes
+         * @param tempo The speed, in microseconds per beat
+         * @return This builder
+         */
+        public CompositionBuilder<Piece> setTempo(int beat, int tempo) {
+            this.tempos.put(beat, tempo);
+            return this;
+        }
+
+        /**
+         * Adds a new note to the piece
+         * @param start The start time of the note, in beats
+         * @param end The end time of the note, in beats
+         * @param instrument The instrument number (to be interpreted by MIDI)
+         * @param pitch The pitch (in the range [0, 127], where 60 represents C4)
+         * @param volume The volume (in the range [0, 127])
+         * @return This builder
+         * @throws IllegalArgumentException if the note is invalid
+         */
+        public CompositionBuilder<Piece> addNote(int start, int end, int instrument, int pitch,
+                                                 int volume) {
+            if (end <= start || start < 0) {
+                throw new IllegalArgumentException("Invalid note timing.");
+            }
+            if (pitch < 0 || pitch > 127 || volume < 0 || volume > 127
+                    || instrument < 1 || instrument > 128) {
+                throw new IllegalArgumentException("Invalid note.");
+            }
+            if (this.size == this.keys.length) {
+                this.keys = Arrays.copyOf(this.keys, this.size * 2);
+                this.durations = Arrays.copyOf(this.durations, this.size * 2);
+            }
+            this.keys[this.size] = pack(start, pitch, instrument - 1, volume);
+            this.durations[this.size] = end - start;
+            this.size += 1;
+            return this;
+        }
+
+        /**
+         * Adds a new note to the piece, timed in ticks
+         * @param start The start time of the note, in ticks
+         * @param end The end time of the note, in ticks
+         * @param instrument The instrument number (to be interpreted by MIDI)
+         * @param pitch The pitch (in the range [0, 127], where 60 represents C4)
+         * @param volume The volume (in the range [0, 127])
+         * @return This builder
+         * @throws IllegalArgumentException if the note is invalid, or does not start and stop
+         *                                  on a beat
+         */
+        public CompositionBuilder<Piece> addNoteInTicks(long start, long end, int instrument,
+                                                        int pitch, int volume) {
+            if (start % Note.TICKS_PER_BEAT != 0 || end % Note.TICKS_PER_BEAT != 0) {
+                throw new IllegalArgumentException("Notes must start and stop on a beat.");
+            }
+            return this.addNote(Math.toIntExact(start / Note.TICKS_PER_BEAT),
+                    Math.toIntExact(end / Note.TICKS_PER_BEAT), instrument, pitch, volume);
+        }
+    }
+}
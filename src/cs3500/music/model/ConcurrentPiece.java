@@ -0,0 +1,753 @@
+package cs3500.music.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+import cs3500.music.util.CompositionBuilder;
+import cs3500.music.util.MusicUtils;
+
+/**
+ * Represents a piece that many threads may read and edit at the same time.
+ *
+ * The timeline is split up by measure, and the measures are dealt out to a fixed number of
+ * stripes, so that measure {@code m} belongs to stripe {@code m % stripes}. Each stripe has its
+ * own lock and its own {@link PieceImpl}, which holds every note that sounds during any measure
+ * of that stripe. A note that sounds through several measures is therefore kept in several
+ * stripes.
+ *
+ * Two notes can only overlap if they sound during the same measure, so adding or removing a
+ * note only locks the stripes of the measures it sounds in, and edits to different measures
+ * happen in parallel. A batch of notes added or changed together, with {@link #addAll} or
+ * {@link #transform}, holds the locks of every stripe it touches for the whole batch, so it
+ * happens all at once. Looking up the notes at a beat only locks the stripe of that beat's
+ * measure. Questions about the whole piece, such as {@link #getNotes()}, lock every stripe, so
+ * they always see the piece between edits.
+ *
+ * Stripes are always locked in ascending order, so edits can never deadlock. The locks are not
+ * reentrant, so the edits given to {@link #edit(Consumer)} are made one at a time, as they are
+ * for any piece.
+ */
+public final class ConcurrentPiece implements Piece {
+
+    /** The number of stripes used when none is given. */
+    public static final int DEFAULT_STRIPES = 64;
+
+    /** The lock of every stripe. */
+    private final StampedLock[] locks;
+
+    /**
+     * The notes of every stripe.
+     *
+     * INVARIANT: A note is in the piece of every stripe it sounds in, and in no other.
+     */
+    private final PieceImpl[] stripes;
+
+    /**
+     * Number of beats per measure.
+     *
+     * INVARIANT: this.beatsPerMeasure > 0
+     */
+    private final int beatsPerMeasure;
+
+    /**
+     * The tempo of the piece at every beat.
+     */
+    private final TempoMap tempos;
+
+    /**
+     * Constructs an instance of the ConcurrentPiece class with {@link #DEFAULT_STRIPES} stripes.
+     *
+     * Throws an IllegalArgumentException if there are two or more notes of the same pitch
+     * sounding at the same time on the same instrument, or if the beats per measure is less
+     * than one.
+     *
+     * @param bpm the beats per measure of the piece
+     * @param tempo the number of microseconds per beat
+     * @param notes the notes to be added initially.
+     */
+    public ConcurrentPiece(int bpm, int tempo, Note... notes) {
+        this(bpm, TempoMap.constant(tempo), DEFAULT_STRIPES);
+        this.addAll(Arrays.asList(notes));
+    }
+
+    /**
+     * Constructs an empty instance of the ConcurrentPiece class with the given number of stripes.
+     *
+     * More stripes let more edits happen at once, but make questions about the whole piece
+     * slower.
+     *
+     * @param bpm the beats per measure of the piece
+     * @param tempo the number of microseconds per beat
+     * @param stripes the number of stripes to split the measures between
+     * @throws IllegalArgumentException if the beats per measure or number of stripes is less
+     *                                  than one
+     */
+    public ConcurrentPiece(int bpm, int tempo, int stripes) {
+        this(bpm, TempoMap.constant(tempo), stripes);
+    }
+
+    /**
+     * Constructs an empty instance of the ConcurrentPiece class whose tempo changes during the
+     * piece, with the given number of stripes.
+     *
+     * @param bpm the beats per measure of the piece
+     * @param tempos the tempo of the piece at every beat
+     * @param stripes the number of stripes to split the measures between
+     * @throws IllegalArgumentException if the beats per measure or number of stripes is less
+     *                                  than one
+     */
+    public ConcurrentPiece(int bpm, TempoMap tempos, int stripes) {
+        if (bpm < 1 || stripes < 1) {
+            throw new IllegalArgumentException("Beats per measure and stripes must be positive");
+        }
+        this.beatsPerMeasure = bpm;
+        this.tempos = tempos;
+        this.locks = new StampedLock[stripes];
+        this.stripes = new PieceImpl[stripes];
+        for (int i = 0; i < stripes; i += 1) {
+            this.locks[i] = new StampedLock();
+            this.stripes[i] = new PieceImpl(bpm, tempos);
+        }
+    }
+
+    @Override
+    public int beatsPerMeasure() {
+        return this.beatsPerMeasure;
+    }
+
+    @Override
+    public int getTempo() {
+        return this.tempos.getTempoAt(0);
+    }
+
+    @Override
+    public TempoMap getTempoMap() {
+        return this.tempos;
+    }
+
+    /**
+     * Adds the given note to the piece.
+     * <p>
+     * Only the stripes of the measures the note sounds in are locked.
+     * <p>
+     * Throws an IllegalArgumentException if there is already a note at that pitch being played
+     * by that instrument playing at any time during the given note's duration.
+     *
+     * @param note the note to be added
+     * @throws IllegalArgumentException if a note already exists at that pitch with that instrument
+     *                                  at any time the given note is meant to sound
+     */
+    @Override
+    public void addNote(Note note) {
+        int[] touched = this.stripesOf(note);
+        long[] stamps = this.writeLock(touched);
+        try {
+            int added = 0;
+            try {
+                for (int s : touched) {
+                    this.stripes[s].addNote(note);
+                    added += 1;
+                }
+            } catch (IllegalArgumentException e) {
+                for (int i = 0; i < added; i += 1) {
+                    this.stripes[touched[i]].removeNote(note);
+                }
+                throw e;
+            }
+        } finally {
+            this.unlockWrite(touched, stamps);
+        }
+        return;
+    }
+
+    /**
+     * Removes the given note from the piece.
+     * <p>
+     * Only the stripes of the measures the note sounds in are locked.
+     * <p>
+     * Throws an IllegalArgumentException if the given note does not exist.
+     *
+     * @param note the note to be removed
+     */
+    @Override
+    public void removeNote(Note note) {
+        int[] touched = this.stripesOf(note);
+        long[] stamps = this.writeLock(touched);
+        try {
+            // the note is in all of its stripes or none of them
+            for (int s : touched) {
+                this.stripes[s].removeNote(note);
+            }
+        } finally {
+            this.unlockWrite(touched, stamps);
+        }
+        return;
+    }
+
+    /**
+     * Adds all of the given notes to the piece.
+     * <p>
+     * Every stripe any of the notes sounds in is locked, in ascending order, for the whole
+     * batch, so no other edit or reader sees only some of the notes. Each stripe's share of the
+     * notes is added at once. If any of them overlaps, the stripes already added to are put back
+     * as they were, and none of the notes are added.
+     *
+     * @param notes the notes to be added
+     * @throws IllegalArgumentException if any of the notes overlap
+     */
+    @Override
+    public void addAll(Collection<? extends Note> notes) {
+        int[] touched = this.stripesOf(notes);
+        List<List<Note>> added = this.split(notes, touched);
+        long[] stamps = this.writeLock(touched);
+        try {
+            int done = 0;
+            try {
+                for (; done < touched.length; done += 1) {
+                    this.stripes[touched[done]].addAll(added.get(done));
+                }
+            } catch (IllegalArgumentException e) {
+                for (int i = 0; i < done; i += 1) {
+                    for (Note n : added.get(i)) {
+                        this.stripes[touched[i]].removeNote(n);
+                    }
+                }
+                throw e;
+            }
+        } finally {
+            this.unlockWrite(touched, stamps);
+        }
+        return;
+    }
+
+    /**
+     * Replaces each of the given notes with the note the given change makes from it, all at once.
+     * <p>
+     * Every stripe that any of the old or new notes sounds in is locked, in ascending order,
+     * for the whole batch, so no other edit can take a place a note is moving to, and no
+     * reader sees a note missing halfway through its move. If any of the given notes is not in
+     * the piece, or any changed note would overlap, the stripes already changed are put back as
+     * they were.
+     *
+     * @param notes the notes to change
+     * @param change makes the new note from each old one
+     * @throws IllegalArgumentException if a note is not in the piece, or if the changed notes
+     *     would overlap
+     */
+    @Override
+    public void transform(Collection<? extends Note> notes, UnaryOperator<Note> change) {
+        List<Note> before = new ArrayList<Note>(notes);
+        List<Note> after = new ArrayList<Note>(before.size());
+        for (Note n : before) {
+            after.add(change.apply(n));
+        }
+        List<Note> both = new ArrayList<Note>(before);
+        both.addAll(after);
+        int[] touched = this.stripesOf(both);
+        List<List<Note>> removed = this.split(before, touched);
+        List<List<Note>> added = this.split(after, touched);
+        long[] stamps = this.writeLock(touched);
+        try {
+            int done = 0;
+            int taken = 0;
+            try {
+                for (; done < touched.length; done += 1) {
+                    PieceImpl p = this.stripes[touched[done]];
+                    taken = 0;
+                    for (Note n : removed.get(done)) {
+                        p.removeNote(n);
+                        taken += 1;
+                    }
+                    p.addAll(added.get(done));
+                }
+            } catch (IllegalArgumentException e) {
+                this.stripes[touched[done]].addAll(removed.get(done).subList(0, taken));
+                for (int i = 0; i < done; i += 1) {
+                    PieceImpl p = this.stripes[touched[i]];
+                    for (Note n : added.get(i)) {
+                        p.removeNote(n);
+                    }
+                    p.addAll(removed.get(i));
+                }
+                throw e;
+            }
+        } finally {
+            this.unlockWrite(touched, stamps);
+        }
+        return;
+    }
+
+    @Override
+    public List<Note> getNotesStartingAt(int beat) {
+        int s = this.stripeOf(beat);
+        long stamp = this.locks[s].readLock();
+        try {
+            return this.stripes[s].getNotesStartingAt(beat);
+        } finally {
+            this.locks[s].unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<Note> getAllNotesAt(int beat) {
+        int s = this.stripeOf(beat);
+        long stamp = this.locks[s].readLock();
+        try {
+            return this.stripes[s].getAllNotesAt(beat);
+        } finally {
+            this.locks[s].unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the number of notes sounding at the given beat, from the counts kept by the stripe
+     * of its measure, holding only that stripe's read lock.
+     *
+     * @param beat the beat
+     * @return the number of notes sounding at it
+     */
+    @Override
+    public int countNotesAt(int beat) {
+        int s = this.stripeOf(beat);
+        long stamp = this.locks[s].readLock();
+        try {
+            return this.stripes[s].countNotesAt(beat);
+        } finally {
+            this.locks[s].unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<Note> getNotesSustainedAt(int beat) {
+        int s = this.stripeOf(beat);
+        long stamp = this.locks[s].readLock();
+        try {
+            return this.stripes[s].getNotesSustainedAt(beat);
+        } finally {
+            this.locks[s].unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Performs the given action on every note sounding at the given beat.
+     * <p>
+     * The stripe of the beat stays locked for reading while the action runs, so the action must
+     * not edit this piece.
+     */
+    @Override
+    public void forEachNoteAt(int beat, Consumer<? super Note> action) {
+        int s = this.stripeOf(beat);
+        long stamp = this.locks[s].readLock();
+        try {
+            this.stripes[s].forEachNoteAt(beat, action);
+        } finally {
+            this.locks[s].unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Performs the given action on every note starting at the given beat.
+     * <p>
+     * The stripe of the beat stays locked for reading while the action runs, so the action must
+     * not edit this piece.
+     */
+    @Override
+    public void forEachNoteStartingAt(int beat, Consumer<? super Note> action) {
+        int s = this.stripeOf(beat);
+        long stamp = this.locks[s].readLock();
+        try {
+            this.stripes[s].forEachNoteStartingAt(beat, action);
+        } finally {
+            this.locks[s].unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Performs the given action on every note that sounds during the given beats and has one of
+     * the given pitches, telling it whether the note starts inside that window.
+     * <p>
+     * The measures of the window are visited one at a time, each with only its own stripe
+     * locked for reading, so the action must not edit this piece. A note is visited with the
+     * first measure of the window it sounds in.
+     *
+     * @param startBeat the first beat of the window
+     * @param endBeat the beat immediately after the window
+     * @param lowPitch the MIDI number of the lowest pitch in the window
+     * @param highPitch the MIDI number of the highest pitch in the window
+     * @param visitor the action to perform on each note
+     */
+    @Override
+    public void notesIn(int startBeat, int endBeat, int lowPitch, int highPitch,
+                        WindowVisitor visitor) {
+        int measure = Math.floorDiv(startBeat, this.beatsPerMeasure);
+        for (int from = startBeat; from < endBeat; measure += 1) {
+            int to = Math.min(endBeat, (measure + 1) * this.beatsPerMeasure);
+            int first = from;
+            int s = this.stripeOf(from);
+            long stamp = this.locks[s].readLock();
+            try {
+                this.stripes[s].notesIn(from, to, lowPitch, highPitch, (n, starts) -> {
+                    // notes from earlier in the window were visited with an earlier measure
+                    if (first == startBeat || n.getAttack() >= first) {
+                        visitor.visit(n, n.getAttack() >= startBeat);
+                    }
+                });
+            } finally {
+                this.locks[s].unlockRead(stamp);
+            }
+            from = to;
+        }
+    }
+
+    @Override
+    public Note getHighest() {
+        long[] stamps = this.readLockAll();
+        try {
+            Note highest = null;
+            for (PieceImpl p : this.stripes) {
+                Note n = p.getHighest();
+                if (n != null && (highest == null || n.getPitch() > highest.getPitch()
+                        || (n.getPitch() == highest.getPitch()
+                        && n.getAttack() < highest.getAttack()))) {
+                    highest = n;
+                }
+            }
+            return highest;
+        } finally {
+            this.unlockReadAll(stamps);
+        }
+    }
+
+    @Override
+    public Note getLowest() {
+        long[] stamps = this.readLockAll();
+        try {
+            Note lowest = null;
+            for (PieceImpl p : this.stripes) {
+                Note n = p.getLowest();
+                if (n != null && (lowest == null || n.getPitch() < lowest.getPitch()
+                        || (n.getPitch() == lowest.getPitch()
+                        && n.getAttack() < lowest.getAttack()))) {
+                    lowest = n;
+                }
+            }
+            return lowest;
+        } finally {
+            this.unlockReadAll(stamps);
+        }
+    }
+
+    @Override
+    public int getHighestPitch() {
+        long[] stamps = this.readLockAll();
+        try {
+            int highest = -1;
+            for (PieceImpl p : this.stripes) {
+                highest = Math.max(highest, p.getHighestPitch());
+            }
+            return highest;
+        } finally {
+            this.unlockReadAll(stamps);
+        }
+    }
+
+    @Override
+    public int getLowestPitch() {
+        long[] stamps = this.readLockAll();
+        try {
+            int lowest = -1;
+            for (PieceImpl p : this.stripes) {
+                int pitch = p.getLowestPitch();
+                if (pitch != -1 && (lowest == -1 || pitch < lowest)) {
+                    lowest = pitch;
+                }
+            }
+            return lowest;
+        } finally {
+            this.unlockReadAll(stamps);
+        }
+    }
+
+    /**
+     * Returns all the notes in the piece, in no particular order.
+     * <p>
+     * Each note is taken from the stripe of the measure it starts in, so it is returned once.
+     */
+    @Override
+    public List<Note> getNotes() {
+        long[] stamps = this.readLockAll();
+        try {
+            List<Note> temp = new ArrayList<Note>();
+            for (int s = 0; s < this.stripes.length; s += 1) {
+                for (Note n : this.stripes[s].getNotes()) {
+                    if (this.stripeOf(n.getAttack()) == s) {
+                        temp.add(n);
+                    }
+                }
+            }
+            return Collections.unmodifiableList(temp);
+        } finally {
+            this.unlockReadAll(stamps);
+        }
+    }
+
+    @Override
+    public int getStart() {
+        long[] stamps = this.readLockAll();
+        try {
+            int start = Integer.MAX_VALUE;
+            for (PieceImpl p : this.stripes) {
+                if (p.getEnd() > 0) {
+                    start = Math.min(start, p.getStart());
+                }
+            }
+            return start == Integer.MAX_VALUE ? 0 : start;
+        } finally {
+            this.unlockReadAll(stamps);
+        }
+    }
+
+    /**
+     * Returns the beat number immediately following the last note in the piece.
+     * <p>
+     * Each stripe is first read optimistically, without locking it, and is only locked if an
+     * edit got in the way, so this rarely waits for edits to finish. Edits may happen between
+     * the reads of two stripes.
+     */
+    @Override
+    public int getEnd() {
+        int end = 0;
+        for (int s = 0; s < this.stripes.length; s += 1) {
+            StampedLock lock = this.locks[s];
+            long stamp = lock.tryOptimisticRead();
+            int stripeEnd = this.stripes[s].getEnd();
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    stripeEnd = this.stripes[s].getEnd();
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            end = Math.max(end, stripeEnd);
+        }
+        return end;
+    }
+
+    /**
+     * Resets the piece so that no notes are inside.
+     */
+    @Override
+    public void resetPiece() {
+        int[] all = new int[this.stripes.length];
+        for (int i = 0; i < all.length; i += 1) {
+            all[i] = i;
+        }
+        long[] stamps = this.writeLock(all);
+        try {
+            for (PieceImpl p : this.stripes) {
+                p.resetPiece();
+            }
+        } finally {
+            this.unlockWrite(all, stamps);
+        }
+        return;
+    }
+
+    /**
+     * Returns the stripe of the measure containing the given beat.
+     */
+    private int stripeOf(int beat) {
+        return Math.floorMod(Math.floorDiv(beat, this.beatsPerMeasure), this.stripes.length);
+    }
+
+    /**
+     * Returns the stripes of every measure the given note sounds in, in ascending order.
+     */
+    private int[] stripesOf(Note note) {
+        int first = Math.floorDiv(note.getAttack(), this.beatsPerMeasure);
+        int last = Math.floorDiv(note.getAttack() + Math.max(note.getDuration(), 1) - 1,
+                this.beatsPerMeasure);
+        int count = Math.min(last - first + 1, this.stripes.length);
+        int[] touched = new int[count];
+        for (int i = 0; i < count; i += 1) {
+            touched[i] = Math.floorMod(first + i, this.stripes.length);
+        }
+        Arrays.sort(touched);
+        return touched;
+    }
+
+    /**
+     * Returns the stripes of every measure any of the given notes sounds in, in ascending order.
+     */
+    private int[] stripesOf(Collection<? extends Note> notes) {
+        boolean[] marked = new boolean[this.stripes.length];
+        int count = 0;
+        for (Note n : notes) {
+            for (int s : this.stripesOf(n)) {
+                if (!marked[s]) {
+                    marked[s] = true;
+                    count += 1;
+                }
+            }
+        }
+        int[] touched = new int[count];
+        int i = 0;
+        for (int s = 0; s < marked.length; s += 1) {
+            if (marked[s]) {
+                touched[i] = s;
+                i += 1;
+            }
+        }
+        return touched;
+    }
+
+    /**
+     * Deals the given notes out to the given stripes. The list at each position holds the notes
+     * that sound in the stripe at that position of touched, which must hold every stripe the
+     * notes sound in.
+     */
+    private List<List<Note>> split(Collection<? extends Note> notes, int[] touched) {
+        int[] position = new int[this.stripes.length];
+        List<List<Note>> split = new ArrayList<List<Note>>(touched.length);
+        for (int i = 0; i < touched.length; i += 1) {
+            position[touched[i]] = i;
+            split.add(new ArrayList<Note>());
+        }
+        for (Note n : notes) {
+            for (int s : this.stripesOf(n)) {
+                split.get(position[s]).add(n);
+            }
+        }
+        return split;
+    }
+
+    /**
+     * Locks the given stripes for writing, in the order given.
+     */
+    private long[] writeLock(int[] touched) {
+        long[] stamps = new long[touched.length];
+        for (int i = 0; i < touched.length; i += 1) {
+            stamps[i] = this.locks[touched[i]].writeLock();
+        }
+        return stamps;
+    }
+
+    private void unlockWrite(int[] touched, long[] stamps) {
+        for (int i = touched.length - 1; i >= 0; i -= 1) {
+            this.locks[touched[i]].unlockWrite(stamps[i]);
+        }
+    }
+
+    /**
+     * Locks every stripe for reading, in ascending order.
+     */
+    private long[] readLockAll() {
+        long[] stamps = new long[this.locks.length];
+        for (int i = 0; i < this.locks.length; i += 1) {
+            stamps[i] = this.locks[i].readLock();
+        }
+        return stamps;
+    }
+
+    private void unlockReadAll(long[] stamps) {
+        for (int i = stamps.length - 1; i >= 0; i -= 1) {
+            this.locks[i].unlockRead(stamps[i]);
+        }
+    }
+
+
+    /**
+     * Returns a builder object for concurrent pieces.
+     */
+    public static CompositionBuilder<Piece> builder() {
+        return new Builder();
+    }
+
+
+    /**
+     * A builder for concurrent pieces.
+     *
+     * Defaults to a meter of 4/4, a tempo of 100 microseconds per beat, and no notes.
+     */
+    public static final class Builder implements CompositionBuilder<Piece> {
+        /** The list of notes to be added. */
+        private final List<Note> notes = new ArrayList<Note>();
+
+        /** The tempo of the piece from each beat where it changes, in microseconds per beat. */
+        private final Map<Integer, Integer> tempos =
+                new TreeMap<Integer, Integer>(Collections.singletonMap(0, 100));
+
+        /**
+         * Constructs an actual composition, given the notes that have been added.
+         * @return The new composition
+         */
+        public Piece build() {
+            Piece p = new ConcurrentPiece(4, new TempoMap(this.tempos), DEFAULT_STRIPES);
+            p.addAll(this.notes);
+            return p;
+        }
+
+        /**
+         * Sets the tempo of the piece from its first beat
+         * @param tempo The speed, in microseconds per beat
+         * @return This builder
+         */
+        public CompositionBuilder<Piece> setTempo(int tempo) {
+            return this.setTempo(0, tempo);
+        }
+
+        /**
+         * Changes the tempo of the piece from the given beat on
+         * @param beat The beat at which the tempo changes
+         * @param tempo The speed, in microseconds per beat
+         * @return This builder
+         */
+        public CompositionBuilder<Piece> setTempo(int beat, int tempo) {
+            this.tempos.put(beat, tempo);
+            return this;
+        }
+
+        /**
+         * Adds a new note to the piece
+         * @param start The start time of the note, in beats
+         * @param end The end time of the note, in beats
+         * @param instrument The instrument number (to be interpreted by MIDI)
+         * @param pitch The pitch (in the range [0, 127], where 60 represents C4)
+         * @param volume The volume (in the range [0, 127])
+         * @return This builder
+         */
+        public CompositionBuilder<Piece> addNote(int start, int end, int instrument, int pitch,
+                                                 int volume) {
+            this.notes.add(new CoolNote(MusicUtils.midiNumberToPitchClass(pitch),
+                    MusicUtils.midiNumberToOctave(pitch), end - start, start, volume,
+                    instrument - 1));
+            return this;
+        }
+
+        /**
+         * Adds a new note to the piece, timed in ticks
+         * @param start The start time of the note, in ticks
+         * @param end The end time of the note, in ticks
+         * @param instrument The instrument number (to be interpreted by MIDI)
+         * @param pitch The pitch (in the range [0, 127], where 60 represents C4)
+         * @param volume The volume (in the range [0, 127])
+         * @return This builder
+         */
+        public CompositionBuilder<Piece> addNoteInTicks(long start, long end, int instrument,
+                                                        int pitch, int volume) {
+            this.notes.add(CoolNote.inTicks(MusicUtils.midiNumberToPitchClass(pitch),
+                    MusicUtils.midiNumberToOctave(pitch), end - start, start, volume,
+                    instrument - 1));
+            return this;
+        }
+    }
+}
@@ -22,7 +22,7 @@ public final class CoolNote extends Note {
      * Can theoretically be any value but note that human hearing range only goes from
      * approximately E0 to E10.
      */
-    int pitch;
+    private final int pitch;
 
 
     /**
@@ -32,6 +32,9 @@ public final class CoolNote extends Note {
      * the attack is less than zero, if velocity is not between 0 and 127, or if instrument is
      * not between 0 and 127.
      *
+     * Default modifier on purpose, so that pieces in this package can make notes straight from
+     * the pitch they store.
+     *
      * @param pitch the integer represenation of the pitch
      * @param duration the duration of the note (in beats)
      * @param attack when the note begins (in beats)
@@ -39,12 +42,78 @@ public final class CoolNote extends Note {
      * @param instrument the instrument with which to play the note.
      * @throws IllegalArgumentException if invariants outlined above would be violated.
      */
-    private CoolNote(int pitch, int duration, int attack, int velocity, int instrument) {
+    CoolNote(int pitch, int duration, int attack, int velocity, int instrument) {
         super(duration, attack, velocity, instrument);
 
         this.pitch = pitch;
     }
 
+    /**
+     * Constructs an instance of a {@code cs3500.music.model.Note} that may start and stop
+     * between beats.
+     *
+     * @param pitch the integer represenation of the pitch
+     * @param duration the number of beats the note sounds during
+     * @param attack the beat the note begins in
+     * @param attackTick how many ticks into that beat the note begins
+     * @param releaseTick how many ticks before the end of its last beat the note stops
+     * @param velocity the volume at which to play the note
+     * @param instrument the instrument with which to play the note.
+     * @throws IllegalArgumentException if invariants outlined above would be violated.
+     */
+    private CoolNote(int pitch, int duration, int attack, int attackTick, int releaseTick,
+                     int velocity, int instrument) {
+        super(duration, attack, attackTick, releaseTick, velocity, instrument);
+
+        this.pitch = pitch;
+    }
+
+    /**
+     * Makes a note timed in ticks, where there are {@link Note#TICKS_PER_BEAT} ticks to a beat.
+     *
+     * Throws an IllegalArgumentException if the duration is less than one tick, if the start
+     * is less than zero, if pitchClass is null, velocity is not between 0 and 127, or
+     * instrument is not between 0 and 127
+     *
+     * @param pitchClass the enum representation of the note
+     * @param octave the octave of the note
+     * @param duration the duration of the note (in ticks)
+     * @param start when the note begins (in ticks)
+     * @param velocity the volume of the note
+     * @param instrument the instrument to play the note
+     * @return the note
+     * @throws IllegalArgumentException if any invariants outlined above would be broken.
+     */
+    public static CoolNote inTicks(PitchClass pitchClass, int octave, long duration, long start,
+                                   int velocity, int instrument) {
+        return inTicks((12 * octave) + Objects.requireNonNull(pitchClass).value(), duration,
+                start, velocity, instrument);
+    }
+
+    /**
+     * Makes a note timed in ticks from the pitch pieces in this package store.
+     *
+     * @throws IllegalArgumentException if the note would not be valid
+     */
+    static CoolNote inTicks(int pitch, long duration, long start, int velocity,
+                            int instrument) {
+        if (duration <= 0) {
+            throw new IllegalArgumentException("Duration must be greater than 0.");
+        }
+        if (start < 0) {
+            throw new IllegalArgumentException("Start must be positive.");
+        }
+        long end = start + duration;
+        long attack = start / TICKS_PER_BEAT;
+        long last = (end + TICKS_PER_BEAT - 1) / TICKS_PER_BEAT;
+        if (last > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The note ends too late.");
+        }
+        return new CoolNote(pitch, (int) (last - attack), (int) attack,
+                (int) (start % TICKS_PER_BEAT), (int) (last * TICKS_PER_BEAT - end), velocity,
+                instrument);
+    }
+
     /**
      * Constructs an instance of a {@code cs3500.music.model.Note}.
      *
@@ -94,20 +163,14 @@ public final class CoolNote extends Note {
     /**
      * Returns a copy of this note with all of the same values.
      *
+     * This note can never change, so the note itself is returned.
+     *
      * @return a copy of this note.
      */
     public Note copy() {
-        return new CoolNote(this.pitch, this.duration, this.attack, this.velocity,
-                this.instrument);
-    }
-
-    /** Returns the hashcode of the cs3500.music.model.Note. */
-    @Override
-    public int hashCode() {
-        return this.pitch;
+        return this;
     }
 
-
     /** Returns a string representation of this note. */
     @Override
     public String toString() {
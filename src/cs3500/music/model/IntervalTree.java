@@ -0,0 +1,487 @@
+package cs3500.music.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * An index of notes, ordered by attack, that can answer which notes sound at a given beat.
+ *
+ * The index is a treap (a randomly balanced binary search tree) keyed on the start tick, pitch
+ * and instrument of each note, where every node also remembers the latest beat at which any note in
+ * its subtree stops sounding, along with the lowest and highest pitch in its subtree. Each note
+ * is stored exactly once, no matter how long it is, and a query only walks into subtrees that
+ * could contain a note it is looking for, either in time or in pitch.
+ *
+ * Because no two notes with the same pitch and instrument may overlap in a piece, the key of
+ * start tick, pitch and instrument is unique among the notes of a piece. Ordering by start tick
+ * also orders the notes by attack.
+ *
+ * This class is package-private on purpose; it is an implementation detail of the pieces in
+ * this package.
+ */
+final class IntervalTree {
+
+    /**
+     * A node in the tree.
+     */
+    private static final class Node {
+        /** The note stored at this node. */
+        final Note note;
+        /** The heap priority of this node, higher priorities are closer to the root. */
+        final int priority;
+        /** The subtree of notes that come before this one. */
+        Node left;
+        /** The subtree of notes that come after this one. */
+        Node right;
+        /** The first beat of rest after every note in this subtree. */
+        int maxEnd;
+        /** The lowest pitch of any note in this subtree. */
+        int minPitch;
+        /** The highest pitch of any note in this subtree. */
+        int maxPitch;
+
+        Node(Note note, int priority) {
+            this.note = note;
+            this.priority = priority;
+            this.maxEnd = end(note);
+            this.minPitch = note.getPitch();
+            this.maxPitch = note.getPitch();
+        }
+    }
+
+    /**
+     * The order of the notes in the tree: by start tick, then by pitch, then by instrument.
+     */
+    static final Comparator<Note> ORDER = IntervalTree::compare;
+
+    /** The root of the tree, or null if the tree is empty. */
+    private Node root;
+
+    /** The number of notes in the tree. */
+    private int size;
+
+    /** The source of priorities for new nodes. */
+    private final Random random;
+
+    /**
+     * Constructs an empty {@code IntervalTree}.
+     */
+    IntervalTree() {
+        this.root = null;
+        this.size = 0;
+        this.random = new Random();
+    }
+
+    /** Returns the number of notes in the tree. */
+    int size() {
+        return this.size;
+    }
+
+    /** Returns whether there are no notes in the tree. */
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Returns the earliest attack of any note in the tree.
+     *
+     * @return the earliest attack, or zero if the tree is empty
+     */
+    int minAttack() {
+        Node n = this.root;
+        if (n == null) {
+            return 0;
+        }
+        while (n.left != null) {
+            n = n.left;
+        }
+        return n.note.getAttack();
+    }
+
+    /**
+     * Returns the first beat at which no note in the tree is sounding any more.
+     *
+     * @return the beat after the last note ends, or zero if the tree is empty
+     */
+    int maxEnd() {
+        Node n = this.root;
+        return n == null ? 0 : n.maxEnd;
+    }
+
+    /**
+     * Removes every note from the tree.
+     */
+    void clear() {
+        this.root = null;
+        this.size = 0;
+    }
+
+    /**
+     * Inserts the given note into the tree.
+     *
+     * The caller is responsible for making sure that no note with the same attack, pitch and
+     * instrument is already in the tree.
+     *
+     * @param note the note to insert
+     */
+    void insert(Note note) {
+        this.root = this.insert(this.root, new Node(note, this.random.nextInt()));
+        this.size += 1;
+    }
+
+    /**
+     * Inserts all of the given notes into the tree at once.
+     *
+     * The notes must already be sorted by {@link #ORDER}, and none of them may share an attack,
+     * pitch and instrument with each other or with a note already in the tree. The notes in the
+     * tree are merged with the given ones and the tree is rebuilt from the merged run in a single
+     * pass, which takes time linear in the size of the result.
+     *
+     * @param sorted the notes to insert, in order
+     */
+    void insertAll(List<Note> sorted) {
+        Node[] stack = new Node[64];
+        int top = -1;
+        int i = 0;
+        int j = 0;
+        List<Note> existing = new ArrayList<Note>(this.size);
+        this.allNotes(existing::add);
+
+        // the nodes on the stack form the right spine of the tree built so far
+        while (i < sorted.size() || j < existing.size()) {
+            Note note;
+            if (j == existing.size()
+                    || (i < sorted.size() && compare(sorted.get(i), existing.get(j)) < 0)) {
+                note = sorted.get(i);
+                i += 1;
+            } else {
+                note = existing.get(j);
+                j += 1;
+            }
+            Node fresh = new Node(note, this.random.nextInt());
+            Node last = null;
+            while (top >= 0 && stack[top].priority < fresh.priority) {
+                last = stack[top];
+                top -= 1;
+            }
+            fresh.left = last;
+            if (top >= 0) {
+                stack[top].right = fresh;
+            }
+            top += 1;
+            if (top == stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[top] = fresh;
+        }
+        this.root = top >= 0 ? stack[0] : null;
+        this.size += sorted.size();
+        updateAll(this.root);
+    }
+
+    /**
+     * Removes the given note from the tree.
+     *
+     * @param note the note to remove
+     * @return whether a note equal to the given note was found and removed
+     */
+    boolean remove(Note note) {
+        int before = this.size;
+        this.root = this.remove(this.root, note);
+        return this.size < before;
+    }
+
+    /**
+     * Gives every note sounding at the given beat to the given action, in attack order.
+     *
+     * @param beat the beat to look at
+     * @param out the action to perform on each note
+     */
+    void notesAt(int beat, Consumer<? super Note> out) {
+        this.notesAt(this.root, beat, out);
+    }
+
+    /**
+     * Gives every note starting at the given beat to the given action.
+     *
+     * @param beat the beat to look at
+     * @param out the action to perform on each note
+     */
+    void notesStartingAt(int beat, Consumer<? super Note> out) {
+        this.notesStartingAt(this.root, beat, out);
+    }
+
+    /**
+     * Gives every note sounding at the given beat that did not start there to the given action,
+     * in attack order.
+     *
+     * @param beat the beat to look at
+     * @param out the action to perform on each note
+     */
+    void notesSustainedAt(int beat, Consumer<? super Note> out) {
+        this.notesOverlapping(this.root, beat, beat, out);
+    }
+
+    /**
+     * Gives every note that sounds at any time in the given range of beats to the given action,
+     * in attack order.
+     *
+     * @param start the first beat of the range
+     * @param end the beat immediately after the range
+     * @param out the action to perform on each note
+     */
+    void notesOverlapping(int start, int end, Consumer<? super Note> out) {
+        this.notesOverlapping(this.root, start, end, out);
+    }
+
+    /**
+     * Gives every note that sounds at any time in the given range of beats and has a pitch in
+     * the given range to the given visitor, in attack order.
+     *
+     * @param start the first beat of the range
+     * @param end the beat immediately after the range
+     * @param lowPitch the lowest pitch, as returned by {@link Note#getPitch()}
+     * @param highPitch the highest pitch, as returned by {@link Note#getPitch()}
+     * @param out the visitor to give each note to
+     */
+    void notesIn(int start, int end, int lowPitch, int highPitch, WindowVisitor out) {
+        if (start >= end) {
+            return;
+        }
+        this.notesIn(this.root, start, end, lowPitch, highPitch, out);
+    }
+
+    /**
+     * Gives every note in the tree to the given action, in attack order.
+     *
+     * @param out the action to perform on each note
+     */
+    void allNotes(Consumer<? super Note> out) {
+        this.allNotes(this.root, out);
+    }
+
+    /**
+     * Returns the earliest note in the tree with the given pitch.
+     *
+     * @param pitch the pitch to look for, as returned by {@link Note#getPitch()}
+     * @return the earliest note with that pitch, or null if there is none
+     */
+    Note firstWithPitch(int pitch) {
+        return firstWithPitch(this.root, pitch);
+    }
+
+    /** Returns the first beat of rest after the given note. */
+    private static int end(Note note) {
+        return note.getAttack() + note.getDuration();
+    }
+
+    /**
+     * Orders notes by start tick, then by pitch, then by instrument.
+     */
+    private static int compare(Note a, Note b) {
+        if (a.getStartTick() != b.getStartTick()) {
+            return Long.compare(a.getStartTick(), b.getStartTick());
+        }
+        if (a.getPitch() != b.getPitch()) {
+            return Integer.compare(a.getPitch(), b.getPitch());
+        }
+        return Integer.compare(a.getInstrument(), b.getInstrument());
+    }
+
+    /** Recomputes the cached end of the given node from its children. */
+    private static void update(Node n) {
+        int max = end(n.note);
+        int low = n.note.getPitch();
+        int high = low;
+        if (n.left != null) {
+            max = Math.max(max, n.left.maxEnd);
+            low = Math.min(low, n.left.minPitch);
+            high = Math.max(high, n.left.maxPitch);
+        }
+        if (n.right != null) {
+            max = Math.max(max, n.right.maxEnd);
+            low = Math.min(low, n.right.minPitch);
+            high = Math.max(high, n.right.maxPitch);
+        }
+        n.maxEnd = max;
+        n.minPitch = low;
+        n.maxPitch = high;
+    }
+
+    /** Recomputes the cached ends of every node in the given subtree. */
+    private static void updateAll(Node n) {
+        if (n == null) {
+            return;
+        }
+        updateAll(n.left);
+        updateAll(n.right);
+        update(n);
+    }
+
+    private static Node rotateRight(Node n) {
+        Node l = n.left;
+        n.left = l.right;
+        l.right = n;
+        update(n);
+        update(l);
+        return l;
+    }
+
+    private static Node rotateLeft(Node n) {
+        Node r = n.right;
+        n.right = r.left;
+        r.left = n;
+        update(n);
+        update(r);
+        return r;
+    }
+
+    private Node insert(Node n, Node fresh) {
+        if (n == null) {
+            return fresh;
+        }
+        if (compare(fresh.note, n.note) < 0) {
+            n.left = this.insert(n.left, fresh);
+            if (n.left.priority > n.priority) {
+                return rotateRight(n);
+            }
+        } else {
+            n.right = this.insert(n.right, fresh);
+            if (n.right.priority > n.priority) {
+                return rotateLeft(n);
+            }
+        }
+        update(n);
+        return n;
+    }
+
+    private Node remove(Node n, Note note) {
+        if (n == null) {
+            return null;
+        }
+        int c = compare(note, n.note);
+        if (c < 0) {
+            n.left = this.remove(n.left, note);
+        } else if (c > 0) {
+            n.right = this.remove(n.right, note);
+        } else if (n.note.equals(note)) {
+            this.size -= 1;
+            return merge(n.left, n.right);
+        } else {
+            return n; // same place in the piece, but a different note
+        }
+        update(n);
+        return n;
+    }
+
+    /**
+     * Joins two subtrees where every note in the left one comes before every note in the right.
+     */
+    private static Node merge(Node l, Node r) {
+        if (l == null) {
+            return r;
+        }
+        if (r == null) {
+            return l;
+        }
+        if (l.priority > r.priority) {
+            l.right = merge(l.right, r);
+            update(l);
+            return l;
+        } else {
+            r.left = merge(l, r.left);
+            update(r);
+            return r;
+        }
+    }
+
+    private void notesAt(Node n, int beat, Consumer<? super Note> out) {
+        if (n == null || n.maxEnd <= beat) {
+            return; // nothing in this subtree is still sounding
+        }
+        this.notesAt(n.left, beat, out);
+        if (n.note.getAttack() <= beat) {
+            if (beat < end(n.note)) {
+                out.accept(n.note);
+            }
+            this.notesAt(n.right, beat, out);
+        }
+    }
+
+    private void notesStartingAt(Node n, int beat, Consumer<? super Note> out) {
+        if (n == null) {
+            return;
+        }
+        int attack = n.note.getAttack();
+        if (attack >= beat) {
+            this.notesStartingAt(n.left, beat, out);
+        }
+        if (attack == beat) {
+            out.accept(n.note);
+        }
+        if (attack <= beat) {
+            this.notesStartingAt(n.right, beat, out);
+        }
+    }
+
+    /**
+     * Collects the notes that start before {@code end} and stop sounding after {@code start}.
+     */
+    private void notesOverlapping(Node n, int start, int end, Consumer<? super Note> out) {
+        if (n == null || n.maxEnd <= start) {
+            return;
+        }
+        this.notesOverlapping(n.left, start, end, out);
+        if (n.note.getAttack() < end) {
+            if (start < end(n.note)) {
+                out.accept(n.note);
+            }
+            this.notesOverlapping(n.right, start, end, out);
+        }
+    }
+
+    /**
+     * Visits the notes that start before {@code end}, stop sounding after {@code start}, and have
+     * a pitch from {@code low} to {@code high}.
+     */
+    private void notesIn(Node n, int start, int end, int low, int high, WindowVisitor out) {
+        if (n == null || n.maxEnd <= start || n.maxPitch < low || n.minPitch > high) {
+            return;
+        }
+        this.notesIn(n.left, start, end, low, high, out);
+        Note note = n.note;
+        if (note.getAttack() < end) {
+            if (start < end(note) && note.getPitch() >= low && note.getPitch() <= high) {
+                out.visit(note, note.getAttack() >= start);
+            }
+            this.notesIn(n.right, start, end, low, high, out);
+        }
+    }
+
+    private static Note firstWithPitch(Node n, int pitch) {
+        while (n != null && pitch >= n.minPitch && pitch <= n.maxPitch) {
+            Note found = firstWithPitch(n.left, pitch);
+            if (found != null) {
+                return found;
+            }
+            if (n.note.getPitch() == pitch) {
+                return n.note;
+            }
+            n = n.right;
+        }
+        return null;
+    }
+
+    private void allNotes(Node n, Consumer<? super Note> out) {
+        if (n == null) {
+            return;
+        }
+        this.allNotes(n.left, out);
+        out.accept(n.note);
+        this.allNotes(n.right, out);
+    }
+}
@@ -2,29 +2,51 @@ package cs3500.music.model;
 
 /**
  * Represents a note.
+ *
+ * Notes are immutable, so a note can be handed out by a piece without copying it first.
+ *
+ * A note is timed to the tick, where there are {@link #TICKS_PER_BEAT} ticks to a beat, but is
+ * also seen as the whole beats it sounds during: its attack is the beat it starts in, and its
+ * duration is the number of beats from there up to and including the beat it stops in. Notes
+ * that start and stop on a beat are timed exactly by their attack and duration, and the ticks
+ * are only kept as two small offsets, so finer timing costs the same to store however fine it
+ * is.
  */
 public abstract class Note {
 
+    /** The number of ticks in a beat. */
+    public static final int TICKS_PER_BEAT = 480;
+
     /**
      * Represents the duration of this note (in beats).
      * INVARIANT: this.duration > 0.
      */
-    int duration;
+    private final int duration;
     /**
      * Represents the starting beat of this note.
      * INVARIANT: this.attack >= 0.
      */
-    int attack;
+    private final int attack;
+    /**
+     * Represents how many ticks into its starting beat this note starts.
+     * INVARIANT: 0 <= this.attackTick < TICKS_PER_BEAT.
+     */
+    private final int attackTick;
+    /**
+     * Represents how many ticks before the end of its last beat this note stops.
+     * INVARIANT: 0 <= this.releaseTick < TICKS_PER_BEAT, and the note is at least one tick long.
+     */
+    private final int releaseTick;
     /**
      * Represents the volume of the note.
      * INVARIANT: 0 <= this.velocity < 128.
      */
-    int velocity;
+    private final int velocity;
     /**
      * Represents the instrument to play this note, to be determined by general MIDI.
      * INVARIANT: 0 <= this.instrument < 128.
      */
-    int instrument;
+    private final int instrument;
 
 
 
@@ -44,6 +66,30 @@ public abstract class Note {
      * @throws IllegalArgumentException if any arguments would break the invariants.
      */
     Note(int duration, int attack, int velocity, int instrument) {
+        this(duration, attack, 0, 0, velocity, instrument);
+    }
+
+    /**
+     * Constructs an instance of a {@code cs3500.music.model.Note} that may start and stop
+     * between beats.
+     *
+     * Default modifier on purpose
+     *
+     * @param duration the number of beats the note sounds during
+     * @param attack the beat the note begins in
+     * @param attackTick how many ticks into that beat the note begins
+     * @param releaseTick how many ticks before the end of its last beat the note stops
+     * @param velocity the volume of the note
+     * @param instrument the instrument to play this note.
+     * @throws IllegalArgumentException if any arguments would break the invariants.
+     */
+    Note(int duration, int attack, int attackTick, int releaseTick, int velocity,
+         int instrument) {
+        if (attackTick < 0 || attackTick >= TICKS_PER_BEAT
+                || releaseTick < 0 || releaseTick >= TICKS_PER_BEAT
+                || (duration == 1 && attackTick + releaseTick >= TICKS_PER_BEAT)) {
+            throw new IllegalArgumentException("The note must be at least one tick long.");
+        }
         if (duration <= 0) {
             throw new IllegalArgumentException("Duration must be greater than 0.");
         }
@@ -58,6 +104,8 @@ public abstract class Note {
         }
         this.duration = duration;
         this.attack = attack;
+        this.attackTick = attackTick;
+        this.releaseTick = releaseTick;
         this.velocity = velocity;
         this.instrument = instrument;
 
@@ -88,6 +136,26 @@ public abstract class Note {
         return this.attack;
     }
 
+    /** Get the tick at which this note starts, counting from the start of the piece. */
+    public long getStartTick() {
+        return (long) this.attack * TICKS_PER_BEAT + this.attackTick;
+    }
+
+    /** Get the tick at which this note stops, counting from the start of the piece. */
+    public long getEndTick() {
+        return (long) (this.attack + this.duration) * TICKS_PER_BEAT - this.releaseTick;
+    }
+
+    /** Get the duration of this note (in ticks). */
+    public long getDurationTicks() {
+        return this.getEndTick() - this.getStartTick();
+    }
+
+    /** Determines whether this note starts and stops exactly on a beat. */
+    public boolean isOnBeat() {
+        return this.attackTick == 0 && this.releaseTick == 0;
+    }
+
     /** Get the velocity of this note. */
     public int getVelocity() {
         return this.velocity;
@@ -120,6 +188,8 @@ public abstract class Note {
     /**
      * Returns a copy of this note with all of the same values.
      *
+     * Since notes are immutable, implementations may return this note itself.
+     *
      * @return a copy of this note.
      */
     public abstract Note copy();
@@ -129,7 +199,8 @@ public abstract class Note {
      * Determines if the given object is equal to this note.
      *
      * For two notes to be equal, they must have the same pitch (as determined by the
-     * samePitch() method), the same duration, and the same starting time.
+     * samePitch() method), the same duration, the same starting time (to the tick), the same
+     * velocity and the same instrument.
      *
      * @param obj the object to be compared for equality with this note
      * @return {@code true} if the given object is equal to this note
@@ -143,14 +214,29 @@ public abstract class Note {
         return this.samePitch(n) &&
                 this.duration == n.getDuration() &&
                 this.attack == n.getAttack() &&
+                this.attackTick == n.attackTick &&
+                this.releaseTick == n.releaseTick &&
                 this.velocity == n.getVelocity() &&
                 this.instrument == n.getInstrument();
 
     }
 
-    /** Returns the hashcode of the cs3500.music.model.Note. */
+    /**
+     * Returns the hashcode of the cs3500.music.model.Note.
+     *
+     * Every field that {@link #equals(Object)} compares is mixed in, so notes that share a pitch,
+     * such as the notes of a long repeated figure, still spread out across a hash table.
+     */
     @Override
-    public abstract int hashCode();
+    public int hashCode() {
+        int h = this.getPitch();
+        h = 31 * h + this.duration;
+        h = 31 * h + this.attack;
+        h = 31 * h + this.attackTick * TICKS_PER_BEAT + this.releaseTick;
+        h = 31 * h + this.velocity;
+        h = 31 * h + this.instrument;
+        return h;
+    }
 
 }
 
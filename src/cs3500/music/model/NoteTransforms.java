@@ -0,0 +1,85 @@
+package cs3500.music.model;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Common changes to make to many notes at once, for use with
+ * {@link Piece#transform(java.util.Collection, UnaryOperator)} and
+ * {@link Piece#transformRange(int, int, UnaryOperator)}.
+ *
+ * Every change returns a new note and leaves the given one alone, since notes are immutable.
+ * A change throws an IllegalArgumentException if the note it would make is not a valid note,
+ * in which case the piece is left as it was.
+ */
+public final class NoteTransforms {
+
+    private NoteTransforms() {
+        // only static methods
+    }
+
+    /**
+     * Returns a change that moves a note up by the given number of semitones, or down if the
+     * number is negative.
+     *
+     * @param semitones the number of semitones to move by
+     * @return the change
+     */
+    public static UnaryOperator<Note> transpose(int semitones) {
+        return n -> {
+            int pitch = n.getPitch() + semitones;
+            if (pitch + 12 < 0 || pitch + 12 > 127) {
+                throw new IllegalArgumentException("Pitch must be between 0 and 127.");
+            }
+            return CoolNote.inTicks(pitch, n.getDurationTicks(), n.getStartTick(),
+                    n.getVelocity(), n.getInstrument());
+        };
+    }
+
+    /**
+     * Returns a change that moves a note later by the given number of beats, or earlier if the
+     * number is negative.
+     *
+     * @param beats the number of beats to move by
+     * @return the change
+     */
+    public static UnaryOperator<Note> shift(int beats) {
+        return n -> CoolNote.inTicks(n.getPitch(), n.getDurationTicks(),
+                n.getStartTick() + (long) beats * Note.TICKS_PER_BEAT, n.getVelocity(),
+                n.getInstrument());
+    }
+
+    /**
+     * Returns a change that moves the start of a note to the nearest multiple of the given
+     * number of beats, keeping its length. A note exactly halfway between two multiples moves to
+     * the later one.
+     *
+     * @param grid the number of beats between the allowed attacks
+     * @return the change
+     * @throws IllegalArgumentException if the grid is less than one beat
+     */
+    public static UnaryOperator<Note> quantize(int grid) {
+        if (grid < 1) {
+            throw new IllegalArgumentException("The grid must be at least one beat.");
+        }
+        long ticks = (long) grid * Note.TICKS_PER_BEAT;
+        return n -> CoolNote.inTicks(n.getPitch(), n.getDurationTicks(),
+                (n.getStartTick() + ticks / 2) / ticks * ticks, n.getVelocity(),
+                n.getInstrument());
+    }
+
+    /**
+     * Returns a change that multiplies the velocity of a note by the given factor, rounding to
+     * the nearest velocity and stopping at 127.
+     *
+     * @param factor the factor to multiply by
+     * @return the change
+     * @throws IllegalArgumentException if the factor is negative
+     */
+    public static UnaryOperator<Note> scaleVelocity(double factor) {
+        if (factor < 0) {
+            throw new IllegalArgumentException("The factor cannot be negative.");
+        }
+        return n -> CoolNote.inTicks(n.getPitch(), n.getDurationTicks(), n.getStartTick(),
+                (int) Math.min(127, Math.round(n.getVelocity() * factor)), n.getInstrument());
+    }
+}
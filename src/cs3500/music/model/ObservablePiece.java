@@ -0,0 +1,316 @@
+package cs3500.music.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Represents a piece that tells its listeners about every change made through it.
+ *
+ * All of the notes are kept by another piece, which this one wraps. Every change that succeeds
+ * is reported to the listeners as a {@link PieceChange} after it is made, and the changes made
+ * by one call to {@link #edit(Consumer)}, {@link #addAll(Collection)} or {@link #resetPiece()}
+ * are merged and reported together, so a view can redraw once for a whole batch of edits.
+ *
+ * Changes made to the wrapped piece directly, instead of through this one, are not reported.
+ */
+public final class ObservablePiece implements Piece {
+
+    /** The piece that holds the notes. */
+    private final Piece piece;
+
+    /** The listeners to tell about changes. */
+    private final List<PieceListener> listeners;
+
+    /**
+     * Constructs a piece that reports the changes made through it to the given piece.
+     *
+     * @param piece the piece to wrap
+     * @throws NullPointerException if the piece is null
+     */
+    public ObservablePiece(Piece piece) {
+        this.piece = requireNonNull(piece);
+        this.listeners = new CopyOnWriteArrayList<PieceListener>();
+    }
+
+    @Override
+    public void addListener(PieceListener listener) {
+        this.listeners.add(requireNonNull(listener));
+    }
+
+    @Override
+    public void removeListener(PieceListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    @Override
+    public int beatsPerMeasure() {
+        return this.piece.beatsPerMeasure();
+    }
+
+    @Override
+    public int getTempo() {
+        return this.piece.getTempo();
+    }
+
+    @Override
+    public TempoMap getTempoMap() {
+        return this.piece.getTempoMap();
+    }
+
+    @Override
+    public void addNote(Note note) {
+        this.piece.addNote(note);
+        this.fire(Collections.singletonList(new PieceChange(null, note)));
+    }
+
+    @Override
+    public void addAll(Collection<? extends Note> notes) {
+        this.piece.addAll(notes);
+        List<PieceChange> changes = new ArrayList<PieceChange>(notes.size());
+        for (Note n : notes) {
+            changes.add(new PieceChange(null, n));
+        }
+        this.fire(changes);
+    }
+
+    @Override
+    public void removeNote(Note note) {
+        this.piece.removeNote(note);
+        this.fire(Collections.singletonList(new PieceChange(note, null)));
+    }
+
+    @Override
+    public boolean hasIds() {
+        return this.piece.hasIds();
+    }
+
+    @Override
+    public int getId(Note note) {
+        return this.piece.getId(note);
+    }
+
+    @Override
+    public Note getNote(int id) {
+        return this.piece.getNote(id);
+    }
+
+    @Override
+    public void removeNote(int id) {
+        Note note = this.piece.getNote(id);
+        this.piece.removeNote(id);
+        this.fire(Collections.singletonList(new PieceChange(note, null)));
+    }
+
+    /**
+     * Replaces the note with the given id by the given note, which keeps the id.
+     * <p>
+     * The replacement is reported as a single change from the old note to the new one.
+     *
+     * @param id the id of the note to be replaced
+     * @param note the note to replace it with
+     */
+    @Override
+    public void replaceNote(int id, Note note) {
+        Note old = this.piece.getNote(id);
+        this.piece.replaceNote(id, note);
+        this.fire(Collections.singletonList(new PieceChange(old, note)));
+    }
+
+    /**
+     * Changes the given notes all at once, and reports each note that changed in one batch.
+     *
+     * @param notes the notes to change
+     * @param change makes the new note from each old one
+     */
+    @Override
+    public void transform(Collection<? extends Note> notes, UnaryOperator<Note> change) {
+        Map<Note, Note> changed = new HashMap<Note, Note>();
+        for (Note n : new LinkedHashSet<Note>(notes)) {
+            changed.put(n, change.apply(n));
+        }
+        this.piece.transform(changed.keySet(), changed::get);
+        List<PieceChange> changes = new ArrayList<PieceChange>(changed.size());
+        for (Map.Entry<Note, Note> e : changed.entrySet()) {
+            if (!e.getKey().equals(e.getValue())) {
+                changes.add(new PieceChange(e.getKey(), e.getValue()));
+            }
+        }
+        this.fire(changes);
+    }
+
+    /**
+     * Resets the piece so that no notes are inside.
+     * <p>
+     * Every note that was in the piece is reported as removed, all in one batch.
+     */
+    @Override
+    public void resetPiece() {
+        List<Note> notes = this.piece.getNotes();
+        this.piece.resetPiece();
+        List<PieceChange> changes = new ArrayList<PieceChange>(notes.size());
+        for (Note n : notes) {
+            changes.add(new PieceChange(n, null));
+        }
+        this.fire(changes);
+    }
+
+    /**
+     * Makes the given edits to the wrapped piece, and reports them to the listeners in one
+     * batch once they are all made.
+     * <p>
+     * If the edits throw an exception, the edits made before it are undone, nothing is reported,
+     * and the exception is passed on.
+     *
+     * @param edits the edits to make
+     */
+    @Override
+    public void edit(Consumer<? super Piece> edits) {
+        List<PieceChange> made = new ArrayList<PieceChange>();
+        this.piece.edit(draft -> {
+            ObservablePiece recorder = new ObservablePiece(draft);
+            recorder.addListener(made::addAll);
+            try {
+                edits.accept(recorder);
+            } catch (RuntimeException e) {
+                undo(draft, made);
+                throw e;
+            }
+        });
+        this.fire(PieceChange.coalesce(made));
+    }
+
+    @Override
+    public List<Note> getNotesStartingAt(int beat) {
+        return this.piece.getNotesStartingAt(beat);
+    }
+
+    @Override
+    public List<Note> getAllNotesAt(int beat) {
+        return this.piece.getAllNotesAt(beat);
+    }
+
+    @Override
+    public List<Note> getNotesSustainedAt(int beat) {
+        return this.piece.getNotesSustainedAt(beat);
+    }
+
+    @Override
+    public int countNotesAt(int beat) {
+        return this.piece.countNotesAt(beat);
+    }
+
+    @Override
+    public int countNotesIn(int startBeat, int endBeat) {
+        return this.piece.countNotesIn(startBeat, endBeat);
+    }
+
+    @Override
+    public long countSoundingBeats(int startBeat, int endBeat) {
+        return this.piece.countSoundingBeats(startBeat, endBeat);
+    }
+
+    @Override
+    public void forEachNoteAt(int beat, Consumer<? super Note> action) {
+        this.piece.forEachNoteAt(beat, action);
+    }
+
+    @Override
+    public void forEachNoteStartingAt(int beat, Consumer<? super Note> action) {
+        this.piece.forEachNoteStartingAt(beat, action);
+    }
+
+    @Override
+    public void notesIn(int startBeat, int endBeat, int lowPitch, int highPitch,
+                        WindowVisitor visitor) {
+        this.piece.notesIn(startBeat, endBeat, lowPitch, highPitch, visitor);
+    }
+
+    @Override
+    public Note getHighest() {
+        return this.piece.getHighest();
+    }
+
+    @Override
+    public Note getLowest() {
+        return this.piece.getLowest();
+    }
+
+    @Override
+    public int getHighestPitch() {
+        return this.piece.getHighestPitch();
+    }
+
+    @Override
+    public int getLowestPitch() {
+        return this.piece.getLowestPitch();
+    }
+
+    @Override
+    public List<Note> getNotes() {
+        return this.piece.getNotes();
+    }
+
+    @Override
+    public int getStart() {
+        return this.piece.getStart();
+    }
+
+    @Override
+    public int getEnd() {
+        return this.piece.getEnd();
+    }
+
+    @Override
+    public Piece snapshot() {
+        return this.piece.snapshot();
+    }
+
+    @Override
+    public boolean hasCheapSnapshot() {
+        return this.piece.hasCheapSnapshot();
+    }
+
+    @Override
+    public int getLoadedThrough() {
+        return this.piece.getLoadedThrough();
+    }
+
+    @Override
+    public void awaitLoaded(int beat) throws InterruptedException {
+        this.piece.awaitLoaded(beat);
+    }
+
+    /**
+     * Tells every listener about the given changes, unless there are none.
+     */
+    private void fire(List<PieceChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        List<PieceChange> readOnly = Collections.unmodifiableList(changes);
+        for (PieceListener l : this.listeners) {
+            l.pieceChanged(readOnly);
+        }
+    }
+
+    /**
+     * Undoes the given changes to the given piece, all at once, so notes that were moved into
+     * each other's places can be moved back.
+     * <p>
+     * A change from one note to another is undone by changing the note back, which gives it back
+     * its id in pieces that give their notes ids.
+     */
+    private static void undo(Piece piece, List<PieceChange> made) {
+        PieceChange.apply(piece, PieceChange.invert(PieceChange.coalesce(made)));
+    }
+}
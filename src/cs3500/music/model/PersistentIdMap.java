@@ -0,0 +1,177 @@
+package cs3500.music.model;
+
+/**
+ * An immutable map from the ids a piece gives its notes to the notes.
+ *
+ * Like {@link PersistentIntervalTree}, this is a treap whose nodes never change, so putting or
+ * removing an id copies only the nodes on the path to it and shares the rest with the old map.
+ * The priority of each node is computed from its id.
+ *
+ * This class is package-private on purpose; it is an implementation detail of the pieces in
+ * this package.
+ */
+final class PersistentIdMap {
+
+    /**
+     * A node in the map. Nodes are never changed after they are made.
+     */
+    private static final class Node {
+        /** The id at this node. */
+        final int id;
+        /** The note with that id. */
+        final Note note;
+        /** The heap priority of this node, higher priorities are closer to the root. */
+        final int priority;
+        /** The subtree of smaller ids. */
+        final Node left;
+        /** The subtree of larger ids. */
+        final Node right;
+
+        Node(int id, Note note, int priority, Node left, Node right) {
+            this.id = id;
+            this.note = note;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+        }
+
+        /** Returns a copy of this node with the given children. */
+        Node with(Node left, Node right) {
+            return new Node(this.id, this.note, this.priority, left, right);
+        }
+    }
+
+    /** The map with no ids in it. */
+    static final PersistentIdMap EMPTY = new PersistentIdMap(null);
+
+    /** The root of the map, or null if the map is empty. */
+    private final Node root;
+
+    private PersistentIdMap(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Returns the note with the given id.
+     *
+     * @param id the id to look up
+     * @return the note with that id, or null if there is none
+     */
+    Note get(int id) {
+        Node n = this.root;
+        while (n != null && n.id != id) {
+            n = id < n.id ? n.left : n.right;
+        }
+        return n == null ? null : n.note;
+    }
+
+    /**
+     * Returns a map where the given id maps to the given note, replacing any note it had.
+     *
+     * @param id the id
+     * @param note the note
+     * @return the new map
+     */
+    PersistentIdMap put(int id, Note note) {
+        return new PersistentIdMap(put(this.root, new Node(id, note, priority(id), null, null)));
+    }
+
+    /**
+     * Returns a map without the given id.
+     *
+     * @param id the id to remove
+     * @return the new map, or this map if it does not have the id
+     */
+    PersistentIdMap remove(int id) {
+        Node root = remove(this.root, id);
+        return root == this.root ? this : new PersistentIdMap(root);
+    }
+
+    /**
+     * Scrambles the given id into a heap priority.
+     */
+    private static int priority(int id) {
+        int h = id * 0x9E3779B9;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    private static Node put(Node n, Node fresh) {
+        if (n == null) {
+            return fresh;
+        }
+        if (n.id == fresh.id) {
+            return fresh.with(n.left, n.right);
+        }
+        if (fresh.priority > n.priority && get(n, fresh.id) == null) {
+            Node[] halves = split(n, fresh.id);
+            return fresh.with(halves[0], halves[1]);
+        }
+        if (fresh.id < n.id) {
+            return n.with(put(n.left, fresh), n.right);
+        } else {
+            return n.with(n.left, put(n.right, fresh));
+        }
+    }
+
+    /** Returns the node with the given id in the given subtree, or null. */
+    private static Node get(Node n, int id) {
+        while (n != null && n.id != id) {
+            n = id < n.id ? n.left : n.right;
+        }
+        return n;
+    }
+
+    /**
+     * Splits the given subtree, which does not contain the given id, into the ids smaller and
+     * larger than it.
+     */
+    private static Node[] split(Node n, int id) {
+        if (n == null) {
+            return new Node[] {null, null};
+        }
+        if (id < n.id) {
+            Node[] halves = split(n.left, id);
+            halves[1] = n.with(halves[1], n.right);
+            return halves;
+        } else {
+            Node[] halves = split(n.right, id);
+            halves[0] = n.with(n.left, halves[0]);
+            return halves;
+        }
+    }
+
+    private static Node remove(Node n, int id) {
+        if (n == null) {
+            return null;
+        }
+        if (id < n.id) {
+            Node left = remove(n.left, id);
+            return left == n.left ? n : n.with(left, n.right);
+        } else if (id > n.id) {
+            Node right = remove(n.right, id);
+            return right == n.right ? n : n.with(n.left, right);
+        } else {
+            return merge(n.left, n.right);
+        }
+    }
+
+    /**
+     * Joins two subtrees where every id in the left one is smaller than every id in the right.
+     */
+    private static Node merge(Node l, Node r) {
+        if (l == null) {
+            return r;
+        }
+        if (r == null) {
+            return l;
+        }
+        if (l.priority > r.priority) {
+            return l.with(l.left, merge(l.right, r));
+        } else {
+            return r.with(merge(l, r.left), r.right);
+        }
+    }
+}
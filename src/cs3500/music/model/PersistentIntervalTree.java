@@ -0,0 +1,440 @@
+package cs3500.music.model;
+
+import java.util.function.Consumer;
+
+/**
+ * An immutable index of notes, ordered by attack, that can answer which notes sound at a given
+ * beat.
+ *
+ * This is the same kind of tree as {@link IntervalTree}, except that its nodes are never
+ * changed once they are made. Adding or removing a note copies only the nodes on the path to it
+ * and returns a new tree that shares every other node with the old one, so keeping an old
+ * version of the tree around is free, and any number of threads may read a tree while another
+ * one builds the next version.
+ *
+ * The priority of every node is computed from its key instead of drawn at random, so the shape
+ * of the tree depends only on the notes in it.
+ *
+ * Every node also remembers the lowest and highest pitch in its subtree, which lets the tree
+ * check a new note for overlaps without a separate index of pitches and instruments, and the id
+ * its piece gave the note, so the id of a note can be found by the same search that finds the
+ * note.
+ *
+ * This class is package-private on purpose; it is an implementation detail of the pieces in
+ * this package.
+ */
+final class PersistentIntervalTree {
+
+    /**
+     * A node in the tree. Nodes are never changed after they are made.
+     */
+    private static final class Node {
+        /** The note stored at this node. */
+        final Note note;
+        /** The id the piece gave the note. */
+        final int id;
+        /** The heap priority of this node, higher priorities are closer to the root. */
+        final int priority;
+        /** The subtree of notes that come before this one. */
+        final Node left;
+        /** The subtree of notes that come after this one. */
+        final Node right;
+        /** The first beat of rest after every note in this subtree. */
+        final int maxEnd;
+        /** The lowest pitch of any note in this subtree. */
+        final int minPitch;
+        /** The highest pitch of any note in this subtree. */
+        final int maxPitch;
+
+        Node(Note note, int id, int priority, Node left, Node right) {
+            this.note = note;
+            this.id = id;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            int end = end(note);
+            int min = note.getPitch();
+            int max = note.getPitch();
+            for (Node child : new Node[] {left, right}) {
+                if (child != null) {
+                    end = Math.max(end, child.maxEnd);
+                    min = Math.min(min, child.minPitch);
+                    max = Math.max(max, child.maxPitch);
+                }
+            }
+            this.maxEnd = end;
+            this.minPitch = min;
+            this.maxPitch = max;
+        }
+
+        /** Returns a copy of this node with the given children. */
+        Node with(Node left, Node right) {
+            return new Node(this.note, this.id, this.priority, left, right);
+        }
+    }
+
+    /** The tree with no notes in it. */
+    static final PersistentIntervalTree EMPTY = new PersistentIntervalTree(null, 0);
+
+    /** The root of the tree, or null if the tree is empty. */
+    private final Node root;
+
+    /** The number of notes in the tree. */
+    private final int size;
+
+    private PersistentIntervalTree(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /** Returns the number of notes in the tree. */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the earliest attack of any note in the tree.
+     *
+     * @return the earliest attack, or zero if the tree is empty
+     */
+    int minAttack() {
+        Node n = this.root;
+        if (n == null) {
+            return 0;
+        }
+        while (n.left != null) {
+            n = n.left;
+        }
+        return n.note.getAttack();
+    }
+
+    /**
+     * Returns the first beat at which no note in the tree is sounding any more.
+     *
+     * @return the beat after the last note ends, or zero if the tree is empty
+     */
+    int maxEnd() {
+        return this.root == null ? 0 : this.root.maxEnd;
+    }
+
+    /**
+     * Returns the lowest pitch in the tree, as returned by {@link Note#getPitch()}.
+     *
+     * @return the lowest pitch, or -1 if the tree is empty
+     */
+    int minPitch() {
+        return this.root == null ? -1 : this.root.minPitch;
+    }
+
+    /**
+     * Returns the highest pitch in the tree, as returned by {@link Note#getPitch()}.
+     *
+     * @return the highest pitch, or -1 if the tree is empty
+     */
+    int maxPitch() {
+        return this.root == null ? -1 : this.root.maxPitch;
+    }
+
+    /**
+     * Returns whether a note in the tree has the same pitch and instrument as the given note and
+     * sounds at any time the given note does.
+     *
+     * @param note the note to check
+     * @return whether the note would overlap a note in the tree
+     */
+    boolean overlaps(Note note) {
+        return overlaps(this.root, note);
+    }
+
+    /**
+     * Returns a tree with the given note added to the notes of this one.
+     *
+     * The caller is responsible for making sure that no note with the same attack, pitch and
+     * instrument is already in the tree.
+     *
+     * @param note the note to add
+     * @param id the id the piece gave the note
+     * @return the new tree
+     */
+    PersistentIntervalTree with(Note note, int id) {
+        return new PersistentIntervalTree(insert(this.root, new Node(note, id, priority(note),
+                null, null)), this.size + 1);
+    }
+
+    /**
+     * Returns the id stored with the given note.
+     *
+     * @param note the note to look up
+     * @return the id of the note, or -1 if no note equal to the given note is in the tree
+     */
+    int idOf(Note note) {
+        Node n = this.root;
+        while (n != null) {
+            int c = IntervalTree.ORDER.compare(note, n.note);
+            if (c == 0) {
+                return n.note.equals(note) ? n.id : -1;
+            }
+            n = c < 0 ? n.left : n.right;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a tree without the given note.
+     *
+     * @param note the note to remove
+     * @return the new tree, or this tree if no note equal to the given note was found
+     */
+    PersistentIntervalTree without(Note note) {
+        Node root = remove(this.root, note);
+        return root == this.root ? this : new PersistentIntervalTree(root, this.size - 1);
+    }
+
+    /**
+     * Gives every note sounding at the given beat to the given action, in attack order.
+     *
+     * @param beat the beat to look at
+     * @param out the action to perform on each note
+     */
+    void notesAt(int beat, Consumer<? super Note> out) {
+        notesOverlapping(this.root, beat, beat + 1, out);
+    }
+
+    /**
+     * Gives every note starting at the given beat to the given action.
+     *
+     * @param beat the beat to look at
+     * @param out the action to perform on each note
+     */
+    void notesStartingAt(int beat, Consumer<? super Note> out) {
+        notesStartingAt(this.root, beat, out);
+    }
+
+    /**
+     * Gives every note that sounds at any time in the given range of beats to the given action,
+     * in attack order.
+     *
+     * @param start the first beat of the range
+     * @param end the beat immediately after the range
+     * @param out the action to perform on each note
+     */
+    void notesOverlapping(int start, int end, Consumer<? super Note> out) {
+        notesOverlapping(this.root, start, end, out);
+    }
+
+    /**
+     * Gives every note that sounds at any time in the given range of beats and has a pitch in
+     * the given range to the given visitor, in attack order.
+     *
+     * @param start the first beat of the range
+     * @param end the beat immediately after the range
+     * @param lowPitch the lowest pitch, as returned by {@link Note#getPitch()}
+     * @param highPitch the highest pitch, as returned by {@link Note#getPitch()}
+     * @param out the visitor to give each note to
+     */
+    void notesIn(int start, int end, int lowPitch, int highPitch, WindowVisitor out) {
+        if (start >= end) {
+            return;
+        }
+        notesIn(this.root, start, end, lowPitch, highPitch, out);
+    }
+
+    /**
+     * Gives every note in the tree to the given action, in attack order.
+     *
+     * @param out the action to perform on each note
+     */
+    void allNotes(Consumer<? super Note> out) {
+        allNotes(this.root, out);
+    }
+
+    /**
+     * Returns the earliest note in the tree with the given pitch.
+     *
+     * @param pitch the pitch to look for, as returned by {@link Note#getPitch()}
+     * @return the earliest note with that pitch, or null if there is none
+     */
+    Note firstWithPitch(int pitch) {
+        return firstWithPitch(this.root, pitch);
+    }
+
+    /** Returns the first beat of rest after the given note. */
+    private static int end(Note note) {
+        return note.getAttack() + note.getDuration();
+    }
+
+    /**
+     * Scrambles the start tick, pitch and instrument of the given note into a heap priority.
+     */
+    private static int priority(Note note) {
+        long h = note.getStartTick() * 0x9E3779B97F4A7C15L
+                + note.getPitch() * 0xC2B2AE3D27D4EB4FL + note.getInstrument();
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private static Node insert(Node n, Node fresh) {
+        if (n == null) {
+            return fresh;
+        }
+        if (fresh.priority > n.priority) {
+            Node[] halves = split(n, fresh.note);
+            return fresh.with(halves[0], halves[1]);
+        }
+        if (IntervalTree.ORDER.compare(fresh.note, n.note) < 0) {
+            return n.with(insert(n.left, fresh), n.right);
+        } else {
+            return n.with(n.left, insert(n.right, fresh));
+        }
+    }
+
+    /**
+     * Splits the given subtree into the notes that come before the given note and the notes that
+     * come after it.
+     */
+    private static Node[] split(Node n, Note note) {
+        if (n == null) {
+            return new Node[] {null, null};
+        }
+        if (IntervalTree.ORDER.compare(note, n.note) < 0) {
+            Node[] halves = split(n.left, note);
+            halves[1] = n.with(halves[1], n.right);
+            return halves;
+        } else {
+            Node[] halves = split(n.right, note);
+            halves[0] = n.with(n.left, halves[0]);
+            return halves;
+        }
+    }
+
+    private static Node remove(Node n, Note note) {
+        if (n == null) {
+            return null;
+        }
+        int c = IntervalTree.ORDER.compare(note, n.note);
+        if (c < 0) {
+            Node left = remove(n.left, note);
+            return left == n.left ? n : n.with(left, n.right);
+        } else if (c > 0) {
+            Node right = remove(n.right, note);
+            return right == n.right ? n : n.with(n.left, right);
+        } else if (n.note.equals(note)) {
+            return merge(n.left, n.right);
+        } else {
+            return n; // same place in the piece, but a different note
+        }
+    }
+
+    /**
+     * Joins two subtrees where every note in the left one comes before every note in the right.
+     */
+    private static Node merge(Node l, Node r) {
+        if (l == null) {
+            return r;
+        }
+        if (r == null) {
+            return l;
+        }
+        if (l.priority > r.priority) {
+            return l.with(l.left, merge(l.right, r));
+        } else {
+            return r.with(merge(l, r.left), r.right);
+        }
+    }
+
+    private static boolean overlaps(Node n, Note note) {
+        if (n == null || n.maxEnd <= note.getAttack()
+                || note.getPitch() < n.minPitch || note.getPitch() > n.maxPitch) {
+            return false;
+        }
+        if (overlaps(n.left, note)) {
+            return true;
+        }
+        if (n.note.getAttack() >= end(note)) {
+            return false;
+        }
+        if (n.note.getPitch() == note.getPitch()
+                && n.note.getInstrument() == note.getInstrument()
+                && n.note.getEndTick() > note.getStartTick()
+                && n.note.getStartTick() < note.getEndTick()) {
+            return true;
+        }
+        return overlaps(n.right, note);
+    }
+
+    private static void notesStartingAt(Node n, int beat, Consumer<? super Note> out) {
+        if (n == null) {
+            return;
+        }
+        int attack = n.note.getAttack();
+        if (attack >= beat) {
+            notesStartingAt(n.left, beat, out);
+        }
+        if (attack == beat) {
+            out.accept(n.note);
+        }
+        if (attack <= beat) {
+            notesStartingAt(n.right, beat, out);
+        }
+    }
+
+    /**
+     * Collects the notes that start before {@code end} and stop sounding after {@code start}.
+     */
+    private static void notesOverlapping(Node n, int start, int end, Consumer<? super Note> out) {
+        if (n == null || n.maxEnd <= start) {
+            return;
+        }
+        notesOverlapping(n.left, start, end, out);
+        if (n.note.getAttack() < end) {
+            if (start < end(n.note)) {
+                out.accept(n.note);
+            }
+            notesOverlapping(n.right, start, end, out);
+        }
+    }
+
+    /**
+     * Visits the notes that start before {@code end}, stop sounding after {@code start}, and have
+     * a pitch from {@code low} to {@code high}.
+     */
+    private static void notesIn(Node n, int start, int end, int low, int high,
+                                WindowVisitor out) {
+        if (n == null || n.maxEnd <= start || n.maxPitch < low || n.minPitch > high) {
+            return;
+        }
+        notesIn(n.left, start, end, low, high, out);
+        Note note = n.note;
+        if (note.getAttack() < end) {
+            if (start < end(note) && note.getPitch() >= low && note.getPitch() <= high) {
+                out.visit(note, note.getAttack() >= start);
+            }
+            notesIn(n.right, start, end, low, high, out);
+        }
+    }
+
+    private static Note firstWithPitch(Node n, int pitch) {
+        while (n != null && pitch >= n.minPitch && pitch <= n.maxPitch) {
+            Note found = firstWithPitch(n.left, pitch);
+            if (found != null) {
+                return found;
+            }
+            if (n.note.getPitch() == pitch) {
+                return n.note;
+            }
+            n = n.right;
+        }
+        return null;
+    }
+
+    private static void allNotes(Node n, Consumer<? super Note> out) {
+        if (n == null) {
+            return;
+        }
+        allNotes(n.left, out);
+        out.accept(n.note);
+        allNotes(n.right, out);
+    }
+}
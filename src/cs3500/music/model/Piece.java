@@ -1,11 +1,20 @@
 package cs3500.music.model;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 import cs3500.music.model.Note;
+import cs3500.music.util.MusicUtils;
 
 /**
  * Represents a piece of music.
+ *
+ * Notes are immutable, so the lists returned by a piece hold the piece's own notes rather than
+ * copies of them. The lists themselves cannot be modified.
  */
 public interface Piece {
 
@@ -26,6 +35,18 @@ public interface Piece {
      */
     int getTempo();
 
+    /**
+     * Returns the tempo of the piece at every beat. The tempo returned by {@link #getTempo()} is
+     * the tempo at beat 0 of this map.
+     * <p>
+     * By default the piece has the same tempo throughout.
+     *
+     * @return the tempo map of the piece
+     */
+    default TempoMap getTempoMap() {
+        return TempoMap.constant(this.getTempo());
+    }
+
     /**
      * Adds the given note to the piece.
      * <p>
@@ -41,6 +62,105 @@ public interface Piece {
      */
     void addNote(Note note);
 
+    /**
+     * Adds all of the given notes to the piece.
+     * <p>
+     * Throws an IllegalArgumentException if any of the notes would overlap another note of the
+     * same pitch and instrument, whether it is already in the piece or is one of the given notes.
+     * If an exception is thrown, none of the notes are added.
+     * <p>
+     * Implementations may add the notes much faster than adding them one at a time, so this
+     * should be used when pasting or importing many notes.
+     *
+     * @param notes the notes to be added
+     * @throws IllegalArgumentException if any of the notes overlap
+     */
+    default void addAll(Collection<? extends Note> notes) {
+        List<Note> added = new ArrayList<Note>(notes.size());
+        try {
+            for (Note n : notes) {
+                this.addNote(n);
+                added.add(n);
+            }
+        } catch (IllegalArgumentException e) {
+            for (Note n : added) {
+                this.removeNote(n);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Replaces each of the given notes with the note the given change makes from it, all at once.
+     * <p>
+     * Every note is changed before any overlaps are checked, so notes may be moved past or onto
+     * each other's old places, as long as no two notes overlap once they have all been changed.
+     * {@link NoteTransforms} has the usual changes, such as transposing and quantizing. Pieces
+     * that give their notes ids keep each note's id through the change.
+     * <p>
+     * If any of the changed notes would overlap another note, or any of the given notes is not
+     * in the piece, the piece is left as it was. By default the notes are removed and the changed
+     * notes are added back with {@link #addAll(Collection)}, inside a single {@link #edit}.
+     *
+     * @param notes the notes to change
+     * @param change makes the new note from each old one
+     * @throws IllegalArgumentException if a note is not in the piece, or if the changed notes
+     *     would overlap
+     */
+    default void transform(Collection<? extends Note> notes, UnaryOperator<Note> change) {
+        List<Note> before = new ArrayList<Note>(new LinkedHashSet<Note>(notes));
+        List<Note> after = new ArrayList<Note>(before.size());
+        for (Note n : before) {
+            after.add(change.apply(n));
+        }
+        this.edit(p -> {
+            int removed = 0;
+            try {
+                for (Note n : before) {
+                    p.removeNote(n);
+                    removed += 1;
+                }
+                p.addAll(after);
+            } catch (IllegalArgumentException e) {
+                p.addAll(before.subList(0, removed));
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Changes every note that starts in the given range of beats, all at once, as with
+     * {@link #transform(Collection, UnaryOperator)}.
+     *
+     * @param startBeat the first beat of the range
+     * @param endBeat the beat after the last beat of the range
+     * @param change makes the new note from each old one
+     * @throws IllegalArgumentException if the changed notes would overlap
+     */
+    default void transformRange(int startBeat, int endBeat, UnaryOperator<Note> change) {
+        List<Note> selected = new ArrayList<Note>();
+        this.notesIn(startBeat, endBeat, 0, Integer.MAX_VALUE, (n, startsInWindow) -> {
+            if (startsInWindow) {
+                selected.add(n);
+            }
+        });
+        this.transform(selected, change);
+    }
+
+    /**
+     * Makes the given edits to this piece.
+     * <p>
+     * The edits are given a piece to change. Implementations that can be read while they are
+     * being edited, such as {@link VersionedPiece}, make the edits to a private draft and show
+     * readers either all of them or none of them. By default the edits are made to this piece
+     * directly, one at a time, and the edits made before an exception are kept.
+     *
+     * @param edits the edits to make
+     */
+    default void edit(Consumer<? super Piece> edits) {
+        edits.accept(this);
+    }
+
     /**
      * Removes the given note from the piece.
      * <p>
@@ -51,7 +171,76 @@ public interface Piece {
     void removeNote(Note note);
 
     /**
-     * Gets a copy of the notes starting at the given beat.
+     * Returns whether this piece gives its notes ids, so that {@link #getId(Note)},
+     * {@link #getNote(int)} and {@link #replaceNote(int, Note)} can be called. A caller that
+     * must work with any piece should check this first, and hold on to notes themselves
+     * otherwise. By default pieces do not give their notes ids.
+     *
+     * @return whether this piece gives its notes ids
+     */
+    default boolean hasIds() {
+        return false;
+    }
+
+    /**
+     * Returns the id this piece gave the given note when it was added.
+     * <p>
+     * Every note added to a piece that supports ids is given an id that no other note in that
+     * piece has had. The id stays with the note until it is removed, even when the note is
+     * changed with {@link #replaceNote(int, Note)}, so a view or a controller can keep hold of
+     * a note by its id while it is edited. By default pieces do not give their notes ids; see
+     * {@link #hasIds()}.
+     *
+     * @param note the note to look up
+     * @return the id of the note
+     * @throws IllegalArgumentException if the note is not in this piece
+     * @throws UnsupportedOperationException if this piece does not give its notes ids
+     */
+    default int getId(Note note) {
+        throw new UnsupportedOperationException("This piece does not give its notes ids");
+    }
+
+    /**
+     * Returns the note in this piece with the given id.
+     *
+     * @param id the id of the note
+     * @return the note with that id
+     * @throws IllegalArgumentException if no note in this piece has that id
+     * @throws UnsupportedOperationException if this piece does not give its notes ids
+     */
+    default Note getNote(int id) {
+        throw new UnsupportedOperationException("This piece does not give its notes ids");
+    }
+
+    /**
+     * Removes the note with the given id from the piece.
+     *
+     * @param id the id of the note to be removed
+     * @throws IllegalArgumentException if no note in this piece has that id
+     * @throws UnsupportedOperationException if this piece does not give its notes ids
+     */
+    default void removeNote(int id) {
+        this.removeNote(this.getNote(id));
+    }
+
+    /**
+     * Replaces the note with the given id by the given note, which keeps the id.
+     * <p>
+     * The new note may overlap the note it replaces, but no other note. If it overlaps another
+     * note, the piece is left as it was.
+     *
+     * @param id the id of the note to be replaced
+     * @param note the note to replace it with
+     * @throws IllegalArgumentException if no note in this piece has that id, or if the new
+     *     note would overlap a different note
+     * @throws UnsupportedOperationException if this piece does not give its notes ids
+     */
+    default void replaceNote(int id, Note note) {
+        throw new UnsupportedOperationException("This piece does not give its notes ids");
+    }
+
+    /**
+     * Gets the notes starting at the given beat.
      * <p>
      * If no notes at that beat, will return an empty list.
      *
@@ -61,7 +250,7 @@ public interface Piece {
     List<Note> getNotesStartingAt(int beat);
 
     /**
-     * Gets a copy of all notes sounding at the given beat.
+     * Gets all notes sounding at the given beat.
      * <p>
      * If no notes are at the given beat, will return an empty list.
      *
@@ -71,7 +260,7 @@ public interface Piece {
     List<Note> getAllNotesAt(int beat);
 
     /**
-     * Gets a copy of all notes that are sustained over the given beat.
+     * Gets all notes that are sustained over the given beat.
      *
      * A note that is sustained over a beat is a note that is sounding for that beat but is not
      * starting there.
@@ -84,31 +273,152 @@ public interface Piece {
     List<Note> getNotesSustainedAt(int beat);
 
     /**
-     * Gets a copy of the highest note in the piece.
+     * Returns the number of notes sounding at the given beat.
+     * <p>
+     * By default the notes are counted with {@link #forEachNoteAt(int, Consumer)}, without
+     * copying them into a list. Implementations that keep counts of the notes at each beat
+     * should answer without looking at the notes at all.
+     *
+     * @param beat the beat
+     * @return the number of notes sounding at it
+     */
+    default int countNotesAt(int beat) {
+        int[] count = new int[1];
+        this.forEachNoteAt(beat, n -> count[0] += 1);
+        return count[0];
+    }
+
+    /**
+     * Returns the number of notes sounding at any beat from the given start beat up to, but not
+     * including, the given end beat.
+     *
+     * @param startBeat the first beat of the range
+     * @param endBeat the beat after the last beat of the range
+     * @return the number of notes sounding in the range
+     */
+    default int countNotesIn(int startBeat, int endBeat) {
+        int[] count = new int[1];
+        this.notesIn(startBeat, endBeat, 0, Integer.MAX_VALUE, (n, startsInWindow) ->
+                count[0] += 1);
+        return count[0];
+    }
+
+    /**
+     * Returns the total number of beats that notes sound from the given start beat up to, but
+     * not including, the given end beat, counting every note that sounds at each beat. Divided by
+     * the length of the range, this is the average number of notes sounding in it, which is what
+     * a zoomed-out overview of the piece shows.
+     *
+     * @param startBeat the first beat of the range
+     * @param endBeat the beat after the last beat of the range
+     * @return the number of beats sounded in the range
+     */
+    default long countSoundingBeats(int startBeat, int endBeat) {
+        long[] count = new long[1];
+        this.notesIn(startBeat, endBeat, 0, Integer.MAX_VALUE, (n, startsInWindow) ->
+                count[0] += Math.min(n.getAttack() + n.getDuration(), endBeat)
+                        - Math.max(n.getAttack(), startBeat));
+        return count[0];
+    }
+
+    /**
+     * Performs the given action on every note sounding at the given beat.
+     * <p>
+     * Unlike {@link #getAllNotesAt(int)}, this does not need to build a list of the notes, so it
+     * is preferred for code that runs on every beat of playback.
+     *
+     * @param beat the beat number the notes we want are at
+     * @param action the action to perform on each note
+     */
+    default void forEachNoteAt(int beat, Consumer<? super Note> action) {
+        this.getAllNotesAt(beat).forEach(action);
+    }
+
+    /**
+     * Performs the given action on every note starting at the given beat.
+     * <p>
+     * Unlike {@link #getNotesStartingAt(int)}, this does not need to build a list of the notes,
+     * so it is preferred for code that runs on every beat of playback.
+     *
+     * @param beat the beat number the notes we want are at
+     * @param action the action to perform on each note
+     */
+    default void forEachNoteStartingAt(int beat, Consumer<? super Note> action) {
+        this.getNotesStartingAt(beat).forEach(action);
+    }
+
+    /**
+     * Performs the given action on every note that sounds during the given beats and has one of
+     * the given pitches, telling it whether the note starts inside that window.
+     * <p>
+     * Each note is visited once, no matter how many beats of the window it covers. This is meant
+     * for drawing the part of a piece that is on screen, which should fetch the notes it shows
+     * with one call instead of asking about every beat.
+     *
+     * @param startBeat the first beat of the window
+     * @param endBeat the beat immediately after the window
+     * @param lowPitch the MIDI number of the lowest pitch in the window
+     * @param highPitch the MIDI number of the highest pitch in the window
+     * @param visitor the action to perform on each note
+     */
+    default void notesIn(int startBeat, int endBeat, int lowPitch, int highPitch,
+                         WindowVisitor visitor) {
+        for (int beat = startBeat; beat < endBeat; beat += 1) {
+            int at = beat;
+            this.forEachNoteAt(beat, n -> {
+                int pitch = MusicUtils.midiNumber(n.getPitchClass(), n.getOctave());
+                if ((n.getAttack() == at || at == startBeat)
+                        && pitch >= lowPitch && pitch <= highPitch) {
+                    visitor.visit(n, n.getAttack() >= startBeat);
+                }
+            });
+        }
+    }
+
+    /**
+     * Gets the highest note in the piece.
      * <p>
      * The highest note is the one with the highest octave number and the pitch class closest to
      * B of that octave number.
      *
-     * @return a copy of the highest note in the piece
+     * @return the highest note in the piece
      */
     Note getHighest();
 
     /**
-     * Gets a copy of the lowest note in the piece.
+     * Gets the lowest note in the piece.
      * <p>
      * The lowest note is the one with the lowest octave number and the pitch class closest to C
      * of that octave number.
      *
-     * @return a copy of the lowest note in the piece
+     * @return the lowest note in the piece
      */
     Note getLowest();
 
     /**
-     * Returns a copy of all the notes in the piece.
+     * Returns the MIDI number of the highest pitch in the piece.
+     * <p>
+     * If no notes are in the piece, will return -1.
+     *
+     * @return the MIDI number of the highest pitch, or -1 if there are no notes
+     */
+    int getHighestPitch();
+
+    /**
+     * Returns the MIDI number of the lowest pitch in the piece.
+     * <p>
+     * If no notes are in the piece, will return -1.
+     *
+     * @return the MIDI number of the lowest pitch, or -1 if there are no notes
+     */
+    int getLowestPitch();
+
+    /**
+     * Returns all the notes in the piece.
      * <p>
      * They don't have to be in any particular order.
      *
-     * @return a copy of all the notes in the piece
+     * @return all the notes in the piece
      */
     List<Note> getNotes();
 
@@ -135,4 +445,85 @@ public interface Piece {
      */
     void resetPiece();
 
-}
\ No newline at end of file
+    /**
+     * Registers the given listener to be told about every change to the notes of this piece.
+     * <p>
+     * By default pieces do not report their changes, and this throws an
+     * UnsupportedOperationException; wrap a piece in an {@link ObservablePiece} to listen to it.
+     *
+     * @param listener the listener to add
+     * @throws UnsupportedOperationException if this piece does not report its changes
+     */
+    default void addListener(PieceListener listener) {
+        throw new UnsupportedOperationException("This piece does not report its changes");
+    }
+
+    /**
+     * Stops telling the given listener about changes to this piece.
+     * <p>
+     * Does nothing if the listener was never added.
+     *
+     * @param listener the listener to remove
+     */
+    default void removeListener(PieceListener listener) {
+        return;
+    }
+
+    /**
+     * Returns a piece holding the notes this piece holds right now, which will not change when
+     * this piece is changed later.
+     * <p>
+     * Code that reads a piece for a long time, such as playback or exporting, should read a
+     * snapshot so that it never sees only half of an edit. By default the notes are copied into
+     * a new piece; implementations that can share their notes with the snapshot should do so.
+     *
+     * @return a piece with the same notes, meter and tempo as this one
+     */
+    default Piece snapshot() {
+        Piece copy = new PieceImpl(this.beatsPerMeasure(), this.getTempoMap());
+        copy.addAll(this.getNotes());
+        return copy;
+    }
+
+    /**
+     * Returns whether {@link #snapshot()} takes constant time, rather than copying every note.
+     * <p>
+     * Code that would take a snapshot many times a second, such as drawing each frame of
+     * playback, should only do so if this is true, and read the piece itself otherwise. By
+     * default snapshots are copies, so this is false.
+     *
+     * @return whether taking a snapshot of this piece is cheap
+     */
+    default boolean hasCheapSnapshot() {
+        return false;
+    }
+
+    /**
+     * Returns the beat before which every note of the piece is known to be in it.
+     * <p>
+     * A piece that is still being loaded, such as one from
+     * {@link VersionedPiece#streamingBuilder()}, may be read before all of its notes have
+     * arrived. Every note that starts before the returned beat is already in the piece, and
+     * notes that start at or after it may still be added. Once the whole piece is loaded, and
+     * for pieces that are never loaded in the background, this is {@link Integer#MAX_VALUE}.
+     *
+     * @return the beat up to which the piece is loaded
+     */
+    default int getLoadedThrough() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Waits until every note that starts at or before the given beat is in the piece, or until
+     * the whole piece is loaded.
+     * <p>
+     * By default the piece is always loaded, so this returns at once.
+     *
+     * @param beat the beat to wait for
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    default void awaitLoaded(int beat) throws InterruptedException {
+        return;
+    }
+
+}
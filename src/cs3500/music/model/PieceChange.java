@@ -0,0 +1,214 @@
+package cs3500.music.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cs3500.music.util.MusicUtils;
+
+/**
+ * Represents one change to the notes of a piece: a note that was added, removed, or replaced
+ * by another note.
+ *
+ * Every change knows the rectangle of beats and pitches it affects, which covers the note
+ * before the change and the note after it, so a view only has to redraw that part of itself.
+ */
+public final class PieceChange {
+
+    /**
+     * The kinds of changes that can be made to a piece.
+     */
+    public enum Type {
+        /** A note was added. There is no note before the change. */
+        ADDED,
+        /** A note was removed. There is no note after the change. */
+        REMOVED,
+        /** A note was replaced by another note, such as when it is moved or made louder. */
+        CHANGED
+    }
+
+    /** The note before the change, or null if a note was added. */
+    private final Note before;
+
+    /** The note after the change, or null if a note was removed. */
+    private final Note after;
+
+    /**
+     * Constructs a change from one note to another.
+     *
+     * @param before the note before the change, or null if a note was added
+     * @param after the note after the change, or null if a note was removed
+     * @throws IllegalArgumentException if both notes are null
+     */
+    public PieceChange(Note before, Note after) {
+        if (before == null && after == null) {
+            throw new IllegalArgumentException("A change needs a note before or after it");
+        }
+        this.before = before;
+        this.after = after;
+    }
+
+    /** Returns the kind of this change. */
+    public Type getType() {
+        if (this.before == null) {
+            return Type.ADDED;
+        }
+        return this.after == null ? Type.REMOVED : Type.CHANGED;
+    }
+
+    /** Returns the note before the change, or null if a note was added. */
+    public Note getBefore() {
+        return this.before;
+    }
+
+    /** Returns the note after the change, or null if a note was removed. */
+    public Note getAfter() {
+        return this.after;
+    }
+
+    /** Returns the first beat affected by this change. */
+    public int getStartBeat() {
+        return Math.min(start(this.before), start(this.after));
+    }
+
+    /** Returns the beat immediately after the last beat affected by this change. */
+    public int getEndBeat() {
+        return Math.max(end(this.before), end(this.after));
+    }
+
+    /** Returns the MIDI number of the lowest pitch affected by this change. */
+    public int getLowPitch() {
+        return Math.min(pitch(this.before, Integer.MAX_VALUE), pitch(this.after,
+                Integer.MAX_VALUE));
+    }
+
+    /** Returns the MIDI number of the highest pitch affected by this change. */
+    public int getHighPitch() {
+        return Math.max(pitch(this.before, -1), pitch(this.after, -1));
+    }
+
+    /**
+     * Merges a run of changes into the fewest changes with the same overall effect.
+     * <p>
+     * A note that is added and then removed again disappears from the result, as does a note
+     * that is removed and then added back. A note that is removed and followed by a different
+     * note being added becomes a single change from one to the other, and a chain of changes to
+     * the same note becomes one change from the first note to the last.
+     * <p>
+     * Each change is merged in constant time, so the whole run takes time in proportion to its
+     * length.
+     *
+     * @param changes the changes, in the order they were made
+     * @return the merged changes
+     */
+    public static List<PieceChange> coalesce(List<PieceChange> changes) {
+        // each entry is {before, after}, where after is the note currently in the piece. An
+        // entry whose note was added and removed again is left with neither, and skipped.
+        List<Note[]> pending = new ArrayList<Note[]>();
+        // the entry of each note currently in the piece, and the removals not yet followed by
+        // an addition, the most recent first, so each change is merged in constant time
+        Map<Note, Note[]> current = new HashMap<Note, Note[]>();
+        Deque<Note[]> unpaired = new ArrayDeque<Note[]>();
+        for (PieceChange c : changes) {
+            if (c.before != null) {
+                Note[] p = current.remove(c.before);
+                if (p == null) {
+                    p = new Note[] {c.before, null};
+                    pending.add(p);
+                }
+                p[1] = null;
+                if (p[0] != null) {
+                    unpaired.push(p);
+                }
+            }
+            if (c.after != null) {
+                Note[] p = unpaired.poll();
+                if (p == null) {
+                    p = new Note[] {null, null};
+                    pending.add(p);
+                }
+                p[1] = c.after;
+                current.put(c.after, p);
+            }
+        }
+        List<PieceChange> result = new ArrayList<PieceChange>(pending.size());
+        for (Note[] p : pending) {
+            if (p[0] == null ? p[1] != null : !p[0].equals(p[1])) {
+                result.add(new PieceChange(p[0], p[1]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the changes that undo the given changes: each change turned around, so the note
+     * after it becomes the note before it.
+     *
+     * @param changes the changes to undo
+     * @return the changes that undo them
+     */
+    public static List<PieceChange> invert(List<PieceChange> changes) {
+        List<PieceChange> inverse = new ArrayList<PieceChange>(changes.size());
+        for (PieceChange c : changes) {
+            inverse.add(new PieceChange(c.after, c.before));
+        }
+        return inverse;
+    }
+
+    /**
+     * Makes the given changes to the given piece as if all at once.
+     * <p>
+     * Every removed note is removed first, then every changed note is changed in one
+     * {@link Piece#transform}, and then every added note is added, so notes may be moved into
+     * each other's old places, as a transposed chord is. No note may be changed twice, as is
+     * true of the changes reported for one edit and of those {@link #coalesce} returns.
+     *
+     * @param piece the piece to change
+     * @param changes the changes to make
+     * @throws IllegalArgumentException if a note to be removed or changed is not in the piece,
+     *                                  or a new note would overlap another
+     */
+    public static void apply(Piece piece, List<PieceChange> changes) {
+        Map<Note, Note> moved = new HashMap<Note, Note>();
+        List<Note> added = new ArrayList<Note>();
+        for (PieceChange c : changes) {
+            switch (c.getType()) {
+                case REMOVED:
+                    piece.removeNote(c.before);
+                    break;
+                case CHANGED:
+                    moved.put(c.before, c.after);
+                    break;
+                default:
+                    added.add(c.after);
+            }
+        }
+        if (!moved.isEmpty()) {
+            piece.transform(new ArrayList<Note>(moved.keySet()), moved::get);
+        }
+        if (!added.isEmpty()) {
+            piece.addAll(added);
+        }
+        return;
+    }
+
+    private static int start(Note n) {
+        return n == null ? Integer.MAX_VALUE : n.getAttack();
+    }
+
+    private static int end(Note n) {
+        return n == null ? Integer.MIN_VALUE : n.getAttack() + n.getDuration();
+    }
+
+    private static int pitch(Note n, int none) {
+        return n == null ? none : MusicUtils.midiNumber(n.getPitchClass(), n.getOctave());
+    }
+
+    @Override
+    public String toString() {
+        return this.getType() + " " + this.before + " -> " + this.after;
+    }
+}
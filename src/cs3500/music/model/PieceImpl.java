@@ -1,6 +1,8 @@
 package cs3500.music.model;
 
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 import cs3500.music.util.CompositionBuilder;
 import cs3500.music.util.MusicUtils;
@@ -13,15 +15,54 @@ public final class PieceImpl implements Piece {
     /**
      * Represents the collection of notes in the piece.
      *
-     * The key in the hash map is the beat number, and the value is a list of all notes sounding
-     * at that beat.
+     * Every note is stored once in an interval tree ordered by attack, which can find the notes
+     * sounding at any beat without keeping a list for every beat a note covers.
      *
      * INVARIANT: No two notes with the same pitch (same pitch class and same octave number) are
      *            sounding at the same time.
      *
      */
-    private final Map<Integer, ArrayList<Note>> notes;
+    private final IntervalTree notes;
 
+    /**
+     * Counts how many notes in the piece have each pitch.
+     *
+     * The key is the pitch of the note (as returned by {@link Note#getPitch()}), and the value
+     * is the number of notes in the piece with that pitch. Pitches with no notes have no entry,
+     * so the first and last keys are always the lowest and highest pitches in the piece.
+     */
+    private final TreeMap<Integer, Integer> pitches;
+
+    /**
+     * Counts the notes sounding at each beat, so that they can be counted without being found.
+     */
+    private final PolyphonyIndex polyphony;
+
+    /**
+     * The notes of the piece, split up by the pitch and instrument that play them.
+     *
+     * The key in the hash map is given by {@link #lane(Note)}, and the value maps the start tick
+     * of each note played by that pitch and instrument to the note. Since those notes may never
+     * overlap, the only note that could overlap a new one is the last one starting before the
+     * new one ends.
+     */
+    private final Map<Integer, TreeMap<Long, Note>> lanes;
+
+    /**
+     * The notes of the piece, keyed by the id each was given when it was added.
+     */
+    private final Map<Integer, Note> byId;
+
+    /**
+     * The id of each note in the piece, so that {@link #byId} can be kept up to date in constant
+     * time when a note is removed.
+     */
+    private final Map<Note, Integer> ids;
+
+    /**
+     * The id to give the next note added to the piece. Ids are never given out twice.
+     */
+    private int nextId;
 
     /**
      * Number of beats per measure.
@@ -34,11 +75,9 @@ public final class PieceImpl implements Piece {
     private final int beatsPerMeasure;
 
     /**
-     * The tempo of the piece, measured in microseconds per beat.
-     *
-     * INVARIANT: this.mspb > 1
+     * The tempo of the piece at every beat.
      */
-    private final int tempo;
+    private final TempoMap tempos;
 
 
     /**
@@ -53,14 +92,33 @@ public final class PieceImpl implements Piece {
      * @param notes the notes to be added initially.
      */
     public PieceImpl(int bpm, int tempo, Note... notes) {
-        this.notes = new HashMap<Integer, ArrayList<Note>>();
+        this(bpm, TempoMap.constant(tempo), notes);
+    }
 
-        for (Note n : notes) {
-            this.addNote(n);
-        }
+    /**
+     * Constructs an instance of the cs3500.music.model.PieceImpl class whose tempo changes
+     * during the piece.
+     *
+     * Throws an IllegalArgumentException if there are two or more notes of the same pitch (same
+     * pitch class and same octave) sounding at the same time.
+     *
+     * @param bpm the beats per measure of the piece
+     * @param tempos the tempo of the piece at every beat
+     * @param notes the notes to be added initially.
+     */
+    public PieceImpl(int bpm, TempoMap tempos, Note... notes) {
+        this.notes = new IntervalTree();
+        this.pitches = new TreeMap<Integer, Integer>();
+        this.polyphony = new PolyphonyIndex();
+        this.lanes = new HashMap<Integer, TreeMap<Long, Note>>();
+        this.byId = new HashMap<Integer, Note>();
+        this.ids = new HashMap<Note, Integer>();
+        this.nextId = 0;
+
+        this.addAll(Arrays.asList(notes));
 
         this.beatsPerMeasure = bpm;
-        this.tempo = tempo;
+        this.tempos = tempos;
     }
 
 
@@ -85,7 +143,12 @@ public final class PieceImpl implements Piece {
      */
     @Override
     public int getTempo() {
-        return this.tempo;
+        return this.tempos.getTempoAt(0);
+    }
+
+    @Override
+    public TempoMap getTempoMap() {
+        return this.tempos;
     }
 
     /**
@@ -103,27 +166,214 @@ public final class PieceImpl implements Piece {
      */
     @Override
     public void addNote(Note note) {
+        this.place(note);
+        this.identify(note);
+        return;
+    }
+
+    /**
+     * Puts the given note into the lanes, interval tree and pitch counts, but does not give it
+     * an id.
+     *
+     * @throws IllegalArgumentException if the note overlaps a note of the same pitch and
+     *                                  instrument
+     */
+    private void place(Note note) {
         //check if the note already exists
-        for (int i = note.getAttack(); i < note.getAttack() + note.getDuration(); i += 1) {
-            if(this.notes.containsKey(i)) {
-                for (Note n : this.notes.get(i)) {
-                    if (n.samePitch(note) && n.getInstrument() == note.getInstrument()) {
-                        throw new IllegalArgumentException("cs3500.music.model.Note overlap: notes already exist");
-                    }
-                }
+        TreeMap<Long, Note> lane = this.lanes.get(lane(note));
+        if (lane != null) {
+            Map.Entry<Long, Note> before = lane.floorEntry(note.getEndTick() - 1);
+            if (before != null && before.getValue().getEndTick() > note.getStartTick()) {
+                throw new IllegalArgumentException("cs3500.music.model.Note overlap: notes already exist");
             }
         }
 
         // now lets actually add it
-        for (int i = note.getAttack(); i < note.getAttack() + note.getDuration(); i += 1) {
-            if (!this.notes.containsKey(i)) {
-                this.notes.put(i, new ArrayList<Note>());
+        if (lane == null) {
+            lane = new TreeMap<Long, Note>();
+            this.lanes.put(lane(note), lane);
+        }
+        lane.put(note.getStartTick(), note);
+        this.notes.insert(note);
+        this.pitches.merge(note.getPitch(), 1, Integer::sum);
+        this.polyphony.add(note);
+        return;
+    }
+
+    /**
+     * Adds all of the given notes to the piece.
+     * <p>
+     * The notes are sorted once into the order of the interval tree. Since scores are usually
+     * written in the order they are played, this sort is close to linear. The notes are then
+     * checked for overlaps and placed into their lanes in a single sweep, and the interval tree is
+     * rebuilt around them in one pass, unless there are only a few of them compared to the size
+     * of the piece, in which case they are inserted into the tree one by one.
+     * <p>
+     * Throws an IllegalArgumentException if any of the notes would overlap another note of the
+     * same pitch and instrument. If an exception is thrown, none of the notes are added.
+     *
+     * @param notes the notes to be added
+     * @throws IllegalArgumentException if any of the notes overlap
+     */
+    @Override
+    public void addAll(Collection<? extends Note> notes) {
+        Note[] sorted = notes.toArray(new Note[notes.size()]);
+        Arrays.sort(sorted, IntervalTree.ORDER);
+        this.addToLanes(sorted);
+
+        for (Note note : sorted) {
+            this.pitches.merge(note.getPitch(), 1, Integer::sum);
+            this.polyphony.add(note);
+        }
+        if (sorted.length < this.notes.size() / 16) {
+            for (Note note : sorted) {
+                this.notes.insert(note);
             }
-            this.notes.get(i).add(note);
+        } else {
+            this.notes.insertAll(Arrays.asList(sorted));
+        }
+        for (Note note : notes) {
+            this.identify(note);
         }
         return;
     }
 
+    /**
+     * Checks each of the given notes against the notes in its lane so far, then adds it to the
+     * lane.
+     * <p>
+     * Since the notes in a lane never overlap, checking the last note that starts before a new
+     * note ends is enough whatever order the notes come in, but notes sorted by attack touch
+     * each lane in order.
+     *
+     * @throws IllegalArgumentException if a note overlaps another, in which case none of the
+     *                                  given notes are left in the lanes
+     */
+    private void addToLanes(Note[] notes) {
+        for (int i = 0; i < notes.length; i += 1) {
+            Note note = notes[i];
+            TreeMap<Long, Note> lane = this.lanes.get(lane(note));
+            if (lane == null) {
+                lane = new TreeMap<Long, Note>();
+                this.lanes.put(lane(note), lane);
+            }
+            Map.Entry<Long, Note> before = lane.floorEntry(note.getEndTick() - 1);
+            if (before != null && before.getValue().getEndTick() > note.getStartTick()) {
+                if (lane.isEmpty()) {
+                    this.lanes.remove(lane(note));
+                }
+                this.removeFromLanes(notes, i);
+                throw new IllegalArgumentException("cs3500.music.model.Note overlap: notes already exist");
+            }
+            lane.put(note.getStartTick(), note);
+        }
+    }
+
+    /**
+     * Replaces each of the given notes with the note the given change makes from it, all at once.
+     * <p>
+     * The old notes are taken out of their lanes, and the new notes are sorted once and checked
+     * for overlaps in a single sweep, as in {@link #addAll(Collection)}. If a large part of the
+     * piece is changed, the interval tree is rebuilt around the new notes in one pass instead of
+     * having each note removed and inserted. Every note keeps its id.
+     *
+     * @param notes the notes to change
+     * @param change makes the new note from each old one
+     * @throws IllegalArgumentException if a note is not in the piece, or if the changed notes
+     *                                  would overlap
+     */
+    @Override
+    public void transform(Collection<? extends Note> notes, UnaryOperator<Note> change) {
+        // the ids find the notes that are given more than once without hashing them again
+        BitSet seen = new BitSet(this.nextId);
+        Note[] before = new Note[notes.size()];
+        Note[] after = new Note[notes.size()];
+        int[] moved = new int[notes.size()];
+        int count = 0;
+        for (Note n : notes) {
+            int id = this.getId(n);
+            if (!seen.get(id)) {
+                seen.set(id);
+                before[count] = n;
+                after[count] = change.apply(n);
+                moved[count] = id;
+                count += 1;
+            }
+        }
+        before = Arrays.copyOf(before, count);
+        after = Arrays.copyOf(after, count);
+
+        this.removeFromLanes(before, before.length);
+        Note[] sorted = after.clone();
+        Arrays.sort(sorted, IntervalTree.ORDER);
+        try {
+            this.addToLanes(sorted);
+        } catch (IllegalArgumentException e) {
+            this.addToLanes(before);
+            throw e;
+        }
+
+        for (int i = 0; i < before.length; i += 1) {
+            if (this.pitches.merge(before[i].getPitch(), -1, Integer::sum) == 0) {
+                this.pitches.remove(before[i].getPitch());
+            }
+            this.pitches.merge(after[i].getPitch(), 1, Integer::sum);
+            this.polyphony.remove(before[i]);
+            this.polyphony.add(after[i]);
+        }
+        if (before.length < this.notes.size() / 16) {
+            // every note leaves before any arrives, or a note moving onto the spot of another
+            // that has not left yet would be mistaken for it
+            for (int i = 0; i < before.length; i += 1) {
+                this.notes.remove(before[i]);
+            }
+            for (int i = 0; i < after.length; i += 1) {
+                this.notes.insert(after[i]);
+            }
+        } else {
+            Set<Note> gone = new HashSet<Note>(Arrays.asList(before));
+            List<Note> kept = new ArrayList<Note>(this.notes.size());
+            this.notes.allNotes(n -> {
+                if (!gone.contains(n)) {
+                    kept.add(n);
+                }
+            });
+            this.notes.clear();
+            this.notes.insertAll(kept);
+            this.notes.insertAll(Arrays.asList(sorted));
+        }
+        for (int i = 0; i < before.length; i += 1) {
+            this.ids.remove(before[i]);
+        }
+        for (int i = 0; i < before.length; i += 1) {
+            this.ids.put(after[i], moved[i]);
+            this.byId.put(moved[i], after[i]);
+        }
+        return;
+    }
+
+    /**
+     * Gives the given note, which was just added, the next id.
+     */
+    private void identify(Note note) {
+        this.byId.put(this.nextId, note);
+        this.ids.put(note, this.nextId);
+        this.nextId += 1;
+    }
+
+    /**
+     * Takes the first {@code count} of the given notes back out of their lanes.
+     */
+    private void removeFromLanes(Note[] notes, int count) {
+        for (int i = 0; i < count; i += 1) {
+            TreeMap<Long, Note> lane = this.lanes.get(lane(notes[i]));
+            lane.remove(notes[i].getStartTick());
+            if (lane.isEmpty()) {
+                this.lanes.remove(lane(notes[i]));
+            }
+        }
+    }
+
     /**
      * Removes the given note from the piece.
      * <p>
@@ -134,27 +384,101 @@ public final class PieceImpl implements Piece {
      */
     @Override
     public void removeNote(Note note) {
-        boolean removed = false;
-        for (int i = note.getAttack(); i < note.getAttack() + note.getDuration(); i += 1) {
-            if(this.notes.containsKey(i) && this.notes.get(i).contains(note)) {
+        Integer id = this.ids.remove(note);
+        if (id == null) {
+            throw new IllegalArgumentException("cs3500.music.model.Note was not found");
+        }
+        this.byId.remove(id);
+        this.unplace(note);
+        return;
+    }
 
-                removed = this.notes.get(i).remove(note);
+    @Override
+    public boolean hasIds() {
+        return true;
+    }
 
-                if (this.notes.get(i).isEmpty()) { // make sure there aren't any entries in notes
-                    this.notes.remove(i);          // that don't have anything in the ArrayList.
-                }
-            }
-        }
-        if (!removed) {
+    /**
+     * Returns the id the given note was given when it was added, in constant time.
+     *
+     * @param note the note to look up
+     * @return the id of the note
+     * @throws IllegalArgumentException if the note is not in this piece
+     */
+    @Override
+    public int getId(Note note) {
+        Integer id = this.ids.get(note);
+        if (id == null) {
             throw new IllegalArgumentException("cs3500.music.model.Note was not found");
         }
+        return id;
+    }
+
+    /**
+     * Returns the note with the given id, in constant time.
+     *
+     * @param id the id of the note
+     * @return the note with that id
+     * @throws IllegalArgumentException if no note in this piece has that id
+     */
+    @Override
+    public Note getNote(int id) {
+        Note note = this.byId.get(id);
+        if (note == null) {
+            throw new IllegalArgumentException("No note has that id");
+        }
+        return note;
+    }
+
+    /**
+     * Replaces the note with the given id by the given note, which keeps the id.
+     * <p>
+     * The old note is taken out before the new one is checked for overlaps, so a note can be
+     * moved onto part of the beats it already covers.
+     *
+     * @param id the id of the note to be replaced
+     * @param note the note to replace it with
+     * @throws IllegalArgumentException if no note in this piece has that id, or if the new
+     *                                  note would overlap a different note
+     */
+    @Override
+    public void replaceNote(int id, Note note) {
+        Note old = this.getNote(id);
+        this.unplace(old);
+        try {
+            this.place(note);
+        } catch (IllegalArgumentException e) {
+            this.place(old);
+            throw e;
+        }
+        this.ids.remove(old);
+        this.ids.put(note, id);
+        this.byId.put(id, note);
+        return;
+    }
+
+    /**
+     * Takes the given note, which is in the piece, out of the lanes, interval tree and pitch
+     * counts.
+     */
+    private void unplace(Note note) {
+        TreeMap<Long, Note> lane = this.lanes.get(lane(note));
+        lane.remove(note.getStartTick());
+        if (lane.isEmpty()) {
+            this.lanes.remove(lane(note));
+        }
+        this.notes.remove(note);
+        if (this.pitches.merge(note.getPitch(), -1, Integer::sum) == 0) {
+            this.pitches.remove(note.getPitch());
+        }
+        this.polyphony.remove(note);
         return;
     }
 
     /**
-     * Gets a copy of the notes starting at the given beat.
+     * Gets the notes starting at the given beat.
      * <p>
-     * If no notes at that beat, will return an empty ArrayList.
+     * If no notes at that beat, will return an empty list.
      *
      * @param beat the beat number the notes we want are at
      * @return a list of the notes starting at the given beat
@@ -162,21 +486,14 @@ public final class PieceImpl implements Piece {
     @Override
     public List<Note> getNotesStartingAt(int beat) {
         List<Note> temp = new ArrayList<Note>();
-        if (!this.notes.containsKey(beat)) {
-            return temp;
-        }
-        for(Note n : this.notes.get(beat)) {
-            if (n.getAttack() == beat) {
-                temp.add(n.copy());
-            }
-        }
-        return temp;
+        this.notes.notesStartingAt(beat, temp::add);
+        return Collections.unmodifiableList(temp);
     }
 
     /**
-     * Gets a copy of all notes sounding at the given beat.
+     * Gets all notes sounding at the given beat.
      * <p>
-     * If no notes are at the given beat, will return an empty ArrayList.
+     * If no notes are at the given beat, will return an empty list.
      *
      * @param beat the beat number the notes we want are at
      * @return a list of all notes sounding at the given beat.
@@ -184,22 +501,17 @@ public final class PieceImpl implements Piece {
     @Override
     public List<Note> getAllNotesAt(int beat) {
         List<Note> temp = new ArrayList<Note>();
-        if (!this.notes.containsKey(beat)) {
-            return temp;
-        }
-        for(Note n : this.notes.get(beat)) {
-            temp.add(n.copy());
-        }
-        return temp;
+        this.notes.notesAt(beat, temp::add);
+        return Collections.unmodifiableList(temp);
     }
 
     /**
-     * Gets a copy of all notes that are sustained over the given beat.
+     * Gets all notes that are sustained over the given beat.
      *
      * A note that is sustained over a beat is a note that is sounding for that beat but is not
      * starting there.
      *
-     * If no applicable notes at that beat, will return an empty ArrayList.
+     * If no applicable notes at that beat, will return an empty list.
      *
      * @param beat the beat number of the notes we want
      * @return a list of all notes sustaned through the given beat
@@ -207,85 +519,163 @@ public final class PieceImpl implements Piece {
     @Override
     public List<Note> getNotesSustainedAt(int beat) {
         List<Note> temp = new ArrayList<Note>();
-        if (!this.notes.containsKey(beat)) {
-            return temp;
-        }
-        for(Note n : this.notes.get(beat)) {
-            if (n.getAttack() != beat) {
-                temp.add(n.copy());
-            }
-        }
-        return temp;
+        this.notes.notesSustainedAt(beat, temp::add);
+        return Collections.unmodifiableList(temp);
+    }
+
+    /**
+     * Returns the number of notes sounding at the given beat, in logarithmic time and without
+     * looking at the notes.
+     *
+     * @param beat the beat
+     * @return the number of notes sounding at it
+     */
+    @Override
+    public int countNotesAt(int beat) {
+        return this.polyphony.countAt(beat);
+    }
+
+    /**
+     * Returns the number of notes sounding in the given range of beats, in logarithmic time and
+     * without looking at the notes.
+     *
+     * @param startBeat the first beat of the range
+     * @param endBeat the beat after the last beat of the range
+     * @return the number of notes sounding in the range
+     */
+    @Override
+    public int countNotesIn(int startBeat, int endBeat) {
+        return this.polyphony.countOverlapping(startBeat, endBeat);
+    }
+
+    /**
+     * Returns the total number of beats that notes sound in the given range of beats, in
+     * logarithmic time and without looking at the notes.
+     *
+     * @param startBeat the first beat of the range
+     * @param endBeat the beat after the last beat of the range
+     * @return the number of beats sounded in the range
+     */
+    @Override
+    public long countSoundingBeats(int startBeat, int endBeat) {
+        return this.polyphony.countBeats(startBeat, endBeat);
+    }
+
+    /**
+     * Performs the given action on every note sounding at the given beat, in attack order.
+     *
+     * @param beat the beat number the notes we want are at
+     * @param action the action to perform on each note
+     */
+    @Override
+    public void forEachNoteAt(int beat, Consumer<? super Note> action) {
+        this.notes.notesAt(beat, action);
+    }
+
+    /**
+     * Performs the given action on every note starting at the given beat.
+     *
+     * @param beat the beat number the notes we want are at
+     * @param action the action to perform on each note
+     */
+    @Override
+    public void forEachNoteStartingAt(int beat, Consumer<? super Note> action) {
+        this.notes.notesStartingAt(beat, action);
     }
 
     /**
-     * Gets a copy of the highest note in the piece.
+     * Performs the given action on every note that sounds during the given beats and has one of
+     * the given pitches, telling it whether the note starts inside that window.
+     * <p>
+     * The interval tree skips every subtree whose notes are all over before the window or
+     * all outside of its pitches, so this takes time close to the number of notes found.
+     *
+     * @param startBeat the first beat of the window
+     * @param endBeat the beat immediately after the window
+     * @param lowPitch the MIDI number of the lowest pitch in the window
+     * @param highPitch the MIDI number of the highest pitch in the window
+     * @param visitor the action to perform on each note
+     */
+    @Override
+    public void notesIn(int startBeat, int endBeat, int lowPitch, int highPitch,
+                        WindowVisitor visitor) {
+        this.notes.notesIn(startBeat, endBeat, lowPitch - 12, highPitch - 12, visitor);
+    }
+
+    /**
+     * Gets the highest note in the piece.
      * <p>
      * The highest note is the one with the highest octave number and the pitch class closest to
      * B of that octave number.
      *
      * If there are no notes in the piece, returns null.
      *
-     * @return a copy of the highest note in the piece, or null if there are no notes
+     * @return the highest note in the piece, or null if there are no notes
      */
     @Override
     public Note getHighest() {
-        List<Note> temp = this.getNotes();
-        if (temp.size() == 0) {
+        if (this.pitches.isEmpty()) {
             return null;
         }
-
-        Note highestNote = temp.get(0);
-        for (int i = 0; i < temp.size(); i += 1) {
-            if (temp.get(i).isHigherThan(highestNote)) {
-                highestNote = temp.get(i);
-            }
-        }
-        return highestNote;
+        return this.notes.firstWithPitch(this.pitches.lastKey());
     }
 
     /**
-     * Gets a copy of the lowest note in the piece.
+     * Gets the lowest note in the piece.
      * <p>
      * The lowest note is the one with the lowest octave number and the pitch class closest to C
      * of that octave number.
      *
-     * @return a copy of the lowest note in the piece
+     * @return the lowest note in the piece
      */
     @Override
     public Note getLowest() {
-        List<Note> temp = this.getNotes();
-        if (temp.size() == 0) {
+        if (this.pitches.isEmpty()) {
             return null;
         }
+        return this.notes.firstWithPitch(this.pitches.firstKey());
+    }
 
-        Note lowestNote = temp.get(0);
-        for (int i = 0; i < temp.size(); i += 1) {
-            if (!temp.get(i).isHigherThan(lowestNote)) {
-                lowestNote = temp.get(i);
-            }
+    /**
+     * Returns the MIDI number of the highest pitch in the piece.
+     * <p>
+     * If no notes are in the piece, will return -1.
+     *
+     * @return the MIDI number of the highest pitch, or -1 if there are no notes
+     */
+    @Override
+    public int getHighestPitch() {
+        if (this.pitches.isEmpty()) {
+            return -1;
         }
-        return lowestNote;
+        return this.pitches.lastKey() + 12;
     }
 
     /**
-     * Returns a copy of all the notes in the piece.
+     * Returns the MIDI number of the lowest pitch in the piece.
+     * <p>
+     * If no notes are in the piece, will return -1.
      *
-     * They don't have to be in any particular order.
+     * @return the MIDI number of the lowest pitch, or -1 if there are no notes
+     */
+    @Override
+    public int getLowestPitch() {
+        if (this.pitches.isEmpty()) {
+            return -1;
+        }
+        return this.pitches.firstKey() + 12;
+    }
+
+    /**
+     * Returns all the notes in the piece, in attack order.
      *
-     * @return a copy of all the notes in the piece
+     * @return all the notes in the piece
      */
     @Override
     public List<Note> getNotes() {
-        List<Note> temp = new ArrayList<Note>();
-        for (Integer i : this.notes.keySet()) {
-            for (Note n : this.notes.get(i)) {
-                if (n.getAttack() == i) {
-                    temp.add(n.copy());
-                }
-            }
-        }
-        return temp;
+        List<Note> temp = new ArrayList<Note>(this.notes.size());
+        this.notes.allNotes(temp::add);
+        return Collections.unmodifiableList(temp);
     }
 
     /**
@@ -297,14 +687,7 @@ public final class PieceImpl implements Piece {
      */
     @Override
     public int getStart() {
-        int start = this.getEnd();
-
-        for (Integer i : this.notes.keySet()) {
-            if (i < start) {
-                start = i;
-            }
-        }
-        return start;
+        return this.notes.minAttack();
     }
 
     /**
@@ -316,14 +699,7 @@ public final class PieceImpl implements Piece {
      */
     @Override
     public int getEnd() {
-        int end = -1;
-
-        for (Integer i : this.notes.keySet()) {
-            if (i > end) {
-                end = i;
-            }
-        }
-        return end + 1;
+        return this.notes.maxEnd();
     }
 
     /**
@@ -332,9 +708,21 @@ public final class PieceImpl implements Piece {
     @Override
     public void resetPiece() {
         this.notes.clear();
+        this.pitches.clear();
+        this.polyphony.clear();
+        this.lanes.clear();
+        this.byId.clear();
+        this.ids.clear();
         return;
     }
 
+    /**
+     * Returns the key in {@link #lanes} for the pitch and instrument of the given note.
+     */
+    private static int lane(Note note) {
+        return note.getPitch() * 128 + note.getInstrument();
+    }
+
 
     /**
      * Returns a builder object for this cs3500.music.model.Piece.
@@ -355,28 +743,37 @@ public final class PieceImpl implements Piece {
          /** The list of notes to be added. */
         List<Note> notes = new ArrayList<Note>();
 
-        /** The tempo of the piece, in microseconds per beat. */
-        int tempo = 100;
+        /** The tempo of the piece from each beat where it changes, in microseconds per beat. */
+        Map<Integer, Integer> tempos =
+                new TreeMap<Integer, Integer>(Collections.singletonMap(0, 100));
 
         /**
          * Constructs an actual composition, given the notes that have been added.
          * @return The new composition
          */
         public Piece build() {
-            Piece p = new PieceImpl(4, this.tempo);
-            for (Note n : notes) {
-                p.addNote(n);
-            }
+            Piece p = new PieceImpl(4, new TempoMap(this.tempos));
+            p.addAll(this.notes);
             return p;
         }
 
         /**
-         * Sets the tempo of the piece
+         * Sets the tempo of the piece from its first beat
          * @param tempo The speed, in microseconds per beat
          * @return This builder
          */
         public CompositionBuilder<Piece> setTempo(int tempo) {
-            this.tempo = tempo;
+            return this.setTempo(0, tempo);
+        }
+
+        /**
+         * Changes the tempo of the piece from the given beat on
+         * @param beat The beat at which the tempo changes
+         * @param tempo The speed, in microseconds per beat
+         * @return This builder
+         */
+        public CompositionBuilder<Piece> setTempo(int beat, int tempo) {
+            this.tempos.put(beat, tempo);
             return this;
         }
 
@@ -396,6 +793,23 @@ public final class PieceImpl implements Piece {
                     instrument - 1));
             return this;
         }
+
+        /**
+         * Adds a new note to the piece, timed in ticks
+         * @param start The start time of the note, in ticks
+         * @param end The end time of the note, in ticks
+         * @param instrument The instrument number (to be interpreted by MIDI)
+         * @param pitch The pitch (in the range [0, 127], where 60 represents C4)
+         * @param volume The volume (in the range [0, 127])
+         * @return This builder
+         */
+        public CompositionBuilder<Piece> addNoteInTicks(long start, long end, int instrument,
+                                                        int pitch, int volume) {
+            this.notes.add(CoolNote.inTicks(MusicUtils.midiNumberToPitchClass(pitch),
+                    MusicUtils.midiNumberToOctave(pitch), end - start, start, volume,
+                    instrument - 1));
+            return this;
+        }
     }
 
 
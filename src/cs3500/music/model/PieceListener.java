@@ -0,0 +1,21 @@
+package cs3500.music.model;
+
+import java.util.List;
+
+/**
+ * Listens for changes to the notes of a piece.
+ */
+@FunctionalInterface
+public interface PieceListener {
+
+    /**
+     * Called after the notes of a piece have changed.
+     * <p>
+     * A single edit is reported as a single change. The edits made by one call to
+     * {@link Piece#edit}, {@link Piece#addAll} or {@link Piece#resetPiece()} are reported
+     * together, merged by {@link PieceChange#coalesce(List)}.
+     *
+     * @param changes the changes that were made, never empty
+     */
+    void pieceChanged(List<PieceChange> changes);
+}
@@ -0,0 +1,343 @@
+package cs3500.music.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import cs3500.music.util.MusicUtils;
+
+/**
+ * A summary of statistics about a piece: how many notes sound at each beat, the range of pitches
+ * and the number of notes started in each measure, and how much each instrument is used.
+ *
+ * The statistics are computed in parallel. The measures of the piece are split into ranges, and
+ * each range is read with a single {@link Piece#notesIn} call on a fork/join pool, so a large
+ * piece is analyzed on every core. Per-beat and per-measure results are written straight into
+ * the part of the summary that belongs to their range, and only the totals for the whole piece
+ * are added together as the ranges are joined.
+ *
+ * A summary does not change once it is made, and is not updated when the piece changes.
+ */
+public final class PieceStatistics {
+
+    /** The most measures a single task reads before it splits its range in two. */
+    private static final int MAX_LEAF_MEASURES = 256;
+
+    /** The number of beats per measure in the piece. */
+    private final int beatsPerMeasure;
+
+    /** The number of notes sounding at each beat, from beat 0 to the end of the piece. */
+    private final int[] polyphony;
+
+    /** The lowest MIDI pitch sounding in each measure, or -1 if the measure is silent. */
+    private final int[] lowest;
+
+    /** The highest MIDI pitch sounding in each measure, or -1 if the measure is silent. */
+    private final int[] highest;
+
+    /** The number of notes that start in each measure. */
+    private final int[] starts;
+
+    /** The totals for the whole piece. */
+    private final Totals totals;
+
+    private PieceStatistics(int beatsPerMeasure, int[] polyphony, int[] lowest, int[] highest,
+                            int[] starts, Totals totals) {
+        this.beatsPerMeasure = beatsPerMeasure;
+        this.polyphony = polyphony;
+        this.lowest = lowest;
+        this.highest = highest;
+        this.starts = starts;
+        this.totals = totals;
+    }
+
+    /**
+     * Computes the statistics of the given piece on the common fork/join pool.
+     *
+     * @param piece the piece to analyze
+     * @return the statistics of the piece
+     */
+    public static PieceStatistics of(Piece piece) {
+        return of(piece, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Computes the statistics of the given piece on the given fork/join pool.
+     * <p>
+     * The piece is read from a {@link Piece#snapshot()}, so it may be edited while it is being
+     * analyzed, and the statistics describe the piece as it was when the analysis started.
+     *
+     * @param piece the piece to analyze
+     * @param pool the pool to run the analysis on
+     * @return the statistics of the piece
+     */
+    public static PieceStatistics of(Piece piece, ForkJoinPool pool) {
+        Piece frozen = piece.snapshot();
+        int bpm = frozen.beatsPerMeasure();
+        int beats = frozen.getEnd();
+        int measures = (beats + bpm - 1) / bpm;
+        int[] polyphony = new int[beats];
+        int[] lowest = new int[measures];
+        int[] highest = new int[measures];
+        int[] starts = new int[measures];
+
+        // enough ranges to keep every thread busy, but not so many that splitting costs more
+        int leaf = Math.max(1, Math.min(MAX_LEAF_MEASURES,
+                measures / (pool.getParallelism() * 4)));
+        Totals totals = pool.invoke(new Analysis(frozen, bpm, polyphony, lowest, highest, starts,
+                0, measures, leaf));
+        return new PieceStatistics(bpm, polyphony, lowest, highest, starts, totals);
+    }
+
+    /** Returns the number of beats from the start of the piece to its end. */
+    public int getBeats() {
+        return this.polyphony.length;
+    }
+
+    /** Returns the number of measures in the piece, counting a partial last measure. */
+    public int getMeasures() {
+        return this.starts.length;
+    }
+
+    /**
+     * Returns the number of notes sounding at the given beat.
+     *
+     * @param beat the beat
+     * @return the number of notes sounding at it
+     * @throws IllegalArgumentException if the beat is not in the piece
+     */
+    public int getPolyphony(int beat) {
+        if (beat < 0 || beat >= this.polyphony.length) {
+            throw new IllegalArgumentException("The beat is not in the piece.");
+        }
+        return this.polyphony[beat];
+    }
+
+    /** Returns the most notes that sound at any one beat of the piece. */
+    public int getMaxPolyphony() {
+        return this.totals.histogram.length - 1;
+    }
+
+    /**
+     * Returns the polyphony histogram of the piece: the value at each index is the number of
+     * beats at which exactly that many notes sound.
+     *
+     * @return a new array holding the histogram
+     */
+    public long[] getPolyphonyHistogram() {
+        return Arrays.copyOf(this.totals.histogram, this.totals.histogram.length);
+    }
+
+    /**
+     * Returns the lowest MIDI pitch sounding in the given measure.
+     *
+     * @param measure the measure, counting from 0
+     * @return the lowest pitch, or -1 if no note sounds in the measure
+     * @throws IllegalArgumentException if the measure is not in the piece
+     */
+    public int getLowestPitch(int measure) {
+        return this.lowest[this.checkMeasure(measure)];
+    }
+
+    /**
+     * Returns the highest MIDI pitch sounding in the given measure.
+     *
+     * @param measure the measure, counting from 0
+     * @return the highest pitch, or -1 if no note sounds in the measure
+     * @throws IllegalArgumentException if the measure is not in the piece
+     */
+    public int getHighestPitch(int measure) {
+        return this.highest[this.checkMeasure(measure)];
+    }
+
+    /**
+     * Returns the number of notes that start in the given measure.
+     *
+     * @param measure the measure, counting from 0
+     * @return the number of notes starting in it
+     * @throws IllegalArgumentException if the measure is not in the piece
+     */
+    public int getNotesStarting(int measure) {
+        return this.starts[this.checkMeasure(measure)];
+    }
+
+    /**
+     * Returns the note density of the given measure, which is the number of notes starting in it
+     * per beat.
+     *
+     * @param measure the measure, counting from 0
+     * @return the notes started per beat
+     * @throws IllegalArgumentException if the measure is not in the piece
+     */
+    public double getNoteDensity(int measure) {
+        return (double) this.getNotesStarting(measure) / this.beatsPerMeasure;
+    }
+
+    /**
+     * Returns the number of notes played by the given instrument.
+     *
+     * @param instrument the instrument, between 0 and 127
+     * @return the number of notes it plays
+     */
+    public long getInstrumentNotes(int instrument) {
+        return this.totals.instrumentNotes[instrument];
+    }
+
+    /**
+     * Returns the number of beats the given instrument sounds, counting each of its notes
+     * separately, so two notes sounding together count twice.
+     *
+     * @param instrument the instrument, between 0 and 127
+     * @return the number of beats it sounds
+     */
+    public long getInstrumentBeats(int instrument) {
+        return this.totals.instrumentBeats[instrument];
+    }
+
+    /**
+     * Returns the given measure if it is in the piece.
+     *
+     * @throws IllegalArgumentException if it is not
+     */
+    private int checkMeasure(int measure) {
+        if (measure < 0 || measure >= this.starts.length) {
+            throw new IllegalArgumentException("The measure is not in the piece.");
+        }
+        return measure;
+    }
+
+
+    /**
+     * The statistics that are totals over the whole piece, which are added together when two
+     * ranges of measures are joined.
+     */
+    private static final class Totals {
+        /** The number of notes played by each instrument. */
+        final long[] instrumentNotes = new long[128];
+
+        /** The number of beats each instrument sounds. */
+        final long[] instrumentBeats = new long[128];
+
+        /** The number of beats at which exactly as many notes sound as the index. */
+        long[] histogram = new long[1];
+
+        /** Adds the given totals to these ones. */
+        void add(Totals other) {
+            for (int i = 0; i < 128; i += 1) {
+                this.instrumentNotes[i] += other.instrumentNotes[i];
+                this.instrumentBeats[i] += other.instrumentBeats[i];
+            }
+            if (other.histogram.length > this.histogram.length) {
+                this.histogram = Arrays.copyOf(this.histogram, other.histogram.length);
+            }
+            for (int i = 0; i < other.histogram.length; i += 1) {
+                this.histogram[i] += other.histogram[i];
+            }
+        }
+    }
+
+
+    /**
+     * Analyzes a range of measures, splitting it in half until it is small enough to read at
+     * once.
+     */
+    private static final class Analysis extends RecursiveTask<Totals> {
+        private static final long serialVersionUID = 1L;
+
+        private final Piece piece;
+        private final int bpm;
+        private final int[] polyphony;
+        private final int[] lowest;
+        private final int[] highest;
+        private final int[] starts;
+
+        /** The first measure of the range. */
+        private final int lo;
+
+        /** The measure after the last measure of the range. */
+        private final int hi;
+
+        /** The most measures to read without splitting. */
+        private final int leaf;
+
+        Analysis(Piece piece, int bpm, int[] polyphony, int[] lowest, int[] highest,
+                 int[] starts, int lo, int hi, int leaf) {
+            this.piece = piece;
+            this.bpm = bpm;
+            this.polyphony = polyphony;
+            this.lowest = lowest;
+            this.highest = highest;
+            this.starts = starts;
+            this.lo = lo;
+            this.hi = hi;
+            this.leaf = leaf;
+        }
+
+        @Override
+        protected Totals compute() {
+            if (this.hi - this.lo <= this.leaf) {
+                return this.read();
+            }
+            int mid = (this.lo + this.hi) >>> 1;
+            Analysis left = this.half(this.lo, mid);
+            left.fork();
+            Totals totals = this.half(mid, this.hi).compute();
+            totals.add(left.join());
+            return totals;
+        }
+
+        /** Returns a task for the given part of this range. */
+        private Analysis half(int lo, int hi) {
+            return new Analysis(this.piece, this.bpm, this.polyphony, this.lowest, this.highest,
+                    this.starts, lo, hi, this.leaf);
+        }
+
+        /**
+         * Reads every note sounding in this range at once, and fills in this range's part of the
+         * per-beat and per-measure arrays.
+         */
+        private Totals read() {
+            int from = this.lo * this.bpm;
+            int to = Math.min(this.hi * this.bpm, this.polyphony.length);
+            Arrays.fill(this.lowest, this.lo, this.hi, -1);
+            Arrays.fill(this.highest, this.lo, this.hi, -1);
+            Totals totals = new Totals();
+
+            // each note adds one at the beat it starts sounding and takes one away where it stops
+            int[] changes = new int[to - from + 1];
+            this.piece.notesIn(from, to, 0, Integer.MAX_VALUE, (n, startsInWindow) -> {
+                int start = Math.max(n.getAttack(), from);
+                int end = Math.min(n.getAttack() + n.getDuration(), to);
+                changes[start - from] += 1;
+                changes[end - from] -= 1;
+                int pitch = MusicUtils.midiNumber(n.getPitchClass(), n.getOctave());
+                for (int m = start / this.bpm; m <= (end - 1) / this.bpm; m += 1) {
+                    if (this.lowest[m] < 0 || pitch < this.lowest[m]) {
+                        this.lowest[m] = pitch;
+                    }
+                    if (pitch > this.highest[m]) {
+                        this.highest[m] = pitch;
+                    }
+                }
+                totals.instrumentBeats[n.getInstrument()] += end - start;
+                if (startsInWindow) {
+                    this.starts[n.getAttack() / this.bpm] += 1;
+                    totals.instrumentNotes[n.getInstrument()] += 1;
+                }
+            });
+
+            int sounding = 0;
+            int most = 0;
+            for (int beat = from; beat < to; beat += 1) {
+                sounding += changes[beat - from];
+                this.polyphony[beat] = sounding;
+                most = Math.max(most, sounding);
+            }
+            totals.histogram = new long[most + 1];
+            for (int beat = from; beat < to; beat += 1) {
+                totals.histogram[this.polyphony[beat]] += 1;
+            }
+            return totals;
+        }
+    }
+}
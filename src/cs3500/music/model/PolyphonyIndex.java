@@ -0,0 +1,170 @@
+package cs3500.music.model;
+
+import java.util.Arrays;
+
+/**
+ * Counts how many notes sound at each beat of a piece, without looking at the notes.
+ *
+ * The index keeps Fenwick trees over the beats where notes start and the beats where they stop.
+ * The number of notes sounding at a beat is the number that started at or before it, less the
+ * number that stopped at or before it, so it can be found in logarithmic time no matter how many
+ * notes there are or how long they are. Summing the positions of the starts and stops as well
+ * gives the total number of beats sounded across any range of beats, also in logarithmic time.
+ * Adding or removing a note updates a few entries of each tree, also in logarithmic time.
+ *
+ * The trees grow as notes are added later in the piece, so their size depends only on the
+ * length of the piece.
+ *
+ * This class is package-private on purpose; it is an implementation detail of the pieces in
+ * this package.
+ */
+final class PolyphonyIndex {
+
+    /** The number of notes starting at each beat. */
+    private Fenwick startCounts;
+
+    /** The sum of the beats at which notes start, at each beat. */
+    private Fenwick startSums;
+
+    /** The number of notes stopping at each beat. */
+    private Fenwick endCounts;
+
+    /** The sum of the beats at which notes stop, at each beat. */
+    private Fenwick endSums;
+
+    /** Constructs an empty index. */
+    PolyphonyIndex() {
+        this.clear();
+    }
+
+    /** Forgets every note. */
+    void clear() {
+        this.startCounts = new Fenwick(16);
+        this.startSums = new Fenwick(16);
+        this.endCounts = new Fenwick(16);
+        this.endSums = new Fenwick(16);
+    }
+
+    /** Counts the given note. */
+    void add(Note note) {
+        this.update(note, 1);
+    }
+
+    /** Stops counting the given note, which must have been counted. */
+    void remove(Note note) {
+        this.update(note, -1);
+    }
+
+    /**
+     * Returns the number of notes sounding at the given beat.
+     */
+    int countAt(int beat) {
+        if (beat < 0) {
+            return 0;
+        }
+        return (int) (this.startCounts.before(beat + 1) - this.endCounts.before(beat + 1));
+    }
+
+    /**
+     * Returns the number of notes sounding at any beat from the given start beat up to, but not
+     * including, the given end beat.
+     */
+    int countOverlapping(int start, int end) {
+        start = Math.max(start, 0);
+        if (end <= start) {
+            return 0;
+        }
+        // notes that start before the range ends, less the ones that stop before it starts
+        return (int) (this.startCounts.before(end) - this.endCounts.before(start + 1));
+    }
+
+    /**
+     * Returns the total number of beats that notes sound from the given start beat up to, but
+     * not including, the given end beat, counting every note that sounds at each beat.
+     */
+    long countBeats(int start, int end) {
+        start = Math.max(start, 0);
+        if (end <= start) {
+            return 0;
+        }
+        return this.soundedBefore(end) - this.soundedBefore(start);
+    }
+
+    /**
+     * Returns the total number of beats sounded before the given beat.
+     * <p>
+     * A note that starts at a beat before {@code x} has sounded {@code x - start} beats by then,
+     * unless it has also stopped before {@code x}, in which case {@code x - end} of those beats
+     * were never sounded.
+     */
+    private long soundedBefore(int x) {
+        return x * this.startCounts.before(x) - this.startSums.before(x)
+                - x * this.endCounts.before(x) + this.endSums.before(x);
+    }
+
+    private void update(Note note, int sign) {
+        int start = note.getAttack();
+        int end = start + note.getDuration();
+        this.startCounts.add(start, sign);
+        this.startSums.add(start, sign * (long) start);
+        this.endCounts.add(end, sign);
+        this.endSums.add(end, sign * (long) end);
+    }
+
+
+    /**
+     * A Fenwick tree of sums over the beats from 0, which grows to fit any beat given to it.
+     */
+    private static final class Fenwick {
+        /**
+         * The tree, indexed from 1. The entry at {@code i} holds the sum of the values of the
+         * beats from {@code i - (i & -i)} up to, but not including, {@code i}.
+         */
+        private long[] tree;
+
+        Fenwick(int capacity) {
+            this.tree = new long[capacity + 1];
+        }
+
+        /** Adds the given amount to the value of the given beat. */
+        void add(int beat, long amount) {
+            if (beat + 1 >= this.tree.length) {
+                this.grow(Math.max(2 * (this.tree.length - 1), beat + 1));
+            }
+            for (int i = beat + 1; i < this.tree.length; i += i & -i) {
+                this.tree[i] += amount;
+            }
+        }
+
+        /** Returns the sum of the values of every beat before the given one. */
+        long before(int beat) {
+            long sum = 0;
+            for (int i = Math.min(beat, this.tree.length - 1); i > 0; i -= i & -i) {
+                sum += this.tree[i];
+            }
+            return sum;
+        }
+
+        /**
+         * Rebuilds the tree to hold the given number of beats, in time linear in the new size.
+         */
+        private void grow(int capacity) {
+            int old = this.tree.length - 1;
+            long[] values = Arrays.copyOf(this.tree, capacity + 1);
+            // undo the sums of the old tree to get the value of each beat back
+            for (int i = old; i > 0; i -= 1) {
+                int parent = i + (i & -i);
+                if (parent <= old) {
+                    values[parent] -= values[i];
+                }
+            }
+            for (int i = 1; i <= capacity; i += 1) {
+                int parent = i + (i & -i);
+                if (parent <= capacity) {
+                    values[parent] += values[i];
+                }
+            }
+            this.tree = values;
+        }
+    }
+}
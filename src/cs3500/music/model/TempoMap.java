@@ -0,0 +1,167 @@
+package cs3500.music.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The tempo of a piece at every beat, given as a list of tempo changes.
+ *
+ * Each change sets the tempo, in microseconds per beat, from its beat until the next change. The
+ * earliest change also sets the tempo of every beat before it, so a map always has a tempo for
+ * beat 0.
+ *
+ * When a map is made, the time at which each change happens is worked out once and kept in a
+ * table, so turning a beat into the time it starts at, or a time into the beat playing at it,
+ * is a binary search over the changes rather than a sum over every beat before it.
+ *
+ * Tempo maps are immutable.
+ */
+public final class TempoMap {
+
+    /** The beats at which the tempo changes, in order. The first one is always 0. */
+    private final int[] beats;
+
+    /** The tempo from each change on, in microseconds per beat. */
+    private final int[] tempos;
+
+    /** The time at which each change happens, in microseconds from the start of beat 0. */
+    private final long[] times;
+
+    /**
+     * Constructs a tempo map from the given changes.
+     *
+     * @param changes maps the beat of each change to the tempo from that beat on, in
+     *                microseconds per beat
+     * @throws IllegalArgumentException if there are no changes, or if a beat is negative or a
+     *                                  tempo is less than one
+     */
+    public TempoMap(Map<Integer, Integer> changes) {
+        if (changes.isEmpty()) {
+            throw new IllegalArgumentException("A tempo map needs at least one tempo.");
+        }
+        SortedMap<Integer, Integer> sorted = new TreeMap<Integer, Integer>(changes);
+        this.beats = new int[sorted.size()];
+        this.tempos = new int[sorted.size()];
+        this.times = new long[sorted.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> e : sorted.entrySet()) {
+            if (e.getKey() < 0) {
+                throw new IllegalArgumentException("A tempo cannot change before beat 0.");
+            }
+            if (e.getValue() < 1) {
+                throw new IllegalArgumentException("Tempo must be at least one microsecond.");
+            }
+            this.beats[i] = i == 0 ? 0 : e.getKey();
+            this.tempos[i] = e.getValue();
+            this.times[i] = i == 0 ? 0
+                    : this.times[i - 1] + (long) (this.beats[i] - this.beats[i - 1])
+                    * this.tempos[i - 1];
+            i += 1;
+        }
+    }
+
+    /**
+     * Returns a tempo map with the same tempo at every beat.
+     *
+     * @param tempo the tempo, in microseconds per beat
+     * @return the tempo map
+     * @throws IllegalArgumentException if the tempo is less than one
+     */
+    public static TempoMap constant(int tempo) {
+        return new TempoMap(Collections.singletonMap(0, tempo));
+    }
+
+    /**
+     * Returns the tempo at the given beat.
+     *
+     * @param beat the beat
+     * @return the tempo at that beat, in microseconds per beat
+     */
+    public int getTempoAt(int beat) {
+        return this.tempos[this.changeAtBeat(beat)];
+    }
+
+    /**
+     * Returns the time at which the given beat starts.
+     *
+     * @param beat the beat, which may be past the end of the piece
+     * @return the time it starts at, in microseconds from the start of beat 0
+     * @throws IllegalArgumentException if the beat is negative
+     */
+    public long getTime(int beat) {
+        if (beat < 0) {
+            throw new IllegalArgumentException("The beat cannot be negative.");
+        }
+        int i = this.changeAtBeat(beat);
+        return this.times[i] + (long) (beat - this.beats[i]) * this.tempos[i];
+    }
+
+    /**
+     * Returns the beat playing at the given time.
+     *
+     * @param micros the time, in microseconds from the start of beat 0
+     * @return the beat playing at that time
+     * @throws IllegalArgumentException if the time is negative
+     */
+    public int getBeatAt(long micros) {
+        if (micros < 0) {
+            throw new IllegalArgumentException("The time cannot be negative.");
+        }
+        int i = Arrays.binarySearch(this.times, micros);
+        if (i < 0) {
+            i = -i - 2;
+        }
+        return (int) (this.beats[i] + (micros - this.times[i]) / this.tempos[i]);
+    }
+
+    /**
+     * Returns the shortest beat anywhere in the map.
+     *
+     * @return the fastest tempo, in microseconds per beat
+     */
+    public int getFastestTempo() {
+        int fastest = this.tempos[0];
+        for (int t : this.tempos) {
+            fastest = Math.min(fastest, t);
+        }
+        return fastest;
+    }
+
+    /**
+     * Returns the changes in this map, ordered by beat.
+     *
+     * @return an unmodifiable map from the beat of each change to the tempo from that beat on
+     */
+    public SortedMap<Integer, Integer> getChanges() {
+        SortedMap<Integer, Integer> changes = new TreeMap<Integer, Integer>();
+        for (int i = 0; i < this.beats.length; i += 1) {
+            changes.put(this.beats[i], this.tempos[i]);
+        }
+        return Collections.unmodifiableSortedMap(changes);
+    }
+
+    /**
+     * Returns the index of the change in effect at the given beat.
+     */
+    private int changeAtBeat(int beat) {
+        int i = Arrays.binarySearch(this.beats, beat);
+        return i >= 0 ? i : Math.max(0, -i - 2);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof TempoMap)) {
+            return false;
+        }
+        TempoMap that = (TempoMap) obj;
+        return Arrays.equals(this.beats, that.beats) && Arrays.equals(this.tempos, that.tempos);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(this.beats) + Arrays.hashCode(this.tempos);
+    }
+}
@@ -0,0 +1,866 @@
+package cs3500.music.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+import cs3500.music.util.CompositionBuilder;
+import cs3500.music.util.MusicUtils;
+
+/**
+ * Represents a piece that keeps every version of itself immutable, so that it can be read while
+ * it is being edited.
+ *
+ * The notes of each version are kept in a {@link PersistentIntervalTree}, so an edit makes a new
+ * version by copying only a few nodes, and shares the rest of its notes with the version before
+ * it. Edits are made one at a time and each one publishes its new version with a single write,
+ * so a reader always sees either all of an edit or none of it.
+ *
+ * Readers that look at the piece for longer than a single call, such as playback, rendering or
+ * exporting, should take a {@link #snapshot()}, which costs nothing and never changes. Readers
+ * never wait for an edit to finish.
+ *
+ * Every note is given an id when it is added. Since a version cannot hold a hash table that
+ * later versions share, the ids are kept in the interval tree next to their notes and in a
+ * {@link PersistentIdMap}, so looking up a note by its id, or an id by its note, takes
+ * logarithmic rather than constant time.
+ *
+ * A piece made by {@link #streamingBuilder()} can be read while it is still being loaded. Its
+ * notes are published in batches as they arrive, and {@link #getLoadedThrough()} tells readers
+ * how far into the piece they can safely read.
+ */
+public final class VersionedPiece implements Piece {
+
+    /**
+     * The version of the piece that readers currently see.
+     *
+     * This is replaced, never changed, by an edit.
+     */
+    private volatile Version current;
+
+    /**
+     * The beat before which every note of the piece has been loaded, or
+     * {@link Integer#MAX_VALUE} once all of them have.
+     *
+     * Only changed while holding this piece's lock, which waiting readers are woken through.
+     */
+    private volatile int loadedThrough;
+
+    /**
+     * Constructs an instance of the VersionedPiece class.
+     *
+     * Throws an IllegalArgumentException if there are two or more notes of the same pitch
+     * sounding at the same time on the same instrument.
+     *
+     * @param bpm the beats per measure of the piece
+     * @param tempo the number of microseconds per beat
+     * @param notes the notes to be added initially.
+     */
+    public VersionedPiece(int bpm, int tempo, Note... notes) {
+        this(bpm, TempoMap.constant(tempo), notes);
+    }
+
+    /**
+     * Constructs an instance of the VersionedPiece class whose tempo changes during the piece.
+     *
+     * Throws an IllegalArgumentException if there are two or more notes of the same pitch
+     * sounding at the same time on the same instrument.
+     *
+     * @param bpm the beats per measure of the piece
+     * @param tempos the tempo of the piece at every beat
+     * @param notes the notes to be added initially.
+     */
+    public VersionedPiece(int bpm, TempoMap tempos, Note... notes) {
+        this(new Version(PersistentIntervalTree.EMPTY, PersistentIdMap.EMPTY, 0, bpm, tempos));
+        this.addAll(Arrays.asList(notes));
+    }
+
+    /**
+     * Constructs a piece that starts out at the given version.
+     */
+    private VersionedPiece(Version start) {
+        this.current = start;
+        this.loadedThrough = Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int beatsPerMeasure() {
+        return this.current.beatsPerMeasure();
+    }
+
+    @Override
+    public int getTempo() {
+        return this.current.getTempo();
+    }
+
+    @Override
+    public TempoMap getTempoMap() {
+        return this.current.getTempoMap();
+    }
+
+    /**
+     * Adds the given note to the piece.
+     * <p>
+     * Throws an IllegalArgumentException if there is already a note at that pitch being played
+     * by that instrument playing at any time during the given note's duration.
+     *
+     * @param note the note to be added
+     * @throws IllegalArgumentException if a note already exists at that pitch with that instrument
+     *                                  at any time the given note is meant to sound
+     */
+    @Override
+    public synchronized void addNote(Note note) {
+        this.current = this.current.adding(note);
+        return;
+    }
+
+    /**
+     * Adds all of the given notes to the piece as a single new version.
+     * <p>
+     * Throws an IllegalArgumentException if any of the notes would overlap another note of the
+     * same pitch and instrument. If an exception is thrown, none of the notes are added.
+     *
+     * @param notes the notes to be added
+     * @throws IllegalArgumentException if any of the notes overlap
+     */
+    @Override
+    public synchronized void addAll(Collection<? extends Note> notes) {
+        Version next = this.current;
+        for (Note n : notes) {
+            next = next.adding(n);
+        }
+        this.current = next;
+        return;
+    }
+
+    /**
+     * Removes the given note from the piece.
+     * <p>
+     * Throws an IllegalArgumentException if the given note does not exist.
+     *
+     * @param note the note to be removed
+     */
+    @Override
+    public synchronized void removeNote(Note note) {
+        Version v = this.current;
+        int id = v.getId(note);
+        this.current = v.with(v.notes.without(note), v.ids.remove(id), v.nextId);
+        return;
+    }
+
+    @Override
+    public boolean hasIds() {
+        return true;
+    }
+
+    @Override
+    public int getId(Note note) {
+        return this.current.getId(note);
+    }
+
+    @Override
+    public Note getNote(int id) {
+        return this.current.getNote(id);
+    }
+
+    /**
+     * Replaces the note with the given id by the given note, which keeps the id, as a single
+     * new version.
+     *
+     * @param id the id of the note to be replaced
+     * @param note the note to replace it with
+     * @throws IllegalArgumentException if no note in this piece has that id, or if the new
+     *                                  note would overlap a different note
+     */
+    @Override
+    public synchronized void replaceNote(int id, Note note) {
+        Version v = this.current;
+        PersistentIntervalTree tree = v.notes.without(v.getNote(id));
+        this.current = v.with(checked(tree, note).with(note, id), v.ids.put(id, note), v.nextId);
+        return;
+    }
+
+    /**
+     * Replaces each of the given notes with the note the given change makes from it, as a single
+     * new version in which every note keeps its id.
+     *
+     * @param notes the notes to change
+     * @param change makes the new note from each old one
+     * @throws IllegalArgumentException if a note is not in the piece, or if the changed notes
+     *                                  would overlap
+     */
+    @Override
+    public synchronized void transform(Collection<? extends Note> notes,
+                                       UnaryOperator<Note> change) {
+        Version v = this.current;
+        Note[] before = new LinkedHashSet<Note>(notes).toArray(new Note[0]);
+        int[] moved = new int[before.length];
+        PersistentIntervalTree tree = v.notes;
+        for (int i = 0; i < before.length; i += 1) {
+            moved[i] = v.getId(before[i]);
+            tree = tree.without(before[i]);
+        }
+        PersistentIdMap ids = v.ids;
+        for (int i = 0; i < before.length; i += 1) {
+            Note after = change.apply(before[i]);
+            tree = checked(tree, after).with(after, moved[i]);
+            ids = ids.put(moved[i], after);
+        }
+        this.current = v.with(tree, ids, v.nextId);
+        return;
+    }
+
+    /**
+     * Resets the piece so that no notes are inside.
+     */
+    @Override
+    public synchronized void resetPiece() {
+        this.current = this.current.with(PersistentIntervalTree.EMPTY, PersistentIdMap.EMPTY,
+                this.current.nextId);
+        return;
+    }
+
+    /**
+     * Makes the given edits to a private draft of this piece, then publishes the draft as a
+     * single new version.
+     * <p>
+     * Readers see either none of the edits or all of them. If the edits throw an exception,
+     * nothing is published and the exception is passed on.
+     *
+     * @param edits the edits to make
+     */
+    @Override
+    public synchronized void edit(Consumer<? super Piece> edits) {
+        VersionedPiece draft = new VersionedPiece(this.current);
+        edits.accept(draft);
+        this.current = draft.current;
+        return;
+    }
+
+    @Override
+    public List<Note> getNotesStartingAt(int beat) {
+        return this.current.getNotesStartingAt(beat);
+    }
+
+    @Override
+    public List<Note> getAllNotesAt(int beat) {
+        return this.current.getAllNotesAt(beat);
+    }
+
+    @Override
+    public List<Note> getNotesSustainedAt(int beat) {
+        return this.current.getNotesSustainedAt(beat);
+    }
+
+    @Override
+    public void forEachNoteAt(int beat, Consumer<? super Note> action) {
+        this.current.forEachNoteAt(beat, action);
+    }
+
+    @Override
+    public void forEachNoteStartingAt(int beat, Consumer<? super Note> action) {
+        this.current.forEachNoteStartingAt(beat, action);
+    }
+
+    @Override
+    public void notesIn(int startBeat, int endBeat, int lowPitch, int highPitch,
+                        WindowVisitor visitor) {
+        this.current.notesIn(startBeat, endBeat, lowPitch, highPitch, visitor);
+    }
+
+    @Override
+    public Note getHighest() {
+        return this.current.getHighest();
+    }
+
+    @Override
+    public Note getLowest() {
+        return this.current.getLowest();
+    }
+
+    @Override
+    public int getHighestPitch() {
+        return this.current.getHighestPitch();
+    }
+
+    @Override
+    public int getLowestPitch() {
+        return this.current.getLowestPitch();
+    }
+
+    @Override
+    public List<Note> getNotes() {
+        return this.current.getNotes();
+    }
+
+    @Override
+    public int getStart() {
+        return this.current.getStart();
+    }
+
+    @Override
+    public int getEnd() {
+        return this.current.getEnd();
+    }
+
+    /**
+     * Returns the version of the piece as it is right now.
+     * <p>
+     * This takes constant time. The snapshot never changes, and cannot be changed; its methods
+     * that would change it throw an UnsupportedOperationException.
+     *
+     * @return the current version of the piece
+     */
+    @Override
+    public Piece snapshot() {
+        return this.current;
+    }
+
+    @Override
+    public boolean hasCheapSnapshot() {
+        return true;
+    }
+
+    @Override
+    public int getLoadedThrough() {
+        return this.loadedThrough;
+    }
+
+    @Override
+    public synchronized void awaitLoaded(int beat) throws InterruptedException {
+        while (this.loadedThrough <= beat) {
+            this.wait();
+        }
+        return;
+    }
+
+    /**
+     * Adds the given notes, then marks every beat before the given one as loaded and wakes any
+     * reader waiting for it.
+     *
+     * @throws IllegalArgumentException if any of the notes overlap, in which case none of them
+     *                                  are added
+     */
+    private synchronized void load(Collection<? extends Note> notes, int through) {
+        this.addAll(notes);
+        this.loadedThrough = Math.max(this.loadedThrough, through);
+        this.notifyAll();
+        return;
+    }
+
+    /**
+     * Marks the whole piece as loaded and wakes every waiting reader.
+     */
+    private synchronized void finishLoading() {
+        this.loadedThrough = Integer.MAX_VALUE;
+        this.notifyAll();
+        return;
+    }
+
+    /**
+     * Replaces the tempo map of the piece.
+     */
+    private synchronized void setTempoMap(TempoMap tempos) {
+        Version v = this.current;
+        this.current = new Version(v.notes, v.ids, v.nextId, v.beatsPerMeasure, tempos);
+        return;
+    }
+
+    /**
+     * Returns the given tree if the given note does not overlap any note in it.
+     *
+     * @throws IllegalArgumentException if it does
+     */
+    private static PersistentIntervalTree checked(PersistentIntervalTree tree, Note note) {
+        if (tree.overlaps(note)) {
+            throw new IllegalArgumentException("cs3500.music.model.Note overlap: notes already exist");
+        }
+        return tree;
+    }
+
+
+    /**
+     * One immutable version of a versioned piece.
+     */
+    private static final class Version implements Piece {
+        /** The notes in this version, each stored with its id. */
+        private final PersistentIntervalTree notes;
+
+        /** The notes in this version, keyed by their ids. */
+        private final PersistentIdMap ids;
+
+        /** The id to give the next note added after this version. */
+        private final int nextId;
+
+        /** Number of beats per measure. */
+        private final int beatsPerMeasure;
+
+        /** The tempo of the piece at every beat. */
+        private final TempoMap tempos;
+
+        Version(PersistentIntervalTree notes, PersistentIdMap ids, int nextId, int bpm,
+                TempoMap tempos) {
+            this.notes = notes;
+            this.ids = ids;
+            this.nextId = nextId;
+            this.beatsPerMeasure = bpm;
+            this.tempos = tempos;
+        }
+
+        /** Returns a version with the same meter and tempo as this one and the given notes. */
+        Version with(PersistentIntervalTree notes, PersistentIdMap ids, int nextId) {
+            return new Version(notes, ids, nextId, this.beatsPerMeasure, this.tempos);
+        }
+
+        /**
+         * Returns this version with the given note added and given the next id.
+         *
+         * @throws IllegalArgumentException if the note overlaps a note in this version
+         */
+        Version adding(Note note) {
+            return this.with(checked(this.notes, note).with(note, this.nextId),
+                    this.ids.put(this.nextId, note), this.nextId + 1);
+        }
+
+        @Override
+        public boolean hasIds() {
+            return true;
+        }
+
+        @Override
+        public int getId(Note note) {
+            int id = this.notes.idOf(note);
+            if (id < 0) {
+                throw new IllegalArgumentException("cs3500.music.model.Note was not found");
+            }
+            return id;
+        }
+
+        @Override
+        public Note getNote(int id) {
+            Note note = this.ids.get(id);
+            if (note == null) {
+                throw new IllegalArgumentException("No note has that id");
+            }
+            return note;
+        }
+
+        @Override
+        public int beatsPerMeasure() {
+            return this.beatsPerMeasure;
+        }
+
+        @Override
+        public int getTempo() {
+            return this.tempos.getTempoAt(0);
+        }
+
+        @Override
+        public TempoMap getTempoMap() {
+            return this.tempos;
+        }
+
+        @Override
+        public void addNote(Note note) {
+            throw new UnsupportedOperationException("A snapshot of a piece cannot be changed");
+        }
+
+        @Override
+        public void addAll(Collection<? extends Note> notes) {
+            throw new UnsupportedOperationException("A snapshot of a piece cannot be changed");
+        }
+
+        @Override
+        public void removeNote(Note note) {
+            throw new UnsupportedOperationException("A snapshot of a piece cannot be changed");
+        }
+
+        @Override
+        public void replaceNote(int id, Note note) {
+            throw new UnsupportedOperationException("A snapshot of a piece cannot be changed");
+        }
+
+        @Override
+        public void transform(Collection<? extends Note> notes, UnaryOperator<Note> change) {
+            throw new UnsupportedOperationException("A snapshot of a piece cannot be changed");
+        }
+
+        @Override
+        public void resetPiece() {
+            throw new UnsupportedOperationException("A snapshot of a piece cannot be changed");
+        }
+
+        @Override
+        public void edit(Consumer<? super Piece> edits) {
+            throw new UnsupportedOperationException("A snapshot of a piece cannot be changed");
+        }
+
+        @Override
+        public List<Note> getNotesStartingAt(int beat) {
+            List<Note> temp = new ArrayList<Note>();
+            this.notes.notesStartingAt(beat, temp::add);
+            return Collections.unmodifiableList(temp);
+        }
+
+        @Override
+        public List<Note> getAllNotesAt(int beat) {
+            List<Note> temp = new ArrayList<Note>();
+            this.notes.notesAt(beat, temp::add);
+            return Collections.unmodifiableList(temp);
+        }
+
+        @Override
+        public List<Note> getNotesSustainedAt(int beat) {
+            List<Note> temp = new ArrayList<Note>();
+            this.notes.notesAt(beat, n -> {
+                if (n.getAttack() != beat) {
+                    temp.add(n);
+                }
+            });
+            return Collections.unmodifiableList(temp);
+        }
+
+        @Override
+        public void forEachNoteAt(int beat, Consumer<? super Note> action) {
+            this.notes.notesAt(beat, action);
+        }
+
+        @Override
+        public void forEachNoteStartingAt(int beat, Consumer<? super Note> action) {
+            this.notes.notesStartingAt(beat, action);
+        }
+
+        @Override
+        public void notesIn(int startBeat, int endBeat, int lowPitch, int highPitch,
+                            WindowVisitor visitor) {
+            this.notes.notesIn(startBeat, endBeat, lowPitch - 12, highPitch - 12, visitor);
+        }
+
+        @Override
+        public Note getHighest() {
+            return this.notes.firstWithPitch(this.notes.maxPitch());
+        }
+
+        @Override
+        public Note getLowest() {
+            return this.notes.firstWithPitch(this.notes.minPitch());
+        }
+
+        @Override
+        public int getHighestPitch() {
+            return this.notes.size() == 0 ? -1 : this.notes.maxPitch() + 12;
+        }
+
+        @Override
+        public int getLowestPitch() {
+            return this.notes.size() == 0 ? -1 : this.notes.minPitch() + 12;
+        }
+
+        @Override
+        public List<Note> getNotes() {
+            List<Note> temp = new ArrayList<Note>(this.notes.size());
+            this.notes.allNotes(temp::add);
+            return Collections.unmodifiableList(temp);
+        }
+
+        @Override
+        public int getStart() {
+            return this.notes.minAttack();
+        }
+
+        @Override
+        public int getEnd() {
+            return this.notes.maxEnd();
+        }
+
+        @Override
+        public Piece snapshot() {
+            return this;
+        }
+
+        @Override
+        public boolean hasCheapSnapshot() {
+            return true;
+        }
+    }
+
+
+    /**
+     * Returns a builder object for versioned pieces.
+     */
+    public static CompositionBuilder<Piece> builder() {
+        return new Builder();
+    }
+
+
+    /**
+     * A builder for versioned pieces.
+     *
+     * Defaults to a meter of 4/4, a tempo of 100 microseconds per beat, and no notes.
+     */
+    public static final class Builder implements CompositionBuilder<Piece> {
+        /** The list of notes to be added. */
+        private final List<Note> notes = new ArrayList<Note>();
+
+        /** The tempo of the piece from each beat where it changes, in microseconds per beat. */
+        private final Map<Integer, Integer> tempos =
+                new TreeMap<Integer, Integer>(Collections.singletonMap(0, 100));
+
+        /**
+         * Constructs an actual composition, given the notes that have been added.
+         * @return The new composition
+         */
+        public Piece build() {
+            Piece p = new VersionedPiece(4, new TempoMap(this.tempos));
+            p.addAll(this.notes);
+            return p;
+        }
+
+        /**
+         * Sets the tempo of the piece from its first beat
+         * @param tempo The speed, in microseconds per beat
+         * @return This builder
+         */
+        public CompositionBuilder<Piece> setTempo(int tempo) {
+            return this.setTempo(0, tempo);
+        }
+
+        /**
+         * Changes the tempo of the piece from the given beat on
+         * @param beat The beat at which the tempo changes
+         * @param tempo The speed, in microseconds per beat
+         * @return This builder
+         */
+        public CompositionBuilder<Piece> setTempo(int beat, int tempo) {
+            this.tempos.put(beat, tempo);
+            return this;
+        }
+
+        /**
+         * Adds a new note to the piece
+         * @param start The start time of the note, in beats
+         * @param end The end time of the note, in beats
+         * @param instrument The instrument number (to be interpreted by MIDI)
+         * @param pitch The pitch (in the range [0, 127], where 60 represents C4)
+         * @param volume The volume (in the range [0, 127])
+         * @return This builder
+         */
+        public CompositionBuilder<Piece> addNote(int start, int end, int instrument, int pitch,
+                                                 int volume) {
+            this.notes.add(new CoolNote(MusicUtils.midiNumberToPitchClass(pitch),
+                    MusicUtils.midiNumberToOctave(pitch), end - start, start, volume,
+                    instrument - 1));
+            return this;
+        }
+
+        /**
+         * Adds a new note to the piece, timed in ticks
+         * @param start The start time of the note, in ticks
+         * @param end The end time of the note, in ticks
+         * @param instrument The instrument number (to be interpreted by MIDI)
+         * @param pitch The pitch (in the range [0, 127], where 60 represents C4)
+         * @param volume The volume (in the range [0, 127])
+         * @return This builder
+         */
+        public CompositionBuilder<Piece> addNoteInTicks(long start, long end, int instrument,
+                                                        int pitch, int volume) {
+            this.notes.add(CoolNote.inTicks(MusicUtils.midiNumberToPitchClass(pitch),
+                    MusicUtils.midiNumberToOctave(pitch), end - start, start, volume,
+                    instrument - 1));
+            return this;
+        }
+    }
+
+
+    /**
+     * Returns a builder that loads a versioned piece in the background, from notes given in
+     * order of attack. The piece can be read from {@link StreamingBuilder#getPiece()} as soon as
+     * the builder is made.
+     */
+    public static StreamingBuilder streamingBuilder() {
+        return new StreamingBuilder(true);
+    }
+
+    /**
+     * Returns a builder that loads a versioned piece in the background. The piece can be read
+     * from {@link StreamingBuilder#getPiece()} as soon as the builder is made, but if its notes
+     * are not given in order of attack, none of them is published until it is built.
+     *
+     * @param inAttackOrder whether the notes will be given in order of attack
+     */
+    public static StreamingBuilder streamingBuilder(boolean inAttackOrder) {
+        return new StreamingBuilder(inAttackOrder);
+    }
+
+
+    /**
+     * A builder that publishes its notes to the piece as they arrive, rather than all at once
+     * when it is built.
+     * <p>
+     * Notes are expected in order of attack, as a score is written. They are kept until a note
+     * arrives that starts later than every note so far, and then all of them are added to the
+     * piece at once, and every beat before the new note is marked as loaded. Batches start small,
+     * so the first measures can be played almost at once, and grow as loading goes on, so a long
+     * piece is not published one note at a time.
+     * <p>
+     * A beat is only marked as loaded on the promise that no note still to come starts before
+     * it. Notes whose order is not known, such as a score written one instrument at a time, are
+     * given to a builder made with {@link #streamingBuilder(boolean)}, which publishes nothing
+     * until it is built. If a note starts earlier than one before it, the builder stops
+     * publishing as well, but a reader may already have passed the beats before the note.
+     * <p>
+     * Building the piece publishes the last batch and marks the whole piece as loaded. It must be
+     * called even if reading the score fails, so that readers waiting for more notes are woken.
+     * <p>
+     * Defaults to a meter of 4/4, a tempo of 100 microseconds per beat, and no notes.
+     */
+    public static final class StreamingBuilder implements CompositionBuilder<Piece> {
+        /** The fewest notes published in the first batch. */
+        private static final int FIRST_BATCH = 256;
+
+        /** The most notes waited for before a batch is published. */
+        private static final int LAST_BATCH = 1 << 16;
+
+        /** The piece being loaded. */
+        private final VersionedPiece piece;
+
+        /** The tempo of the piece from each beat where it changes, in microseconds per beat. */
+        private final Map<Integer, Integer> tempos =
+                new TreeMap<Integer, Integer>(Collections.singletonMap(0, 100));
+
+        /** The notes that have arrived but have not been published. */
+        private List<Note> batch = new ArrayList<Note>();
+
+        /** The number of notes to wait for before publishing the next batch. */
+        private int batchSize = FIRST_BATCH;
+
+        /** The latest attack of any note that has arrived, or -1 if none has. */
+        private int latest = -1;
+
+        /** Whether every note so far has started no earlier than the one before it. */
+        private boolean inOrder;
+
+        private StreamingBuilder(boolean inAttackOrder) {
+            this.inOrder = inAttackOrder;
+            this.piece = new VersionedPiece(4, new TempoMap(this.tempos));
+            this.piece.loadedThrough = 0;
+        }
+
+        /**
+         * Returns the piece being loaded, which may be read while it loads.
+         *
+         * @return the piece
+         */
+        public Piece getPiece() {
+            return this.piece;
+        }
+
+        /**
+         * Publishes every note that has arrived, and marks the whole piece as loaded.
+         *
+         * @return The loaded piece
+         * @throws IllegalArgumentException if the last notes overlap notes in the piece, in which
+         *                                  case the piece is still marked as loaded
+         */
+        public Piece build() {
+            try {
+                this.publish(Integer.MAX_VALUE);
+            } finally {
+                this.piece.finishLoading();
+            }
+            return this.piece;
+        }
+
+        /**
+         * Sets the tempo of the piece from its first beat
+         * @param tempo The speed, in microseconds per beat
+         * @return This builder
+         */
+        public CompositionBuilder<Piece> setTempo(int tempo) {
+            return this.setTempo(0, tempo);
+        }
+
+        /**
+         * Changes the tempo of the piece from the given beat on
+         * @param beat The beat at which the tempo changes
+         * @param tempo The speed, in microseconds per beat
+         * @return This builder
+         */
+        public CompositionBuilder<Piece> setTempo(int beat, int tempo) {
+            this.tempos.put(beat, tempo);
+            this.piece.setTempoMap(new TempoMap(this.tempos));
+            return this;
+        }
+
+        /**
+         * Adds a new note to the piece
+         * @param start The start time of the note, in beats
+         * @param end The end time of the note, in beats
+         * @param instrument The instrument number (to be interpreted by MIDI)
+         * @param pitch The pitch (in the range [0, 127], where 60 represents C4)
+         * @param volume The volume (in the range [0, 127])
+         * @return This builder
+         * @throws IllegalArgumentException if the batch this note ends overlaps the piece
+         */
+        public CompositionBuilder<Piece> addNote(int start, int end, int instrument, int pitch,
+                                                 int volume) {
+            return this.arrive(new CoolNote(MusicUtils.midiNumberToPitchClass(pitch),
+                    MusicUtils.midiNumberToOctave(pitch), end - start, start, volume,
+                    instrument - 1));
+        }
+
+        /**
+         * Adds a new note to the piece, timed in ticks
+         * @param start The start time of the note, in ticks
+         * @param end The end time of the note, in ticks
+         * @param instrument The instrument number (to be interpreted by MIDI)
+         * @param pitch The pitch (in the range [0, 127], where 60 represents C4)
+         * @param volume The volume (in the range [0, 127])
+         * @return This builder
+         * @throws IllegalArgumentException if the batch this note ends overlaps the piece
+         */
+        public CompositionBuilder<Piece> addNoteInTicks(long start, long end, int instrument,
+                                                        int pitch, int volume) {
+            return this.arrive(CoolNote.inTicks(MusicUtils.midiNumberToPitchClass(pitch),
+                    MusicUtils.midiNumberToOctave(pitch), end - start, start, volume,
+                    instrument - 1));
+        }
+
+        /**
+         * Publishes the waiting notes if the given note starts a new beat and enough of them have
+         * arrived, then keeps the given note for the next batch. Once a note arrives out of
+         * order, nothing more is published until the piece is built.
+         */
+        private CompositionBuilder<Piece> arrive(Note note) {
+            if (note.getAttack() < this.latest) {
+                this.inOrder = false;
+            }
+            if (note.getAttack() > this.latest) {
+                if (this.inOrder && this.batch.size() >= this.batchSize) {
+                    this.publish(note.getAttack());
+                    this.batchSize = Math.min(LAST_BATCH, 2 * this.batchSize);
+                }
+                this.latest = note.getAttack();
+            }
+            this.batch.add(note);
+            return this;
+        }
+
+        /**
+         * Adds the waiting notes to the piece, and marks every beat before the given one as
+         * loaded.
+         */
+        private void publish(int through) {
+            List<Note> notes = this.batch;
+            this.batch = new ArrayList<Note>();
+            this.piece.load(notes, through);
+        }
+    }
+}
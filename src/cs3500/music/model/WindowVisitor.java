@@ -0,0 +1,17 @@
+package cs3500.music.model;
+
+/**
+ * An action performed on each note found by {@link Piece#notesIn}.
+ */
+@FunctionalInterface
+public interface WindowVisitor {
+
+    /**
+     * Visits a note that sounds somewhere inside the window.
+     *
+     * @param note the note
+     * @param startsInWindow whether the note starts inside the window, rather than being held
+     *                       over from before it
+     */
+    void visit(Note note, boolean startsInWindow);
+}
@@ -0,0 +1,143 @@
+package cs3500.music.tests;
+
+import cs3500.music.controller.Autosave;
+import cs3500.music.controller.EditJournal;
+import cs3500.music.model.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for saving edits to a journal and recovering them.
+ */
+public final class AutosaveTests {
+
+    private final Note c4 = new CoolNote(PitchClass.C, 4, 4, 0, 100, 0);
+    private final Note e4 = new CoolNote(PitchClass.E, 4, 2, 2, 100, 0);
+    private final Note g4 = CoolNote.inTicks(PitchClass.G, 4, Note.TICKS_PER_BEAT / 2, 100, 90,
+            3);
+
+    private Path dir;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        this.dir = Files.createTempDirectory("autosave");
+        this.file = this.dir.resolve("piece.txt");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(this.dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    /**
+     * Returns the piece recovered from the autosave of the test file.
+     */
+    private Piece recover() throws IOException {
+        assertTrue(Autosave.hasRecovery(this.file));
+        Piece p = Autosave.loadSnapshot(this.file, VersionedPiece.builder());
+        Autosave.replayJournal(this.file, p);
+        return p;
+    }
+
+    @Test
+    public void testRecover() throws IOException {
+        Piece p = new ObservablePiece(new VersionedPiece(4, 200000, this.c4));
+        Autosave autosave = new Autosave(p, this.file);
+        p.addNote(this.e4);
+        p.addNote(this.g4);
+        p.removeNote(this.c4);
+        p.transform(Arrays.asList(this.e4), NoteTransforms.shift(10));
+        autosave.close();
+
+        Piece recovered = this.recover();
+        assertEquals(p.getNotes(), recovered.getNotes());
+        assertEquals(200000, recovered.getTempo());
+        assertEquals(4, Autosave.replayJournal(this.file,
+                Autosave.loadSnapshot(this.file, VersionedPiece.builder())));
+    }
+
+    @Test
+    public void testCompacts() throws IOException {
+        Piece p = new ObservablePiece(new VersionedPiece(4, 100));
+        Autosave autosave = new Autosave(p, this.file, 500);
+        for (int i = 0; i < 100; i += 1) {
+            p.addNote(new CoolNote(PitchClass.C, 4, 1, i, 100, 0));
+        }
+        autosave.close();
+        // each add is a 28 byte batch, so a snapshot was taken every 18 of them
+        assertTrue(Files.size(this.file.resolveSibling("piece.txt" + Autosave.JOURNAL)) < 600);
+        assertEquals(p.getNotes(), this.recover().getNotes());
+    }
+
+    @Test
+    public void testTornBatchIgnored() throws IOException {
+        Piece p = new ObservablePiece(new VersionedPiece(4, 100));
+        Autosave autosave = new Autosave(p, this.file);
+        p.addNote(this.c4);
+        p.addNote(this.e4);
+        autosave.close();
+        Path journal = this.file.resolveSibling("piece.txt" + Autosave.JOURNAL);
+        Files.write(journal, new byte[] {0, 0, 0, 20, 1, 2, 3}, StandardOpenOption.APPEND);
+        assertEquals(p.getNotes(), this.recover().getNotes());
+    }
+
+    @Test
+    public void testReplayTwice() throws IOException {
+        Piece p = new ObservablePiece(new VersionedPiece(4, 100));
+        Autosave autosave = new Autosave(p, this.file);
+        p.addNote(this.c4);
+        p.addNote(this.e4);
+        autosave.close();
+        Piece recovered = this.recover();
+        Autosave.replayJournal(this.file, recovered);
+        assertEquals(p.getNotes(), recovered.getNotes());
+    }
+
+    @Test
+    public void testRecoveryNotUndoable() throws IOException {
+        Piece p = new ObservablePiece(new VersionedPiece(4, 100));
+        Autosave autosave = new Autosave(p, this.file);
+        p.addNote(this.c4);
+        p.addNote(this.e4);
+        autosave.close();
+
+        // as the editor recovers: into the streamed piece, before anything listens to it
+        VersionedPiece.StreamingBuilder builder = VersionedPiece.streamingBuilder();
+        Autosave.loadSnapshot(this.file, builder);
+        Autosave.replayJournal(this.file, builder.getPiece());
+        Piece recovered = new ObservablePiece(builder.getPiece());
+        EditJournal journal = new EditJournal(recovered);
+        assertEquals(p.getNotes(), recovered.getNotes());
+        assertFalse(journal.canUndo());
+        recovered.removeNote(this.e4);
+        assertTrue(journal.undo());
+        assertFalse(journal.canUndo());
+        assertEquals(p.getNotes(), recovered.getNotes());
+    }
+
+    @Test
+    public void testOlderThanFile() throws IOException {
+        Piece p = new ObservablePiece(new VersionedPiece(4, 100));
+        new Autosave(p, this.file).close();
+        assertTrue(Autosave.hasRecovery(this.file));
+        Files.write(this.file, "tempo 100\n".getBytes());
+        Files.setLastModifiedTime(this.file,
+                FileTime.fromMillis(System.currentTimeMillis() + 60000));
+        assertFalse(Autosave.hasRecovery(this.file));
+    }
+}
@@ -0,0 +1,145 @@
+package cs3500.music.tests;
+
+import cs3500.music.model.*;
+import cs3500.music.util.CompositionBuilder;
+import cs3500.music.util.MusicUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the columnar piece, checked against the plain piece.
+ */
+public final class ColumnarPieceTests {
+
+    /**
+     * Feeds the same random notes to both builders, skipping notes the plain piece rejects.
+     */
+    private Piece[] randomPieces(long seed, int count) {
+        Random r = new Random(seed);
+        Piece reference = new PieceImpl(4, 100);
+        CompositionBuilder<Piece> columnar = ColumnarPiece.builder();
+        for (int i = 0; i < count; i += 1) {
+            int start = r.nextInt(200);
+            int end = start + 1 + r.nextInt(r.nextInt(10) == 0 ? 60 : 4);
+            int instrument = 1 + r.nextInt(3);
+            int pitch = 50 + r.nextInt(20);
+            int volume = r.nextInt(128);
+            Note n = new CoolNote(MusicUtils.midiNumberToPitchClass(pitch),
+                    MusicUtils.midiNumberToOctave(pitch), end - start, start, volume,
+                    instrument - 1);
+            try {
+                reference.addNote(n);
+                columnar.addNote(start, end, instrument, pitch, volume);
+            } catch (IllegalArgumentException e) {
+                // overlapping note, leave it out of both
+            }
+        }
+        return new Piece[] {reference, columnar.build()};
+    }
+
+    /**
+     * Returns the notes the given piece finds in the given window, with whether each one starts
+     * in it, checking that no note is found twice.
+     */
+    private Map<Note, Boolean> window(Piece p, int start, int end, int low, int high) {
+        Map<Note, Boolean> found = new HashMap<Note, Boolean>();
+        p.notesIn(start, end, low, high, (n, starts) -> assertNull(found.put(n, starts)));
+        return found;
+    }
+
+    private void assertSame(Piece expected, Piece actual) {
+        assertEquals(expected.getStart(), actual.getStart());
+        assertEquals(expected.getEnd(), actual.getEnd());
+        assertEquals(expected.getHighestPitch(), actual.getHighestPitch());
+        assertEquals(expected.getLowestPitch(), actual.getLowestPitch());
+        assertEquals(new HashSet<Note>(expected.getNotes()),
+                new HashSet<Note>(actual.getNotes()));
+        for (int beat = -1; beat <= expected.getEnd() + 1; beat += 1) {
+            assertEquals(new HashSet<Note>(expected.getAllNotesAt(beat)),
+                    new HashSet<Note>(actual.getAllNotesAt(beat)));
+            assertEquals(new HashSet<Note>(expected.getNotesStartingAt(beat)),
+                    new HashSet<Note>(actual.getNotesStartingAt(beat)));
+            assertEquals(new HashSet<Note>(expected.getNotesSustainedAt(beat)),
+                    new HashSet<Note>(actual.getNotesSustainedAt(beat)));
+        }
+        for (int start = -3; start <= expected.getEnd(); start += 7) {
+            assertEquals(this.window(expected, start, start + 10, 55, 62),
+                    this.window(actual, start, start + 10, 55, 62));
+        }
+    }
+
+    @Test
+    public void testMatchesPieceImpl() {
+        Piece[] pieces = this.randomPieces(3500, 2000);
+        this.assertSame(pieces[0], pieces[1]);
+
+        for (Note n : pieces[0].getNotes()) {
+            if (n.getAttack() % 3 == 0) {
+                pieces[0].removeNote(n);
+                pieces[1].removeNote(n);
+            }
+        }
+        this.assertSame(pieces[0], pieces[1]);
+    }
+
+    @Test
+    public void testAddNote() {
+        Piece p = new ColumnarPiece(4, 100, new CoolNote(PitchClass.C, 4, 4, 0, 100, 0));
+        p.addNote(new CoolNote(PitchClass.C, 4, 4, 4, 100, 0));
+        p.addNote(new CoolNote(PitchClass.C, 4, 4, 2, 100, 1));
+        assertEquals(3, p.getNotes().size());
+        assertEquals(2, p.getAllNotesAt(3).size());
+        assertEquals(8, p.getEnd());
+        assertEquals(60, p.getHighestPitch());
+        try {
+            p.addNote(new CoolNote(PitchClass.C, 4, 1, 7, 100, 0));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testAddAll() {
+        Piece[] pieces = this.randomPieces(3501, 1000);
+        Piece[] more = this.randomPieces(3502, 1000);
+        List<Note> batch = new ArrayList<Note>();
+        for (Note n : more[0].getNotes()) {
+            if (n.getAttack() > pieces[0].getEnd()) {
+                batch.add(n);
+            }
+        }
+        batch.add(new CoolNote(PitchClass.C, 9, 3, 1000, 10, 5));
+        pieces[0].addAll(batch);
+        pieces[1].addAll(batch);
+        this.assertSame(pieces[0], pieces[1]);
+
+        try {
+            pieces[1].addAll(Arrays.asList(new CoolNote(PitchClass.C, 9, 1, 1001, 10, 5)));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // overlap
+        }
+        this.assertSame(pieces[0], pieces[1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuilderOverlap() {
+        ColumnarPiece.builder().addNote(0, 4, 1, 60, 100).addNote(3, 5, 1, 60, 100).build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRemoveMissing() {
+        Piece p = new ColumnarPiece(4, 100, new CoolNote(PitchClass.C, 4, 4, 0, 100, 0));
+        p.removeNote(new CoolNote(PitchClass.C, 4, 3, 0, 100, 0));
+    }
+}
@@ -0,0 +1,97 @@
+package cs3500.music.tests;
+
+import cs3500.music.model.ConcurrentPiece;
+import cs3500.music.model.CoolNote;
+import cs3500.music.model.Note;
+import cs3500.music.model.Piece;
+import cs3500.music.util.MusicUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures how edits to a {@link ConcurrentPiece} scale with the number of threads making them.
+ *
+ * Every thread edits its own measures, so no two threads ever wait for the same stripe, and
+ * the throughput should grow with the number of cores.
+ */
+public final class ConcurrentPieceBenchmark {
+
+    /** The number of edits each thread makes. */
+    private static final int EDITS = 200000;
+
+    /** The number of times each number of threads is timed, after warming up. */
+    private static final int ROUNDS = 3;
+
+    /**
+     * Adds and removes notes in the given thread's measures of the given piece, leaving three
+     * of every four notes in it.
+     */
+    private static void edit(Piece p, int thread, int threads) {
+        for (int i = 0; i < EDITS; i += 1) {
+            // measures thread, thread + threads, thread + 2 * threads, ...
+            int measure = thread + threads * (i / 24);
+            Note n = new CoolNote(MusicUtils.midiNumberToPitchClass(48 + i % 24),
+                    MusicUtils.midiNumberToOctave(48 + i % 24), 4, measure * 4, 100, 0);
+            p.addNote(n);
+            if (i % 4 == 3) {
+                p.removeNote(n);
+            }
+        }
+        return;
+    }
+
+    /**
+     * Makes the edits on the given number of threads at once, into a new piece, and returns
+     * how long they took in nanoseconds.
+     */
+    private static long time(int threads) throws InterruptedException {
+        Piece p = new ConcurrentPiece(4, 100, 256);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> running = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t += 1) {
+            int id = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                edit(p, id, threads);
+            });
+            thread.start();
+            running.add(thread);
+        }
+        long time = System.nanoTime();
+        start.countDown();
+        for (Thread thread : running) {
+            thread.join();
+        }
+        time = System.nanoTime() - time;
+        assertEquals(threads * EDITS * 3 / 4, p.getNotes().size());
+        return time;
+    }
+
+    @Test
+    public void benchmarkScaling() throws InterruptedException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        long single = 0;
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i <= ROUNDS; i += 1) {
+                long elapsed = time(threads);
+                if (i > 0) {
+                    best = Math.min(best, elapsed);
+                }
+            }
+            long throughput = threads * EDITS * 1000000L / Math.max(best, 1);
+            single = threads == 1 ? throughput : single;
+            System.out.printf("%3d threads: %8d edits/ms (%.1fx)%n", threads, throughput,
+                    (double) throughput / Math.max(single, 1));
+        }
+    }
+}
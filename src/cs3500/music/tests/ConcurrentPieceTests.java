@@ -0,0 +1,214 @@
+package cs3500.music.tests;
+
+import cs3500.music.model.*;
+import cs3500.music.util.MusicUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the concurrent piece.
+ */
+public final class ConcurrentPieceTests {
+
+    /**
+     * Runs the given task on the given number of threads at once, and returns how long it took
+     * in nanoseconds.
+     */
+    private long runThreads(int threads, ThreadTask task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> running = new ArrayList<Thread>();
+        List<Throwable> errors = new ArrayList<Throwable>();
+        for (int t = 0; t < threads; t += 1) {
+            int id = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    task.run(id);
+                } catch (Throwable e) {
+                    synchronized (errors) {
+                        errors.add(e);
+                    }
+                }
+            });
+            thread.start();
+            running.add(thread);
+        }
+        long time = System.nanoTime();
+        start.countDown();
+        for (Thread thread : running) {
+            thread.join();
+        }
+        time = System.nanoTime() - time;
+        if (!errors.isEmpty()) {
+            throw new AssertionError(errors.get(0));
+        }
+        return time;
+    }
+
+    /** A task for one of several threads. */
+    private interface ThreadTask {
+        void run(int thread) throws Exception;
+    }
+
+    /**
+     * Returns the notes the given piece finds in the given window, with whether each one starts
+     * in it, checking that no note is found twice.
+     */
+    private Map<Note, Boolean> window(Piece p, int start, int end, int low, int high) {
+        Map<Note, Boolean> found = new HashMap<Note, Boolean>();
+        p.notesIn(start, end, low, high, (n, starts) -> assertNull(found.put(n, starts)));
+        return found;
+    }
+
+    @Test
+    public void testMatchesPieceImpl() {
+        Random r = new Random(3500);
+        Piece expected = new PieceImpl(4, 100);
+        Piece actual = new ConcurrentPiece(4, 100, 5);
+        for (int i = 0; i < 3000; i += 1) {
+            Note n = new CoolNote(PitchClass.values()[r.nextInt(12)], 3 + r.nextInt(2),
+                    1 + r.nextInt(r.nextInt(10) == 0 ? 40 : 4), r.nextInt(300), 100,
+                    r.nextInt(2));
+            boolean added;
+            try {
+                expected.addNote(n);
+                added = true;
+            } catch (IllegalArgumentException e) {
+                added = false;
+            }
+            try {
+                actual.addNote(n);
+                assertTrue(added);
+            } catch (IllegalArgumentException e) {
+                assertFalse(added);
+            }
+            if (i % 5 == 0 && added) {
+                expected.removeNote(n);
+                actual.removeNote(n);
+            }
+        }
+        assertEquals(expected.getStart(), actual.getStart());
+        assertEquals(expected.getEnd(), actual.getEnd());
+        assertEquals(expected.getHighestPitch(), actual.getHighestPitch());
+        assertEquals(expected.getLowestPitch(), actual.getLowestPitch());
+        assertEquals(expected.getHighest(), actual.getHighest());
+        assertEquals(expected.getLowest(), actual.getLowest());
+        assertEquals(new HashSet<Note>(expected.getNotes()), new HashSet<Note>(actual.getNotes()));
+        assertEquals(expected.getNotes().size(), actual.getNotes().size());
+        for (int beat = 0; beat <= expected.getEnd(); beat += 1) {
+            assertEquals(new HashSet<Note>(expected.getAllNotesAt(beat)),
+                    new HashSet<Note>(actual.getAllNotesAt(beat)));
+            assertEquals(new HashSet<Note>(expected.getNotesStartingAt(beat)),
+                    new HashSet<Note>(actual.getNotesStartingAt(beat)));
+            assertEquals(new HashSet<Note>(expected.getNotesSustainedAt(beat)),
+                    new HashSet<Note>(actual.getNotesSustainedAt(beat)));
+        }
+        for (int start = 0; start <= expected.getEnd(); start += 7) {
+            assertEquals(this.window(expected, start, start + 10, 50, 62),
+                    this.window(actual, start, start + 10, 50, 62));
+        }
+        actual.resetPiece();
+        assertEquals(0, actual.getEnd());
+        assertTrue(actual.getNotes().isEmpty());
+    }
+
+    @Test
+    public void testOnlyOneOverlappingNoteWins() throws InterruptedException {
+        Piece p = new ConcurrentPiece(4, 100);
+        AtomicInteger wins = new AtomicInteger();
+        // every thread tries the same long notes, which cross many measures
+        this.runThreads(8, thread -> {
+            for (int i = 0; i < 200; i += 1) {
+                try {
+                    p.addNote(new CoolNote(PitchClass.C, 4, 9 + thread, i * 20, 100, 0));
+                    wins.incrementAndGet();
+                } catch (IllegalArgumentException e) {
+                    // another thread got there first
+                }
+            }
+        });
+        assertEquals(200, wins.get());
+        assertEquals(200, p.getNotes().size());
+    }
+
+    @Test
+    public void testBatchesAreAtomic() throws InterruptedException {
+        Piece p = new ConcurrentPiece(4, 100, 16);
+        List<Note> notes = new ArrayList<Note>();
+        for (int i = 0; i < 200; i += 1) {
+            notes.add(new CoolNote(MusicUtils.midiNumberToPitchClass(48 + i % 24),
+                    MusicUtils.midiNumberToOctave(48 + i % 24), 3, 5 * (i / 24), 100, 0));
+        }
+        p.addAll(notes);
+        AtomicInteger torn = new AtomicInteger();
+        this.runThreads(2, thread -> {
+            if (thread == 0) {
+                // move every note across measures and back, while the other thread reads
+                List<Note> moving = notes;
+                for (int i = 0; i < 200; i += 1) {
+                    int shift = i % 2 == 0 ? 7 : -7;
+                    List<Note> moved = new ArrayList<Note>();
+                    for (Note n : moving) {
+                        moved.add(NoteTransforms.shift(shift).apply(n));
+                    }
+                    p.transform(moving, NoteTransforms.shift(shift));
+                    moving = moved;
+                }
+            } else {
+                for (int i = 0; i < 2000; i += 1) {
+                    if (p.getNotes().size() != notes.size()) {
+                        torn.incrementAndGet();
+                    }
+                }
+            }
+        });
+        assertEquals(0, torn.get());
+        assertEquals(new HashSet<Note>(notes), new HashSet<Note>(p.getNotes()));
+
+        // a batch that overlaps is not added at all
+        List<Note> clash = new ArrayList<Note>();
+        clash.add(new CoolNote(PitchClass.C, 9, 1, 400, 100, 0));
+        clash.add(notes.get(199));
+        try {
+            p.addAll(clash);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(notes.size(), p.getNotes().size());
+    }
+
+    /**
+     * Every thread edits its own measures at the same time, and none of the edits is lost.
+     * {@link ConcurrentPieceBenchmark} measures how these edits scale with the number of threads.
+     */
+    @Test
+    public void testDisjointEdits() throws InterruptedException {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        int perThread = 5000;
+        Piece p = new ConcurrentPiece(4, 100, 256);
+        this.runThreads(threads, thread -> {
+            for (int i = 0; i < perThread; i += 1) {
+                // measures thread, thread + threads, thread + 2 * threads, ...
+                int measure = thread + threads * (i / 24);
+                Note n = new CoolNote(MusicUtils.midiNumberToPitchClass(48 + i % 24),
+                        MusicUtils.midiNumberToOctave(48 + i % 24), 4, measure * 4, 100, 0);
+                p.addNote(n);
+                if (i % 4 == 3) {
+                    p.removeNote(n);
+                }
+            }
+        });
+        assertEquals(threads * perThread * 3 / 4, p.getNotes().size());
+    }
+}
@@ -0,0 +1,120 @@
+package cs3500.music.tests;
+
+import cs3500.music.controller.EditJournal;
+import cs3500.music.model.*;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the undo and redo journal.
+ */
+public final class EditJournalTests {
+
+    private final Note c4 = new CoolNote(PitchClass.C, 4, 4, 0, 100, 0);
+    private final Note e4 = new CoolNote(PitchClass.E, 4, 2, 2, 100, 0);
+    private final Note loudC4 = new CoolNote(PitchClass.C, 4, 4, 0, 127, 0);
+
+    @Test
+    public void testUndoRedo() {
+        Piece p = new ObservablePiece(new PieceImpl(4, 100));
+        EditJournal journal = new EditJournal(p);
+        assertFalse(journal.undo());
+        p.addNote(this.c4);
+        p.addNote(this.e4);
+        p.edit(draft -> {
+            draft.removeNote(this.c4);
+            draft.addNote(this.loudC4);
+        });
+
+        assertTrue(journal.undo());
+        assertEquals(new HashSet<Note>(Arrays.asList(this.c4, this.e4)),
+                new HashSet<Note>(p.getNotes()));
+        assertTrue(journal.undo());
+        assertEquals(Arrays.asList(this.c4), p.getNotes());
+        assertTrue(journal.redo());
+        assertTrue(journal.redo());
+        assertEquals(new HashSet<Note>(Arrays.asList(this.loudC4, this.e4)),
+                new HashSet<Note>(p.getNotes()));
+        assertFalse(journal.redo());
+
+        // a new edit forgets what could be redone
+        journal.undo();
+        p.removeNote(this.e4);
+        assertFalse(journal.canRedo());
+        journal.undo();
+        journal.undo();
+        journal.undo();
+        assertTrue(p.getNotes().isEmpty());
+        assertFalse(journal.canUndo());
+    }
+
+    @Test
+    public void testCap() {
+        Piece p = new ObservablePiece(new PieceImpl(4, 100));
+        EditJournal journal = new EditJournal(p, 2);
+        p.addNote(this.c4);
+        p.addNote(this.e4);
+        p.removeNote(this.c4);
+        assertTrue(journal.undo());
+        assertTrue(journal.undo());
+        assertFalse(journal.undo());
+        assertEquals(Arrays.asList(this.c4), p.getNotes());
+    }
+
+    @Test
+    public void testCompact() {
+        Piece p = new ObservablePiece(new VersionedPiece(4, 100));
+        EditJournal journal = new EditJournal(p);
+        p.addNote(this.c4);
+        for (int i = 0; i < 10; i += 1) {
+            Note from = p.getNotes().get(0);
+            Note to = new CoolNote(PitchClass.C, 4, 4, 0, 100 + i, 0);
+            p.edit(draft -> {
+                draft.removeNote(from);
+                draft.addNote(to);
+            });
+        }
+        p.addNote(this.e4);
+        journal.compact(1);
+        assertTrue(journal.undo());
+        assertEquals(1, p.getNotes().size());
+        assertTrue(journal.undo());
+        assertTrue(p.getNotes().isEmpty());
+        assertFalse(journal.undo());
+        assertTrue(journal.redo());
+        assertEquals(109, p.getNotes().get(0).getVelocity());
+    }
+
+    @Test
+    public void testUndoTransposedChord() {
+        Note cSharp4 = new CoolNote(PitchClass.Cs, 4, 4, 0, 100, 0);
+        for (Piece inner : Arrays.asList(new PieceImpl(4, 100), new VersionedPiece(4, 100))) {
+            Piece p = new ObservablePiece(inner);
+            EditJournal journal = new EditJournal(p);
+            p.addNote(this.c4);
+            p.addNote(cSharp4);
+            // each note moves into the other's old place
+            p.transform(Arrays.asList(this.c4, cSharp4), NoteTransforms.transpose(1));
+            HashSet<Note> transposed = new HashSet<Note>(p.getNotes());
+
+            assertTrue(journal.undo());
+            assertEquals(new HashSet<Note>(Arrays.asList(this.c4, cSharp4)),
+                    new HashSet<Note>(p.getNotes()));
+            assertTrue(journal.redo());
+            assertEquals(transposed, new HashSet<Note>(p.getNotes()));
+            assertTrue(journal.undo());
+            assertTrue(journal.undo());
+            assertTrue(journal.undo());
+            assertTrue(p.getNotes().isEmpty());
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testNeedsObservablePiece() {
+        new EditJournal(new PieceImpl(4, 100));
+    }
+}
@@ -1,14 +1,22 @@
 package cs3500.music.tests;
 
+import cs3500.music.controller.ControllerImpl;
 import cs3500.music.model.CoolNote;
 import cs3500.music.model.Piece;
 import cs3500.music.model.PieceImpl;
 import cs3500.music.model.PitchClass;
+import cs3500.music.model.VersionedPiece;
 import cs3500.music.view.GuiViewFrame;
 import org.junit.Test;
 
 import javax.sound.midi.InvalidMidiDataException;
+import javax.swing.SwingUtilities;
+import java.awt.GraphicsEnvironment;
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeFalse;
 
 /**
  * Tests for the GUI view. Note that comprehensive testing of the GUI view, these tests are all
@@ -32,4 +40,27 @@ public class GuiViewTest {
             }
         }
     }
+
+    /**
+     * The editor opens before the piece has loaded, so the view must show a piece with no
+     * notes yet, and then the notes as they arrive.
+     */
+    @Test
+    public void testActivateWhileLoading() throws InterruptedException,
+            InvocationTargetException {
+        assumeFalse(GraphicsEnvironment.isHeadless());
+        VersionedPiece.StreamingBuilder builder = VersionedPiece.streamingBuilder();
+        Piece p = builder.getPiece();
+        GuiViewFrame view = new GuiViewFrame();
+        SwingUtilities.invokeAndWait(() -> new ControllerImpl(p, view).activate());
+        assertTrue(view.isVisible());
+
+        for (int i = 0; i < 300; i += 1) {
+            builder.addNote(i, i + 1, 1, 60 + i % 12, 100);
+        }
+        builder.build();
+        SwingUtilities.invokeAndWait(() -> view.snap(0, p));
+        assertTrue(view.isVisible());
+        view.dispose();
+    }
 }
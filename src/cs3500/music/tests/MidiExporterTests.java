@@ -0,0 +1,81 @@
+package cs3500.music.tests;
+
+import cs3500.music.model.*;
+import cs3500.music.util.MidiExporter;
+import cs3500.music.util.MidiImporter;
+import cs3500.music.util.MusicReader;
+import org.junit.Test;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.Sequence;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for exporting pieces as Standard MIDI Files.
+ */
+public final class MidiExporterTests {
+
+    /**
+     * Returns the given piece written as a MIDI file and read back.
+     */
+    private Piece roundTrip(Piece p) throws IOException, InvalidMidiDataException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MidiExporter.write(p, out);
+        return MidiImporter.parseFile(new ByteArrayInputStream(out.toByteArray()),
+                PieceImpl.builder());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException, InvalidMidiDataException {
+        String text = "tempo 200000\n"
+                + "note 0 2 1 60 100\n"
+                + "note 2 3 1 60 90\n"
+                + "note 1 5 3 64 80\n"
+                + "tempo 300000 4\n";
+        Piece p = MusicReader.parseFile(new StringReader(text), PieceImpl.builder());
+        p.addNote(CoolNote.inTicks(PitchClass.G, 4, Note.TICKS_PER_BEAT / 3, 7, 50, 9));
+        Piece read = this.roundTrip(p);
+        assertEquals(p.getTempoMap(), read.getTempoMap());
+        assertEquals(p.getNotes(), read.getNotes());
+    }
+
+    @Test
+    public void testLargePiece() throws IOException, InvalidMidiDataException {
+        Random r = new Random(3500);
+        Piece p = new PieceImpl(4, 100);
+        for (int i = 0; i < 50000; i += 1) {
+            p.addNote(new CoolNote(PitchClass.values()[i % 12], 3 + i % 3, 1 + r.nextInt(3),
+                    4 * (i / 12), 1 + r.nextInt(127), i % 4));
+        }
+        Sequence sequence = MidiExporter.toSequence(p);
+        assertEquals(Note.TICKS_PER_BEAT, sequence.getResolution());
+        assertEquals(2 * 50000 + 1, sequence.getTracks()[1].size());
+        assertEquals(p.getNotes(), this.roundTrip(p).getNotes());
+    }
+
+    @Test
+    public void testSilentNotesLeftOut() throws IOException, InvalidMidiDataException {
+        Piece p = new PieceImpl(4, 100);
+        p.addNote(new CoolNote(PitchClass.C, 4, 1, 0, 0, 0));
+        p.addNote(new CoolNote(PitchClass.D, 4, 1, 0, 1, 0));
+        assertEquals(1, this.roundTrip(p).getNotes().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTempoTooSlow() {
+        MidiExporter.toSequence(new PieceImpl(4, 0x1000000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadChannel() {
+        Piece p = new PieceImpl(4, 100);
+        p.addNote(new CoolNote(PitchClass.C, 4, 1, 0, 100, 16));
+        MidiExporter.toSequence(p);
+    }
+}
@@ -0,0 +1,99 @@
+package cs3500.music.tests;
+
+import cs3500.music.model.*;
+import cs3500.music.util.MidiImporter;
+import org.junit.Test;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for importing Standard MIDI Files.
+ */
+public final class MidiImporterTests {
+
+    /** The ticks per quarter note of the test sequences. */
+    private static final int RESOLUTION = 96;
+
+    private void add(Track track, int command, int channel, int key, int velocity, long tick)
+            throws InvalidMidiDataException {
+        track.add(new MidiEvent(new ShortMessage(command, channel, key, velocity), tick));
+    }
+
+    private void tempo(Track track, int tempo, long tick) throws InvalidMidiDataException {
+        byte[] data = {(byte) (tempo >> 16), (byte) (tempo >> 8), (byte) tempo};
+        track.add(new MidiEvent(new MetaMessage(0x51, data, 3), tick));
+    }
+
+    /**
+     * Returns the given sequence written as a type 1 MIDI file.
+     */
+    private byte[] write(Sequence sequence) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MidiSystem.write(sequence, 1, out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testImport() throws InvalidMidiDataException, IOException {
+        Sequence sequence = new Sequence(Sequence.PPQ, RESOLUTION);
+        Track conductor = sequence.createTrack();
+        this.tempo(conductor, 400000, 0);
+        this.tempo(conductor, 250000, 4 * RESOLUTION);
+        Track track = sequence.createTrack();
+        // C4 for two beats on channel 0
+        this.add(track, ShortMessage.NOTE_ON, 0, 60, 100, 0);
+        this.add(track, ShortMessage.NOTE_OFF, 0, 60, 0, 2 * RESOLUTION);
+        // E4 for half a beat on channel 2, ended by a note-on with no velocity
+        this.add(track, ShortMessage.NOTE_ON, 2, 64, 80, RESOLUTION);
+        this.add(track, ShortMessage.NOTE_ON, 2, 64, 0, RESOLUTION + RESOLUTION / 2);
+        // G4 struck twice without being released, and never released at all
+        this.add(track, ShortMessage.NOTE_ON, 0, 67, 90, 3 * RESOLUTION);
+        this.add(track, ShortMessage.NOTE_ON, 0, 67, 70, 4 * RESOLUTION);
+        this.add(track, ShortMessage.NOTE_OFF, 0, 60, 0, 6 * RESOLUTION);
+
+        Piece p = MidiImporter.parseFile(new ByteArrayInputStream(this.write(sequence)),
+                PieceImpl.builder());
+        assertEquals(400000, p.getTempo());
+        assertEquals(250000, p.getTempoMap().getTempoAt(4));
+        assertEquals(4, p.getNotes().size());
+        assertTrue(p.getNotes().contains(new CoolNote(PitchClass.C, 4, 2, 0, 100, 0)));
+        assertTrue(p.getNotes().contains(CoolNote.inTicks(PitchClass.E, 4,
+                Note.TICKS_PER_BEAT / 2, Note.TICKS_PER_BEAT, 80, 2)));
+        assertTrue(p.getNotes().contains(new CoolNote(PitchClass.G, 4, 1, 3, 90, 0)));
+        assertTrue(p.getNotes().contains(new CoolNote(PitchClass.G, 4, 2, 4, 70, 0)));
+    }
+
+    @Test
+    public void testDefaultTempo() throws InvalidMidiDataException {
+        Sequence sequence = new Sequence(Sequence.PPQ, RESOLUTION);
+        Track track = sequence.createTrack();
+        this.add(track, ShortMessage.NOTE_ON, 0, 60, 100, 0);
+        this.add(track, ShortMessage.NOTE_OFF, 0, 60, 0, RESOLUTION);
+        Piece p = MidiImporter.read(sequence, VersionedPiece.builder());
+        assertEquals(500000, p.getTempo());
+        assertEquals(1, p.getNotes().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFramesRejected() throws InvalidMidiDataException {
+        MidiImporter.read(new Sequence(Sequence.SMPTE_25, 40), PieceImpl.builder());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testShortTempoRejected() throws InvalidMidiDataException {
+        Sequence sequence = new Sequence(Sequence.PPQ, RESOLUTION);
+        sequence.createTrack().add(new MidiEvent(new MetaMessage(0x51, new byte[] {7}, 1), 0));
+        MidiImporter.read(sequence, PieceImpl.builder());
+    }
+}
@@ -0,0 +1,234 @@
+package cs3500.music.tests;
+
+import cs3500.music.util.CompositionBuilder;
+import cs3500.music.model.Piece;
+import cs3500.music.model.PieceImpl;
+import cs3500.music.util.MusicReader;
+import cs3500.music.util.ScoreFile;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures how fast music files are parsed, against the {@link Scanner} loop that
+ * {@link MusicReader} used to run.
+ *
+ * The notes are fed to a builder that only adds up what it is given, so the times are for
+ * parsing alone and not for building a piece. Both parsers must give the same totals.
+ *
+ * Reading a memory-mapped file in chunks is also timed against reading the same file through a
+ * reader, on pools of up to as many threads as there are processors, and the text format is
+ * weighed against the binary {@link ScoreFile} format, by size and by how fast each is read.
+ */
+public final class MusicReaderBenchmark {
+
+    /** The number of note lines in the generated file. */
+    private static final int NOTES = 300000;
+
+    /** The number of times each parser reads the file, after warming up. */
+    private static final int ROUNDS = 3;
+
+    /**
+     * A builder that adds up every number it is given.
+     */
+    private static final class Totals implements CompositionBuilder<long[]> {
+        private final long[] totals = new long[2];
+
+        public long[] build() {
+            return this.totals;
+        }
+
+        public CompositionBuilder<long[]> setTempo(int tempo) {
+            return this.setTempo(0, tempo);
+        }
+
+        public CompositionBuilder<long[]> setTempo(int beat, int tempo) {
+            this.totals[0] += beat + tempo;
+            return this;
+        }
+
+        public CompositionBuilder<long[]> addNote(int start, int end, int instrument, int pitch,
+                                                  int volume) {
+            return this.addNoteInTicks(start, end, instrument, pitch, volume);
+        }
+
+        public CompositionBuilder<long[]> addNoteInTicks(long start, long end, int instrument,
+                                                         int pitch, int volume) {
+            this.totals[1] += start + 3L * end + 5L * instrument + 7L * pitch + 11L * volume;
+            return this;
+        }
+    }
+
+    /**
+     * Returns a music file with the given number of random notes.
+     */
+    private static String generate(int notes) {
+        Random r = new Random(3500);
+        StringBuilder text = new StringBuilder("tempo 200000\n");
+        int beat = 0;
+        for (int i = 0; i < notes; i += 1) {
+            beat += r.nextInt(2);
+            text.append("note ").append(beat).append(' ').append(beat + 1 + r.nextInt(8))
+                    .append(' ').append(1 + r.nextInt(16)).append(' ').append(30 + r.nextInt(60))
+                    .append(' ').append(r.nextInt(128)).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Returns a music file with the given number of random notes, none of which overlap, so
+     * that it can be built into a piece.
+     */
+    private static String generatePiece(int notes) {
+        Random r = new Random(3500);
+        StringBuilder text = new StringBuilder("tempo 200000\n");
+        for (int i = 0; i < notes; i += 1) {
+            int beat = i / 4;
+            text.append("note ").append(beat).append(' ').append(beat + 1).append(' ')
+                    .append(1 + i % 4).append(' ').append(30 + r.nextInt(60)).append(' ')
+                    .append(r.nextInt(128)).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * The loop {@link MusicReader#parseFile} ran before it had its own tokenizer.
+     */
+    private static <T> T parseWithScanner(Readable readable, CompositionBuilder<T> piece) {
+        Scanner scanner = new Scanner(readable);
+        while (scanner.hasNext()) {
+            String lineType = scanner.next();
+            switch (lineType) {
+                case "tempo":
+                    try {
+                        piece.setTempo(scanner.nextInt());
+                    } catch (NoSuchElementException e) {
+                        throw new IllegalArgumentException("Malformed tempo line: "
+                                + scanner.nextLine());
+                    }
+                    break;
+                case "note":
+                    try {
+                        int startBeat = scanner.nextInt();
+                        int endBeat = scanner.nextInt();
+                        int instrument = scanner.nextInt();
+                        int pitch = scanner.nextInt();
+                        int volume = scanner.nextInt();
+                        piece.addNote(startBeat, endBeat, instrument, pitch, volume);
+                    } catch (NoSuchElementException e) {
+                        throw new IllegalArgumentException("Malformed note line: "
+                                + scanner.nextLine());
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Bad line type: " + lineType);
+            }
+        }
+        return piece.build();
+    }
+
+    /**
+     * Returns the fastest of several reads of the given text, in nanoseconds.
+     */
+    private static long time(String text, boolean scanner, long[] expected) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i <= ROUNDS; i += 1) {
+            long start = System.nanoTime();
+            long[] totals = scanner
+                    ? parseWithScanner(new StringReader(text), new Totals())
+                    : MusicReader.parseFile(new StringReader(text), new Totals());
+            long elapsed = System.nanoTime() - start;
+            assertArrayEquals(expected, totals);
+            if (i > 0) {
+                best = Math.min(best, elapsed);
+            }
+        }
+        return best;
+    }
+
+    @Test
+    public void benchmarkParse() {
+        String text = generate(NOTES);
+        long[] expected = parseWithScanner(new StringReader(text), new Totals());
+        long scanner = time(text, true, expected);
+        long tokenizer = time(text, false, expected);
+        double megabytes = text.length() / 1e6;
+        System.out.printf("Scanner:   %6d ms, %6.1f MB/s%n", scanner / 1000000,
+                megabytes / (scanner / 1e9));
+        System.out.printf("Tokenizer: %6d ms, %6.1f MB/s (%.1fx)%n", tokenizer / 1000000,
+                megabytes / (tokenizer / 1e9), (double) scanner / tokenizer);
+    }
+
+    @Test
+    public void benchmarkMappedParse() throws IOException {
+        String text = generate(4 * NOTES);
+        Path file = Files.createTempFile("music", ".txt");
+        try {
+            Files.write(file, text.getBytes(StandardCharsets.US_ASCII));
+            long[] expected = MusicReader.parseFile(new StringReader(text), new Totals());
+            double megabytes = text.length() / 1e6;
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i <= ROUNDS; i += 1) {
+                long start = System.nanoTime();
+                try (Reader reader = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+                    assertArrayEquals(expected, MusicReader.parseFile(reader, new Totals()));
+                }
+                best = i > 0 ? Math.min(best, System.nanoTime() - start) : best;
+            }
+            System.out.printf("Reader, 1 thread:    %6d ms, %6.1f MB/s%n", best / 1000000,
+                    megabytes / (best / 1e9));
+            for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors();
+                 threads *= 2) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                best = Long.MAX_VALUE;
+                for (int i = 0; i <= ROUNDS; i += 1) {
+                    long start = System.nanoTime();
+                    assertArrayEquals(expected, MusicReader.parseFile(file, new Totals(), pool));
+                    best = i > 0 ? Math.min(best, System.nanoTime() - start) : best;
+                }
+                pool.shutdown();
+                System.out.printf("Mapped, %d threads: %6d ms, %6.1f MB/s%n", threads,
+                        best / 1000000, megabytes / (best / 1e9));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void benchmarkScoreFile() throws IOException {
+        String text = generatePiece(NOTES);
+        Piece piece = MusicReader.parseFile(new StringReader(text), PieceImpl.builder());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ScoreFile.write(piece, out);
+        byte[] bytes = out.toByteArray();
+        long[] expected = MusicReader.parseFile(new StringReader(text), new Totals());
+        assertArrayEquals(expected, ScoreFile.read(new ByteArrayInputStream(bytes),
+                new Totals()));
+
+        long textBest = time(text, false, expected);
+        long binaryBest = Long.MAX_VALUE;
+        for (int i = 0; i <= ROUNDS; i += 1) {
+            long start = System.nanoTime();
+            ScoreFile.read(new ByteArrayInputStream(bytes), new Totals());
+            binaryBest = i > 0 ? Math.min(binaryBest, System.nanoTime() - start) : binaryBest;
+        }
+        System.out.printf("Text:   %9d bytes, %6d ms%n", text.length(), textBest / 1000000);
+        System.out.printf("Binary: %9d bytes, %6d ms (%.1fx smaller, %.1fx faster)%n",
+                bytes.length, binaryBest / 1000000, (double) text.length() / bytes.length,
+                (double) textBest / binaryBest);
+    }
+}
@@ -0,0 +1,118 @@
+package cs3500.music.tests;
+
+import cs3500.music.model.*;
+import cs3500.music.util.MusicReader;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for reading music files.
+ */
+public final class MusicReaderTests {
+
+    /**
+     * Returns the message of the exception thrown when reading the given text.
+     */
+    private String error(String text) {
+        try {
+            MusicReader.parseFile(new StringReader(text), PieceImpl.builder());
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        fail("read malformed music: " + text);
+        return null;
+    }
+
+    @Test
+    public void testRead() {
+        String text = "tempo 200000\r\n"
+                + "note 0 2 1 60 100\n\n"
+                + "  note\t2 3 2 +64 0\n"
+                + "note 3\n 4 1 67 127";
+        Piece p = MusicReader.parseFile(new StringReader(text), PieceImpl.builder());
+        assertEquals(200000, p.getTempo());
+        assertEquals(3, p.getNotes().size());
+        assertEquals(new CoolNote(PitchClass.C, 4, 2, 0, 100, 0), p.getNotes().get(0));
+        assertEquals(new CoolNote(PitchClass.E, 4, 1, 2, 0, 1), p.getNotes().get(1));
+        assertEquals(new CoolNote(PitchClass.G, 4, 1, 3, 127, 0), p.getNotes().get(2));
+    }
+
+    @Test
+    public void testEmpty() {
+        Piece p = MusicReader.parseFile(new StringReader(""), PieceImpl.builder());
+        assertEquals(0, p.getNotes().size());
+    }
+
+    @Test
+    public void testErrorsGiveLine() {
+        assertEquals("Malformed note line: line 3",
+                this.error("tempo 1\nnote 0 1 1 60 100\nnote 0 1 1 6o 100\n"));
+        assertEquals("Malformed note line: line 2", this.error("tempo 1\nnote 0 1 1 60"));
+        assertEquals("Malformed tempo line: line 1", this.error("tempo 99999999999\n"));
+        assertEquals("Bad line type: rest (line 2)", this.error("tempo 1\nrest 0 1\n"));
+    }
+
+    /**
+     * Returns music with many notes and a few tempo changes, some of whose notes run on to the
+     * next line.
+     */
+    private String generate(int notes) {
+        Random r = new Random(3500);
+        StringBuilder text = new StringBuilder("tempo 200000\n");
+        for (int i = 0; i < notes; i += 1) {
+            int start = i / 4;
+            text.append(i % 1000 == 999 ? "note\n" : "note ").append(start).append(' ')
+                    .append(start + 1).append(i % 777 == 0 ? "\n" : " ").append(1 + i % 4)
+                    .append(' ').append(40 + r.nextInt(40)).append(' ').append(r.nextInt(128))
+                    .append('\n');
+            if (i % 50000 == 0) {
+                text.append("tempo ").append(100000 + i).append(' ').append(start).append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    @Test
+    public void testMappedFileMatchesSequential() throws IOException {
+        String text = this.generate(200000);
+        Path file = Files.createTempFile("music", ".txt");
+        try {
+            Files.write(file, text.getBytes(StandardCharsets.US_ASCII));
+            Piece sequential = MusicReader.parseFile(new StringReader(text), PieceImpl.builder());
+            Piece parallel = MusicReader.parseFile(file, PieceImpl.builder(), new ForkJoinPool(4));
+            assertEquals(sequential.getNotes(), parallel.getNotes());
+            assertEquals(sequential.getTempoMap(), parallel.getTempoMap());
+            Note n = sequential.getNotes().get(123456);
+            assertEquals(sequential.getId(n), parallel.getId(n));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testMappedFileErrorsGiveLine() throws IOException {
+        String text = this.generate(200000) + "note 1 2 3\nnote 1 2 3 4 5\n";
+        Path file = Files.createTempFile("music", ".txt");
+        try {
+            Files.write(file, text.getBytes(StandardCharsets.US_ASCII));
+            String expected = this.error(text);
+            try {
+                MusicReader.parseFile(file, PieceImpl.builder(), new ForkJoinPool(4));
+                fail();
+            } catch (IllegalArgumentException e) {
+                assertEquals(expected, e.getMessage());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package cs3500.music.tests;
+
+import cs3500.music.model.CoolNote;
+import cs3500.music.model.Note;
+import cs3500.music.model.Piece;
+import cs3500.music.model.PieceImpl;
+import cs3500.music.util.MusicUtils;
+import cs3500.music.util.MusicWriter;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures how fast pieces are written as text, against building each line as a string and
+ * writing it through a {@link BufferedWriter}.
+ *
+ * Writing to a writer is timed with a writer that only counts what it is given, so the times
+ * are for formatting alone. Writing to a file is timed as well.
+ */
+public final class MusicWriterBenchmark {
+
+    /** The number of notes in the generated piece. */
+    private static final int NOTES = 500000;
+
+    /** The number of times each writer writes the piece, after warming up. */
+    private static final int ROUNDS = 3;
+
+    /**
+     * A writer that counts the characters it is given, and throws them away.
+     */
+    private static final class Counter extends Writer {
+        long count = 0;
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            this.count += length;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Returns a piece with the given number of random notes.
+     */
+    private static Piece generate(int notes) {
+        Random r = new Random(3500);
+        Piece p = new PieceImpl(4, 200000);
+        for (int i = 0; i < notes; i += 1) {
+            int pitch = 24 + i % 60;
+            p.addNote(new CoolNote(MusicUtils.midiNumberToPitchClass(pitch),
+                    MusicUtils.midiNumberToOctave(pitch), 1 + r.nextInt(4), 5 * (i / 60),
+                    r.nextInt(128), r.nextInt(16)));
+        }
+        return p;
+    }
+
+    /**
+     * Writes the piece a line at a time, making a string of each line.
+     */
+    private static void writeWithStrings(Piece p, Writer out) throws IOException {
+        BufferedWriter writer = new BufferedWriter(out);
+        writer.write("tempo " + p.getTempo() + "\n");
+        for (Note n : p.getNotes()) {
+            writer.write("note " + n.getAttack() + " " + (n.getAttack() + n.getDuration()) + " "
+                    + (n.getInstrument() + 1) + " "
+                    + MusicUtils.midiNumber(n.getPitchClass(), n.getOctave()) + " "
+                    + n.getVelocity() + "\n");
+        }
+        writer.flush();
+        return;
+    }
+
+    /**
+     * Returns the fastest of several writes of the piece, in nanoseconds.
+     */
+    private static long time(Piece p, boolean strings, long expected) throws IOException {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i <= ROUNDS; i += 1) {
+            Counter out = new Counter();
+            long start = System.nanoTime();
+            if (strings) {
+                writeWithStrings(p, out);
+            } else {
+                MusicWriter.write(p, out);
+            }
+            long elapsed = System.nanoTime() - start;
+            assertEquals(expected, out.count);
+            if (i > 0) {
+                best = Math.min(best, elapsed);
+            }
+        }
+        return best;
+    }
+
+    @Test
+    public void benchmarkWrite() throws IOException {
+        Piece p = generate(NOTES);
+        Counter counted = new Counter();
+        MusicWriter.write(p, counted);
+        double megabytes = counted.count / 1e6;
+        long strings = time(p, true, counted.count);
+        long writer = time(p, false, counted.count);
+        System.out.printf("Strings:     %6d ms, %6.1f MB/s%n", strings / 1000000,
+                megabytes / (strings / 1e9));
+        System.out.printf("MusicWriter: %6d ms, %6.1f MB/s (%.1fx)%n", writer / 1000000,
+                megabytes / (writer / 1e9), (double) strings / writer);
+
+        Path file = Files.createTempFile("music", ".txt");
+        try {
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i <= ROUNDS; i += 1) {
+                long start = System.nanoTime();
+                MusicWriter.write(p, file);
+                best = i > 0 ? Math.min(best, System.nanoTime() - start) : best;
+            }
+            assertEquals(counted.count, Files.size(file));
+            System.out.printf("To a file:   %6d ms, %6.1f MB/s%n", best / 1000000,
+                    megabytes / (best / 1e9));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package cs3500.music.tests;
+
+import cs3500.music.model.*;
+import cs3500.music.util.MusicReader;
+import cs3500.music.util.MusicWriter;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for writing music files.
+ */
+public final class MusicWriterTests {
+
+    /**
+     * A piece in the order it is written in: a chord across instruments, the lowest and
+     * highest pitches and volumes, a note held across the edge of the writer's first window, notes
+     * either side of that edge, and a silence of several windows.
+     */
+    private static final String PIECE = "tempo 200000\n"
+            + "tempo 150000 64\n"
+            + "note 0 4 1 0 0\n"
+            + "note 0 2 1 60 100\n"
+            + "note 0 2 16 60 127\n"
+            + "note 0 1 3 64 50\n"
+            + "note 62 70 2 127 90\n"
+            + "note 63 64 1 60 70\n"
+            + "note 64 65 1 60 71\n"
+            + "note 64 66 4 67 72\n"
+            + "note 500 501 1 48 10\n";
+
+    /**
+     * Returns the given piece written as text.
+     */
+    private String write(Piece p) throws IOException {
+        StringWriter out = new StringWriter();
+        MusicWriter.write(p, out);
+        return out.toString();
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        String text = "tempo 200000\n"
+                + "tempo 100000 4\n"
+                + "note 0 2 1 60 100\n"
+                + "note 1 5 3 64 0\n";
+        Piece p = MusicReader.parseFile(new StringReader(text), PieceImpl.builder());
+        assertEquals(text, this.write(p));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Piece p = MusicReader.parseFile(new StringReader(PIECE), PieceImpl.builder());
+        assertEquals(PIECE, this.write(p));
+        Piece read = MusicReader.parseFile(new StringReader(this.write(p)), PieceImpl.builder());
+        assertEquals(p.getNotes(), read.getNotes());
+        assertEquals(p.getTempoMap(), read.getTempoMap());
+    }
+
+    @Test
+    public void testFileRoundTrip() throws IOException {
+        Piece p = MusicReader.parseFile(new StringReader(PIECE), PieceImpl.builder());
+        Path file = Files.createTempFile("music", ".txt");
+        try {
+            MusicWriter.write(p, file);
+            assertEquals(PIECE, new String(Files.readAllBytes(file), "US-ASCII"));
+            Piece read = MusicReader.parseFile(file, VersionedPiece.builder());
+            assertEquals(p.getNotes(), read.getNotes());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBetweenBeats() throws IOException {
+        Piece p = new PieceImpl(4, 100);
+        p.addNote(CoolNote.inTicks(PitchClass.C, 4, Note.TICKS_PER_BEAT, 1, 100, 0));
+        this.write(p);
+    }
+
+    @Test(timeout = 5000)
+    public void testLongSilence() throws IOException {
+        // a versioned piece keeps no index by beat, so it can hold a silence this long
+        Piece p = new VersionedPiece(4, 100);
+        p.addNote(new CoolNote(PitchClass.C, 4, 1, 0, 100, 0));
+        p.addNote(new CoolNote(PitchClass.D, 4, 2, 1000000000, 90, 1));
+        p.addNote(new CoolNote(PitchClass.C, 4, 1, 1000000000, 80, 0));
+        assertEquals("tempo 100\n"
+                + "note 0 1 1 60 100\n"
+                + "note 1000000000 1000000001 1 60 80\n"
+                + "note 1000000000 1000000002 2 62 90\n", this.write(p));
+    }
+
+    @Test
+    public void testFailedWriteKeepsFile() throws IOException {
+        Path file = Files.createTempFile("music", ".txt");
+        try {
+            Files.write(file, "tempo 100\n".getBytes("US-ASCII"));
+            Piece p = new PieceImpl(4, 100);
+            p.addNote(new CoolNote(PitchClass.C, 4, 1, 0, 100, 0));
+            p.addNote(CoolNote.inTicks(PitchClass.D, 4, Note.TICKS_PER_BEAT, 1, 100, 0));
+            try {
+                MusicWriter.write(p, file);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // the second note is between beats
+            }
+            assertEquals("tempo 100\n", new String(Files.readAllBytes(file), "US-ASCII"));
+            assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".tmp")));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
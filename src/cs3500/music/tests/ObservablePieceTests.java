@@ -0,0 +1,212 @@
+package cs3500.music.tests;
+
+import cs3500.music.model.*;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the observable piece and the changes it reports.
+ */
+public final class ObservablePieceTests {
+
+    private final Note c4 = new CoolNote(PitchClass.C, 4, 4, 0, 100, 0);
+    private final Note e4 = new CoolNote(PitchClass.E, 4, 2, 2, 100, 0);
+    private final Note g4 = new CoolNote(PitchClass.G, 4, 8, 4, 100, 0);
+
+    /** Every notification the listener got, in order. */
+    private final List<List<PieceChange>> heard = new ArrayList<List<PieceChange>>();
+
+    private Piece observe(Piece p) {
+        Piece observed = new ObservablePiece(p);
+        observed.addListener(this.heard::add);
+        return observed;
+    }
+
+    @Test
+    public void testSingleEdits() {
+        Piece p = this.observe(new PieceImpl(4, 100, this.c4));
+        p.addNote(this.e4);
+        p.removeNote(this.c4);
+        assertEquals(2, this.heard.size());
+        PieceChange added = this.heard.get(0).get(0);
+        assertEquals(PieceChange.Type.ADDED, added.getType());
+        assertEquals(this.e4, added.getAfter());
+        assertEquals(2, added.getStartBeat());
+        assertEquals(4, added.getEndBeat());
+        assertEquals(64, added.getLowPitch());
+        assertEquals(64, added.getHighPitch());
+        assertEquals(PieceChange.Type.REMOVED, this.heard.get(1).get(0).getType());
+    }
+
+    @Test
+    public void testReplaceIsOneChange() {
+        Piece p = this.observe(new PieceImpl(4, 100, this.c4));
+        int id = p.getId(this.c4);
+        Note moved = new CoolNote(PitchClass.C, 4, 4, 2, 100, 0);
+        p.replaceNote(id, moved);
+        assertEquals(1, this.heard.size());
+        PieceChange changed = this.heard.get(0).get(0);
+        assertEquals(PieceChange.Type.CHANGED, changed.getType());
+        assertEquals(this.c4, changed.getBefore());
+        assertEquals(moved, changed.getAfter());
+        assertEquals(id, p.getId(moved));
+    }
+
+    @Test
+    public void testHasIds() {
+        assertTrue(this.observe(new PieceImpl(4, 100)).hasIds());
+        assertTrue(this.observe(new VersionedPiece(4, 100)).hasIds());
+        assertTrue(new VersionedPiece(4, 100).snapshot().hasIds());
+        assertFalse(this.observe(new ColumnarPiece(4, 100)).hasIds());
+        assertFalse(this.observe(new ConcurrentPiece(4, 100)).hasIds());
+    }
+
+    @Test
+    public void testHasCheapSnapshot() {
+        assertTrue(this.observe(new VersionedPiece(4, 100)).hasCheapSnapshot());
+        assertTrue(new VersionedPiece(4, 100).snapshot().hasCheapSnapshot());
+        assertFalse(this.observe(new PieceImpl(4, 100)).hasCheapSnapshot());
+        assertFalse(this.observe(new ColumnarPiece(4, 100)).hasCheapSnapshot());
+    }
+
+    @Test
+    public void testTransformIsOneBatch() {
+        Piece p = this.observe(new PieceImpl(4, 100, this.c4, this.e4, this.g4));
+        p.transform(Arrays.asList(this.c4, this.e4), NoteTransforms.scaleVelocity(0.5));
+        assertEquals(1, this.heard.size());
+        assertEquals(2, this.heard.get(0).size());
+        for (PieceChange c : this.heard.get(0)) {
+            assertEquals(PieceChange.Type.CHANGED, c.getType());
+            assertEquals(50, c.getAfter().getVelocity());
+        }
+    }
+
+    @Test
+    public void testFailedEditIsNotReported() {
+        Piece p = this.observe(new PieceImpl(4, 100, this.c4));
+        try {
+            p.addNote(new CoolNote(PitchClass.C, 4, 1, 2, 100, 0));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // overlaps c4
+        }
+        assertTrue(this.heard.isEmpty());
+    }
+
+    @Test
+    public void testFailedEditMovesNotesBack() {
+        Note cSharp4 = new CoolNote(PitchClass.Cs, 4, 4, 0, 100, 0);
+        Note c4 = new CoolNote(PitchClass.C, 4, 4, 0, 100, 0);
+        Piece p = this.observe(new PieceImpl(4, 100, c4, cSharp4, this.g4));
+        try {
+            p.edit(draft -> {
+                draft.transform(Arrays.asList(c4, cSharp4), NoteTransforms.transpose(1));
+                draft.addNote(this.g4);
+            });
+            fail();
+        } catch (IllegalArgumentException e) {
+            // g4 is already there
+        }
+        assertEquals(new HashSet<Note>(Arrays.asList(c4, cSharp4, this.g4)),
+                new HashSet<Note>(p.getNotes()));
+        assertTrue(this.heard.isEmpty());
+    }
+
+    @Test
+    public void testEditIsOneChange() {
+        Piece p = this.observe(new VersionedPiece(4, 100, this.c4, this.e4));
+        Note moved = new CoolNote(PitchClass.D, 4, 4, 8, 100, 0);
+        p.edit(draft -> {
+            draft.removeNote(this.c4);
+            draft.addNote(moved);
+            draft.addNote(this.g4);
+            draft.removeNote(this.g4);
+        });
+        assertEquals(1, this.heard.size());
+        assertEquals(1, this.heard.get(0).size());
+        PieceChange change = this.heard.get(0).get(0);
+        assertEquals(PieceChange.Type.CHANGED, change.getType());
+        assertEquals(this.c4, change.getBefore());
+        assertEquals(moved, change.getAfter());
+        assertEquals(0, change.getStartBeat());
+        assertEquals(12, change.getEndBeat());
+        assertEquals(60, change.getLowPitch());
+        assertEquals(62, change.getHighPitch());
+    }
+
+    @Test
+    public void testFailedEditIsUndone() {
+        Piece p = this.observe(new PieceImpl(4, 100, this.c4));
+        try {
+            p.edit(draft -> {
+                draft.removeNote(this.c4);
+                draft.addNote(this.e4);
+                draft.addNote(this.e4);
+            });
+            fail();
+        } catch (IllegalArgumentException e) {
+            // e4 is already there
+        }
+        assertEquals(Arrays.asList(this.c4), p.getNotes());
+        assertTrue(this.heard.isEmpty());
+    }
+
+    @Test
+    public void testResetIsOneBatch() {
+        Piece p = this.observe(new PieceImpl(4, 100, this.c4, this.e4, this.g4));
+        p.resetPiece();
+        assertEquals(1, this.heard.size());
+        assertEquals(3, this.heard.get(0).size());
+        p.resetPiece();
+        assertEquals(1, this.heard.size());
+    }
+
+    @Test
+    public void testCoalesce() {
+        List<PieceChange> changes = Arrays.asList(new PieceChange(null, this.c4),
+                new PieceChange(this.c4, this.e4), new PieceChange(this.e4, null),
+                new PieceChange(this.g4, null), new PieceChange(null, this.g4));
+        assertTrue(PieceChange.coalesce(changes).isEmpty());
+
+        changes = Arrays.asList(new PieceChange(this.c4, this.e4),
+                new PieceChange(this.e4, this.g4));
+        List<PieceChange> merged = PieceChange.coalesce(changes);
+        assertEquals(1, merged.size());
+        assertEquals(this.c4, merged.get(0).getBefore());
+        assertEquals(this.g4, merged.get(0).getAfter());
+    }
+
+    @Test(timeout = 10000)
+    public void testCoalesceLongRun() {
+        // every note moved up a beat, then moved again, in one long run
+        List<PieceChange> changes = new ArrayList<PieceChange>();
+        int notes = 100000;
+        for (int i = 0; i < notes; i += 1) {
+            Note n = new CoolNote(PitchClass.C, 4, 1, 2 * i, 100, 0);
+            changes.add(new PieceChange(n, null));
+            changes.add(new PieceChange(null, NoteTransforms.shift(1).apply(n)));
+        }
+        for (int i = 0; i < notes; i += 1) {
+            Note n = new CoolNote(PitchClass.C, 4, 1, 2 * i + 1, 100, 0);
+            changes.add(new PieceChange(n, NoteTransforms.transpose(1).apply(n)));
+        }
+        List<PieceChange> merged = PieceChange.coalesce(changes);
+        assertEquals(notes, merged.size());
+        for (int i = 0; i < notes; i += 1) {
+            assertEquals(2 * i, merged.get(i).getBefore().getAttack());
+            assertEquals(2 * i + 1, merged.get(i).getAfter().getAttack());
+            assertEquals(PitchClass.Cs, merged.get(i).getAfter().getPitchClass());
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testPlainPieceHasNoListeners() {
+        new PieceImpl(4, 100).addListener(this.heard::add);
+    }
+}
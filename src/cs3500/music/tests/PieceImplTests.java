@@ -0,0 +1,465 @@
+package cs3500.music.tests;
+
+import cs3500.music.model.*;
+import cs3500.music.util.CompositionBuilder;
+import cs3500.music.util.MusicUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the model.
+ */
+public final class PieceImplTests {
+
+    private Piece blank, abc, pad;
+    private Note a4, b4, c5, longC4, shortE4;
+
+    private void reset() {
+        this.a4 = new CoolNote(PitchClass.A, 4, 2, 0, 103, 0);
+        this.b4 = new CoolNote(PitchClass.B, 4, 2, 2, 103, 0);
+        this.c5 = new CoolNote(PitchClass.C, 5, 2, 4, 103, 0);
+        this.longC4 = new CoolNote(PitchClass.C, 4, 64, 0, 80, 0);
+        this.shortE4 = new CoolNote(PitchClass.E, 4, 1, 30, 80, 0);
+
+        this.blank = new PieceImpl(4, 200000);
+        this.abc = new PieceImpl(4, 200000, this.a4, this.b4, this.c5);
+        this.pad = new PieceImpl(4, 200000, this.longC4, this.shortE4);
+    }
+
+    @Test
+    public void testQueries() {
+        this.reset();
+        assertEquals(1, this.abc.getAllNotesAt(3).size());
+        assertEquals(this.b4, this.abc.getAllNotesAt(3).get(0));
+        assertEquals(1, this.abc.getNotesStartingAt(2).size());
+        assertTrue(this.abc.getNotesStartingAt(3).isEmpty());
+        assertEquals(this.b4, this.abc.getNotesSustainedAt(3).get(0));
+        assertTrue(this.abc.getNotesSustainedAt(2).isEmpty());
+        assertTrue(this.abc.getAllNotesAt(6).isEmpty());
+        assertEquals(3, this.abc.getNotes().size());
+
+        List<Note> at30 = this.pad.getAllNotesAt(30);
+        assertEquals(2, at30.size());
+        assertTrue(at30.contains(this.longC4));
+        assertTrue(at30.contains(this.shortE4));
+        assertEquals(1, this.pad.getAllNotesAt(63).size());
+        assertTrue(this.pad.getAllNotesAt(64).isEmpty());
+        assertEquals(this.longC4, this.pad.getNotesSustainedAt(30).get(0));
+    }
+
+    @Test
+    public void testForEach() {
+        this.reset();
+        List<Note> seen = new ArrayList<Note>();
+        this.pad.forEachNoteAt(30, seen::add);
+        assertEquals(this.pad.getAllNotesAt(30), seen);
+        seen.clear();
+        this.pad.forEachNoteStartingAt(30, seen::add);
+        assertEquals(1, seen.size());
+        assertEquals(this.shortE4, seen.get(0));
+        seen.clear();
+        this.abc.forEachNoteAt(7, seen::add);
+        assertTrue(seen.isEmpty());
+    }
+
+    @Test
+    public void testNotesIn() {
+        this.reset();
+        List<Note> seen = new ArrayList<Note>();
+        List<Boolean> starts = new ArrayList<Boolean>();
+        this.pad.notesIn(20, 40, 60, 64, (n, inWindow) -> {
+            seen.add(n);
+            starts.add(inWindow);
+        });
+        assertEquals(Arrays.asList(this.longC4, this.shortE4), seen);
+        assertEquals(Arrays.asList(false, true), starts);
+
+        seen.clear();
+        this.pad.notesIn(20, 40, 61, 64, (n, inWindow) -> seen.add(n));
+        assertEquals(Arrays.asList(this.shortE4), seen);
+        seen.clear();
+        this.pad.notesIn(31, 64, 0, 127, (n, inWindow) -> seen.add(n));
+        assertEquals(Arrays.asList(this.longC4), seen);
+        seen.clear();
+        this.abc.notesIn(0, 6, 69, 71, (n, inWindow) -> seen.add(n));
+        assertEquals(Arrays.asList(this.a4, this.b4), seen);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testQueriesAreReadOnly() {
+        this.reset();
+        this.abc.getNotes().add(this.longC4);
+    }
+
+    @Test
+    public void testStartAndEnd() {
+        this.reset();
+        assertEquals(0, this.blank.getStart());
+        assertEquals(0, this.blank.getEnd());
+        assertEquals(0, this.abc.getStart());
+        assertEquals(6, this.abc.getEnd());
+        assertEquals(64, this.pad.getEnd());
+
+        this.abc.removeNote(this.a4);
+        assertEquals(2, this.abc.getStart());
+        this.pad.removeNote(this.longC4);
+        assertEquals(30, this.pad.getStart());
+        assertEquals(31, this.pad.getEnd());
+        this.pad.resetPiece();
+        assertEquals(0, this.pad.getEnd());
+    }
+
+    @Test
+    public void testPitchBounds() {
+        this.reset();
+        assertEquals(-1, this.blank.getHighestPitch());
+        assertEquals(-1, this.blank.getLowestPitch());
+        assertNull(this.blank.getHighest());
+        assertEquals(72, this.abc.getHighestPitch());
+        assertEquals(69, this.abc.getLowestPitch());
+        assertEquals(this.c5, this.abc.getHighest());
+        assertEquals(this.a4, this.abc.getLowest());
+
+        this.abc.addNote(new CoolNote(PitchClass.C, 5, 1, 10, 103, 0));
+        this.abc.removeNote(this.c5);
+        assertEquals(72, this.abc.getHighestPitch());
+        this.abc.removeNote(new CoolNote(PitchClass.C, 5, 1, 10, 103, 0));
+        assertEquals(71, this.abc.getHighestPitch());
+        this.abc.removeNote(this.a4);
+        assertEquals(71, this.abc.getLowestPitch());
+        this.abc.resetPiece();
+        assertEquals(-1, this.abc.getLowestPitch());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOverlap() {
+        this.reset();
+        this.pad.addNote(new CoolNote(PitchClass.C, 4, 2, 40, 80, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOverlapFromBefore() {
+        this.reset();
+        this.abc.addNote(new CoolNote(PitchClass.B, 4, 2, 1, 80, 0));
+    }
+
+    @Test
+    public void testAdjacentNotes() {
+        this.reset();
+        this.abc.addNote(new CoolNote(PitchClass.A, 4, 2, 2, 80, 0));
+        this.abc.addNote(new CoolNote(PitchClass.B, 4, 2, 4, 80, 0));
+        this.abc.addNote(new CoolNote(PitchClass.C, 5, 1, 3, 80, 0));
+        assertEquals(6, this.abc.getNotes().size());
+        assertEquals(3, this.abc.getAllNotesAt(3).size());
+        assertEquals(2, this.abc.getAllNotesAt(4).size());
+    }
+
+    @Test
+    public void testOverlapOtherInstrument() {
+        this.reset();
+        this.pad.addNote(new CoolNote(PitchClass.C, 4, 2, 40, 80, 1));
+        this.pad.addNote(new CoolNote(PitchClass.C, 4, 2, 64, 80, 0));
+        assertEquals(2, this.pad.getAllNotesAt(41).size());
+        assertEquals(66, this.pad.getEnd());
+    }
+
+    @Test
+    public void testAddAll() {
+        this.reset();
+        List<Note> batch = new ArrayList<Note>();
+        for (int i = 0; i < 500; i += 1) {
+            batch.add(new CoolNote(PitchClass.values()[i % 7], 3 + i % 3, 1 + i % 5, i, 90, i % 2));
+        }
+        this.blank.addAll(batch);
+        assertEquals(500, this.blank.getNotes().size());
+        for (int i = 0; i < 500; i += 1) {
+            assertTrue(this.blank.getNotesStartingAt(i).contains(batch.get(i)));
+        }
+
+        Piece oneByOne = new PieceImpl(4, 200000);
+        for (Note n : batch) {
+            oneByOne.addNote(n);
+        }
+        for (int i = 0; i < 510; i += 1) {
+            assertEquals(oneByOne.getAllNotesAt(i), this.blank.getAllNotesAt(i));
+        }
+        assertEquals(oneByOne.getEnd(), this.blank.getEnd());
+
+        // a small batch into a big piece
+        this.blank.addAll(Arrays.asList(new CoolNote(PitchClass.C, 8, 2, 0, 90, 0)));
+        assertEquals(501, this.blank.getNotes().size());
+        assertEquals(108, this.blank.getHighestPitch());
+    }
+
+    @Test
+    public void testAddAllOverlapAddsNothing() {
+        this.reset();
+        List<Note> batch = new ArrayList<Note>();
+        batch.add(new CoolNote(PitchClass.D, 4, 2, 10, 90, 0));
+        batch.add(new CoolNote(PitchClass.C, 4, 2, 70, 90, 0));
+        batch.add(new CoolNote(PitchClass.D, 4, 2, 11, 90, 0));
+        try {
+            this.pad.addAll(batch);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // overlap within the batch
+        }
+        batch.remove(2);
+        batch.add(new CoolNote(PitchClass.C, 4, 2, 63, 90, 0));
+        try {
+            this.pad.addAll(batch);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // overlap with the piece
+        }
+        assertEquals(2, this.pad.getNotes().size());
+        assertEquals(64, this.pad.getEnd());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRemoveMissing() {
+        this.reset();
+        this.abc.removeNote(new CoolNote(PitchClass.A, 4, 2, 0, 50, 0));
+    }
+
+    @Test
+    public void testIds() {
+        this.reset();
+        int a = this.abc.getId(this.a4);
+        int b = this.abc.getId(this.b4);
+        assertNotEquals(a, b);
+        assertEquals(this.b4, this.abc.getNote(b));
+
+        // moving b4 onto part of its own beats keeps its id
+        Note later = new CoolNote(PitchClass.B, 4, 2, 3, 103, 0);
+        this.abc.replaceNote(b, later);
+        assertEquals(later, this.abc.getNote(b));
+        assertEquals(b, this.abc.getId(later));
+        assertTrue(this.abc.getNotesStartingAt(2).isEmpty());
+
+        // a replacement that overlaps another note changes nothing
+        try {
+            this.abc.replaceNote(a, new CoolNote(PitchClass.B, 4, 2, 2, 103, 0));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // overlaps the moved b4
+        }
+        assertEquals(this.a4, this.abc.getNote(a));
+        assertEquals(3, this.abc.getNotes().size());
+
+        this.abc.removeNote(a);
+        assertEquals(2, this.abc.getNotes().size());
+        try {
+            this.abc.getNote(a);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // removed
+        }
+        this.abc.addNote(this.a4);
+        assertNotEquals(a, this.abc.getId(this.a4));
+    }
+
+    @Test
+    public void testHashCodeUsesEveryField() {
+        Note soft = new CoolNote(PitchClass.C, 4, 2, 0, 40, 0);
+        Note loud = new CoolNote(PitchClass.C, 4, 2, 0, 41, 0);
+        Note later = new CoolNote(PitchClass.C, 4, 2, 1, 40, 0);
+        assertEquals(soft.hashCode(), new CoolNote(PitchClass.C, 4, 2, 0, 40, 0).hashCode());
+        assertNotEquals(soft.hashCode(), loud.hashCode());
+        assertNotEquals(soft.hashCode(), later.hashCode());
+    }
+
+    @Test
+    public void testTransformSmallSelection() {
+        // few enough notes to be moved one at a time rather than by rebuilding the tree
+        for (int run = 0; run < 20; run += 1) {
+            Piece p = new PieceImpl(4, 100);
+            for (int i = 0; i < 200; i += 1) {
+                p.addNote(new CoolNote(PitchClass.G, 5, 1, i, 80, 1));
+            }
+            Note first = new CoolNote(PitchClass.E, 4, 1, 0, 50, 0);
+            Note second = new CoolNote(PitchClass.E, 4, 1, 1, 60, 0);
+            p.addNote(first);
+            p.addNote(second);
+            p.transform(Arrays.asList(first, second), NoteTransforms.shift(1));
+            assertEquals(202, p.getNotes().size());
+            assertEquals(Arrays.asList(new CoolNote(PitchClass.E, 4, 1, 1, 50, 0),
+                    new CoolNote(PitchClass.E, 4, 1, 2, 60, 0)), this.lane(p, 64));
+            assertEquals(1, p.getNotesStartingAt(1).stream()
+                    .filter(n -> n.getInstrument() == 0).count());
+            assertEquals(0, p.getNotesStartingAt(0).stream()
+                    .filter(n -> n.getInstrument() == 0).count());
+        }
+    }
+
+    /**
+     * Returns the notes of the given piece with the given MIDI pitch, in attack order.
+     */
+    private List<Note> lane(Piece p, int pitch) {
+        List<Note> found = new ArrayList<Note>();
+        for (Note n : p.getNotes()) {
+            if (MusicUtils.midiNumber(n.getPitchClass(), n.getOctave()) == pitch) {
+                found.add(n);
+            }
+        }
+        return found;
+    }
+
+    @Test
+    public void testTransform() {
+        this.reset();
+        int a = this.abc.getId(this.a4);
+
+        // a4 and b4 move up a whole tone, a4 onto b4's old pitch, and c5 starts too late
+        this.abc.transformRange(0, 4, NoteTransforms.transpose(2));
+        assertEquals(3, this.abc.getNotes().size());
+        assertEquals(73, this.abc.getHighestPitch());
+        assertEquals(new CoolNote(PitchClass.B, 4, 2, 0, 103, 0), this.abc.getNote(a));
+
+        // a run of touching notes can each move onto the next one's old place
+        this.reset();
+        List<Note> run = new ArrayList<Note>();
+        for (int i = 0; i < 100; i += 1) {
+            run.add(new CoolNote(PitchClass.C, 4, 2, 2 * i, 90, 0));
+        }
+        this.blank.addAll(run);
+        int first = this.blank.getId(run.get(0));
+        this.blank.transform(run, NoteTransforms.shift(2));
+        assertEquals(2, this.blank.getStart());
+        assertEquals(202, this.blank.getEnd());
+        assertEquals(2, this.blank.getNote(first).getAttack());
+
+        // a change that makes an overlap leaves the piece as it was
+        List<Note> before = this.blank.getNotes();
+        try {
+            this.blank.transform(this.blank.getNotes(), NoteTransforms.quantize(4));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // notes at 2 and 4 both land on 4
+        }
+        assertEquals(before, this.blank.getNotes());
+        assertEquals(2, this.blank.getNote(first).getAttack());
+        assertEquals(100, this.blank.getNotes().size());
+    }
+
+    @Test
+    public void testNoteTransforms() {
+        Note n = new CoolNote(PitchClass.C, 4, 2, 5, 100, 0);
+        assertEquals(new CoolNote(PitchClass.A, 3, 2, 5, 100, 0),
+                NoteTransforms.transpose(-3).apply(n));
+        assertEquals(new CoolNote(PitchClass.C, 4, 2, 2, 100, 0),
+                NoteTransforms.shift(-3).apply(n));
+        assertEquals(new CoolNote(PitchClass.C, 4, 2, 4, 100, 0),
+                NoteTransforms.quantize(4).apply(n));
+        assertEquals(new CoolNote(PitchClass.C, 4, 2, 8, 100, 0),
+                NoteTransforms.quantize(4).apply(NoteTransforms.shift(1).apply(n)));
+        assertEquals(new CoolNote(PitchClass.C, 4, 2, 5, 127, 0),
+                NoteTransforms.scaleVelocity(1.5).apply(n));
+        assertEquals(new CoolNote(PitchClass.C, 4, 2, 5, 50, 0),
+                NoteTransforms.scaleVelocity(0.5).apply(n));
+    }
+
+    @Test
+    public void testCounts() {
+        Random r = new Random(3500);
+        Piece counted = new PieceImpl(4, 100);
+        Piece walked = new VersionedPiece(4, 100);
+        List<Note> added = new ArrayList<Note>();
+        for (int i = 0; i < 2000; i += 1) {
+            Note n = new CoolNote(PitchClass.values()[r.nextInt(12)], 4, 1 + r.nextInt(30),
+                    r.nextInt(i < 1000 ? 100 : 5000), 100, 0);
+            try {
+                counted.addNote(n);
+                walked.addNote(n);
+                added.add(n);
+            } catch (IllegalArgumentException e) {
+                // overlapped a note already there
+            }
+            if (i % 3 == 0 && !added.isEmpty()) {
+                Note gone = added.remove(r.nextInt(added.size()));
+                counted.removeNote(gone);
+                walked.removeNote(gone);
+            }
+        }
+        counted.transform(counted.getNotes(), NoteTransforms.shift(3));
+        walked.transform(walked.getNotes(), NoteTransforms.shift(3));
+        for (int beat = -1; beat < counted.getEnd() + 2; beat += 1) {
+            assertEquals(counted.getAllNotesAt(beat).size(), counted.countNotesAt(beat));
+            assertEquals(walked.countNotesAt(beat), counted.countNotesAt(beat));
+        }
+        for (int i = 0; i < 500; i += 1) {
+            int start = r.nextInt(counted.getEnd() + 10) - 5;
+            int end = start + r.nextInt(200);
+            assertEquals(walked.countNotesIn(start, end), counted.countNotesIn(start, end));
+            assertEquals(walked.countSoundingBeats(start, end),
+                    counted.countSoundingBeats(start, end));
+        }
+        counted.resetPiece();
+        assertEquals(0, counted.countSoundingBeats(0, 10000));
+    }
+
+    @Test
+    public void testTicks() {
+        int tpb = Note.TICKS_PER_BEAT;
+        // four sixteenth notes of the same pitch, all in beat 2
+        Piece p = new PieceImpl(4, 100);
+        for (int i = 0; i < 4; i += 1) {
+            p.addNote(CoolNote.inTicks(PitchClass.C, 4, tpb / 4, 2 * tpb + i * tpb / 4, 100, 0));
+        }
+        assertEquals(4, p.getNotesStartingAt(2).size());
+        assertEquals(4, p.countNotesAt(2));
+        assertEquals(0, p.countNotesAt(3));
+        assertEquals(3, p.getEnd());
+
+        // a note from the middle of beat 2 to the middle of beat 4 sounds in beats 2, 3 and 4
+        Note held = CoolNote.inTicks(PitchClass.E, 4, 2 * tpb, 2 * tpb + tpb / 2, 100, 0);
+        assertEquals(2, held.getAttack());
+        assertEquals(3, held.getDuration());
+        assertEquals(2 * tpb, held.getDurationTicks());
+        assertFalse(held.isOnBeat());
+        p.addNote(held);
+        assertEquals(1, p.countNotesAt(4));
+        assertEquals(5, p.getEnd());
+
+        // same pitch, touching but not overlapping, is fine; overlapping by a tick is not
+        p.addNote(CoolNote.inTicks(PitchClass.C, 4, tpb, 3 * tpb, 100, 0));
+        try {
+            p.addNote(CoolNote.inTicks(PitchClass.C, 4, tpb, 3 * tpb - 1, 100, 0));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        // whole-beat notes made in ticks are the same as ones made in beats
+        assertEquals(new CoolNote(PitchClass.G, 4, 2, 1, 100, 0),
+                CoolNote.inTicks(PitchClass.G, 4, 2 * tpb, tpb, 100, 0));
+        assertNotEquals(held, CoolNote.inTicks(PitchClass.E, 4, 2 * tpb - 1, 2 * tpb + tpb / 2,
+                100, 0));
+
+        // shifting keeps the ticks; quantizing snaps the start to the beat
+        p.transform(p.getNotes(), NoteTransforms.shift(1));
+        assertEquals(5, p.getNotesStartingAt(3).size());
+        Piece q = new PieceImpl(4, 100, held);
+        q.transform(q.getNotes(), NoteTransforms.quantize(1));
+        assertEquals(3 * tpb, q.getNotes().get(0).getStartTick());
+        assertEquals(2 * tpb, q.getNotes().get(0).getDurationTicks());
+    }
+
+    @Test
+    public void testBuildInTicks() {
+        CompositionBuilder<Piece> b = PieceImpl.builder();
+        b.addNoteInTicks(120, 360, 1, 60, 100);
+        b.addNoteInTicks(360, 960, 1, 60, 100);
+        Piece p = b.build();
+        assertEquals(2, p.getNotes().size());
+        assertEquals(120, p.getNotes().get(0).getStartTick());
+        assertEquals(2, p.countNotesAt(0));
+        assertEquals(1, p.countNotesAt(1));
+    }
+}
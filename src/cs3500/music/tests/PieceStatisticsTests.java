@@ -0,0 +1,117 @@
+package cs3500.music.tests;
+
+import cs3500.music.model.*;
+import cs3500.music.util.MusicUtils;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the statistics computed about a piece.
+ */
+public final class PieceStatisticsTests {
+
+    /**
+     * Returns a piece with many random notes on a few instruments.
+     */
+    private Piece randomPiece() {
+        Random r = new Random(3500);
+        Piece p = new PieceImpl(3, 100);
+        for (int i = 0; i < 5000; i += 1) {
+            int midi = 40 + r.nextInt(40);
+            try {
+                p.addNote(new CoolNote(MusicUtils.midiNumberToPitchClass(midi),
+                        MusicUtils.midiNumberToOctave(midi), 1 + r.nextInt(12),
+                        r.nextInt(3000), 100, r.nextInt(3)));
+            } catch (IllegalArgumentException e) {
+                // overlapped a note already there
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Checks the given statistics against ones computed one beat at a time.
+     */
+    private void assertMatches(Piece p, PieceStatistics stats) {
+        int bpm = p.beatsPerMeasure();
+        assertEquals(p.getEnd(), stats.getBeats());
+        assertEquals((p.getEnd() + bpm - 1) / bpm, stats.getMeasures());
+        long[] histogram = new long[stats.getMaxPolyphony() + 1];
+        long[] notes = new long[128];
+        long[] beats = new long[128];
+        for (int m = 0; m < stats.getMeasures(); m += 1) {
+            int low = -1;
+            int high = -1;
+            int starting = 0;
+            for (int beat = m * bpm; beat < Math.min((m + 1) * bpm, p.getEnd()); beat += 1) {
+                assertEquals(p.getAllNotesAt(beat).size(), stats.getPolyphony(beat));
+                histogram[stats.getPolyphony(beat)] += 1;
+                for (Note n : p.getAllNotesAt(beat)) {
+                    int pitch = MusicUtils.midiNumber(n.getPitchClass(), n.getOctave());
+                    low = low < 0 ? pitch : Math.min(low, pitch);
+                    high = Math.max(high, pitch);
+                    beats[n.getInstrument()] += 1;
+                }
+                for (Note n : p.getNotesStartingAt(beat)) {
+                    starting += 1;
+                    notes[n.getInstrument()] += 1;
+                }
+            }
+            assertEquals(low, stats.getLowestPitch(m));
+            assertEquals(high, stats.getHighestPitch(m));
+            assertEquals(starting, stats.getNotesStarting(m));
+        }
+        assertArrayEquals(histogram, stats.getPolyphonyHistogram());
+        for (int i = 0; i < 128; i += 1) {
+            assertEquals(notes[i], stats.getInstrumentNotes(i));
+            assertEquals(beats[i], stats.getInstrumentBeats(i));
+        }
+    }
+
+    @Test
+    public void testMatchesOneBeatAtATime() {
+        Piece p = this.randomPiece();
+        this.assertMatches(p, PieceStatistics.of(p));
+        this.assertMatches(p, PieceStatistics.of(p, new ForkJoinPool(4)));
+        this.assertMatches(p, PieceStatistics.of(p, new ForkJoinPool(1)));
+    }
+
+    @Test
+    public void testOtherPieces() {
+        Piece p = this.randomPiece();
+        Piece columnar = new ColumnarPiece(3, 100);
+        columnar.addAll(p.getNotes());
+        this.assertMatches(columnar, PieceStatistics.of(columnar));
+        Piece versioned = new VersionedPiece(3, 100);
+        versioned.addAll(p.getNotes());
+        this.assertMatches(versioned, PieceStatistics.of(versioned));
+    }
+
+    @Test
+    public void testEmptyPiece() {
+        PieceStatistics stats = PieceStatistics.of(new PieceImpl(4, 100));
+        assertEquals(0, stats.getBeats());
+        assertEquals(0, stats.getMeasures());
+        assertEquals(0, stats.getMaxPolyphony());
+        assertEquals(0, stats.getInstrumentNotes(0));
+    }
+
+    @Test
+    public void testDensity() {
+        Piece p = new PieceImpl(4, 100,
+                new CoolNote(PitchClass.C, 4, 8, 0, 100, 0),
+                new CoolNote(PitchClass.E, 4, 1, 1, 100, 0),
+                new CoolNote(PitchClass.G, 4, 1, 5, 100, 1));
+        PieceStatistics stats = PieceStatistics.of(p);
+        assertEquals(0.5, stats.getNoteDensity(0), 0);
+        assertEquals(0.25, stats.getNoteDensity(1), 0);
+        assertEquals(60, stats.getLowestPitch(1));
+        assertEquals(67, stats.getHighestPitch(1));
+        assertEquals(9, stats.getInstrumentBeats(0));
+        assertEquals(2, stats.getMaxPolyphony());
+    }
+}
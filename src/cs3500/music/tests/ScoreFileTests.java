@@ -0,0 +1,124 @@
+package cs3500.music.tests;
+
+import cs3500.music.model.*;
+import cs3500.music.util.MusicReader;
+import cs3500.music.util.ScoreFile;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for reading and writing binary score files.
+ */
+public final class ScoreFileTests {
+
+    /**
+     * Returns the bytes of the given piece written as a score file.
+     */
+    private byte[] write(Piece p) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ScoreFile.write(p, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * A piece with a tempo change, a chord across instruments, the lowest and highest pitches
+     * and volumes, notes either side of the edge of the first block of the file, a note held
+     * across that edge, and several empty blocks.
+     */
+    private static final String PIECE = "tempo 200000\n"
+            + "tempo 150000 100\n"
+            + "note 0 4 1 0 0\n"
+            + "note 0 2 1 60 100\n"
+            + "note 0 2 16 60 127\n"
+            + "note 60 70 2 127 90\n"
+            + "note 63 64 1 60 70\n"
+            + "note 64 65 1 60 71\n"
+            + "note 64 66 4 67 72\n"
+            + "note 300 301 1 48 10\n";
+
+    /**
+     * Returns the test piece.
+     */
+    private Piece piece() {
+        return MusicReader.parseFile(new StringReader(PIECE), PieceImpl.builder());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Piece p = this.piece();
+        byte[] bytes = this.write(p);
+        Piece read = ScoreFile.read(new ByteArrayInputStream(bytes), PieceImpl.builder());
+        assertEquals(p.getNotes(), read.getNotes());
+        assertEquals(p.getTempoMap(), read.getTempoMap());
+
+        Piece versioned = ScoreFile.read(new ByteArrayInputStream(bytes),
+                VersionedPiece.builder());
+        assertEquals(p.getNotes(), versioned.getNotes());
+    }
+
+    @Test
+    public void testSmallerThanText() throws IOException {
+        StringBuilder text = new StringBuilder("tempo 200000\n");
+        for (int beat = 0; beat < 1000; beat += 1) {
+            for (int pitch = 60; pitch <= 67; pitch += 1) {
+                text.append("note ").append(beat).append(' ').append(beat + 1).append(" 1 ")
+                        .append(pitch).append(" 100\n");
+            }
+        }
+        Piece p = MusicReader.parseFile(new StringReader(text.toString()), PieceImpl.builder());
+        byte[] bytes = this.write(p);
+        assertTrue(bytes.length * 3 < text.length());
+        assertEquals(p.getNotes(),
+                ScoreFile.read(new ByteArrayInputStream(bytes), PieceImpl.builder()).getNotes());
+    }
+
+    @Test
+    public void testTicks() throws IOException {
+        int tpb = Note.TICKS_PER_BEAT;
+        Piece p = new PieceImpl(4, 100);
+        p.addNote(CoolNote.inTicks(PitchClass.C, 4, tpb / 3, tpb / 2, 100, 0));
+        p.addNote(new CoolNote(PitchClass.C, 4, 2, 1, 90, 2));
+        p.addNote(CoolNote.inTicks(PitchClass.D, 4, 5 * tpb, 1000 * tpb + 7, 20, 9));
+        Piece read = ScoreFile.read(new ByteArrayInputStream(this.write(p)), PieceImpl.builder());
+        assertEquals(p.getNotes(), read.getNotes());
+    }
+
+    @Test
+    public void testFromBeat() throws IOException {
+        Piece p = this.piece();
+        Piece read = ScoreFile.read(new ByteArrayInputStream(this.write(p)), PieceImpl.builder(),
+                64);
+        assertEquals(64, read.getStart());
+        assertEquals(p.getNotesStartingAt(64), read.getNotesStartingAt(64));
+        assertEquals(p.getNotesStartingAt(300), read.getNotesStartingAt(300));
+        assertEquals(p.getEnd(), read.getEnd());
+        assertEquals(p.getTempoMap(), read.getTempoMap());
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        Piece read = ScoreFile.read(new ByteArrayInputStream(this.write(new PieceImpl(3, 500))),
+                PieceImpl.builder());
+        assertEquals(0, read.getNotes().size());
+        assertEquals(500, read.getTempo());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotAScore() throws IOException {
+        ScoreFile.read(new ByteArrayInputStream("note 0 1 1 60 100\n".getBytes()),
+                PieceImpl.builder());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncated() throws IOException {
+        byte[] bytes = this.write(this.piece());
+        ScoreFile.read(new ByteArrayInputStream(bytes, 0, bytes.length - 3),
+                PieceImpl.builder());
+    }
+}
@@ -0,0 +1,120 @@
+package cs3500.music.tests;
+
+import cs3500.music.model.*;
+import cs3500.music.util.MusicReader;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for tempo maps, and for reading pieces whose tempo changes.
+ */
+public final class TempoMapTests {
+
+    /**
+     * A map that starts at 500000 microseconds per beat, doubles speed at beat 4, and slows to
+     * 1000000 at beat 10.
+     */
+    private TempoMap threeTempos() {
+        Map<Integer, Integer> changes = new HashMap<Integer, Integer>();
+        changes.put(10, 1000000);
+        changes.put(0, 500000);
+        changes.put(4, 250000);
+        return new TempoMap(changes);
+    }
+
+    @Test
+    public void testConstant() {
+        TempoMap map = TempoMap.constant(200000);
+        assertEquals(200000, map.getTempoAt(0));
+        assertEquals(200000, map.getTempoAt(1000));
+        assertEquals(2000000, map.getTime(10));
+        assertEquals(10, map.getBeatAt(2000000));
+        assertEquals(9, map.getBeatAt(1999999));
+        assertEquals(200000, map.getFastestTempo());
+    }
+
+    @Test
+    public void testChanges() {
+        TempoMap map = this.threeTempos();
+        assertEquals(500000, map.getTempoAt(3));
+        assertEquals(250000, map.getTempoAt(4));
+        assertEquals(250000, map.getTempoAt(9));
+        assertEquals(1000000, map.getTempoAt(10));
+        assertEquals(0, map.getTime(0));
+        assertEquals(2000000, map.getTime(4));
+        assertEquals(3500000, map.getTime(10));
+        assertEquals(5500000, map.getTime(12));
+        assertEquals(3, map.getBeatAt(1999999));
+        assertEquals(4, map.getBeatAt(2000000));
+        assertEquals(9, map.getBeatAt(3499999));
+        assertEquals(11, map.getBeatAt(4600000));
+        assertEquals(250000, map.getFastestTempo());
+        assertEquals(3, map.getChanges().size());
+    }
+
+    @Test
+    public void testFirstTempoAppliesBeforeIt() {
+        TempoMap map = new TempoMap(Collections.singletonMap(8, 300000));
+        assertEquals(300000, map.getTempoAt(0));
+        assertEquals(900000, map.getTime(3));
+        assertEquals(TempoMap.constant(300000), map);
+    }
+
+    @Test
+    public void testBeatsAndTimesAgree() {
+        Random r = new Random(3500);
+        Map<Integer, Integer> changes = new HashMap<Integer, Integer>();
+        for (int i = 0; i < 50; i += 1) {
+            changes.put(r.nextInt(1000), 1 + r.nextInt(1000000));
+        }
+        TempoMap map = new TempoMap(changes);
+        long time = 0;
+        for (int beat = 0; beat < 1200; beat += 1) {
+            assertEquals(time, map.getTime(beat));
+            assertEquals(beat, map.getBeatAt(time));
+            time += map.getTempoAt(beat);
+            assertEquals(beat, map.getBeatAt(time - 1));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmpty() {
+        new TempoMap(new HashMap<Integer, Integer>());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadTempo() {
+        TempoMap.constant(0);
+    }
+
+    @Test
+    public void testReadMultipleTempos() {
+        String text = "tempo 200000\n"
+                + "note 0 4 1 60 100\n"
+                + "tempo 100000 4\n"
+                + "note 4 8 1 64 100\n"
+                + "tempo 400000 8\n";
+        Piece p = MusicReader.parseFile(new StringReader(text), PieceImpl.builder());
+        assertEquals(200000, p.getTempo());
+        assertEquals(100000, p.getTempoMap().getTempoAt(6));
+        assertEquals(400000, p.getTempoMap().getTempoAt(8));
+        assertEquals(1200000, p.getTempoMap().getTime(8));
+        assertEquals(2, p.getNotes().size());
+        assertEquals(p.getTempoMap(), p.snapshot().getTempoMap());
+
+        Piece versioned = MusicReader.parseFile(new StringReader(text), VersionedPiece.builder());
+        assertEquals(p.getTempoMap(), versioned.getTempoMap());
+        Piece columnar = MusicReader.parseFile(new StringReader(text), ColumnarPiece.builder());
+        assertEquals(p.getTempoMap(), columnar.getTempoMap());
+        Piece concurrent = MusicReader.parseFile(new StringReader(text),
+                ConcurrentPiece.builder());
+        assertEquals(p.getTempoMap(), concurrent.getTempoMap());
+    }
+}
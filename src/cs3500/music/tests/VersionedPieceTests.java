@@ -0,0 +1,313 @@
+package cs3500.music.tests;
+
+import cs3500.music.model.*;
+import cs3500.music.util.MusicReader;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the versioned piece.
+ */
+public final class VersionedPieceTests {
+
+    private final Note c4 = new CoolNote(PitchClass.C, 4, 4, 0, 100, 0);
+    private final Note e4 = new CoolNote(PitchClass.E, 4, 2, 2, 100, 0);
+    private final Note g4 = new CoolNote(PitchClass.G, 4, 8, 4, 100, 0);
+
+    /**
+     * Returns the notes the given piece finds in the given window, with whether each one starts
+     * in it, checking that no note is found twice.
+     */
+    private Map<Note, Boolean> window(Piece p, int start, int end, int low, int high) {
+        Map<Note, Boolean> found = new HashMap<Note, Boolean>();
+        p.notesIn(start, end, low, high, (n, starts) -> assertNull(found.put(n, starts)));
+        return found;
+    }
+
+    @Test
+    public void testMatchesPieceImpl() {
+        Random r = new Random(3500);
+        Piece expected = new PieceImpl(4, 100);
+        Piece actual = new VersionedPiece(4, 100);
+        for (int i = 0; i < 3000; i += 1) {
+            Note n = new CoolNote(PitchClass.values()[r.nextInt(12)], 3 + r.nextInt(2),
+                    1 + r.nextInt(r.nextInt(10) == 0 ? 40 : 4), r.nextInt(300), 100,
+                    r.nextInt(2));
+            boolean added;
+            try {
+                expected.addNote(n);
+                added = true;
+            } catch (IllegalArgumentException e) {
+                added = false;
+            }
+            try {
+                actual.addNote(n);
+                assertTrue(added);
+            } catch (IllegalArgumentException e) {
+                assertFalse(added);
+            }
+            if (i % 5 == 0 && added) {
+                expected.removeNote(n);
+                actual.removeNote(n);
+            }
+        }
+        assertEquals(expected.getStart(), actual.getStart());
+        assertEquals(expected.getEnd(), actual.getEnd());
+        assertEquals(expected.getHighestPitch(), actual.getHighestPitch());
+        assertEquals(expected.getLowestPitch(), actual.getLowestPitch());
+        assertEquals(expected.getHighest(), actual.getHighest());
+        assertEquals(expected.getLowest(), actual.getLowest());
+        assertEquals(expected.getNotes(), actual.getNotes());
+        for (int beat = 0; beat <= expected.getEnd(); beat += 1) {
+            assertEquals(new HashSet<Note>(expected.getAllNotesAt(beat)),
+                    new HashSet<Note>(actual.getAllNotesAt(beat)));
+            assertEquals(new HashSet<Note>(expected.getNotesStartingAt(beat)),
+                    new HashSet<Note>(actual.getNotesStartingAt(beat)));
+            assertEquals(new HashSet<Note>(expected.getNotesSustainedAt(beat)),
+                    new HashSet<Note>(actual.getNotesSustainedAt(beat)));
+        }
+        for (int start = 0; start <= expected.getEnd(); start += 7) {
+            assertEquals(this.window(expected, start, start + 10, 50, 62),
+                    this.window(actual, start, start + 10, 50, 62));
+        }
+    }
+
+    @Test
+    public void testSnapshotDoesNotChange() {
+        Piece p = new VersionedPiece(4, 100, this.c4, this.e4);
+        Piece before = p.snapshot();
+        p.addNote(this.g4);
+        p.removeNote(this.c4);
+        assertEquals(2, before.getNotes().size());
+        assertEquals(4, before.getEnd());
+        assertTrue(before.getNotes().contains(this.c4));
+        assertEquals(2, p.getNotes().size());
+        assertEquals(12, p.getEnd());
+        p.resetPiece();
+        assertEquals(2, before.getNotes().size());
+        assertSame(before, before.snapshot());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotIsReadOnly() {
+        new VersionedPiece(4, 100, this.c4).snapshot().addNote(this.e4);
+    }
+
+    @Test
+    public void testEditIsAllOrNothing() {
+        Piece p = new VersionedPiece(4, 100, this.c4);
+        Piece before = p.snapshot();
+        try {
+            p.edit(draft -> {
+                draft.removeNote(this.c4);
+                draft.addNote(this.e4);
+                draft.addNote(this.e4);
+            });
+            fail();
+        } catch (IllegalArgumentException e) {
+            // the second e4 overlaps the first
+        }
+        assertEquals(before.getNotes(), p.getNotes());
+
+        p.edit(draft -> {
+            draft.removeNote(this.c4);
+            draft.addNote(this.e4);
+        });
+        assertEquals(Arrays.asList(this.e4), p.getNotes());
+        assertEquals(Arrays.asList(this.c4), before.getNotes());
+    }
+
+    @Test
+    public void testAddAllOverlapAddsNothing() {
+        Piece p = new VersionedPiece(4, 100, this.c4);
+        try {
+            p.addAll(Arrays.asList(this.e4, new CoolNote(PitchClass.C, 4, 1, 3, 100, 0)));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // overlaps c4
+        }
+        assertEquals(1, p.getNotes().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRemoveMissing() {
+        new VersionedPiece(4, 100, this.c4).removeNote(this.e4);
+    }
+
+    @Test
+    public void testIds() {
+        Piece p = new VersionedPiece(4, 100, this.c4, this.e4);
+        int c = p.getId(this.c4);
+        Piece before = p.snapshot();
+        Note louder = new CoolNote(PitchClass.C, 4, 4, 0, 120, 0);
+        p.replaceNote(c, louder);
+        assertEquals(louder, p.getNote(c));
+        assertEquals(c, p.getId(louder));
+        assertEquals(this.c4, before.getNote(c));
+        try {
+            p.getId(this.c4);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // replaced
+        }
+
+        p.edit(draft -> draft.removeNote(draft.getId(this.e4)));
+        assertEquals(Arrays.asList(louder), p.getNotes());
+        p.resetPiece();
+        p.addNote(this.g4);
+        assertNotEquals(c, p.getId(this.g4));
+    }
+
+    @Test
+    public void testTransform() {
+        Piece p = new VersionedPiece(4, 100, this.c4, this.e4, this.g4);
+        int e = p.getId(this.e4);
+        Piece before = p.snapshot();
+        p.transformRange(0, 3, NoteTransforms.shift(1));
+        assertEquals(1, p.getStart());
+        assertEquals(new CoolNote(PitchClass.E, 4, 2, 3, 100, 0), p.getNote(e));
+        assertEquals(this.e4, before.getNote(e));
+        try {
+            p.transform(Arrays.asList(p.getNote(e)), NoteTransforms.transpose(3));
+            fail();
+        } catch (IllegalArgumentException ex) {
+            // e4 lands on g4
+        }
+        assertEquals(new CoolNote(PitchClass.E, 4, 2, 3, 100, 0), p.getNote(e));
+    }
+
+    @Test
+    public void testTicks() {
+        int tpb = Note.TICKS_PER_BEAT;
+        Piece p = new VersionedPiece(4, 100);
+        p.addNote(CoolNote.inTicks(PitchClass.C, 4, tpb / 2, 0, 100, 0));
+        p.addNote(CoolNote.inTicks(PitchClass.C, 4, tpb / 2, tpb / 2, 100, 0));
+        assertEquals(2, p.countNotesAt(0));
+        try {
+            p.addNote(CoolNote.inTicks(PitchClass.C, 4, tpb, tpb / 2 + 1, 100, 0));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(2, p.getNotes().size());
+    }
+
+    @Test
+    public void testStreaming() throws InterruptedException {
+        VersionedPiece.StreamingBuilder builder = VersionedPiece.streamingBuilder();
+        Piece p = builder.getPiece();
+        assertEquals(0, p.getLoadedThrough());
+        for (int i = 0; i < 256; i += 1) {
+            builder.addNote(i, i + 1, 1, 60, 100);
+        }
+        // nothing is published until a batch is full and a later beat starts
+        assertEquals(0, p.getNotes().size());
+        builder.addNote(256, 257, 1, 60, 100);
+        assertEquals(256, p.getLoadedThrough());
+        assertEquals(256, p.getNotes().size());
+        p.awaitLoaded(255);
+
+        Thread reader = new Thread(() -> {
+            try {
+                p.awaitLoaded(256);
+            } catch (InterruptedException e) {
+                // the test fails below
+            }
+        });
+        reader.start();
+        reader.join(50);
+        assertTrue(reader.isAlive());
+        builder.setTempo(200000);
+        assertEquals(200000, p.getTempo());
+        assertSame(p, builder.build());
+        reader.join(1000);
+        assertFalse(reader.isAlive());
+        assertEquals(Integer.MAX_VALUE, p.getLoadedThrough());
+        assertEquals(257, p.getNotes().size());
+    }
+
+    @Test
+    public void testStreamingMatchesBuilder() throws InterruptedException {
+        StringBuilder text = new StringBuilder("tempo 200000\n");
+        Random r = new Random(3500);
+        for (int i = 0; i < 5000; i += 1) {
+            text.append("note ").append(i / 3).append(' ').append(i / 3 + 1)
+                    .append(' ').append(1 + i % 3).append(' ').append(40 + r.nextInt(40))
+                    .append(' ').append(r.nextInt(128)).append('\n');
+        }
+        Piece expected = MusicReader.parseFile(new StringReader(text.toString()),
+                VersionedPiece.builder());
+        VersionedPiece.StreamingBuilder builder = VersionedPiece.streamingBuilder();
+        Thread loader = new Thread(() -> MusicReader.parseFile(
+                new StringReader(text.toString()), builder));
+        loader.start();
+
+        // a reader that keeps up with the loader sees every note before each beat it waits for
+        Piece p = builder.getPiece();
+        for (int beat = 0; beat < expected.getEnd(); beat += 100) {
+            p.awaitLoaded(beat);
+            assertTrue(p.getLoadedThrough() > beat);
+            assertEquals(expected.countNotesAt(beat), p.countNotesAt(beat));
+        }
+        loader.join();
+        assertEquals(expected.getNotes(), p.getNotes());
+        assertEquals(expected.getTempoMap(), p.getTempoMap());
+    }
+
+    @Test
+    public void testStreamingOutOfOrder() throws InterruptedException {
+        // written one instrument at a time, as src/mystery-1.txt is
+        StringBuilder text = new StringBuilder("tempo 200000\n");
+        for (int instrument = 1; instrument <= 3; instrument += 1) {
+            for (int beat = 0; beat < 2000; beat += 1) {
+                text.append("note ").append(beat).append(' ').append(beat + 1).append(' ')
+                        .append(instrument).append(' ').append(40 + instrument).append(" 100\n");
+            }
+        }
+        assertFalse(MusicReader.isInAttackOrder(new StringReader(text.toString())));
+        Piece expected = MusicReader.parseFile(new StringReader(text.toString()),
+                VersionedPiece.builder());
+        VersionedPiece.StreamingBuilder builder = VersionedPiece.streamingBuilder(false);
+        Thread loader = new Thread(() -> MusicReader.parseFile(
+                new StringReader(text.toString()), builder));
+        loader.start();
+
+        // every note before a beat is there once a reader is told the beat has loaded
+        Piece p = builder.getPiece();
+        for (int beat = 0; beat < expected.getEnd(); beat += 100) {
+            p.awaitLoaded(beat);
+            assertEquals(expected.countNotesAt(beat), p.countNotesAt(beat));
+        }
+        loader.join();
+        assertEquals(expected.getNotes(), p.getNotes());
+    }
+
+    @Test
+    public void testStreamingStopsOutOfOrder() {
+        VersionedPiece.StreamingBuilder builder = VersionedPiece.streamingBuilder();
+        Piece p = builder.getPiece();
+        for (int i = 0; i <= 256; i += 1) {
+            builder.addNote(i, i + 1, 1, 60, 100);
+        }
+        assertEquals(256, p.getLoadedThrough());
+        // a note that goes back stops the piece loading any further until it is built
+        builder.addNote(300, 301, 2, 60, 100);
+        builder.addNote(0, 1, 2, 60, 100);
+        for (int i = 257; i < 2000; i += 1) {
+            builder.addNote(i, i + 1, 1, 60, 100);
+        }
+        assertEquals(256, p.getLoadedThrough());
+        assertEquals(256, p.getNotes().size());
+        builder.build();
+        assertEquals(Integer.MAX_VALUE, p.getLoadedThrough());
+        assertEquals(2002, p.getNotes().size());
+    }
+}
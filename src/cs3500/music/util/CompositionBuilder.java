@@ -19,12 +19,20 @@ public interface CompositionBuilder<T> {
     T build();
 
     /**
-     * Sets the tempo of the piece
+     * Sets the tempo of the piece from its first beat
      * @param tempo The speed, in microseconds per beat
      * @return This builder
      */
     CompositionBuilder<T> setTempo(int tempo);
 
+    /**
+     * Changes the tempo of the piece from the given beat on
+     * @param beat The beat at which the tempo changes
+     * @param tempo The speed, in microseconds per beat
+     * @return This builder
+     */
+    CompositionBuilder<T> setTempo(int beat, int tempo);
+
     /**
      * Adds a new note to the piece
      * @param start The start time of the note, in beats
@@ -35,5 +43,18 @@ public interface CompositionBuilder<T> {
      * @return
      */
     CompositionBuilder<T> addNote(int start, int end, int instrument, int pitch, int volume);
+
+    /**
+     * Adds a new note to the piece, timed in ticks, where there are
+     * {@link cs3500.music.model.Note#TICKS_PER_BEAT} ticks to a beat
+     * @param start The start time of the note, in ticks
+     * @param end The end time of the note, in ticks
+     * @param instrument The instrument number (to be interpreted by MIDI)
+     * @param pitch The pitch (in the range [0, 127], where 60 represents C4)
+     * @param volume The volume (in the range [0, 127])
+     * @return This builder
+     */
+    CompositionBuilder<T> addNoteInTicks(long start, long end, int instrument, int pitch,
+                                         int volume);
 }
 
@@ -0,0 +1,126 @@
+package cs3500.music.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiEvent;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
+import cs3500.music.model.Note;
+import cs3500.music.model.Piece;
+
+/**
+ * Writes pieces as Standard MIDI Files, without playing them.
+ *
+ * <p>
+ *   A piece is compiled into a sequence timed at {@link Note#TICKS_PER_BEAT} ticks per quarter
+ *   note, so the times of notes carry over exactly. The first track holds the tempo changes of
+ *   the piece, and the second holds its notes, each played on the channel of its instrument,
+ *   as {@link cs3500.music.view.MIDIView} plays it. Events are sorted before they are added to
+ *   the track, so each is appended rather than searched into place. A note with no velocity
+ *   is silent, and would read as the end of a note in MIDI, so it is left out.
+ * </p>
+ */
+public final class MidiExporter {
+    /** The type of the meta message that sets the tempo. */
+    private static final int SET_TEMPO = 0x51;
+
+    /** The slowest tempo MIDI can hold, in microseconds per beat: three bytes' worth. */
+    private static final int MAX_TEMPO = 0xFFFFFF;
+
+    /** The order of the events of a track: by time, and notes ending before notes starting. */
+    private static final Comparator<MidiEvent> ORDER = Comparator.comparingLong(MidiEvent::getTick)
+            .thenComparingInt(e -> ((ShortMessage) e.getMessage()).getCommand()
+                    == ShortMessage.NOTE_OFF ? 0 : 1);
+
+    private MidiExporter() {
+    }
+
+    /**
+     * Compiles the given piece into a MIDI sequence.
+     *
+     * @param piece the piece to compile
+     * @return the sequence
+     * @throws IllegalArgumentException if a note has an instrument that is not a MIDI channel,
+     *                                  or a pitch or velocity out of MIDI range, or if a tempo
+     *                                  is slower than MIDI can hold
+     */
+    public static Sequence toSequence(Piece piece) {
+        try {
+            Sequence sequence = new Sequence(Sequence.PPQ, Note.TICKS_PER_BEAT);
+            Track conductor = sequence.createTrack();
+            for (Map.Entry<Integer, Integer> change
+                    : piece.getTempoMap().getChanges().entrySet()) {
+                int tempo = change.getValue();
+                if (tempo < 0 || tempo > MAX_TEMPO) {
+                    throw new IllegalArgumentException("Tempo cannot be written as MIDI: "
+                            + tempo + " microseconds per beat at beat " + change.getKey());
+                }
+                byte[] data = {(byte) (tempo >> 16), (byte) (tempo >> 8), (byte) tempo};
+                conductor.add(new MidiEvent(new MetaMessage(SET_TEMPO, data, data.length),
+                        (long) change.getKey() * Note.TICKS_PER_BEAT));
+            }
+
+            List<Note> notes = piece.getNotes();
+            MidiEvent[] events = new MidiEvent[2 * notes.size()];
+            int i = 0;
+            for (Note n : notes) {
+                if (n.getVelocity() == 0) {
+                    continue;
+                }
+                int pitch = MusicUtils.midiNumber(n.getPitchClass(), n.getOctave());
+                events[i] = new MidiEvent(new ShortMessage(ShortMessage.NOTE_ON,
+                        n.getInstrument(), pitch, n.getVelocity()), n.getStartTick());
+                events[i + 1] = new MidiEvent(new ShortMessage(ShortMessage.NOTE_OFF,
+                        n.getInstrument(), pitch, 0), n.getEndTick());
+                i += 2;
+            }
+            Arrays.sort(events, 0, i, ORDER);
+            Track track = sequence.createTrack();
+            for (int e = 0; e < i; e += 1) {
+                track.add(events[e]);
+            }
+            return sequence;
+        } catch (InvalidMidiDataException e) {
+            throw new IllegalArgumentException("Piece cannot be written as MIDI: "
+                    + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes the given piece to the given file as a type 1 MIDI file.
+     *
+     * @param piece the piece to write
+     * @param file the file to write to
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if the piece cannot be written as MIDI
+     */
+    public static void write(Piece piece, File file) throws IOException {
+        MidiSystem.write(toSequence(piece), 1, file);
+        return;
+    }
+
+    /**
+     * Writes the given piece to the given stream as a type 1 MIDI file. The stream is not
+     * closed.
+     *
+     * @param piece the piece to write
+     * @param out the stream to write to
+     * @throws IOException if the stream cannot be written to
+     * @throws IllegalArgumentException if the piece cannot be written as MIDI
+     */
+    public static void write(Piece piece, OutputStream out) throws IOException {
+        MidiSystem.write(toSequence(piece), 1, out);
+        return;
+    }
+}
@@ -0,0 +1,169 @@
+package cs3500.music.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import javax.sound.midi.InvalidMidiDataException;
+import javax.sound.midi.MetaMessage;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.MidiSystem;
+import javax.sound.midi.Sequence;
+import javax.sound.midi.ShortMessage;
+import javax.sound.midi.Track;
+
+import cs3500.music.model.Note;
+
+/**
+ * Reads Standard MIDI Files and constructs music compositions from them.
+ *
+ * <p>
+ *   The notes of a file are found by pairing each note-on event with the next note-off event
+ *   of the same channel and key, in one pass over each track. Events are read where the
+ *   sequence keeps them, and notes that are sounding are kept in a table with a slot for every
+ *   channel and key, so no lists of events are built along the way. Each note is handed to the
+ *   builder as soon as it ends.
+ * </p>
+ * <p>
+ *   The channel of an event is used as the instrument of its note, counting from one as a
+ *   builder is given it, since the channel is what notes are played on. Program changes are
+ *   not kept. Times are converted from the resolution of the file to
+ *   {@link Note#TICKS_PER_BEAT}, where a beat is a quarter note, and notes that fall on beats
+ *   are added in beats. Tempo changes are moved back to the start of the beat they fall in.
+ * </p>
+ */
+public final class MidiImporter {
+    /** The tempo a MIDI file plays at until it says otherwise, in microseconds per beat. */
+    private static final int DEFAULT_TEMPO = 500000;
+
+    /** The type of the meta message that sets the tempo. */
+    private static final int SET_TEMPO = 0x51;
+
+    private MidiImporter() {
+    }
+
+    /**
+     * Reads a composition from the given MIDI file.
+     *
+     * @param file the MIDI file
+     * @param piece a builder for helping to construct a new composition
+     * @param <T> the main model interface type describing music compositions
+     * @return the composition
+     * @throws IOException if the file cannot be read
+     * @throws InvalidMidiDataException if the file is not a MIDI file
+     */
+    public static <T> T parseFile(File file, CompositionBuilder<T> piece)
+            throws IOException, InvalidMidiDataException {
+        return read(MidiSystem.getSequence(file), piece);
+    }
+
+    /**
+     * Reads a composition from the given stream of MIDI data. The stream is not closed.
+     *
+     * @param in the MIDI data
+     * @param piece a builder for helping to construct a new composition
+     * @param <T> the main model interface type describing music compositions
+     * @return the composition
+     * @throws IOException if the stream cannot be read
+     * @throws InvalidMidiDataException if the stream does not hold a MIDI file
+     */
+    public static <T> T parseFile(InputStream in, CompositionBuilder<T> piece)
+            throws IOException, InvalidMidiDataException {
+        return read(MidiSystem.getSequence(in), piece);
+    }
+
+    /**
+     * Constructs a composition from the notes and tempo changes of the given sequence.
+     *
+     * @param sequence the MIDI sequence
+     * @param piece a builder for helping to construct a new composition
+     * @param <T> the main model interface type describing music compositions
+     * @return the composition
+     * @throws IllegalArgumentException if the sequence is timed in frames rather than beats, or
+     *                                  has a tempo change that is not three bytes long
+     */
+    public static <T> T read(Sequence sequence, CompositionBuilder<T> piece) {
+        if (sequence.getDivisionType() != Sequence.PPQ) {
+            throw new IllegalArgumentException("Only MIDI files timed in beats can be read");
+        }
+        long resolution = sequence.getResolution();
+        piece.setTempo(DEFAULT_TEMPO);
+
+        // the tick each channel and key started sounding at, or -1, and how loud
+        long[] starts = new long[16 * 128];
+        int[] velocities = new int[16 * 128];
+        for (Track track : sequence.getTracks()) {
+            Arrays.fill(starts, -1);
+            long tick = 0;
+            for (int i = 0; i < track.size(); i += 1) {
+                tick = ticks(track.get(i).getTick(), resolution);
+                MidiMessage message = track.get(i).getMessage();
+                if (message instanceof ShortMessage) {
+                    ShortMessage m = (ShortMessage) message;
+                    int command = m.getCommand();
+                    if (command != ShortMessage.NOTE_ON && command != ShortMessage.NOTE_OFF) {
+                        continue;
+                    }
+                    int slot = m.getChannel() * 128 + m.getData1();
+                    if (starts[slot] >= 0) {
+                        // a note-off, or a note-on that strikes a sounding key again
+                        end(piece, starts[slot], tick, slot, velocities[slot]);
+                        starts[slot] = -1;
+                    }
+                    if (command == ShortMessage.NOTE_ON && m.getData2() > 0) {
+                        starts[slot] = tick;
+                        velocities[slot] = m.getData2();
+                    }
+                } else if (message instanceof MetaMessage
+                        && ((MetaMessage) message).getType() == SET_TEMPO) {
+                    byte[] data = ((MetaMessage) message).getData();
+                    if (data.length != 3) {
+                        throw new IllegalArgumentException("Malformed tempo change at tick "
+                                + track.get(i).getTick());
+                    }
+                    int tempo = (data[0] & 0xFF) << 16 | (data[1] & 0xFF) << 8 | data[2] & 0xFF;
+                    int beat = (int) (tick / Note.TICKS_PER_BEAT);
+                    if (beat == 0) {
+                        piece.setTempo(tempo);
+                    } else {
+                        piece.setTempo(beat, tempo);
+                    }
+                }
+            }
+            // notes still sounding end with their track
+            for (int slot = 0; slot < starts.length; slot += 1) {
+                if (starts[slot] >= 0) {
+                    end(piece, starts[slot], tick, slot, velocities[slot]);
+                }
+            }
+        }
+        return piece.build();
+    }
+
+    /**
+     * Converts a time in the ticks of a MIDI file of the given resolution to a time in the
+     * ticks of a note, rounding to the nearest.
+     */
+    private static long ticks(long midiTicks, long resolution) {
+        return (midiTicks * Note.TICKS_PER_BEAT + resolution / 2) / resolution;
+    }
+
+    /**
+     * Gives the builder a note that sounded between the given ticks, on the channel and key of
+     * the given slot. A note too short to last a tick is made a tick long.
+     */
+    private static <T> void end(CompositionBuilder<T> piece, long start, long end, int slot,
+                                int velocity) {
+        end = Math.max(end, start + 1);
+        int instrument = slot / 128 + 1;
+        int pitch = slot % 128;
+        if (start % Note.TICKS_PER_BEAT == 0 && end % Note.TICKS_PER_BEAT == 0) {
+            piece.addNote((int) (start / Note.TICKS_PER_BEAT), (int) (end / Note.TICKS_PER_BEAT),
+                    instrument, pitch, velocity);
+        } else {
+            piece.addNoteInTicks(start, end, instrument, pitch, velocity);
+        }
+        return;
+    }
+}
@@ -1,14 +1,34 @@
 package cs3500.music.util;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
+import cs3500.music.model.Note;
 import cs3500.music.util.CompositionBuilder;
 
 /**
  * A helper to read music data and construct a music composition from it.
  */
 public class MusicReader {
+    /** The smallest chunk of a file parsed on its own, in bytes. */
+    private static final long MIN_CHUNK = 1 << 20;
+
+    /** The largest chunk of a file parsed on its own, in bytes. */
+    private static final long MAX_CHUNK = 1 << 28;
+
     /**
      * A factory for producing new music compositions, given a source of music and a
      * builder for constructing compositions.
@@ -17,49 +37,395 @@ public class MusicReader {
      *   The input file format consists of two types of lines:
      *   <ul>
      *     <li>Tempo lines: the keyword "tempo" followed by a number,
-     *      describing the tempo in microseconds per beat</li>
+     *      describing the tempo in microseconds per beat, and optionally a second number
+     *      giving the beat from which that tempo applies (beat 0 if it is left out).
+     *      There may be any number of tempo lines.</li>
      *     <li>cs3500.music.model.Note lines: the keyword "note" followed by five numbers indicating
      *      the start and end times of the note, the instrument,
      *      the pitch, and the volume</li>
      *   </ul>
      * </p>
+     * <p>
+     *   The data is read with a hand-written tokenizer rather than a {@link java.util.Scanner},
+     *   so large files are read many times faster. Malformed lines are reported by line number.
+     * </p>
      * @param readable The source of data for the music composition
      * @param piece A builder for helping to construct a new composition
      * @param <T> The main model interface type describing music compositions
      * @return
      */
     public static <T> T parseFile(Readable readable, CompositionBuilder<T> piece) {
-        Scanner scanner = new Scanner(readable);
-        while (scanner.hasNext()) {
-            String lineType = scanner.next();
+        read(new MusicTokenizer(readable), piece);
+        return piece.build();
+    }
+
+    /**
+     * Reads music from the given file on the common fork/join pool, and constructs a
+     * composition from it. The file is read as in {@link #parseFile(Readable,
+     * CompositionBuilder)}, and the same composition is made.
+     *
+     * @param file The file of music data
+     * @param piece A builder for helping to construct a new composition
+     * @param <T> The main model interface type describing music compositions
+     * @return the composition
+     * @throws IOException if the file cannot be read
+     */
+    public static <T> T parseFile(Path file, CompositionBuilder<T> piece) throws IOException {
+        return parseFile(file, piece, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reads music from the given file on the given fork/join pool, and constructs a composition
+     * from it.
+     *
+     * <p>
+     *   The file is memory-mapped and split into chunks at the start of lines, and the chunks
+     *   are parsed at the same time, each into a buffer of its own. The buffers are then handed
+     *   to the builder in the order of the file, so the builder is told exactly what a
+     *   sequential read would tell it, and the same composition is made. Only the parsing is
+     *   spread across the pool; building the composition still happens on this thread.
+     * </p>
+     * @param file The file of music data
+     * @param piece A builder for helping to construct a new composition
+     * @param pool The pool to parse the chunks on
+     * @param <T> The main model interface type describing music compositions
+     * @return the composition
+     * @throws IOException if the file cannot be read
+     */
+    public static <T> T parseFile(Path file, CompositionBuilder<T> piece, ForkJoinPool pool)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            // enough chunks to keep every thread busy, none too big to map
+            long target = Math.max(MIN_CHUNK, Math.min(MAX_CHUNK,
+                    size / (pool.getParallelism() * 4L) + 1));
+            List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+            long start = 0;
+            while (start < size) {
+                long end = lineStartAfter(channel, Math.min(start + target, size), size);
+                chunks.add(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+                start = end;
+            }
+
+            List<Callable<NoteBuffer>> tasks = new ArrayList<Callable<NoteBuffer>>();
+            for (ByteBuffer chunk : chunks) {
+                tasks.add(() -> {
+                    NoteBuffer buffer = new NoteBuffer();
+                    MusicTokenizer tokens = new MusicTokenizer(new AsciiSource(chunk.duplicate()));
+                    try {
+                        read(tokens, buffer);
+                    } catch (IllegalArgumentException e) {
+                        buffer.failed = true;
+                    }
+                    buffer.lines = tokens.getLine() - 1;
+                    return buffer;
+                });
+            }
+
+            int line = 1;
+            List<Future<NoteBuffer>> parsed = pool.invokeAll(tasks);
+            for (int i = 0; i < parsed.size(); i += 1) {
+                NoteBuffer buffer = parsed.get(i).get();
+                if (buffer.failed) {
+                    // read the chunk again knowing where it starts, to report the right line
+                    read(new MusicTokenizer(new AsciiSource(chunks.get(i).duplicate()), line),
+                            new NoteBuffer());
+                }
+                buffer.replay(piece);
+                line += buffer.lines;
+            }
+            return piece.build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + file, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Could not read " + file, e.getCause());
+        }
+    }
+
+    /**
+     * Reads music data and returns whether every note in it starts no earlier than the note
+     * before it, as a loader that publishes a piece while reading it needs to know. The data is
+     * only tokenized, so this costs a small part of building a composition from it.
+     *
+     * @param readable The source of data for the music composition
+     * @return whether the notes are in order of attack
+     * @throws IllegalArgumentException if a line is malformed
+     */
+    public static boolean isInAttackOrder(Readable readable) {
+        return parseFile(readable, new AttackOrder());
+    }
+
+    /**
+     * Reads every line of music from the given tokens into the given builder, without building
+     * the composition.
+     *
+     * @throws IllegalArgumentException if a line is malformed
+     */
+    private static <T> void read(MusicTokenizer tokens, CompositionBuilder<T> piece) {
+        while (tokens.hasNext()) {
+            int line = tokens.getLine();
+            String lineType = tokens.nextWord();
             switch (lineType) {
                 case "tempo":
                     try {
-                        piece.setTempo(scanner.nextInt());
+                        int tempo = tokens.nextInt();
+                        if (tokens.hasNextIntOnLine()) {
+                            piece.setTempo(tokens.nextInt(), tempo);
+                        } else {
+                            piece.setTempo(tempo);
+                        }
                     } catch (NoSuchElementException e) {
-                        throw new IllegalArgumentException("Malformed tempo line: "
-                                + scanner.nextLine());
+                        throw new IllegalArgumentException("Malformed tempo line: line " + line);
                     }
                     break;
                 case "note":
                     try {
-                        int startBeat = scanner.nextInt();
-                        int endBeat = scanner.nextInt();
-                        int instrument = scanner.nextInt();
-                        int pitch = scanner.nextInt();
-                        int volume = scanner.nextInt();
+                        int startBeat = tokens.nextInt();
+                        int endBeat = tokens.nextInt();
+                        int instrument = tokens.nextInt();
+                        int pitch = tokens.nextInt();
+                        int volume = tokens.nextInt();
                         piece.addNote(startBeat, endBeat, instrument, pitch, volume);
                     } catch (NoSuchElementException e) {
-                        throw new IllegalArgumentException("Malformed note line: "
-                                + scanner.nextLine());
+                        throw new IllegalArgumentException("Malformed note line: line " + line);
                     }
                     break;
                 default:
-                    throw new IllegalArgumentException("Bad line type: " + lineType);
+                    throw new IllegalArgumentException("Bad line type: " + lineType + " (line "
+                            + line + ")");
             }
         }
+        return;
+    }
 
-        return piece.build();
+    /**
+     * Returns the first position at or after the given one that starts a line of music, or the
+     * size of the file if there is none.
+     * <p>
+     * The numbers of a line may run on to the lines after it, so a line only starts a chunk if
+     * its first token is a word.
+     */
+    private static long lineStartAfter(FileChannel channel, long position, long size)
+            throws IOException {
+        if (position >= size) {
+            return size;
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(4096);
+        boolean afterNewline = false;
+        long lineStart = -1;
+        while (position < size) {
+            bytes.clear();
+            int read = channel.read(bytes, position);
+            for (int i = 0; i < read; i += 1) {
+                int c = bytes.get(i) & 0xFF;
+                if (c == '\n') {
+                    afterNewline = true;
+                    lineStart = position + i + 1;
+                } else if (afterNewline && !Character.isWhitespace(c)) {
+                    if (Character.isLetter(c)) {
+                        return lineStart;
+                    }
+                    afterNewline = false;
+                }
+            }
+            position += Math.max(read, 0);
+        }
+        return size;
     }
-}
 
+
+    /**
+     * A builder that remembers what it is told, so that it can tell another builder the same
+     * thing later.
+     */
+    private static final class NoteBuffer implements CompositionBuilder<NoteBuffer> {
+        /**
+         * The numbers of each note, five at a time, in the order they were added. The start and
+         * end of a note timed in ticks are kept in {@link #ticks} instead.
+         */
+        private int[] notes = new int[5 * 1024];
+
+        /** The number of notes added. */
+        private int noteCount = 0;
+
+        /** Which of the notes are timed in ticks. */
+        private final BitSet inTicks = new BitSet();
+
+        /** The start and end of each note timed in ticks, two at a time, in order. */
+        private long[] ticks = new long[0];
+
+        /** The number of notes timed in ticks. */
+        private int tickCount = 0;
+
+        /**
+         * The tempo changes, four numbers each: how many notes came before it, whether a beat
+         * was given, the beat and the tempo.
+         */
+        private int[] tempos = new int[4];
+
+        /** The number of tempo changes. */
+        private int tempoCount = 0;
+
+        /** Whether the chunk this buffer was filled from is malformed. */
+        boolean failed = false;
+
+        /** The number of lines in the chunk this buffer was filled from. */
+        int lines = 0;
+
+        public NoteBuffer build() {
+            return this;
+        }
+
+        public CompositionBuilder<NoteBuffer> setTempo(int tempo) {
+            return this.addTempo(0, 0, tempo);
+        }
+
+        public CompositionBuilder<NoteBuffer> setTempo(int beat, int tempo) {
+            return this.addTempo(1, beat, tempo);
+        }
+
+        private CompositionBuilder<NoteBuffer> addTempo(int hasBeat, int beat, int tempo) {
+            if (4 * this.tempoCount == this.tempos.length) {
+                this.tempos = Arrays.copyOf(this.tempos, 2 * this.tempos.length);
+            }
+            int i = 4 * this.tempoCount;
+            this.tempos[i] = this.noteCount;
+            this.tempos[i + 1] = hasBeat;
+            this.tempos[i + 2] = beat;
+            this.tempos[i + 3] = tempo;
+            this.tempoCount += 1;
+            return this;
+        }
+
+        public CompositionBuilder<NoteBuffer> addNote(int start, int end, int instrument,
+                                                      int pitch, int volume) {
+            if (5 * this.noteCount == this.notes.length) {
+                this.notes = Arrays.copyOf(this.notes, 2 * this.notes.length);
+            }
+            int i = 5 * this.noteCount;
+            this.notes[i] = start;
+            this.notes[i + 1] = end;
+            this.notes[i + 2] = instrument;
+            this.notes[i + 3] = pitch;
+            this.notes[i + 4] = volume;
+            this.noteCount += 1;
+            return this;
+        }
+
+        public CompositionBuilder<NoteBuffer> addNoteInTicks(long start, long end,
+                                                             int instrument, int pitch,
+                                                             int volume) {
+            if (2 * this.tickCount == this.ticks.length) {
+                this.ticks = Arrays.copyOf(this.ticks, Math.max(2, 2 * this.ticks.length));
+            }
+            this.ticks[2 * this.tickCount] = start;
+            this.ticks[2 * this.tickCount + 1] = end;
+            this.tickCount += 1;
+            this.inTicks.set(this.noteCount);
+            return this.addNote(0, 0, instrument, pitch, volume);
+        }
+
+        /**
+         * Tells the given builder everything this one was told, in the same order.
+         */
+        <T> void replay(CompositionBuilder<T> piece) {
+            int tempo = 0;
+            int tick = 0;
+            for (int n = 0; n <= this.noteCount; n += 1) {
+                for (; tempo < this.tempoCount && this.tempos[4 * tempo] == n; tempo += 1) {
+                    int i = 4 * tempo;
+                    if (this.tempos[i + 1] == 0) {
+                        piece.setTempo(this.tempos[i + 3]);
+                    } else {
+                        piece.setTempo(this.tempos[i + 2], this.tempos[i + 3]);
+                    }
+                }
+                if (n < this.noteCount && this.inTicks.get(n)) {
+                    int i = 5 * n;
+                    piece.addNoteInTicks(this.ticks[2 * tick], this.ticks[2 * tick + 1],
+                            this.notes[i + 2], this.notes[i + 3], this.notes[i + 4]);
+                    tick += 1;
+                } else if (n < this.noteCount) {
+                    int i = 5 * n;
+                    piece.addNote(this.notes[i], this.notes[i + 1], this.notes[i + 2],
+                            this.notes[i + 3], this.notes[i + 4]);
+                }
+            }
+            return;
+        }
+    }
+
+
+    /**
+     * A builder that makes nothing, but tells whether its notes were added in order of attack.
+     */
+    private static final class AttackOrder implements CompositionBuilder<Boolean> {
+        /** The latest attack so far, in ticks. */
+        private long latest = Long.MIN_VALUE;
+
+        /** Whether every note so far started no earlier than the one before it. */
+        private boolean inOrder = true;
+
+        public Boolean build() {
+            return this.inOrder;
+        }
+
+        public CompositionBuilder<Boolean> setTempo(int tempo) {
+            return this;
+        }
+
+        public CompositionBuilder<Boolean> setTempo(int beat, int tempo) {
+            return this;
+        }
+
+        public CompositionBuilder<Boolean> addNote(int start, int end, int instrument,
+                                                   int pitch, int volume) {
+            return this.addNoteInTicks((long) start * Note.TICKS_PER_BEAT,
+                    (long) end * Note.TICKS_PER_BEAT, instrument, pitch, volume);
+        }
+
+        public CompositionBuilder<Boolean> addNoteInTicks(long start, long end, int instrument,
+                                                          int pitch, int volume) {
+            this.inOrder = this.inOrder && start >= this.latest;
+            this.latest = Math.max(this.latest, start);
+            return this;
+        }
+    }
+
+
+    /**
+     * Reads the bytes of a buffer as characters, one byte to each character. The music format
+     * is plain ASCII. Characters are only ever read into the array-backed buffer of a
+     * {@link MusicTokenizer}.
+     */
+    private static final class AsciiSource implements Readable {
+        private final ByteBuffer bytes;
+
+        /** The bytes read on the last call, before they are widened to characters. */
+        private byte[] scratch = new byte[0];
+
+        AsciiSource(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read(CharBuffer chars) {
+            if (!this.bytes.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(chars.remaining(), this.bytes.remaining());
+            if (this.scratch.length < n) {
+                this.scratch = new byte[n];
+            }
+            this.bytes.get(this.scratch, 0, n);
+            char[] array = chars.array();
+            int offset = chars.arrayOffset() + chars.position();
+            for (int i = 0; i < n; i += 1) {
+                array[offset + i] = (char) (this.scratch[i] & 0xFF);
+            }
+            chars.position(chars.position() + n);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package cs3500.music.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Splits music data into the words and whole numbers it is made of.
+ *
+ * Unlike a {@link java.util.Scanner}, which matches a regular expression against every token
+ * and makes a string of it, this reads the source into a large buffer and walks it a character
+ * at a time. Numbers are read straight into ints, and the keywords of the music format are
+ * matched in place, so a line of music makes no garbage at all. The line each token is on is
+ * counted along the way, so that malformed input can be reported by line.
+ *
+ * This class is package-private on purpose; it is an implementation detail of
+ * {@link MusicReader}.
+ */
+final class MusicTokenizer {
+
+    /** The keywords that are matched without making a new string. */
+    private static final String[] KEYWORDS = {"note", "tempo"};
+
+    /** The number of characters read from the source at once. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The source of the music data. */
+    private final Readable source;
+
+    /** The buffer the source is read into. */
+    private final CharBuffer buffer;
+
+    /** The characters of the buffer. */
+    private final char[] chars;
+
+    /** The index of the next character to read. */
+    private int pos;
+
+    /** The number of characters in the buffer. */
+    private int limit;
+
+    /** Whether the source has run out. */
+    private boolean done;
+
+    /** The line the next character is on, counting from one. */
+    private int line;
+
+    /** The characters of the word being read. */
+    private char[] word;
+
+    /**
+     * Constructs a tokenizer of the given source.
+     *
+     * @param source the music data to read
+     */
+    MusicTokenizer(Readable source) {
+        this(source, 1);
+    }
+
+    /**
+     * Constructs a tokenizer of the given source, which starts at the given line of a larger
+     * file.
+     *
+     * @param source the music data to read
+     * @param firstLine the line the source starts on, counting from one
+     */
+    MusicTokenizer(Readable source, int firstLine) {
+        this.source = source;
+        this.buffer = CharBuffer.allocate(BUFFER_SIZE);
+        this.chars = this.buffer.array();
+        this.pos = 0;
+        this.limit = 0;
+        this.done = false;
+        this.line = firstLine;
+        this.word = new char[16];
+    }
+
+    /** Returns the line the next token is on, counting from one. */
+    int getLine() {
+        return this.line;
+    }
+
+    /**
+     * Skips any whitespace, and returns whether there is another token.
+     */
+    boolean hasNext() {
+        this.skipWhitespace(true);
+        return this.peek() >= 0;
+    }
+
+    /**
+     * Returns whether the next token is on the same line and starts like a number.
+     */
+    boolean hasNextIntOnLine() {
+        this.skipWhitespace(false);
+        int c = this.peek();
+        return (c >= '0' && c <= '9') || c == '-' || c == '+';
+    }
+
+    /**
+     * Reads the next word. The keywords of the music format are returned as constants rather
+     * than new strings.
+     *
+     * @return the word
+     * @throws NoSuchElementException if there are no more tokens
+     */
+    String nextWord() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int length = 0;
+        for (int c = this.peek(); c >= 0 && !Character.isWhitespace(c); c = this.peek()) {
+            if (length == this.word.length) {
+                this.word = Arrays.copyOf(this.word, length * 2);
+            }
+            this.word[length] = (char) c;
+            length += 1;
+            this.pos += 1;
+        }
+        for (String keyword : KEYWORDS) {
+            if (this.wordIs(keyword, length)) {
+                return keyword;
+            }
+        }
+        return new String(this.word, 0, length);
+    }
+
+    /**
+     * Reads the next token as a whole number.
+     *
+     * @return the number
+     * @throws NoSuchElementException if there are no more tokens, or the next token is not a
+     *                                whole number that fits in an int
+     */
+    int nextInt() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        boolean negative = false;
+        int c = this.peek();
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            this.pos += 1;
+            c = this.peek();
+        }
+        if (c < '0' || c > '9') {
+            throw new NoSuchElementException();
+        }
+        long value = 0;
+        while (c >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE + 1L) {
+                throw new NoSuchElementException();
+            }
+            this.pos += 1;
+            c = this.peek();
+        }
+        if (c >= 0 && !Character.isWhitespace(c)) {
+            throw new NoSuchElementException();
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new NoSuchElementException();
+        }
+        return (int) value;
+    }
+
+    /**
+     * Returns whether the word read so far is the given keyword.
+     */
+    private boolean wordIs(String keyword, int length) {
+        if (keyword.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i += 1) {
+            if (this.word[i] != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Skips whitespace, counting the lines it passes, and stopping at the end of the line if
+     * asked to.
+     */
+    private void skipWhitespace(boolean acrossLines) {
+        for (int c = this.peek(); c >= 0 && Character.isWhitespace(c); c = this.peek()) {
+            if (c == '\n') {
+                if (!acrossLines) {
+                    return;
+                }
+                this.line += 1;
+            }
+            this.pos += 1;
+        }
+    }
+
+    /**
+     * Returns the next character without reading it, or -1 if the source has run out.
+     */
+    private int peek() {
+        if (this.pos == this.limit) {
+            this.fill();
+            if (this.pos == this.limit) {
+                return -1;
+            }
+        }
+        return this.chars[this.pos];
+    }
+
+    /**
+     * Reads the next part of the source into the buffer, replacing what was there.
+     */
+    private void fill() {
+        if (this.done) {
+            return;
+        }
+        this.buffer.clear();
+        int read;
+        try {
+            do {
+                read = this.source.read(this.buffer);
+            } while (read == 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (read < 0) {
+            this.done = true;
+            read = 0;
+        }
+        this.pos = 0;
+        this.limit = read;
+    }
+}
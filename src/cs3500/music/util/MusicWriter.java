@@ -0,0 +1,235 @@
+package cs3500.music.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import cs3500.music.model.Note;
+import cs3500.music.model.Piece;
+
+/**
+ * A helper to save music compositions in the text format read by {@link MusicReader}.
+ *
+ * <p>
+ *   Pieces are written a window of beats at a time, in order of attack, through a small buffer
+ *   of characters, so a piece of any size is written without being turned into a string or a
+ *   list of all its notes first. A window with no notes in it is doubled for the next, so long
+ *   silences are crossed in a few steps, and the time taken grows with the number of notes
+ *   rather than the length of the piece. Numbers are written straight into the buffer, digit by
+ *   digit. What is written reads back through
+ *   {@link MusicReader#parseFile(Readable, CompositionBuilder)} as a piece equal to the one
+ *   written.
+ * </p>
+ * <p>
+ *   The text format is timed in whole beats, so a piece with notes that start or stop between
+ *   beats cannot be written in it; {@link ScoreFile} can hold those. A piece that may be edited
+ *   while it is written should be written from a {@link Piece#snapshot()}.
+ * </p>
+ */
+public final class MusicWriter {
+    /** The number of characters written at once. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The most characters a line can take: a word and five numbers with their spaces. */
+    private static final int MAX_LINE = 6 + 5 * 12;
+
+    /** The number of beats whose notes are gathered and sorted at once. */
+    private static final int WINDOW = 64;
+
+    /** The most beats a window grows to while crossing a silence. */
+    private static final int MAX_WINDOW = 1 << 30;
+
+    /** The characters written into, before they are flushed. */
+    private final char[] buffer;
+
+    /** The number of characters in the buffer. */
+    private int size;
+
+    /** Where full buffers are flushed to: a writer, or a channel through an array of bytes. */
+    private final Writer writer;
+    private final FileChannel channel;
+    private final byte[] bytes;
+
+    private MusicWriter(Writer writer, FileChannel channel) {
+        this.buffer = new char[BUFFER_SIZE];
+        this.size = 0;
+        this.writer = writer;
+        this.channel = channel;
+        this.bytes = channel == null ? null : new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Writes the given piece to the given writer. The writer is flushed, but not closed.
+     *
+     * @param piece the piece to write
+     * @param out the writer to write to
+     * @throws IOException if the writer throws
+     * @throws IllegalArgumentException if a note starts or stops between beats
+     */
+    public static void write(Piece piece, Writer out) throws IOException {
+        new MusicWriter(out, null).writePiece(piece);
+        out.flush();
+        return;
+    }
+
+    /**
+     * Writes the given piece to the given file, replacing anything in it.
+     * <p>
+     * The piece is written to a file next to it first, which is then moved over the given file
+     * in one step, so if the piece cannot be written the file is left as it was.
+     *
+     * @param piece the piece to write
+     * @param file the file to write to
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if a note starts or stops between beats
+     */
+    public static void write(Piece piece, Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                new MusicWriter(null, channel).writePiece(piece);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return;
+    }
+
+    /**
+     * Writes the tempo lines of the given piece, then a line for each of its notes.
+     */
+    private void writePiece(Piece piece) throws IOException {
+        for (Map.Entry<Integer, Integer> change
+                : piece.getTempoMap().getChanges().entrySet()) {
+            this.reserve(MAX_LINE);
+            this.append("tempo ");
+            this.append(change.getValue());
+            if (change.getKey() != 0) {
+                this.append(' ');
+                this.append(change.getKey());
+            }
+            this.append('\n');
+        }
+
+        List<Note> window = new ArrayList<Note>();
+        int width = WINDOW;
+        int end = piece.getEnd();
+        for (int from = piece.getStart(); from < end; ) {
+            int to = (int) Math.min((long) from + width, end);
+            window.clear();
+            piece.notesIn(from, to, 0, Integer.MAX_VALUE, (n, startsInWindow) -> {
+                if (startsInWindow) {
+                    window.add(n);
+                }
+            });
+            window.sort(ScoreFile.ORDER);
+            for (Note n : window) {
+                this.writeNote(n);
+            }
+            width = window.isEmpty() ? Math.min(MAX_WINDOW, 2 * width) : WINDOW;
+            from = to;
+        }
+        this.flush();
+        return;
+    }
+
+    /**
+     * Writes the line of the given note.
+     */
+    private void writeNote(Note n) throws IOException {
+        if (!n.isOnBeat()) {
+            throw new IllegalArgumentException("Notes between beats cannot be written as text: "
+                    + n);
+        }
+        this.reserve(MAX_LINE);
+        this.append("note ");
+        this.append(n.getAttack());
+        this.append(' ');
+        this.append(n.getAttack() + n.getDuration());
+        this.append(' ');
+        // the reader is given instruments counting from one
+        this.append(n.getInstrument() + 1);
+        this.append(' ');
+        this.append(MusicUtils.midiNumber(n.getPitchClass(), n.getOctave()));
+        this.append(' ');
+        this.append(n.getVelocity());
+        this.append('\n');
+        return;
+    }
+
+    /**
+     * Flushes the buffer unless it has room for the given number of characters. Each line is
+     * reserved before it is written, so the appends that write it need not check for room.
+     */
+    private void reserve(int length) throws IOException {
+        if (this.size + length > this.buffer.length) {
+            this.flush();
+        }
+        return;
+    }
+
+    private void append(String s) {
+        s.getChars(0, s.length(), this.buffer, this.size);
+        this.size += s.length();
+        return;
+    }
+
+    private void append(char c) {
+        this.buffer[this.size] = c;
+        this.size += 1;
+        return;
+    }
+
+    /**
+     * Writes the digits of the given number, without making a string of it.
+     */
+    private void append(int value) {
+        long v = value;
+        if (v < 0) {
+            this.buffer[this.size] = '-';
+            this.size += 1;
+            v = -v;
+        }
+        int digits = 1;
+        for (long rest = v / 10; rest > 0; rest /= 10) {
+            digits += 1;
+        }
+        for (int i = this.size + digits - 1; i >= this.size; i -= 1) {
+            this.buffer[i] = (char) ('0' + v % 10);
+            v /= 10;
+        }
+        this.size += digits;
+        return;
+    }
+
+    /**
+     * Writes out everything in the buffer.
+     */
+    private void flush() throws IOException {
+        if (this.writer != null) {
+            this.writer.write(this.buffer, 0, this.size);
+        } else {
+            // the format is plain ASCII, so each character is a byte
+            for (int i = 0; i < this.size; i += 1) {
+                this.bytes[i] = (byte) this.buffer[i];
+            }
+            ByteBuffer out = ByteBuffer.wrap(this.bytes, 0, this.size);
+            while (out.hasRemaining()) {
+                this.channel.write(out);
+            }
+        }
+        this.size = 0;
+        return;
+    }
+}
@@ -0,0 +1,335 @@
+package cs3500.music.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import cs3500.music.model.Note;
+import cs3500.music.model.Piece;
+
+/**
+ * Reads and writes pieces in a compact binary format, which is several times smaller than the
+ * text format of {@link MusicReader} and many times faster to load.
+ *
+ * <p>
+ *   A file is laid out as follows, where every number is an unsigned varint (seven bits to a
+ *   byte, low bits first, the top bit set on every byte but the last) unless it is said to be a
+ *   byte:
+ *   <ul>
+ *     <li>The bytes "MSCR" and the format version, a byte.</li>
+ *     <li>The beats per measure of the piece, and the number of measures in each block of
+ *      notes.</li>
+ *     <li>The number of tempo changes, then for each, in order, the beats since the last change
+ *      and the tempo in microseconds per beat.</li>
+ *     <li>The number of blocks. Each block starts with its number, counting blocks of
+ *      measures from the start of the piece, the number of notes in it, and its length in
+ *      bytes, so a reader can skip it whole. Only blocks with notes are written.</li>
+ *     <li>The notes of each block, in order of attack. A note is the time since the note before
+ *      it in the block (or since the start of the block), and its duration, then its pitch,
+ *      velocity and instrument as a byte each. The lowest bit of the time says whether both
+ *      numbers are in ticks; if it is clear they are in whole beats, which keeps most notes to
+ *      five bytes.</li>
+ *   </ul>
+ * </p>
+ */
+public final class ScoreFile {
+    /** The bytes every score file starts with. */
+    private static final byte[] MAGIC = {'M', 'S', 'C', 'R'};
+
+    /** The version of the format this writes. */
+    private static final int VERSION = 1;
+
+    /** The number of measures in each block of notes. */
+    private static final int MEASURES_PER_BLOCK = 16;
+
+    /**
+     * The order notes are written in: by attack, then by pitch and instrument.
+     * {@link MusicWriter} writes them in the same order.
+     */
+    static final Comparator<Note> ORDER = Comparator.comparingLong(Note::getStartTick)
+            .thenComparingInt(n -> MusicUtils.midiNumber(n.getPitchClass(), n.getOctave()))
+            .thenComparingInt(Note::getInstrument);
+
+    private ScoreFile() {
+    }
+
+    /**
+     * Writes the given piece to the given stream. The stream is not closed.
+     *
+     * @param piece the piece to write
+     * @param out the stream to write to
+     * @throws IOException if the stream cannot be written to
+     * @throws IllegalArgumentException if a note has an instrument that does not fit in a byte
+     */
+    public static void write(Piece piece, OutputStream out) throws IOException {
+        int beatsPerBlock = piece.beatsPerMeasure() * MEASURES_PER_BLOCK;
+        Note[] notes = piece.getNotes().toArray(new Note[0]);
+        Arrays.sort(notes, ORDER);
+
+        Bytes file = new Bytes();
+        file.write(MAGIC, 0, MAGIC.length);
+        file.write(VERSION);
+        file.writeVarint(piece.beatsPerMeasure());
+        file.writeVarint(MEASURES_PER_BLOCK);
+        Map<Integer, Integer> tempos = piece.getTempoMap().getChanges();
+        file.writeVarint(tempos.size());
+        int lastChange = 0;
+        for (Map.Entry<Integer, Integer> change : tempos.entrySet()) {
+            file.writeVarint(change.getKey() - lastChange);
+            file.writeVarint(change.getValue());
+            lastChange = change.getKey();
+        }
+
+        List<Integer> blockStarts = new ArrayList<Integer>();
+        for (int i = 0; i < notes.length; i += 1) {
+            if (i == 0 || notes[i].getAttack() / beatsPerBlock
+                    != notes[i - 1].getAttack() / beatsPerBlock) {
+                blockStarts.add(i);
+            }
+        }
+        blockStarts.add(notes.length);
+        file.writeVarint(blockStarts.size() - 1);
+
+        Bytes block = new Bytes();
+        for (int b = 0; b + 1 < blockStarts.size(); b += 1) {
+            int from = blockStarts.get(b);
+            int to = blockStarts.get(b + 1);
+            int number = notes[from].getAttack() / beatsPerBlock;
+            block.clear();
+            long last = (long) number * beatsPerBlock * Note.TICKS_PER_BEAT;
+            for (int i = from; i < to; i += 1) {
+                Note n = notes[i];
+                if (n.getInstrument() < 0 || n.getInstrument() > 254) {
+                    throw new IllegalArgumentException("Instrument does not fit in a score file: "
+                            + n.getInstrument());
+                }
+                long delta = n.getStartTick() - last;
+                if (n.isOnBeat() && delta % Note.TICKS_PER_BEAT == 0) {
+                    block.writeVarint(delta / Note.TICKS_PER_BEAT << 1);
+                    block.writeVarint(n.getDuration());
+                } else {
+                    block.writeVarint(delta << 1 | 1);
+                    block.writeVarint(n.getDurationTicks());
+                }
+                block.write(MusicUtils.midiNumber(n.getPitchClass(), n.getOctave()));
+                block.write(n.getVelocity());
+                // stored as a builder is given it, counting from one
+                block.write(n.getInstrument() + 1);
+                last = n.getStartTick();
+            }
+            file.writeVarint(number);
+            file.writeVarint(to - from);
+            file.writeVarint(block.size());
+            file.write(block.array(), 0, block.size());
+        }
+        out.write(file.array(), 0, file.size());
+        return;
+    }
+
+    /**
+     * Reads a piece from the given stream, and constructs a composition from it. The stream is
+     * read to its end, and not closed.
+     *
+     * @param in the stream to read
+     * @param piece a builder for helping to construct a new composition
+     * @param <T> the main model interface type describing music compositions
+     * @return the composition
+     * @throws IOException if the stream cannot be read
+     * @throws IllegalArgumentException if the stream does not hold a score file
+     */
+    public static <T> T read(InputStream in, CompositionBuilder<T> piece) throws IOException {
+        return read(in, piece, 0);
+    }
+
+    /**
+     * Reads the notes of a piece that start at or after the given beat from the given stream,
+     * and constructs a composition from them, with every tempo change of the piece. Blocks of
+     * notes that end before the beat are skipped without being decoded. The stream is read to its
+     * end, and not closed.
+     *
+     * @param in the stream to read
+     * @param piece a builder for helping to construct a new composition
+     * @param fromBeat the first beat to read notes from
+     * @param <T> the main model interface type describing music compositions
+     * @return the composition
+     * @throws IOException if the stream cannot be read
+     * @throws IllegalArgumentException if the stream does not hold a score file
+     */
+    public static <T> T read(InputStream in, CompositionBuilder<T> piece, int fromBeat)
+            throws IOException {
+        Bytes file = Bytes.readAll(in);
+        for (byte b : MAGIC) {
+            if (file.read() != b) {
+                throw new IllegalArgumentException("Not a score file");
+            }
+        }
+        int version = file.read();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unknown score file version: " + version);
+        }
+        int beatsPerBlock = file.readInt() * file.readInt();
+
+        int tempoCount = file.readInt();
+        int beat = 0;
+        for (int i = 0; i < tempoCount; i += 1) {
+            beat += file.readInt();
+            int tempo = file.readInt();
+            if (beat == 0) {
+                piece.setTempo(tempo);
+            } else {
+                piece.setTempo(beat, tempo);
+            }
+        }
+
+        int blockCount = file.readInt();
+        for (int b = 0; b < blockCount; b += 1) {
+            int number = file.readInt();
+            int noteCount = file.readInt();
+            int length = file.readInt();
+            long blockStart = (long) number * beatsPerBlock;
+            if (blockStart + beatsPerBlock <= fromBeat) {
+                file.skip(length);
+                continue;
+            }
+            long tick = blockStart * Note.TICKS_PER_BEAT;
+            for (int i = 0; i < noteCount; i += 1) {
+                long delta = file.readVarint();
+                long duration = file.readVarint();
+                int pitch = file.read();
+                int volume = file.read();
+                int instrument = file.read();
+                if (instrument < 0) {
+                    throw new IllegalArgumentException("Truncated score file");
+                }
+                if ((delta & 1) == 0) {
+                    tick += (delta >>> 1) * Note.TICKS_PER_BEAT;
+                    int start = (int) (tick / Note.TICKS_PER_BEAT);
+                    if (start >= fromBeat) {
+                        piece.addNote(start, start + (int) duration, instrument, pitch, volume);
+                    }
+                } else {
+                    tick += delta >>> 1;
+                    if (tick >= (long) fromBeat * Note.TICKS_PER_BEAT) {
+                        piece.addNoteInTicks(tick, tick + duration, instrument, pitch, volume);
+                    }
+                }
+            }
+        }
+        return piece.build();
+    }
+
+
+    /**
+     * A growable array of bytes, which is written to at its end and read from its start.
+     */
+    private static final class Bytes {
+        private byte[] bytes = new byte[1 << 12];
+
+        /** The number of bytes written. */
+        private int size = 0;
+
+        /** The index of the next byte to read. */
+        private int pos = 0;
+
+        /**
+         * Returns every byte left in the given stream.
+         */
+        static Bytes readAll(InputStream in) throws IOException {
+            Bytes all = new Bytes();
+            all.bytes = new byte[Math.max(1 << 12, in.available())];
+            int read;
+            while ((read = in.read(all.bytes, all.size, all.bytes.length - all.size)) >= 0) {
+                all.size += read;
+                if (all.size == all.bytes.length) {
+                    all.bytes = Arrays.copyOf(all.bytes, 2 * all.bytes.length);
+                }
+            }
+            return all;
+        }
+
+        byte[] array() {
+            return this.bytes;
+        }
+
+        int size() {
+            return this.size;
+        }
+
+        void clear() {
+            this.size = 0;
+        }
+
+        void write(int b) {
+            if (this.size == this.bytes.length) {
+                this.bytes = Arrays.copyOf(this.bytes, 2 * this.bytes.length);
+            }
+            this.bytes[this.size] = (byte) b;
+            this.size += 1;
+        }
+
+        void write(byte[] b, int offset, int length) {
+            if (this.size + length > this.bytes.length) {
+                this.bytes = Arrays.copyOf(this.bytes,
+                        Math.max(2 * this.bytes.length, this.size + length));
+            }
+            System.arraycopy(b, offset, this.bytes, this.size, length);
+            this.size += length;
+        }
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                this.write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.write((int) value);
+        }
+
+        /**
+         * Returns the next byte, from 0 to 255, or -1 if every byte has been read.
+         */
+        int read() {
+            if (this.pos == this.size) {
+                return -1;
+            }
+            int b = this.bytes[this.pos] & 0xFF;
+            this.pos += 1;
+            return b;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (this.pos == this.size) {
+                    throw new IllegalArgumentException("Truncated score file");
+                }
+                byte b = this.bytes[this.pos];
+                this.pos += 1;
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed number in score file");
+        }
+
+        int readInt() {
+            long value = this.readVarint();
+            if (value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Malformed number in score file");
+            }
+            return (int) value;
+        }
+
+        void skip(int length) {
+            if (length > this.size - this.pos) {
+                throw new IllegalArgumentException("Truncated score file");
+            }
+            this.pos += length;
+        }
+    }
+}
@@ -4,9 +4,12 @@ import javax.sound.midi.InvalidMidiDataException;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseListener;
 import java.io.IOException;
+import java.util.List;
 import java.util.Objects;
 
 import cs3500.music.model.Piece;
+import cs3500.music.model.PieceChange;
+import cs3500.music.model.TempoMap;
 
 /**
  * A view that combines a GUI view and a MIDI view, keeping them in sync for playback.
@@ -67,14 +70,36 @@ public final class CompositeView implements GuiView {
     @Deprecated
     @Override
     public void render(Piece piece) throws IOException, InvalidMidiDataException {
-        int wait = piece.getTempo() / 1000;
-
-        for (int i = 0; i <= piece.getEnd(); i += 1) {
+        long start = System.nanoTime();
+
+        // a piece still loading may grow, so its end is only final once it has loaded
+        for (int i = 0; i <= piece.getEnd() || piece.getLoadedThrough() != Integer.MAX_VALUE;
+             i += 1) {
+            if (piece.getLoadedThrough() <= i) {
+                // hold the beat while the piece loads, and keep time from when it is ready
+                long waited = System.nanoTime();
+                try {
+                    piece.awaitLoaded(i);
+                }
+                catch (InterruptedException e) {
+                    e.printStackTrace();
+                    break;
+                }
+                start += System.nanoTime() - waited;
+                if (i > piece.getEnd() && piece.getLoadedThrough() == Integer.MAX_VALUE) {
+                    break;
+                }
+            }
             this.guiView.initialize();
             this.guiView.render(i, piece);
             this.midiView.render(i, piece);
             try {
-                Thread.sleep(wait);
+                // sleep until the next beat is due, so time spent rendering is not added on
+                TempoMap tempos = piece.getTempoMap();
+                long wait = tempos.getTime(i + 1) - (System.nanoTime() - start) / 1000;
+                if (wait > 0) {
+                    Thread.sleep(wait / 1000, (int) (wait % 1000) * 1000);
+                }
             }
             catch (InterruptedException e) {
                 e.printStackTrace();
@@ -161,6 +186,18 @@ public final class CompositeView implements GuiView {
         this.guiView.snap(beat, p);
     }
 
+    /**
+     * Redraws the parts of the GUI view that show the changed notes.
+     *
+     * The MIDI view plays each beat as it comes, so it has nothing to redraw.
+     *
+     * @param changes the changes that were made to the piece
+     */
+    @Override
+    public void pieceChanged(List<PieceChange> changes) {
+        this.guiView.pieceChanged(changes);
+    }
+
     /**
      * Displays a status representing the editing mode that the user is currently in.
      *
@@ -1,9 +1,7 @@
 package cs3500.music.view;
 
 import java.io.IOException;
-import java.util.List;
 
-import cs3500.music.model.Note;
 import cs3500.music.model.Piece;
 import cs3500.music.util.MusicUtils;
 
@@ -37,16 +35,15 @@ public final class ConsoleView implements View {
      * @param piece the piece to which the values must be updated
      */
     private void update(Piece piece) {
-        Note lowNote = piece.getLowest();
-        Note hiNote = piece.getHighest();
-        if (lowNote == null || hiNote == null) {
+        int low = piece.getLowestPitch();
+        int high = piece.getHighestPitch();
+        if (low < 0 || high < 0) {
             this.lowest = 0;
             this.range = 0;
         }
         else {
-            this.lowest = MusicUtils.midiNumber(lowNote.getPitchClass(), lowNote.getOctave());
-            this.range = MusicUtils.midiNumber(hiNote.getPitchClass(), hiNote.getOctave()) -
-                    this.lowest + 1;
+            this.lowest = low;
+            this.range = high - this.lowest + 1;
         }
     }
 
@@ -80,30 +77,40 @@ public final class ConsoleView implements View {
 
         this.update(piece);
 
-        for (int i = piece.getStart(); i < piece.getEnd(); i += 1) {
-            int beat = piece.getEnd();
-            String sbeat = String.valueOf(beat);
+        int start = piece.getStart();
+        int end = piece.getEnd();
+
+        // fetch every note once, marking a sustain over an attack at the same pitch
+        char[][] cells = new char[Math.max(end - start, 0)][this.range];
+        piece.notesIn(start, end, this.lowest, this.lowest + this.range - 1,
+                (n, startsInWindow) -> {
+                    int pitch = MusicUtils.midiNumber(n.getPitchClass(), n.getOctave())
+                            - this.lowest;
+                    int last = Math.min(n.getAttack() + n.getDuration(), end);
+                    for (int b = Math.max(n.getAttack(), start); b < last; b += 1) {
+                        if (b != n.getAttack()) {
+                            cells[b - start][pitch] = '|';
+                        }
+                        else if (cells[b - start][pitch] == 0) {
+                            cells[b - start][pitch] = 'X';
+                        }
+                    }
+                });
+
+        for (int i = start; i < end; i += 1) {
+            String sbeat = String.valueOf(end);
             for (int j = 0; j < sbeat.length() - String.valueOf(i).length(); j += 1) {
                 this.output.append(" "); // one space
             }
             this.output.append(String.valueOf(i));
 
-
-            List sustains = piece.getNotesSustainedAt(i);
-            List attacks = piece.getNotesStartingAt(i);
             for (int j = 0; j < this.range; j += 1) {
-                if (MusicUtils.listContainsPitch(sustains,
-                        MusicUtils.midiNumberToPitchClass(this.lowest + j),
-                        MusicUtils.midiNumberToOctave(this.lowest + j))) {
-                    this.output.append(" | ");
-                }
-                else if (MusicUtils.listContainsPitch(attacks,
-                        MusicUtils.midiNumberToPitchClass(this.lowest + j),
-                        MusicUtils.midiNumberToOctave(this.lowest + j))) {
-                    this.output.append(" X ");
+                char cell = cells[i - start][j];
+                if (cell == 0) {
+                    this.output.append("   "); // three spaces
                 }
                 else {
-                    this.output.append("   "); // three spaces
+                    this.output.append(" ").append(cell).append(" ");
                 }
                 for(int k = 2; k < String.valueOf((this.lowest + j) / 12).length(); k += 1) {
                     this.output.append(" "); // one space
@@ -2,7 +2,6 @@ package cs3500.music.view;
 
 import java.awt.*;
 
-import java.util.List;
 import javax.swing.*;
 
 import cs3500.music.model.Note;
@@ -19,6 +18,9 @@ final class GuiPanel extends JPanel {
     private Piece p;
     private final int BUFFER = GuiViewFrame.BUFFER;
     private final int CELL = GuiViewFrame.CELL;
+    // the colors of the beat a note starts on and of the beats it is held through.
+    private static final Color ATTACK = new Color(15, 61, 61);
+    private static final Color SUSTAIN = new Color(51, 204, 204);
     // the highest pitch to render.
     // INVARIANT: The highest pitch must be greater than 0.
     private int highest;
@@ -44,7 +46,7 @@ final class GuiPanel extends JPanel {
      *
      * INVARIANTS:
      * The given piece cannot be null.
-     * The given piece must have at least one note.
+     * The given piece may have no notes yet, in which case an empty staff is drawn.
      * The start beat must be non-negative.
      * The end beat must be greater than the start beat.
      *
@@ -53,21 +55,18 @@ final class GuiPanel extends JPanel {
      * @param start the beat at which to start rendering
      * @param end the beat at which to stop rendering
      * @throws IllegalArgumentException if the given beat/start is negative,
-     * if the start > end, or if the {@code cs3500.music.model.Piece} doesn't have any notes.
+     * or if the start > end.
      * @throws NullPointerException if the given {@code cs3500.music.model.Piece} is null.
      */
     void initialize(Piece p, int beat, int start, int end, String status) {
-        if (beat < 0 || start < 0 || end < start || p.getNotes().isEmpty()) {
+        if (beat < 0 || start < 0 || end < start) {
             throw new IllegalArgumentException("Bad arguments!");
         }
         this.p = requireNonNull(p);
 
-        int highestPitch = MusicUtils.midiNumber(p.getHighest().getPitchClass(),
-                p.getHighest().getOctave());
-
         // initialize the default highestPitch
         if(!this.changedPitch) {
-            this.highest = highestPitch;
+            this.highest = GuiViewFrame.highestShown(p);
         }
         this.start = start;
         this.end = end;
@@ -120,50 +119,45 @@ final class GuiPanel extends JPanel {
     }
 
     /**
-     * Draws the notes in the piece.
+     * Asks Swing to redraw the cells of the given beats and pitches, if any of them are on the
+     * screen.
      *
-     * @param g the graphics object used by Swing to draw components of the panel
-     */
-    private void drawNotes(Graphics g) {
-        // loops through the beats and draws all notes at each beat
-        for (int i = this.start; i <= this.end; i++) {
-            this.drawBeat(i, g);
-        }
-    }
-
-    /**
-     * Draws all notes at a particular beat
-     * @param beat the current beat used to retrieve the notes
-     * @param g the graphics object used by Swing to draw panel components
-     * @throws IllegalArgumentException if {@param i} is negative or if
-     * {@param position} is negative
+     * @param startBeat the first beat to redraw
+     * @param endBeat the beat immediately after the last beat to redraw
+     * @param lowPitch the MIDI number of the lowest pitch to redraw
+     * @param highPitch the MIDI number of the highest pitch to redraw
      */
-    private void drawBeat(int beat, Graphics g) {
-        if (beat < 0) {
-            throw new IllegalArgumentException("Improper arguments!");
+    void repaintNotes(int startBeat, int endBeat, int lowPitch, int highPitch) {
+        int first = Math.max(startBeat, this.start);
+        int last = Math.min(endBeat - 1, this.end);
+        int top = Math.min(highPitch, this.highest);
+        if (this.p == null || first > last || top < lowPitch) {
+            return;
         }
-        this.drawNotesAtBeat(p.getAllNotesAt(beat), g, beat);
+        this.repaint((first - this.start) * this.CELL + this.BUFFER,
+                (this.highest - top) * this.CELL + this.BUFFER,
+                (last - first + 1) * this.CELL, (top - lowPitch + 1) * this.CELL);
     }
 
     /**
-     * Draws all of the notes at this beat (including both sustained and starting)
-     * @param list the list of notes to draw
+     * Draws the notes in the piece.
+     *
+     * Only the notes inside the visible window of beats and pitches are fetched, all at once.
+     *
      * @param g the graphics object used by Swing to draw components of the panel
-     * @param beat the beat at which the given notes play
-     * @throws IllegalArgumentException if {@code start} or {@code i} are less than zero.
      */
-    private void drawNotesAtBeat(List<Note> list, Graphics g, int beat) {
-        if(beat < 0) {
-            throw new IllegalArgumentException("Improper arguments!");
+    private void drawNotes(Graphics g) {
+        int lowest = 0;
+        if (this.getHeight() > 0) {
+            lowest = Math.max(0, this.highest - (this.getHeight() - this.BUFFER) / this.CELL);
         }
-        for(Note n : list) {
-            if(p.getNotesStartingAt(beat).contains(n)) {
-                this.drawNote(new Color(15, 61, 61), n, beat, g);
+        this.p.notesIn(this.start, this.end + 1, lowest, this.highest, (n, startsInWindow) -> {
+            int first = Math.max(n.getAttack(), this.start);
+            int last = Math.min(n.getAttack() + n.getDuration() - 1, this.end);
+            for (int beat = first; beat <= last; beat += 1) {
+                this.drawNote(beat == n.getAttack() ? ATTACK : SUSTAIN, n, beat, g);
             }
-            else {
-                this.drawNote(new Color(51, 204, 204), n, beat, g);
-            }
-        }
+        });
     }
 
     /**
@@ -4,11 +4,15 @@ import java.awt.event.KeyListener;
 import java.awt.event.MouseListener;
 
 import cs3500.music.model.Piece;
+import cs3500.music.model.PieceListener;
 
 /**
  * A GUI cs3500.music.view.View.
+ *
+ * A GUI view is also a listener of the piece it shows. When the piece reports a change, the
+ * view redraws only the part of itself that the change affects.
  */
-public interface GuiView extends View {
+public interface GuiView extends View, PieceListener {
 
 
     public int getLength();
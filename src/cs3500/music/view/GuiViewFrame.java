@@ -3,9 +3,10 @@ package cs3500.music.view;
 import java.awt.*;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseListener;
+import java.util.List;
 
 import cs3500.music.model.Piece;
-import cs3500.music.util.MusicUtils;
+import cs3500.music.model.PieceChange;
 import cs3500.music.view.GuiPanel;
 import cs3500.music.view.GuiView;
 
@@ -18,6 +19,8 @@ public final class GuiViewFrame extends javax.swing.JFrame implements GuiView {
     // Both the CELL_SIZE and MARGIN must be greater than zero.
     public final static int CELL = 15;
     public final static int BUFFER = CELL * 2;
+    // the highest pitch shown while a piece has no notes, such as while it is still loading.
+    public final static int EMPTY_HIGHEST = 72;
     // the panel that everything is drawn in
     private GuiPanel displayPanel;
     // the length and width of the frame
@@ -58,6 +61,8 @@ public final class GuiViewFrame extends javax.swing.JFrame implements GuiView {
     /**
      * Renders the piece from the given beat on (to the end of the piece),
      * initializes the frame to fit the song, and sets the visibility to true.
+     * A piece with no notes yet, such as one still loading, is drawn as an empty staff, and
+     * the frame keeps its size until there are notes to fit it to.
      * @param beat the beat to start rendering at
      * @throws NullPointerException if the given input is null
      * @throws IllegalArgumentException if the beat is negative
@@ -69,10 +74,11 @@ public final class GuiViewFrame extends javax.swing.JFrame implements GuiView {
         p = requireNonNull(p);
 
         // initializes the length and the width of the frame.
-        this.length = Math.min(p.getEnd() * CELL + (BUFFER * 2), this.length);
-        this.width = Math.min((MusicUtils.midiNumber(p.getHighest().getPitchClass(),
-                p.getHighest().getOctave()) - MusicUtils.midiNumber(p.getLowest().getPitchClass(),
-                p.getLowest().getOctave())) * this.CELL + BUFFER * 3, this.width);
+        if (p.getEnd() > 0) {
+            this.length = Math.min(p.getEnd() * CELL + (BUFFER * 2), this.length);
+            this.width = Math.min((p.getHighestPitch() - p.getLowestPitch()) * this.CELL
+                    + BUFFER * 3, this.width);
+        }
 
         // number of beats per screen
         int beatCells = (this.length - BUFFER) / CELL;
@@ -83,6 +89,18 @@ public final class GuiViewFrame extends javax.swing.JFrame implements GuiView {
         this.repaint();
     }
 
+    /**
+     * Returns the highest pitch shown at the top of the frame for the given piece before it is
+     * scrolled: the highest pitch in the piece, or {@link #EMPTY_HIGHEST} if it has no notes.
+     *
+     * @param p the piece
+     * @return the MIDI number of the highest pitch shown
+     */
+    public static int highestShown(Piece p) {
+        int highest = p.getHighestPitch();
+        return highest < 0 ? EMPTY_HIGHEST : highest;
+    }
+
     /**
      * Turns the frame on.
      */
@@ -163,6 +181,19 @@ public final class GuiViewFrame extends javax.swing.JFrame implements GuiView {
         this.render(beat, p);
     }
 
+    /**
+     * Redraws the parts of the frame that show the changed notes.
+     *
+     * @param changes the changes that were made to the piece
+     */
+    @Override
+    public void pieceChanged(List<PieceChange> changes) {
+        for (PieceChange c : changes) {
+            this.displayPanel.repaintNotes(c.getStartBeat(), c.getEndBeat(), c.getLowPitch(),
+                    c.getHighPitch());
+        }
+    }
+
     /**
      * Displays a status representing the editing mode that the user is currently in.
      *
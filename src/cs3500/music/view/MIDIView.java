@@ -7,6 +7,7 @@ import java.util.List;
 
 import cs3500.music.model.Note;
 import cs3500.music.model.Piece;
+import cs3500.music.model.TempoMap;
 import cs3500.music.util.MusicUtils;
 
 /**
@@ -77,7 +78,7 @@ public final class MIDIView implements View {
     @Override
     public void render(int beat, Piece piece) throws InvalidMidiDataException {
         List<Note> starts = piece.getNotesStartingAt(beat);
-        List<Note> ends = this.ends(beat, piece.getAllNotesAt(beat - 1)); // wont throw anything
+        List<Note> ends = this.ends(beat, piece); // wont throw anything
 
         for (Note n : ends) {
             this.receiver.send(new ShortMessage(ShortMessage.NOTE_OFF, n.getInstrument(),
@@ -104,12 +105,34 @@ public final class MIDIView implements View {
      */
     @Override
     public void render(Piece piece) throws InvalidMidiDataException {
-        int wait = piece.getTempo() / 1000;
-
-        for (int i = 0; i <= piece.getEnd(); i += 1) {
+        long start = System.nanoTime();
+
+        // a piece still loading may grow, so its end is only final once it has loaded
+        for (int i = 0; i <= piece.getEnd() || piece.getLoadedThrough() != Integer.MAX_VALUE;
+             i += 1) {
+            if (piece.getLoadedThrough() <= i) {
+                // hold the beat while the piece loads, and keep time from when it is ready
+                long waited = System.nanoTime();
+                try {
+                    piece.awaitLoaded(i);
+                }
+                catch (InterruptedException e) {
+                    e.printStackTrace();
+                    break;
+                }
+                start += System.nanoTime() - waited;
+                if (i > piece.getEnd() && piece.getLoadedThrough() == Integer.MAX_VALUE) {
+                    break;
+                }
+            }
             this.render(i, piece);
             try {
-                Thread.sleep(wait);
+                // sleep until the next beat is due, so time spent rendering is not added on
+                TempoMap tempos = piece.getTempoMap();
+                long wait = tempos.getTime(i + 1) - (System.nanoTime() - start) / 1000;
+                if (wait > 0) {
+                    Thread.sleep(wait / 1000, (int) (wait % 1000) * 1000);
+                }
             }
             catch (InterruptedException e) {
                 e.printStackTrace();
@@ -151,13 +174,13 @@ public final class MIDIView implements View {
     /**
      * Returns a List of all notes that are to be turned off at the given beat
      */
-    private List<Note> ends(int beat, List<Note> playing) {
+    private List<Note> ends(int beat, Piece piece) {
         List<Note> ends = new ArrayList<Note>();
-        for (Note n : playing) {
+        piece.forEachNoteAt(beat - 1, n -> {
             if (n.getAttack() + n.getDuration() == beat) {
                 ends.add(n);
             }
-        }
+        });
         return ends;
     }
 